@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks uber JAR. Accepts the regular JMH command line options and always
+ * enables the {@linkplain GCProfiler}, so every result reports {@code ns/op} along with {@code
+ * gc.alloc.rate.norm} (bytes allocated per operation).
+ *
+ * <pre class="code">
+ * java -jar target/benchmarks.jar                               # every benchmark
+ * java -jar target/benchmarks.jar FluentChainBenchmark -p method=GET
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {}
+
+  public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+    final Options options =
+        new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.benchmark;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import mart.karl.fluent.resttemplate.Executor;
+import mart.karl.fluent.resttemplate.ExecutorUriBuilder;
+import mart.karl.fluent.resttemplate.FluentRestTemplate;
+import mart.karl.fluent.resttemplate.UriBodyStarter;
+import mart.karl.fluent.resttemplate.UriStarter;
+import mart.karl.fluent.service.FluentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Measures a complete FluentRestTemplate chain, from the starter phase down to each {@linkplain
+ * Executor} terminal method, for every HTTP verb entry point and every URI source. Compare the
+ * results against {@linkplain RawRestTemplateBenchmark} to obtain the overhead added by the fluent
+ * chain on top of {@linkplain RestTemplate#exchange}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FluentChainBenchmark {
+
+  static final String URI_TEMPLATE = "http://localhost:8080/context/v1/items/{id}";
+  static final String EXPANDED_URI = "http://localhost:8080/context/v1/items/42";
+  static final String ID = "id";
+  static final String ID_VALUE = "42";
+  static final String BODY = "payload";
+  private static final String ENDPOINT_KEY = "item";
+  private static final ParameterizedTypeReference<String> TYPE_REFERENCE =
+      new ParameterizedTypeReference<String>() {};
+
+  @Param({"GET", "POST", "PUT", "PATCH", "DELETE"})
+  private HttpMethod method;
+
+  @Param({"URI_STRING", "URI", "SERVICE_WITHOUT_ENDPOINT", "SERVICE_WITH_ENDPOINT"})
+  private UriSource source;
+
+  private FluentRestTemplate fluentRestTemplate;
+  private URI uri;
+  private FluentService service;
+  private FluentService endpointService;
+
+  @Setup
+  public void setUp() {
+    fluentRestTemplate =
+        new FluentRestTemplate(new RestTemplate(new InMemoryClientHttpRequestFactory()));
+    uri = URI.create(EXPANDED_URI);
+    service = FluentService.from(URI_TEMPLATE).build();
+    endpointService =
+        FluentService.builder()
+            .scheme("http")
+            .host("localhost")
+            .port("8080")
+            .contextPath("context")
+            .version("v1")
+            .endpoints(Collections.singletonMap(ENDPOINT_KEY, "items/{id}"))
+            .build();
+  }
+
+  @Benchmark
+  public ResponseEntity<Void> execute() {
+    return executor().execute();
+  }
+
+  @Benchmark
+  public ResponseEntity<String> executeClass() {
+    return executor().execute(String.class);
+  }
+
+  @Benchmark
+  public ResponseEntity<String> executeTypeReference() {
+    return executor().execute(TYPE_REFERENCE);
+  }
+
+  @Benchmark
+  public void executeForObject() {
+    executor().executeForObject();
+  }
+
+  @Benchmark
+  public String executeForObjectClass() {
+    return executor().executeForObject(String.class);
+  }
+
+  @Benchmark
+  public String executeForObjectTypeReference() {
+    return executor().executeForObject(TYPE_REFERENCE);
+  }
+
+  private Executor executor() {
+    return uriBuilder().uriVariable(ID, ID_VALUE).executor();
+  }
+
+  private ExecutorUriBuilder uriBuilder() {
+    switch (method) {
+      case GET:
+        return from(fluentRestTemplate.get());
+      case DELETE:
+        return from(fluentRestTemplate.delete());
+      case POST:
+        return into(fluentRestTemplate.post(BODY));
+      case PUT:
+        return into(fluentRestTemplate.put(BODY));
+      case PATCH:
+        return into(fluentRestTemplate.patch(BODY));
+      default:
+        throw new IllegalStateException("Unsupported method " + method);
+    }
+  }
+
+  private ExecutorUriBuilder from(final UriStarter starter) {
+    switch (source) {
+      case URI_STRING:
+        return starter.from(URI_TEMPLATE);
+      case URI:
+        return starter.from(uri);
+      case SERVICE_WITHOUT_ENDPOINT:
+        return starter.from(service).withoutEndpoint();
+      case SERVICE_WITH_ENDPOINT:
+        return starter.from(endpointService).withEndpoint(ENDPOINT_KEY);
+      default:
+        throw new IllegalStateException("Unsupported source " + source);
+    }
+  }
+
+  private ExecutorUriBuilder into(final UriBodyStarter starter) {
+    switch (source) {
+      case URI_STRING:
+        return starter.into(URI_TEMPLATE);
+      case URI:
+        return starter.into(uri);
+      case SERVICE_WITHOUT_ENDPOINT:
+        return starter.into(service).withoutEndpoint();
+      case SERVICE_WITH_ENDPOINT:
+        return starter.into(endpointService).withEndpoint(ENDPOINT_KEY);
+      default:
+        throw new IllegalStateException("Unsupported source " + source);
+    }
+  }
+
+  /** Means used to provide the URI during FluentRestTemplate's builder phase. */
+  public enum UriSource {
+    URI_STRING,
+    URI,
+    SERVICE_WITHOUT_ENDPOINT,
+    SERVICE_WITH_ENDPOINT
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import mart.karl.fluent.resttemplate.FluentRestTemplate;
+import mart.karl.fluent.transport.JdkClientHttpRequestFactory;
+import mart.karl.fluent.transport.PooledTransport;
+import mart.karl.fluent.transport.PooledTransportConfig;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Compares the throughput and the connections opened by each transport under high concurrency,
+ * against a local Jetty server speaking both HTTP/1.1 and cleartext HTTP/2 (h2c). Each operation
+ * fires {@code requests} requests, {@code concurrency} of them in flight at a time, and waits for
+ * all of them, so the score is the time needed to complete a whole fan-out. The connections opened
+ * and the most connections open at once are printed at the end of every iteration.<br>
+ * <br>
+ *
+ * <p>Must run on Java 11 or later; the {@code H2C} transport is unavailable otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class Http2TransportBenchmark {
+
+  private static final byte[] RESPONSE =
+      "{\"id\":1,\"name\":\"DummyName\"}".getBytes(StandardCharsets.UTF_8);
+
+  @Param({"SIMPLE", "POOLED", "H2C"})
+  private TransportType transportType;
+
+  @Param({"200"})
+  private int concurrency;
+
+  @Param({"2000"})
+  private int requests;
+
+  @Param({"10"})
+  private long latencyMillis;
+
+  private Server server;
+  private ConnectionStatistics connectionStatistics;
+  private String uriTemplate;
+  private PooledTransport pooledTransport;
+  private ExecutorService executorService;
+  private FluentRestTemplate fluentRestTemplate;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    uriTemplate = "http://localhost:" + startServer() + "/resources/{id}";
+    executorService = Executors.newFixedThreadPool(concurrency);
+    fluentRestTemplate =
+        FluentRestTemplate.builder()
+            .restTemplate(new RestTemplate(requestFactory()))
+            .asyncExecutor(executorService)
+            .build();
+  }
+
+  @TearDown(Level.Iteration)
+  public void printConnections() {
+    System.out.printf(
+        "%n%s: %d connections opened, %d open at most%n",
+        transportType,
+        connectionStatistics.getConnectionsTotal(),
+        connectionStatistics.getConnectionsMax());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    executorService.shutdownNow();
+    if (pooledTransport != null) {
+      pooledTransport.close();
+    }
+    server.stop();
+  }
+
+  @Benchmark
+  public void fanOut() {
+    final CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+    for (int i = 0; i < requests; i++) {
+      futures[i] =
+          fluentRestTemplate
+              .get()
+              .from(uriTemplate)
+              .uriVariable("id", i)
+              .executor()
+              .executeForObjectAsync(String.class);
+    }
+    CompletableFuture.allOf(futures).join();
+  }
+
+  /** Starts the server on an ephemeral port, which the URI template is built with. */
+  private int startServer() throws Exception {
+    server = new Server(new QueuedThreadPool(concurrency * 2 + 50));
+    final HttpConfiguration httpConfiguration = new HttpConfiguration();
+    final ServerConnector connector =
+        new ServerConnector(
+            server,
+            new HttpConnectionFactory(httpConfiguration),
+            new HTTP2CServerConnectionFactory(httpConfiguration));
+    connectionStatistics = new ConnectionStatistics();
+    connector.addBean(connectionStatistics);
+    server.addConnector(connector);
+    server.setHandler(new LatencyHandler(latencyMillis));
+    server.start();
+    return connector.getLocalPort();
+  }
+
+  private ClientHttpRequestFactory requestFactory() {
+    switch (transportType) {
+      case POOLED:
+        pooledTransport =
+            new PooledTransport(
+                PooledTransportConfig.builder()
+                    .maxConnections(concurrency)
+                    .maxConnectionsPerRoute(concurrency)
+                    .build());
+        return pooledTransport.getRequestFactory();
+      case H2C:
+        return new JdkClientHttpRequestFactory();
+      default:
+        return new SimpleClientHttpRequestFactory();
+    }
+  }
+
+  /** Transport FluentRestTemplate sends the requests through. */
+  public enum TransportType {
+    SIMPLE,
+    POOLED,
+    H2C
+  }
+
+  private static final class LatencyHandler extends AbstractHandler {
+    private final long latencyMillis;
+
+    private LatencyHandler(final long latencyMillis) {
+      this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public void handle(
+        final String target,
+        final Request baseRequest,
+        final HttpServletRequest request,
+        final HttpServletResponse response)
+        throws IOException {
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      response.setContentType("application/json");
+      response.setContentLength(RESPONSE.length);
+      response.getOutputStream().write(RESPONSE);
+      baseRequest.setHandled(true);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * {@linkplain ClientHttpRequestFactory} that never touches the network. Every request is answered
+ * in memory with a {@code 200 OK} and a small {@code text/plain} body, so benchmarks measure the
+ * client-side cost of building and executing requests only. An optional latency simulates the time
+ * a real server takes to answer by blocking the calling thread.
+ */
+public final class InMemoryClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+  private static final byte[] RESPONSE_BODY = "ok".getBytes(StandardCharsets.UTF_8);
+
+  private final long latencyMillis;
+
+  /** Creates a factory answering every request immediately. */
+  public InMemoryClientHttpRequestFactory() {
+    this(0);
+  }
+
+  /**
+   * Creates a factory answering every request after the given latency.
+   *
+   * @param latencyMillis Milliseconds the calling thread blocks before getting a response.
+   */
+  public InMemoryClientHttpRequestFactory(final long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+  }
+
+  @Override
+  public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod) {
+    return new InMemoryClientHttpRequest(httpMethod, uri);
+  }
+
+  private final class InMemoryClientHttpRequest extends AbstractClientHttpRequest {
+
+    private final HttpMethod method;
+    private final URI uri;
+
+    private InMemoryClientHttpRequest(final HttpMethod method, final URI uri) {
+      this.method = method;
+      this.uri = uri;
+    }
+
+    @Override
+    public HttpMethod getMethod() {
+      return method;
+    }
+
+    @Override
+    public URI getURI() {
+      return uri;
+    }
+
+    @Override
+    protected OutputStream getBodyInternal(final HttpHeaders headers) {
+      return DiscardingOutputStream.INSTANCE;
+    }
+
+    @Override
+    protected ClientHttpResponse executeInternal(final HttpHeaders headers) throws IOException {
+      if (latencyMillis > 0) {
+        try {
+          Thread.sleep(latencyMillis);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while simulating latency");
+        }
+      }
+      return new InMemoryClientHttpResponse();
+    }
+  }
+
+  private static final class InMemoryClientHttpResponse implements ClientHttpResponse {
+
+    private final HttpHeaders headers = new HttpHeaders();
+
+    private InMemoryClientHttpResponse() {
+      headers.setContentType(MediaType.TEXT_PLAIN);
+      headers.setContentLength(RESPONSE_BODY.length);
+    }
+
+    @Override
+    public HttpStatus getStatusCode() {
+      return HttpStatus.OK;
+    }
+
+    @Override
+    public int getRawStatusCode() {
+      return HttpStatus.OK.value();
+    }
+
+    @Override
+    public String getStatusText() {
+      return HttpStatus.OK.getReasonPhrase();
+    }
+
+    @Override
+    public InputStream getBody() {
+      return new ByteArrayInputStream(RESPONSE_BODY);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+
+    @Override
+    public void close() {
+      // Nothing to release.
+    }
+  }
+
+  private static final class DiscardingOutputStream extends OutputStream {
+
+    private static final DiscardingOutputStream INSTANCE = new DiscardingOutputStream();
+
+    @Override
+    public void write(final int b) {
+      // Discarded.
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      // Discarded.
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.benchmark;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Baseline for {@linkplain FluentChainBenchmark}: the same requests executed straight through
+ * {@linkplain RestTemplate#exchange} with an already expanded {@linkplain URI}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RawRestTemplateBenchmark {
+
+  private static final ParameterizedTypeReference<Void> VOID_REFERENCE =
+      new ParameterizedTypeReference<Void>() {};
+  private static final ParameterizedTypeReference<String> TYPE_REFERENCE =
+      new ParameterizedTypeReference<String>() {};
+
+  @Param({"GET", "POST", "PUT", "PATCH", "DELETE"})
+  private HttpMethod method;
+
+  private RestTemplate restTemplate;
+  private URI uri;
+  private String body;
+
+  @Setup
+  public void setUp() {
+    restTemplate = new RestTemplate(new InMemoryClientHttpRequestFactory());
+    uri = URI.create(FluentChainBenchmark.EXPANDED_URI);
+    body =
+        method == HttpMethod.GET || method == HttpMethod.DELETE
+            ? null
+            : FluentChainBenchmark.BODY;
+  }
+
+  @Benchmark
+  public ResponseEntity<Void> exchangeVoid() {
+    return restTemplate.exchange(RequestEntity.method(method, uri).body(body), VOID_REFERENCE);
+  }
+
+  @Benchmark
+  public ResponseEntity<String> exchangeClass() {
+    return restTemplate.exchange(RequestEntity.method(method, uri).body(body), String.class);
+  }
+
+  @Benchmark
+  public ResponseEntity<String> exchangeTypeReference() {
+    return restTemplate.exchange(RequestEntity.method(method, uri).body(body), TYPE_REFERENCE);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import mart.karl.fluent.concurrent.VirtualThreads;
+import mart.karl.fluent.resttemplate.FluentRestTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Compares the throughput of {@code executeForObjectAsync} under high simulated latency when the
+ * asynchronous executor is a fixed platform thread pool or {@linkplain VirtualThreads}. Each
+ * operation fires {@code requests} concurrent requests and waits for all of them, so the score is
+ * the time needed to complete a whole fan-out.<br>
+ * <br>
+ *
+ * <p>Must run on Java 21 or later; the {@code VIRTUAL} executor is unavailable otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+  @Param({"PLATFORM_POOL", "VIRTUAL"})
+  private ExecutorType executorType;
+
+  @Param({"200"})
+  private int platformPoolSize;
+
+  @Param({"10000"})
+  private int requests;
+
+  @Param({"100"})
+  private long latencyMillis;
+
+  private ExecutorService executorService;
+  private FluentRestTemplate fluentRestTemplate;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    executorService =
+        executorType == ExecutorType.VIRTUAL
+            ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(platformPoolSize);
+    fluentRestTemplate =
+        FluentRestTemplate.builder()
+            .restTemplate(new RestTemplate(new InMemoryClientHttpRequestFactory(latencyMillis)))
+            .asyncExecutor(executorService)
+            .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Benchmark
+  public void fanOut() {
+    final CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+    for (int i = 0; i < requests; i++) {
+      futures[i] =
+          fluentRestTemplate
+              .get()
+              .from(FluentChainBenchmark.URI_TEMPLATE)
+              .uriVariable(FluentChainBenchmark.ID, i)
+              .executor()
+              .executeForObjectAsync(String.class);
+    }
+    CompletableFuture.allOf(futures).join();
+  }
+
+  /** Asynchronous executor backing FluentRestTemplate. */
+  public enum ExecutorType {
+    PLATFORM_POOL,
+    VIRTUAL
+  }
+}
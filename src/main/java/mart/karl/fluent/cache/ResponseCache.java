@@ -0,0 +1,616 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.cache;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * In-memory, size-bounded cache of GET responses following the HTTP caching semantics of {@code
+ * Cache-Control}, {@code Expires} and {@code Vary}. <br>
+ * <br>
+ *
+ * <p>Responses are stored already deserialized, keyed by the expanded request {@linkplain URI}, the
+ * requested response type and the values of the request headers named by the response's {@code
+ * Vary} header, so that every variant, e.g. per {@code Accept-Language}, is cached on its own. A
+ * response is stored only when it carries an explicit freshness lifetime ({@code max-age} or {@code
+ * Expires}) and neither the request nor the response forbid it ({@code no-store}, {@code
+ * no-cache}). Fresh entries are returned without any network round trip.<br>
+ * <br>
+ *
+ * <p>Since every caller of the same FluentRestTemplate shares the cache, responses to requests
+ * carrying {@code Authorization} are only stored when they allow it explicitly ({@code public},
+ * {@code s-maxage} or {@code must-revalidate}), as RFC 7234 section 3.2 requires from shared
+ * caches, and requests carrying {@code Cookie} bypass the cache altogether.<br>
+ * <br>
+ *
+ * <p>In <b>revalidation</b> mode, responses carrying an {@code ETag} or {@code Last-Modified}
+ * validator are stored as well, even when they have no freshness lifetime or demand {@code
+ * no-cache}. Once such an entry is stale, the request is automatically sent with {@code
+ * If-None-Match} and/or {@code If-Modified-Since}; a {@code 304 Not Modified} answer returns the
+ * stored body, with the stored status and updated headers, through the very same {@linkplain
+ * ResponseEntity}, saving both the download and the deserialization of the body.<br>
+ * <br>
+ *
+ * <p>The cache is split in segments, each one evicting its least recently used entries once the
+ * cache reaches its maximum size, so a single instance can be shared by every thread using the
+ * same FluentRestTemplate:
+ *
+ * <pre class="code">
+ * FluentRestTemplate fluentRestTemplate =
+ *   FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .responseCache(new ResponseCache(10_000, true)) // with revalidation
+ *   .build();
+ * </pre>
+ *
+ * <p><b>NOTE:</b> every hit gets its own {@linkplain ResponseEntity} and headers, but cached bodies
+ * are shared by every caller hitting the same entry. Treat them as immutable.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class ResponseCache {
+
+  /** Maximum amount of entries when no other size is given. */
+  public static final int DEFAULT_MAXIMUM_SIZE = 1_000;
+
+  private static final int SEGMENTS = 16;
+  private static final String CACHE_CONTROL = "Cache-Control";
+  private static final String PRAGMA = "Pragma";
+  private static final String EXPIRES = "Expires";
+  private static final String DATE = "Date";
+  private static final String AGE = "Age";
+  private static final String VARY = "Vary";
+  private static final String ETAG = "ETag";
+  private static final String LAST_MODIFIED = "Last-Modified";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+  private static final String AUTHORIZATION = "Authorization";
+  private static final String COOKIE = "Cookie";
+  private static final Set<HttpStatus> CACHEABLE_STATUSES =
+      Collections.unmodifiableSet(
+          new HashSet<>(
+              Arrays.asList(
+                  HttpStatus.OK,
+                  HttpStatus.NON_AUTHORITATIVE_INFORMATION,
+                  HttpStatus.NO_CONTENT,
+                  HttpStatus.MULTIPLE_CHOICES,
+                  HttpStatus.MOVED_PERMANENTLY)));
+
+  private final Segment[] segments;
+  private final boolean revalidation;
+  private final Clock clock;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder revalidationCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  /** Creates a ResponseCache holding up to {@value #DEFAULT_MAXIMUM_SIZE} entries. */
+  public ResponseCache() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a ResponseCache holding up to the given amount of entries.
+   *
+   * @param maximumSize Maximum amount of cached responses.
+   */
+  public ResponseCache(final int maximumSize) {
+    this(maximumSize, false);
+  }
+
+  /**
+   * Creates a ResponseCache holding up to the given amount of entries, optionally revalidating
+   * stale entries with their {@code ETag} and {@code Last-Modified} validators.
+   *
+   * @param maximumSize Maximum amount of cached responses.
+   * @param revalidation Whether to store responses with validators and revalidate them.
+   */
+  public ResponseCache(final int maximumSize, final boolean revalidation) {
+    this(maximumSize, revalidation, Clock.systemUTC());
+  }
+
+  ResponseCache(final int maximumSize, final boolean revalidation, final Clock clock) {
+    Assert.isTrue(maximumSize > 0, "maximumSize must be greater than zero");
+    Assert.notNull(clock, "clock must not be null");
+    final int segmentCount = Math.min(SEGMENTS, maximumSize);
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      // Spread the remainder so segment capacities add up to maximumSize.
+      final int remainder = i < maximumSize % segmentCount ? 1 : 0;
+      segments[i] = new Segment(maximumSize / segmentCount + remainder);
+    }
+    this.revalidation = revalidation;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns a fresh cached response for the given request, if any, or performs the exchange and
+   * stores its response when it is cacheable. In revalidation mode, a stale entry with validators
+   * turns the exchange into a conditional request.
+   *
+   * @param requestEntity The request to perform.
+   * @param responseType Type the response body is deserialized to.
+   * @param exchange Performs the actual REST request.
+   * @param <O> Response type.
+   * @return The cached, revalidated or exchanged response.
+   */
+  public <O> ResponseEntity<O> exchange(
+      final RequestEntity<?> requestEntity,
+      final Type responseType,
+      final Function<RequestEntity<?>, ResponseEntity<O>> exchange) {
+    if (bypasses(requestEntity)) {
+      return exchange.apply(requestEntity);
+    }
+    final Resource resource = new Resource(requestEntity.getUrl(), responseType);
+    final Entry entry = lookup(resource, requestEntity.getHeaders());
+    if (isFresh(entry)) {
+      hitCount.increment();
+      return copy(entry.response());
+    }
+    missCount.increment();
+    final Entry validated = validated(entry, requestEntity.getHeaders());
+    final ResponseEntity<O> response =
+        exchange.apply(validated == null ? requestEntity : conditional(requestEntity, validated));
+    return stored(requestEntity, resource, validated, response);
+  }
+
+  /**
+   * Same as {@linkplain ResponseCache#exchange(RequestEntity, Type, Function)}, for exchanges
+   * completing asynchronously. Fresh cached responses are returned already completed.
+   *
+   * @param requestEntity The request to perform.
+   * @param responseType Type the response body is deserialized to.
+   * @param exchange Performs the actual REST request asynchronously.
+   * @param <O> Response type.
+   * @return The cached, revalidated or exchanged response.
+   */
+  public <O> CompletableFuture<ResponseEntity<O>> exchangeAsync(
+      final RequestEntity<?> requestEntity,
+      final Type responseType,
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> exchange) {
+    if (bypasses(requestEntity)) {
+      return exchange.apply(requestEntity);
+    }
+    final Resource resource = new Resource(requestEntity.getUrl(), responseType);
+    final Entry entry = lookup(resource, requestEntity.getHeaders());
+    if (isFresh(entry)) {
+      hitCount.increment();
+      return CompletableFuture.completedFuture(copy(entry.response()));
+    }
+    missCount.increment();
+    final Entry validated = validated(entry, requestEntity.getHeaders());
+    return exchange
+        .apply(validated == null ? requestEntity : conditional(requestEntity, validated))
+        .thenApply(response -> stored(requestEntity, resource, validated, response));
+  }
+
+  /** Removes every cached response. Statistics are kept. */
+  public void clear() {
+    for (final Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  /**
+   * Amount of cached responses, fresh or not.
+   *
+   * @return Current amount of entries.
+   */
+  public int size() {
+    int size = 0;
+    for (final Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Amount of requests answered from the cache without any network round trip.
+   *
+   * @return Cache hits since creation.
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Amount of cacheable requests that had to be performed, including revalidations.
+   *
+   * @return Cache misses since creation.
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Amount of conditional requests answered with {@code 304 Not Modified}.
+   *
+   * @return Successful revalidations since creation.
+   */
+  public long getRevalidationCount() {
+    return revalidationCount.sum();
+  }
+
+  /**
+   * Amount of entries removed to keep the cache within its maximum size.
+   *
+   * @return Evictions since creation.
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  private static boolean bypasses(final RequestEntity<?> requestEntity) {
+    return requestEntity.getMethod() != HttpMethod.GET
+        || requestEntity.getHeaders().containsKey(COOKIE);
+  }
+
+  private boolean isFresh(final Entry entry) {
+    return entry != null && entry.expiresAt > clock.millis();
+  }
+
+  /** The stale entry to revalidate, unless it has no validators or the request has its own. */
+  private static Entry validated(final Entry entry, final HttpHeaders requestHeaders) {
+    return entry != null && entry.hasValidators() && !isConditional(requestHeaders)
+        ? entry
+        : null;
+  }
+
+  /**
+   * Stores the response if cacheable. A {@code 304 Not Modified} answer to the revalidation of the
+   * validated entry refreshes it instead, and returns its body.
+   */
+  private <O> ResponseEntity<O> stored(
+      final RequestEntity<?> requestEntity,
+      final Resource resource,
+      final Entry validated,
+      final ResponseEntity<O> response) {
+    final HttpHeaders requestHeaders = requestEntity.getHeaders();
+    if (validated == null
+        || response == null
+        || response.getStatusCode() != HttpStatus.NOT_MODIFIED) {
+      if (!directives(requestHeaders).contains("no-store")) {
+        store(resource, requestHeaders, response);
+      }
+      return response;
+    }
+    revalidationCount.increment();
+    final ResponseEntity<O> stored = validated.response();
+    final HttpHeaders headers = new HttpHeaders();
+    headers.putAll(stored.getHeaders());
+    headers.putAll(response.getHeaders());
+    final ResponseEntity<O> revalidated =
+        new ResponseEntity<>(stored.getBody(), headers, stored.getStatusCode());
+    store(resource, requestHeaders, revalidated);
+    return revalidated;
+  }
+
+  /**
+   * Looks the variant matching the request headers up, unless the request forbids it, removing it
+   * if it is stale and can't be revalidated.
+   */
+  private Entry lookup(final Resource resource, final HttpHeaders requestHeaders) {
+    final Set<String> requestDirectives = directives(requestHeaders);
+    if (requestDirectives.contains("no-store") || requestDirectives.contains("no-cache")) {
+      return null;
+    }
+    final Segment segment = segment(resource);
+    synchronized (segment) {
+      final Key key = segment.key(resource, requestHeaders);
+      final Entry entry = segment.get(key);
+      if (entry != null
+          && entry.expiresAt <= clock.millis()
+          && !(revalidation && entry.hasValidators())) {
+        segment.discard(key);
+        return null;
+      }
+      return entry;
+    }
+  }
+
+  private void store(
+      final Resource resource,
+      final HttpHeaders requestHeaders,
+      final ResponseEntity<?> response) {
+    if (response == null || !CACHEABLE_STATUSES.contains(response.getStatusCode())) {
+      return;
+    }
+    final HttpHeaders headers = response.getHeaders();
+    final Set<String> varyHeaders = varyHeaders(headers);
+    final Set<String> directives = directives(headers);
+    if (varyHeaders.contains("*")
+        || directives.contains("no-store")
+        || requestHeaders.containsKey(AUTHORIZATION) && !isSharedWhenAuthorized(directives)) {
+      return;
+    }
+    final String etag = headers.getFirst(ETAG);
+    final String lastModified = headers.getFirst(LAST_MODIFIED);
+    final boolean revalidable = revalidation && (etag != null || lastModified != null);
+    final long now = clock.millis();
+    final long freshness = freshnessLifetime(headers, now);
+    if (freshness <= 0 && !revalidable) {
+      return;
+    }
+    final Entry entry =
+        new Entry(
+            copy(response),
+            now + Math.max(freshness, 0),
+            revalidable ? etag : null,
+            revalidable ? lastModified : null);
+    final Key key = new Key(resource, varyValues(varyHeaders, requestHeaders));
+    final Segment segment = segment(resource);
+    synchronized (segment) {
+      segment.store(key, varyHeaders, entry);
+    }
+  }
+
+  /** Copies the response with its own headers, so that no caller can alter a cached entry. */
+  private static <O> ResponseEntity<O> copy(final ResponseEntity<O> response) {
+    final HttpHeaders headers = new HttpHeaders();
+    response.getHeaders().forEach((name, values) -> headers.put(name, new ArrayList<>(values)));
+    return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+  }
+
+  /**
+   * The values of the given request headers, normalized so that whitespace around commas doesn't
+   * create a variant of its own. Missing headers map to {@code null}.
+   */
+  private static Map<String, String> varyValues(
+      final Set<String> varyHeaders, final HttpHeaders requestHeaders) {
+    if (varyHeaders.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    final Map<String, String> values = new HashMap<>();
+    for (final String name : varyHeaders) {
+      final List<String> value = requestHeaders.get(name);
+      values.put(
+          name,
+          value == null
+              ? null
+              : StringUtils.collectionToCommaDelimitedString(value)
+                  .replaceAll("\\s*,\\s*", ",")
+                  .trim());
+    }
+    return values;
+  }
+
+  private static RequestEntity<?> conditional(
+      final RequestEntity<?> requestEntity, final Entry entry) {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.putAll(requestEntity.getHeaders());
+    if (entry.etag != null) {
+      headers.set(IF_NONE_MATCH, entry.etag);
+    }
+    if (entry.lastModified != null) {
+      headers.set(IF_MODIFIED_SINCE, entry.lastModified);
+    }
+    return new RequestEntity<>(
+        requestEntity.getBody(), headers, requestEntity.getMethod(), requestEntity.getUrl());
+  }
+
+  private static boolean isConditional(final HttpHeaders requestHeaders) {
+    return requestHeaders.containsKey(IF_NONE_MATCH)
+        || requestHeaders.containsKey(IF_MODIFIED_SINCE);
+  }
+
+  /**
+   * Milliseconds the response stays fresh from now on, according to RFC 7234 section 4.2.1 minus
+   * its current {@code Age}. Zero or less means the response is stale right away.
+   */
+  private static long freshnessLifetime(final HttpHeaders headers, final long now) {
+    final Set<String> directives = directives(headers);
+    if (directives.contains("no-cache")) {
+      return 0;
+    }
+    long lifetime = -1;
+    for (final String directive : directives) {
+      if (directive.startsWith("max-age=")) {
+        lifetime = seconds(directive.substring("max-age=".length())) * 1000;
+      }
+    }
+    if (lifetime < 0 && headers.getFirst(EXPIRES) != null) {
+      try {
+        final long date = headers.getFirst(DATE) == null ? now : headers.getDate();
+        lifetime = headers.getExpires() - date;
+      } catch (final IllegalArgumentException e) {
+        // Invalid dates, e.g. "Expires: 0", mean already expired.
+        return 0;
+      }
+    }
+    final String age = headers.getFirst(AGE);
+    return lifetime - (age == null ? 0 : seconds(age) * 1000);
+  }
+
+  /** Whether a response to an authorized request may be shared, per RFC 7234 section 3.2. */
+  private static boolean isSharedWhenAuthorized(final Set<String> directives) {
+    return directives.contains("public")
+        || directives.contains("must-revalidate")
+        || directives.stream().anyMatch(directive -> directive.startsWith("s-maxage="));
+  }
+
+  private static long seconds(final String value) {
+    try {
+      return Long.parseLong(value.trim().replace("\"", ""));
+    } catch (final NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static Set<String> directives(final HttpHeaders headers) {
+    final List<String> values = headers.get(CACHE_CONTROL);
+    if (values == null) {
+      return "no-cache".equalsIgnoreCase(headers.getFirst(PRAGMA))
+          ? Collections.singleton("no-cache")
+          : Collections.emptySet();
+    }
+    final Set<String> directives = new HashSet<>();
+    values.forEach(
+        v -> {
+          for (final String directive : StringUtils.tokenizeToStringArray(v, ",")) {
+            directives.add(directive.toLowerCase(Locale.ROOT).replace(" ", ""));
+          }
+        });
+    return directives;
+  }
+
+  private static Set<String> varyHeaders(final HttpHeaders headers) {
+    final List<String> values = headers.get(VARY);
+    if (values == null) {
+      return Collections.emptySet();
+    }
+    final Set<String> names = new HashSet<>();
+    values.forEach(
+        v -> {
+          for (final String name : StringUtils.tokenizeToStringArray(v, ",")) {
+            names.add(name.toLowerCase(Locale.ROOT));
+          }
+        });
+    return names;
+  }
+
+  /** Every variant of a resource lives in the same segment, along with its Vary header names. */
+  private Segment segment(final Resource resource) {
+    final int hash = resource.hashCode();
+    return segments[((hash ^ (hash >>> 16)) & 0x7fffffff) % segments.length];
+  }
+
+  @EqualsAndHashCode
+  @RequiredArgsConstructor
+  private static final class Resource {
+    private final URI uri;
+    private final Type responseType;
+  }
+
+  /** A variant of a resource, identified by the values of its Vary headers. */
+  @EqualsAndHashCode
+  @RequiredArgsConstructor
+  private static final class Key {
+    private final Resource resource;
+    private final Map<String, String> varyValues;
+  }
+
+  /** The Vary header names last stored for a resource, and how many of its variants are cached. */
+  private static final class Variants {
+    private Set<String> varyHeaders;
+    private int count;
+  }
+
+  @RequiredArgsConstructor
+  private static final class Entry {
+    private final ResponseEntity<?> response;
+    private final long expiresAt;
+    private final String etag;
+    private final String lastModified;
+
+    @SuppressWarnings("unchecked")
+    private <O> ResponseEntity<O> response() {
+      return (ResponseEntity<O>) response;
+    }
+
+    private boolean hasValidators() {
+      return etag != null || lastModified != null;
+    }
+  }
+
+  /** Least recently used variants, guarded by the segment's own lock. */
+  private final class Segment extends LinkedHashMap<Key, Entry> {
+    private static final long serialVersionUID = 1L;
+    private final int capacity;
+    private final Map<Resource, Variants> variants = new HashMap<>();
+
+    private Segment(final int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    /** The key of the variant of the resource the request headers select. */
+    private Key key(final Resource resource, final HttpHeaders requestHeaders) {
+      final Variants resourceVariants = variants.get(resource);
+      return new Key(
+          resource,
+          resourceVariants == null
+              ? Collections.emptyMap()
+              : varyValues(resourceVariants.varyHeaders, requestHeaders));
+    }
+
+    private void store(final Key key, final Set<String> varyHeaders, final Entry entry) {
+      final Variants resourceVariants = variants.computeIfAbsent(key.resource, r -> new Variants());
+      resourceVariants.varyHeaders = varyHeaders;
+      if (put(key, entry) == null) {
+        resourceVariants.count++;
+      }
+    }
+
+    private void discard(final Key key) {
+      if (remove(key) != null) {
+        release(key.resource);
+      }
+    }
+
+    private void release(final Resource resource) {
+      final Variants resourceVariants = variants.get(resource);
+      if (resourceVariants != null && --resourceVariants.count == 0) {
+        variants.remove(resource);
+      }
+    }
+
+    @Override
+    public void clear() {
+      super.clear();
+      variants.clear();
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+      if (size() > capacity) {
+        evictionCount.increment();
+        release(eldest.getKey().resource);
+        return true;
+      }
+      return false;
+    }
+  }
+}
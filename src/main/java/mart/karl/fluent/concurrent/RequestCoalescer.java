@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.concurrent;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Single-flight coalescing of identical GET requests. While a GET request is in flight, any other
+ * GET request to the same {@linkplain URI}, with the same headers and expecting the same response
+ * type, waits for the in-flight one instead of hitting the server again. <br>
+ * <br>
+ *
+ * <p>Each caller gets its own {@linkplain ResponseEntity}, with its own copy of the headers, all of
+ * them sharing the status and the deserialized body of the single exchange performed. Failures are
+ * propagated to every waiting caller as well. A waiting caller may give up on its own once its
+ * maximum wait is over or when interrupted, without affecting the exchange in flight. Nothing is
+ * kept once the exchange completes, so unlike a cache, a request issued right after the response
+ * arrived goes to the server again.
+ *
+ * <pre class="code">
+ * FluentRestTemplate fluentRestTemplate =
+ *   FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .requestCoalescer(new RequestCoalescer())
+ *   .build();
+ * </pre>
+ *
+ * <p><b>NOTE:</b> coalesced bodies are shared by every waiting caller. Treat them as immutable.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class RequestCoalescer {
+
+  private final ConcurrentMap<Key, CompletableFuture<ResponseEntity<?>>> inFlight =
+      new ConcurrentHashMap<>();
+  private final LongAdder coalescedCount = new LongAdder();
+
+  /**
+   * Performs the exchange, or waits for an identical one already in flight.
+   *
+   * @param requestEntity The request to perform.
+   * @param responseType Type the response body is deserialized to.
+   * @param exchange Performs the actual REST request.
+   * @param <O> Response type.
+   * @return The response of the exchange performed by this or by a concurrent caller.
+   */
+  public <O> ResponseEntity<O> exchange(
+      final RequestEntity<?> requestEntity,
+      final Type responseType,
+      final Function<RequestEntity<?>, ResponseEntity<O>> exchange) {
+    return exchange(requestEntity, responseType, exchange, null, null);
+  }
+
+  /**
+   * Performs the exchange, or waits for an identical one already in flight at most the given
+   * time, e.g. the time left to the timeout or deadline of the request.
+   *
+   * @param requestEntity The request to perform.
+   * @param responseType Type the response body is deserialized to.
+   * @param exchange Performs the actual REST request.
+   * @param maxWait Time to wait for an identical exchange in flight, or {@code null} if unbounded.
+   * @param expiration Creates the exception thrown once the wait is over, if bounded.
+   * @param <O> Response type.
+   * @return The response of the exchange performed by this or by a concurrent caller.
+   * @throws RuntimeException The exception created by the expiration, once the wait is over.
+   * @throws CancellationException If the caller is interrupted while waiting.
+   */
+  public <O> ResponseEntity<O> exchange(
+      final RequestEntity<?> requestEntity,
+      final Type responseType,
+      final Function<RequestEntity<?>, ResponseEntity<O>> exchange,
+      final Duration maxWait,
+      final Supplier<? extends RuntimeException> expiration) {
+    if (requestEntity.getMethod() != HttpMethod.GET) {
+      return exchange.apply(requestEntity);
+    }
+    final Key key = new Key(requestEntity.getUrl(), requestEntity.getHeaders(), responseType);
+    final CompletableFuture<ResponseEntity<?>> flight = new CompletableFuture<>();
+    final CompletableFuture<ResponseEntity<?>> leader = inFlight.putIfAbsent(key, flight);
+    if (leader != null) {
+      coalescedCount.increment();
+      return await(leader, maxWait, expiration);
+    }
+    try {
+      final ResponseEntity<O> response = exchange.apply(requestEntity);
+      // Waiters copy a snapshot, so that the caller changing its headers doesn't affect them.
+      flight.complete(copy(response));
+      return response;
+    } catch (final RuntimeException | Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Same as {@linkplain RequestCoalescer#exchange(RequestEntity, Type, Function)}, for exchanges
+   * completing asynchronously. Waiting for an identical exchange in flight holds no thread.
+   *
+   * @param requestEntity The request to perform.
+   * @param responseType Type the response body is deserialized to.
+   * @param exchange Performs the actual REST request asynchronously.
+   * @param <O> Response type.
+   * @return The response of the exchange performed by this or by a concurrent caller.
+   */
+  @SuppressWarnings("unchecked")
+  public <O> CompletableFuture<ResponseEntity<O>> exchangeAsync(
+      final RequestEntity<?> requestEntity,
+      final Type responseType,
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> exchange) {
+    if (requestEntity.getMethod() != HttpMethod.GET) {
+      return exchange.apply(requestEntity);
+    }
+    final Key key = new Key(requestEntity.getUrl(), requestEntity.getHeaders(), responseType);
+    final CompletableFuture<ResponseEntity<?>> flight = new CompletableFuture<>();
+    final CompletableFuture<ResponseEntity<?>> leader = inFlight.putIfAbsent(key, flight);
+    if (leader != null) {
+      coalescedCount.increment();
+      return leader.thenApply(response -> (ResponseEntity<O>) copy(response));
+    }
+    final CompletableFuture<ResponseEntity<O>> response;
+    try {
+      response = exchange.apply(requestEntity);
+    } catch (final RuntimeException | Error e) {
+      inFlight.remove(key, flight);
+      flight.completeExceptionally(e);
+      throw e;
+    }
+    return response.whenComplete(
+        (r, t) -> {
+          inFlight.remove(key, flight);
+          if (t == null) {
+            flight.complete(copy(r));
+          } else {
+            flight.completeExceptionally(t);
+          }
+        });
+  }
+
+  /**
+   * Amount of requests currently in flight.
+   *
+   * @return Distinct requests being exchanged right now.
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  /**
+   * Amount of requests answered by an identical request already in flight.
+   *
+   * @return Coalesced requests since creation.
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <O> ResponseEntity<O> await(
+      final CompletableFuture<ResponseEntity<?>> leader,
+      final Duration maxWait,
+      final Supplier<? extends RuntimeException> expiration) {
+    try {
+      return (ResponseEntity<O>)
+          copy(
+              maxWait == null
+                  ? leader.get()
+                  : leader.get(Math.max(0, maxWait.toNanos()), TimeUnit.NANOSECONDS));
+    } catch (final TimeoutException e) {
+      throw expiration.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Interrupted while waiting for a coalesced response");
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+  private static <O> ResponseEntity<O> copy(final ResponseEntity<O> response) {
+    if (response == null) {
+      return null;
+    }
+    final HttpHeaders headers = new HttpHeaders();
+    response.getHeaders().forEach((name, values) -> headers.put(name, new ArrayList<>(values)));
+    return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+  }
+
+  @EqualsAndHashCode
+  @RequiredArgsConstructor
+  private static final class Key {
+    private final URI uri;
+    private final HttpHeaders headers;
+    private final Type responseType;
+  }
+}
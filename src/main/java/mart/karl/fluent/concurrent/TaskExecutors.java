@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks in an executor while remembering, for the thread running them, which executor it
+ * serves. Code about to block on work handed to an executor can then tell whether it would hold a
+ * second thread of the very same executor, which starves a bounded pool as soon as all its threads
+ * wait for tasks queued behind them, and run the work inline instead.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class TaskExecutors {
+
+  private static final ThreadLocal<Executor> CURRENT = new ThreadLocal<>();
+
+  private TaskExecutors() {}
+
+  /**
+   * Shared executor of the blocking attempts a caller may give up on, i.e. those bounded by a
+   * timeout or a deadline and those of hedged requests. It creates daemon threads on demand, so
+   * that waiting for an attempt never starves a bounded pool, let alone the common ForkJoinPool,
+   * which doesn't make up for blocked threads.
+   *
+   * @return The default executor of bounded and hedged attempts.
+   */
+  public static Executor attemptExecutor() {
+    return AttemptExecutor.INSTANCE;
+  }
+
+  /**
+   * Wraps the given task so that, while it runs, the running thread is known to serve the
+   * executor.
+   *
+   * @param task Task to run in the executor.
+   * @param executor Executor the task is handed to.
+   * @return The wrapped task.
+   */
+  public static Runnable marked(final Runnable task, final Executor executor) {
+    return () -> {
+      final Executor previous = CURRENT.get();
+      CURRENT.set(executor);
+      try {
+        task.run();
+      } finally {
+        if (previous == null) {
+          CURRENT.remove();
+        } else {
+          CURRENT.set(previous);
+        }
+      }
+    };
+  }
+
+  /**
+   * Same as {@linkplain CompletableFuture#supplyAsync(Supplier, Executor)}, with the running
+   * thread known to serve the executor.
+   *
+   * @param supplier Computes the value of the returned future.
+   * @param executor Runs the supplier.
+   * @param <T> Value type.
+   * @return A CompletableFuture completed with the value of the supplier.
+   */
+  public static <T> CompletableFuture<T> supplyAsync(
+      final Supplier<T> supplier, final Executor executor) {
+    return CompletableFuture.supplyAsync(
+        supplier, task -> executor.execute(marked(task, executor)));
+  }
+
+  /**
+   * Tells whether the current thread runs a task handed to the given executor through this class.
+   *
+   * @param executor An executor.
+   * @return {@code true} if waiting on another task of the executor could hold two of its threads.
+   */
+  public static boolean isRunningOn(final Executor executor) {
+    return executor != null && CURRENT.get() == executor;
+  }
+
+  private static final class AttemptExecutor {
+    private static final AtomicInteger COUNT = new AtomicInteger();
+    private static final Executor INSTANCE =
+        Executors.newCachedThreadPool(
+            r -> {
+              final Thread thread = new Thread(r, "fluent-attempt-" + COUNT.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    private AttemptExecutor() {}
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Gives access to Java 21 virtual threads while keeping FluentRestTemplate's Java 8 baseline. The
+ * virtual thread factory method is looked up at runtime, so the very same JAR runs on any Java
+ * version and only enables virtual threads when the running JVM provides them.<br>
+ * <br>
+ *
+ * <p>Handing the executor to FluentRestTemplate makes every {@code Async} executor method run its
+ * blocking RestTemplate exchange on its own virtual thread:
+ *
+ * <pre class="code">
+ * FluentRestTemplate fluentRestTemplate =
+ *   FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .virtualThreads() // same as .asyncExecutor(VirtualThreads.newVirtualThreadPerTaskExecutor())
+ *   .build();
+ * </pre>
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class VirtualThreads {
+
+  private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = probeFactoryMethod();
+
+  private VirtualThreads() {}
+
+  /**
+   * Tells whether the running JVM provides virtual threads.
+   *
+   * @return {@code true} when running on Java 21 or later, or on Java 19 or 20 with preview
+   *     features enabled.
+   */
+  public static boolean isSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for each task. The executor doesn't pool
+   * threads, so it holds no resources once its tasks are done.
+   *
+   * @return The result of Java 21's {@code Executors.newVirtualThreadPerTaskExecutor()}.
+   * @throws UnsupportedOperationException If the running JVM doesn't provide virtual threads.
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException(
+          "Virtual threads require Java 21 or later, running on Java "
+              + System.getProperty("java.specification.version"));
+    }
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+    } catch (final RuntimeException | Error e) {
+      throw e;
+    } catch (final Throwable t) {
+      throw new IllegalStateException("Unable to create a virtual thread executor", t);
+    }
+  }
+
+  /**
+   * Java 19 and 20 declare the factory method as a preview API, which throws unless preview
+   * features are enabled, so an executor is actually created, and shut down, to tell.
+   */
+  private static MethodHandle probeFactoryMethod() {
+    final MethodHandle factoryMethod;
+    try {
+      factoryMethod =
+          MethodHandles.publicLookup()
+              .findStatic(
+                  Executors.class,
+                  "newVirtualThreadPerTaskExecutor",
+                  MethodType.methodType(ExecutorService.class));
+    } catch (final NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+    try {
+      ((ExecutorService) factoryMethod.invokeExact()).shutdown();
+      return factoryMethod;
+    } catch (final Throwable t) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@linkplain MetricsListener} keeping lock-free {@linkplain EndpointStats statistics} per
+ * {@linkplain EndpointTag endpoint}, i.e. per service, endpoint key and HTTP method. Recording
+ * only uses atomic adders once the statistics of an endpoint exist, so concurrent requests never
+ * wait on each other.
+ *
+ * <pre class="code">
+ * EndpointMetrics metrics = new EndpointMetrics();
+ * FluentRestTemplate fluentRestTemplate =
+ *   FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .metricsListener(metrics)
+ *   .build();
+ * ...
+ * metrics.getStats().forEach((endpoint, stats) -&gt;
+ *   log.info("{} p99: {}ns", endpoint, stats.getLatency().getValueAtPercentile(99)));
+ * </pre>
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class EndpointMetrics implements MetricsListener {
+
+  private final ConcurrentMap<EndpointTag, EndpointStats> stats = new ConcurrentHashMap<>();
+
+  @Override
+  public void record(
+      final EndpointTag endpointTag,
+      final int statusCode,
+      final long requestBytes,
+      final long responseBytes,
+      final long durationNanos) {
+    EndpointStats endpointStats = stats.get(endpointTag);
+    if (endpointStats == null) {
+      endpointStats = stats.computeIfAbsent(endpointTag, t -> new EndpointStats());
+    }
+    endpointStats.record(statusCode, requestBytes, responseBytes, durationNanos);
+  }
+
+  /**
+   * Statistics of the given endpoint.
+   *
+   * @param endpointTag The endpoint.
+   * @return The statistics of the endpoint, or {@code null} if no request was sent to it.
+   */
+  public EndpointStats getStats(final EndpointTag endpointTag) {
+    return stats.get(endpointTag);
+  }
+
+  /**
+   * Statistics of every endpoint requests were sent to.
+   *
+   * @return Live, unmodifiable view of the statistics per endpoint.
+   */
+  public Map<EndpointTag, EndpointStats> getStats() {
+    return Collections.unmodifiableMap(stats);
+  }
+}
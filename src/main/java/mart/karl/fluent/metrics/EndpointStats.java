@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import org.springframework.util.Assert;
+
+/**
+ * Lock-free statistics of the requests sent to a single endpoint: request count, count per status
+ * class, bytes sent and received and a {@linkplain LatencyHistogram latency histogram}.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class EndpointStats {
+
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder noResponseCount = new LongAdder();
+  // Index 0 to 4 hold the 1xx to 5xx status classes.
+  private final LongAdder[] statusClassCounts = {
+    new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()
+  };
+  private final LongAdder requestBytes = new LongAdder();
+  private final LongAdder responseBytes = new LongAdder();
+  @Getter private final LatencyHistogram latency = new LatencyHistogram();
+
+  EndpointStats() {}
+
+  void record(
+      final int statusCode,
+      final long requestBytes,
+      final long responseBytes,
+      final long durationNanos) {
+    requestCount.increment();
+    final int statusClass = statusCode / 100;
+    if (statusClass >= 1 && statusClass <= statusClassCounts.length) {
+      statusClassCounts[statusClass - 1].increment();
+    } else {
+      noResponseCount.increment();
+    }
+    if (requestBytes > 0) {
+      this.requestBytes.add(requestBytes);
+    }
+    if (responseBytes > 0) {
+      this.responseBytes.add(responseBytes);
+    }
+    latency.record(durationNanos);
+  }
+
+  /**
+   * Amount of requests sent.
+   *
+   * @return Requests since creation.
+   */
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  /**
+   * Amount of responses of the given status class.
+   *
+   * @param statusClass Status class from 1 to 5, e.g. 5 for {@code 5xx} responses.
+   * @return Responses of the status class since creation.
+   */
+  public long getStatusClassCount(final int statusClass) {
+    Assert.isTrue(
+        statusClass >= 1 && statusClass <= statusClassCounts.length,
+        "statusClass must be between 1 and 5");
+    return statusClassCounts[statusClass - 1].sum();
+  }
+
+  /**
+   * Amount of requests that failed without receiving any response, e.g. on I/O errors.
+   *
+   * @return Requests without response since creation.
+   */
+  public long getNoResponseCount() {
+    return noResponseCount.sum();
+  }
+
+  /**
+   * Bytes sent in request bodies, as far as their size is known.
+   *
+   * @return Request bytes since creation.
+   */
+  public long getRequestBytes() {
+    return requestBytes.sum();
+  }
+
+  /**
+   * Bytes received in response bodies, as far as their size is known.
+   *
+   * @return Response bytes since creation.
+   */
+  public long getResponseBytes() {
+    return responseBytes.sum();
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.http.HttpMethod;
+
+/**
+ * Identifies the endpoint a request is sent to, regardless of its uri variables and query params,
+ * so that per endpoint data like metrics are kept for a bounded amount of keys. <br>
+ * <br>
+ *
+ * <p>The <i>service</i> is the host the request is sent to, and the <i>endpoint</i> is the key of
+ * the {@linkplain mart.karl.fluent.service.FluentService FluentService} endpoint used to build the URI, or {@code null} when the request
+ * doesn't use any, e.g. when using {@code from(String)} or {@code withoutEndpoint()}.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor(staticName = "of")
+public final class EndpointTag {
+  private final String service;
+  private final String endpoint;
+  @NonNull private final HttpMethod method;
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with a bounded relative error, in the spirit of HdrHistogram. <br>
+ * <br>
+ *
+ * <p>Values are counted in log-linear buckets: every power of two range is split in {@value
+ * #SUB_BUCKETS} linear sub-buckets, so any recorded value is reported with a relative error below
+ * 1/{@value #SUB_BUCKETS} (about 1.6%) using a fixed amount of memory, no matter how many values
+ * are recorded. Values are recorded in nanoseconds, up to one hour. Recording is a couple of
+ * atomic increments; reading percentiles while recording is allowed, though the result is not an
+ * atomic snapshot.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final long MAX_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+
+  private final AtomicLongArray counts = new AtomicLongArray(index(MAX_TRACKABLE_VALUE) + 1);
+  private final LongAdder totalCount = new LongAdder();
+  private final LongAdder totalValue = new LongAdder();
+  private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a value.
+   *
+   * @param nanos Value to record, in nanoseconds. Negative values are recorded as zero and values
+   *     over one hour as one hour.
+   */
+  public void record(final long nanos) {
+    final long value = Math.min(Math.max(nanos, 0), MAX_TRACKABLE_VALUE);
+    counts.incrementAndGet(index(value));
+    totalCount.increment();
+    totalValue.add(value);
+    maxValue.accumulate(value);
+  }
+
+  /**
+   * Amount of recorded values.
+   *
+   * @return Recorded values since creation.
+   */
+  public long getCount() {
+    return totalCount.sum();
+  }
+
+  /**
+   * Highest recorded value.
+   *
+   * @return Highest value in nanoseconds, or zero if nothing was recorded.
+   */
+  public long getMax() {
+    return maxValue.get();
+  }
+
+  /**
+   * Mean of the recorded values.
+   *
+   * @return Mean value in nanoseconds, or zero if nothing was recorded.
+   */
+  public double getMean() {
+    final long count = totalCount.sum();
+    return count == 0 ? 0 : (double) totalValue.sum() / count;
+  }
+
+  /**
+   * Value at the given percentile, i.e. the value no recorded value above the percentile is
+   * lower than.
+   *
+   * @param percentile Percentile between 0 and 100, e.g. {@code 99.9}.
+   * @return Value at the percentile in nanoseconds, or zero if nothing was recorded.
+   */
+  public long getValueAtPercentile(final double percentile) {
+    final long[] snapshot = new long[counts.length()];
+    long count = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    final long target =
+        Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count));
+    long cumulative = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      cumulative += snapshot[i];
+      if (cumulative >= target) {
+        return Math.min(highestEquivalentValue(i), getMax());
+      }
+    }
+    return 0;
+  }
+
+  /** Values below 2 * SUB_BUCKETS are counted exactly, above that the lowest bits are dropped. */
+  private static int index(final long value) {
+    if (value < SUB_BUCKETS << 1) {
+      return (int) value;
+    }
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+  }
+
+  private static long highestEquivalentValue(final int index) {
+    if (index < SUB_BUCKETS << 1) {
+      return index;
+    }
+    final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    final long subBucket = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+
+/**
+ * Receives a sample for every REST request sent by FluentRestTemplate, tagged by the {@linkplain
+ * EndpointTag endpoint} it was sent to. Implementations are called by the requesting threads
+ * themselves, so they must be thread-safe and fast: an implementation blocking or contending on a
+ * lock slows every request down. See {@linkplain EndpointMetrics} for a lock-free one, or bridge
+ * to the metrics library of your choice.
+ *
+ * <pre class="code">
+ * FluentRestTemplate fluentRestTemplate =
+ *   FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .metricsListener(endpointMetrics)
+ *   .build();
+ * </pre>
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@FunctionalInterface
+public interface MetricsListener {
+
+  /**
+   * Records a request.
+   *
+   * @param endpointTag The endpoint the request was sent to.
+   * @param statusCode The response status code, or {@code 0} if no response was received.
+   * @param requestBytes Size of the request body, or {@code -1} if unknown.
+   * @param responseBytes Size of the response body, or {@code -1} if unknown.
+   * @param durationNanos Time elapsed until the response was received and read.
+   */
+  void record(
+      EndpointTag endpointTag,
+      int statusCode,
+      long requestBytes,
+      long responseBytes,
+      long durationNanos);
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+
+/**
+ * Receives the {@linkplain PhaseTimings phase breakdown} of every REST request sent by
+ * FluentRestTemplate, whether it succeeded or not. Implementations are called by the requesting
+ * threads themselves, so they must be thread-safe and fast.
+ *
+ * <pre class="code">
+ * FluentRestTemplate fluentRestTemplate =
+ *   FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .phaseTimingListener((endpoint, timings) -&gt; log.debug("{}: {}", endpoint, timings))
+ *   .build();
+ * </pre>
+ *
+ * <p>Successful responses also carry their timings, see {@linkplain TimedResponseEntity}.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@FunctionalInterface
+public interface PhaseTimingListener {
+
+  /**
+   * Receives the timings of a request.
+   *
+   * @param endpointTag The endpoint the request was sent to.
+   * @param timings Time spent in each phase.
+   */
+  void onTimings(EndpointTag endpointTag, PhaseTimings timings);
+}
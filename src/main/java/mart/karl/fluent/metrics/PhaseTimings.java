@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Time spent by a single request in each of its phases, in nanoseconds. Phases the request didn't
+ * reach, e.g. deserialization of an error response, are {@value #NOT_REACHED}.
+ *
+ * <ol>
+ *   <li><b>URI build:</b> expansion of the URI template into the request URI.
+ *   <li><b>Request creation:</b> creation of the request by the ClientHttpRequestFactory, which
+ *       includes opening the connection for factories doing it upfront.
+ *   <li><b>Serialization:</b> writing the headers and converting the body into the request. For
+ *       factories streaming the request body, this includes sending it.
+ *   <li><b>Awaiting response:</b> from the request being sent until the response headers are
+ *       handled, i.e. connection acquisition for pooled factories, network and server time.
+ *   <li><b>Deserialization:</b> reading and converting the response body.
+ * </ol>
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+@ToString
+@Builder
+public final class PhaseTimings {
+
+  /** Duration of the phases that were not reached. */
+  public static final long NOT_REACHED = -1;
+
+  private final long uriBuildNanos;
+  @Builder.Default private final long requestCreationNanos = NOT_REACHED;
+  @Builder.Default private final long serializationNanos = NOT_REACHED;
+  @Builder.Default private final long awaitingResponseNanos = NOT_REACHED;
+  @Builder.Default private final long deserializationNanos = NOT_REACHED;
+  private final long totalNanos;
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+import lombok.Getter;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * {@linkplain ResponseEntity} carrying the {@linkplain PhaseTimings phase breakdown} of the request
+ * that produced it. Returned by FluentRestTemplate's {@code execute} methods when phase timing is
+ * enabled; responses answered by a ResponseCache or a RequestCoalescer carry the timings of the
+ * request that was actually sent, if any.
+ *
+ * <pre class="code">
+ * ResponseEntity&lt;CoolStuff&gt; response = fluentRestTemplate...execute(CoolStuff.class);
+ * PhaseTimings timings = TimedResponseEntity.timings(response);
+ * </pre>
+ *
+ * @param <T> Body type.
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+public final class TimedResponseEntity<T> extends ResponseEntity<T> {
+
+  private final PhaseTimings timings;
+
+  /**
+   * Creates a TimedResponseEntity with the same body, headers and status as the given response.
+   *
+   * @param response The timed response.
+   * @param timings Time spent in each phase of the request.
+   */
+  public TimedResponseEntity(final ResponseEntity<T> response, final PhaseTimings timings) {
+    super(response.getBody(), response.getHeaders(), response.getStatusCode());
+    this.timings = timings;
+  }
+
+  /**
+   * Phase timings of the given response, if any.
+   *
+   * @param response Any response.
+   * @return The timings if the response is a TimedResponseEntity, or {@code null} otherwise.
+   */
+  public static PhaseTimings timings(final ResponseEntity<?> response) {
+    return response instanceof TimedResponseEntity
+        ? ((TimedResponseEntity<?>) response).getTimings()
+        : null;
+  }
+}
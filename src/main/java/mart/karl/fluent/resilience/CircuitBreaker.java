@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import lombok.Getter;
+
+/**
+ * Fails fast the calls to an endpoint whose recent calls mostly failed or were slow, instead of
+ * letting threads pile up waiting on a degraded server. <br>
+ * <br>
+ *
+ * <p>While {@linkplain State#CLOSED closed}, every call goes through and its outcome is recorded in
+ * a sliding window of the last {@code windowSize} calls. Once the window holds {@code
+ * minimumCalls} calls and its failure rate or slow call rate reach their thresholds, the circuit
+ * {@linkplain State#OPEN opens}: calls are rejected with a {@linkplain CircuitBreakerOpenException}
+ * during {@code openDuration}. The circuit then turns {@linkplain State#HALF_OPEN half-open} and
+ * lets {@code halfOpenProbes} calls through. Their rates decide whether the circuit closes again
+ * or reopens. See {@linkplain CircuitBreakerConfig}.<br>
+ * <br>
+ *
+ * <p>Recording and permitting calls while closed is lock-free: the window is a ring of atomic
+ * slots whose counters are adjusted as slots are overwritten.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class CircuitBreaker {
+
+  /** States of a CircuitBreaker. */
+  public enum State {
+    /** Calls go through and are recorded. */
+    CLOSED,
+    /** Calls are rejected. */
+    OPEN,
+    /** A limited amount of probe calls go through. */
+    HALF_OPEN
+  }
+
+  private static final int RECORDED = 1;
+  private static final int FAILED = 2;
+  private static final int SLOW = 4;
+
+  /** Service, i.e. host, of the endpoint guarded by this CircuitBreaker. */
+  @Getter private final String service;
+
+  /** Endpoint key guarded by this CircuitBreaker, {@code null} for plain URIs of the service. */
+  @Getter private final String endpoint;
+
+  private final CircuitBreakerConfig config;
+  private final CircuitBreakerListener listener;
+  private final Clock clock;
+  private final long slowCallNanos;
+  private final AtomicReference<Phase> phase;
+  private final AtomicIntegerArray window;
+  private final AtomicLong cursor = new AtomicLong();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+  private final AtomicInteger slowCalls = new AtomicInteger();
+
+  CircuitBreaker(
+      final String service,
+      final String endpoint,
+      final CircuitBreakerConfig config,
+      final CircuitBreakerListener listener,
+      final Clock clock) {
+    this.service = service;
+    this.endpoint = endpoint;
+    this.config = config;
+    this.listener = listener;
+    this.clock = clock;
+    this.slowCallNanos = config.getSlowCallDuration().toNanos();
+    this.phase = new AtomicReference<>(new Phase(State.CLOSED, clock.millis(), 0));
+    this.window = new AtomicIntegerArray(Math.max(1, config.getWindowSize()));
+  }
+
+  /**
+   * Current state of this CircuitBreaker. An open circuit whose open duration elapsed turns
+   * half-open with the next call only.
+   *
+   * @return The current State.
+   */
+  public State getState() {
+    return phase.get().state;
+  }
+
+  /**
+   * Percentage of failed calls in the sliding window.
+   *
+   * @return The failure rate, or {@code -1} while the window holds less than the minimum calls.
+   */
+  public float getFailureRate() {
+    return rate(failures.get(), calls.get());
+  }
+
+  /**
+   * Percentage of slow calls in the sliding window.
+   *
+   * @return The slow call rate, or {@code -1} while the window holds less than the minimum calls.
+   */
+  public float getSlowCallRate() {
+    return rate(slowCalls.get(), calls.get());
+  }
+
+  /**
+   * Performs the given call if permitted and records its outcome.
+   *
+   * @param call Performs the call.
+   * @param <T> Response type.
+   * @return The response of the call.
+   * @throws CircuitBreakerOpenException If the call is not permitted.
+   */
+  public <T> T execute(final Supplier<T> call) {
+    if (!tryAcquirePermission()) {
+      throw new CircuitBreakerOpenException(this);
+    }
+    final long start = System.nanoTime();
+    final T response;
+    try {
+      response = call.get();
+    } catch (final Throwable e) {
+      // Errors are recorded too, or a half-open probe throwing one would never complete.
+      onResult(System.nanoTime() - start, config.isFailure(null, e));
+      throw e;
+    }
+    onResult(System.nanoTime() - start, config.isFailure(response, null));
+    return response;
+  }
+
+  /**
+   * Same as {@linkplain CircuitBreaker#execute(Supplier)}, for calls completing asynchronously. The
+   * outcome is recorded once the call completes, holding no thread meanwhile.
+   *
+   * @param call Performs the call.
+   * @param <T> Response type.
+   * @return The response of the call, failed with a {@linkplain CircuitBreakerOpenException} if
+   *     the call is not permitted.
+   */
+  public <T> CompletableFuture<T> executeAsync(final Supplier<CompletableFuture<T>> call) {
+    if (!tryAcquirePermission()) {
+      final CompletableFuture<T> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(new CircuitBreakerOpenException(this));
+      return rejected;
+    }
+    final long start = System.nanoTime();
+    final CompletableFuture<T> response;
+    try {
+      response = call.get();
+    } catch (final Throwable e) {
+      onResult(System.nanoTime() - start, config.isFailure(null, e));
+      throw e;
+    }
+    response.whenComplete(
+        (r, t) ->
+            onResult(
+                System.nanoTime() - start,
+                config.isFailure(r, t instanceof CompletionException ? t.getCause() : t)));
+    return response;
+  }
+
+  /**
+   * Whether a call may be performed now. Every permitted call must report its outcome through
+   * {@linkplain CircuitBreaker#onResult(long, boolean)}, or half-open probes never complete.
+   *
+   * @return {@code true} if the call is permitted.
+   */
+  public boolean tryAcquirePermission() {
+    final Phase current = phase.get();
+    switch (current.state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (clock.millis() - current.since < config.getOpenDuration().toMillis()) {
+          return false;
+        }
+        transition(current, new Phase(State.HALF_OPEN, clock.millis(), config.getHalfOpenProbes()));
+        return tryAcquirePermission();
+      default:
+        return current.permits.getAndDecrement() > 0;
+    }
+  }
+
+  /**
+   * Records the outcome of a permitted call.
+   *
+   * @param durationNanos Duration of the call.
+   * @param failed Whether the call failed.
+   */
+  public void onResult(final long durationNanos, final boolean failed) {
+    final int outcome =
+        RECORDED | (failed ? FAILED : 0) | (durationNanos >= slowCallNanos ? SLOW : 0);
+    final Phase current = phase.get();
+    if (current.state == State.CLOSED) {
+      record(outcome);
+      final int total = calls.get();
+      if (total >= minimumCalls() && isTripped(failures.get(), slowCalls.get(), total)) {
+        transition(current, new Phase(State.OPEN, clock.millis(), 0));
+      }
+    } else if (current.state == State.HALF_OPEN) {
+      final int probeFailures = current.failures.addAndGet((outcome & FAILED) == 0 ? 0 : 1);
+      final int probeSlowCalls = current.slowCalls.addAndGet((outcome & SLOW) == 0 ? 0 : 1);
+      final int probes = current.calls.incrementAndGet();
+      if (probes >= config.getHalfOpenProbes()) {
+        final boolean reopen = isTripped(probeFailures, probeSlowCalls, probes);
+        transition(current, new Phase(reopen ? State.OPEN : State.CLOSED, clock.millis(), 0));
+      }
+    }
+  }
+
+  private void record(final int outcome) {
+    final int slot = (int) (cursor.getAndIncrement() % window.length());
+    adjust(outcome, 1);
+    adjust(window.getAndSet(slot, outcome), -1);
+  }
+
+  private void adjust(final int outcome, final int delta) {
+    if ((outcome & RECORDED) != 0) {
+      calls.addAndGet(delta);
+    }
+    if ((outcome & FAILED) != 0) {
+      failures.addAndGet(delta);
+    }
+    if ((outcome & SLOW) != 0) {
+      slowCalls.addAndGet(delta);
+    }
+  }
+
+  private boolean isTripped(final int failed, final int slow, final int total) {
+    return total > 0
+        && (failed * 100F / total >= config.getFailureRateThreshold()
+            || slow * 100F / total >= config.getSlowCallRateThreshold());
+  }
+
+  private float rate(final int count, final int total) {
+    return total == 0 || total < minimumCalls() ? -1 : count * 100F / total;
+  }
+
+  private int minimumCalls() {
+    return Math.min(config.getMinimumCalls(), window.length());
+  }
+
+  /**
+   * Only the caller winning the transition clears the window, so that a caller losing it to a
+   * concurrent one never wipes the calls recorded since.
+   */
+  private void transition(final Phase from, final Phase to) {
+    if (!phase.compareAndSet(from, to)) {
+      return;
+    }
+    if (to.state == State.CLOSED) {
+      for (int i = 0; i < window.length(); i++) {
+        adjust(window.getAndSet(i, 0), -1);
+      }
+    }
+    if (listener != null) {
+      listener.onStateTransition(this, from.state, to.state);
+    }
+  }
+
+  /** A state along with the probe counters of the half-open state, replaced on transition. */
+  private static final class Phase {
+    private final State state;
+    private final long since;
+    private final AtomicInteger permits;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    private Phase(final State state, final long since, final int permits) {
+      this.state = state;
+      this.since = since;
+      this.permits = new AtomicInteger(permits);
+    }
+  }
+}
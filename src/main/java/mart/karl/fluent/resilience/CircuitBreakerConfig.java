@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Settings shared by the {@linkplain CircuitBreaker CircuitBreakers} of a {@linkplain
+ * CircuitBreakers} registry. <br>
+ * <br>
+ *
+ * <p>A call fails when it throws one of the {@code failureExceptions}, which default to I/O errors
+ * and server errors, or when it returns a {@code 5xx} response. A call is slow when it takes {@code
+ * slowCallDuration} or longer, whether it fails or not. Client errors such as {@code 404} are
+ * successful calls as far as the health of the server is concerned.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CircuitBreakerConfig {
+
+  /** Percentage of failed calls in the window opening the circuit. */
+  @Builder.Default private final float failureRateThreshold = 50;
+
+  /** Percentage of slow calls in the window opening the circuit. */
+  @Builder.Default private final float slowCallRateThreshold = 100;
+
+  /** Duration from which a call is slow. */
+  @NonNull @Builder.Default private final Duration slowCallDuration = Duration.ofSeconds(60);
+
+  /** Amount of most recent calls the rates are computed on. */
+  @Builder.Default private final int windowSize = 100;
+
+  /** Amount of calls in the window before the rates are evaluated at all. */
+  @Builder.Default private final int minimumCalls = 20;
+
+  /** Time the circuit stays open before letting probes through. */
+  @NonNull @Builder.Default private final Duration openDuration = Duration.ofSeconds(30);
+
+  /** Amount of probe calls let through while half-open, deciding whether to close or reopen. */
+  @Builder.Default private final int halfOpenProbes = 5;
+
+  /** Failures counting against the server, subclasses included. */
+  @NonNull @Builder.Default
+  private final Set<Class<? extends Exception>> failureExceptions =
+      Collections.unmodifiableSet(
+          new HashSet<>(
+              Arrays.asList(ResourceAccessException.class, HttpServerErrorException.class)));
+
+  /**
+   * Whether the given outcome of a call counts as a failure.
+   *
+   * @param response Response of the call, if any.
+   * @param failure Failure of the call, if any.
+   * @return {@code true} if the call failed.
+   */
+  public boolean isFailure(final Object response, final Throwable failure) {
+    if (failure != null) {
+      return failureExceptions.stream().anyMatch(type -> type.isInstance(failure));
+    }
+    return response instanceof ResponseEntity
+        && ((ResponseEntity<?>) response).getStatusCode().is5xxServerError();
+  }
+}
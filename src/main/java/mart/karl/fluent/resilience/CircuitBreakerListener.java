@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+/**
+ * Receives the state transitions of {@linkplain CircuitBreaker CircuitBreakers}, e.g. to log them
+ * or to export them as metrics. <br>
+ * <br>
+ *
+ * <p>Transitions are reported synchronously by the thread performing them, which is a thread
+ * executing a request, so implementations must be fast and thread-safe.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@FunctionalInterface
+public interface CircuitBreakerListener {
+
+  /**
+   * Called once the given circuit breaker changed its state.
+   *
+   * @param circuitBreaker The CircuitBreaker changing its state.
+   * @param from Previous state.
+   * @param to New state.
+   */
+  void onStateTransition(
+      CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to);
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+import mart.karl.fluent.metrics.EndpointTag;
+
+/**
+ * Registry holding a {@linkplain CircuitBreaker} per service host and endpoint key, created on
+ * first use with a shared {@linkplain CircuitBreakerConfig}. Every HTTP method of an endpoint
+ * shares its CircuitBreaker, since they are served by the same server. <br>
+ * <br>
+ *
+ * <p>Provide it to FluentRestTemplate so that every request sent goes through the CircuitBreaker
+ * of its endpoint:
+ *
+ * <pre class="code">
+ * FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .circuitBreakers(
+ *       new CircuitBreakers(
+ *           CircuitBreakerConfig.builder().openDuration(Duration.ofSeconds(10)).build(),
+ *           (breaker, from, to) -&gt; log.warn("{} {}: {}", breaker.getService(), from, to)))
+ *   .build();
+ * </pre>
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class CircuitBreakers {
+
+  private final CircuitBreakerConfig config;
+  private final CircuitBreakerListener listener;
+  private final Clock clock;
+  private final Map<List<String>, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  /** Creates a CircuitBreakers registry with default settings. */
+  public CircuitBreakers() {
+    this(CircuitBreakerConfig.builder().build());
+  }
+
+  /**
+   * Creates a CircuitBreakers registry.
+   *
+   * @param config Settings of every CircuitBreaker.
+   */
+  public CircuitBreakers(final CircuitBreakerConfig config) {
+    this(config, null);
+  }
+
+  /**
+   * Creates a CircuitBreakers registry reporting state transitions.
+   *
+   * @param config Settings of every CircuitBreaker.
+   * @param listener Receives the state transitions of every CircuitBreaker, if present.
+   */
+  public CircuitBreakers(
+      final CircuitBreakerConfig config, final CircuitBreakerListener listener) {
+    this(config, listener, Clock.systemUTC());
+  }
+
+  CircuitBreakers(
+      @NonNull final CircuitBreakerConfig config,
+      final CircuitBreakerListener listener,
+      @NonNull final Clock clock) {
+    this.config = config;
+    this.listener = listener;
+    this.clock = clock;
+  }
+
+  /**
+   * The CircuitBreaker of the given endpoint.
+   *
+   * @param endpointTag Endpoint a request is sent to.
+   * @return The CircuitBreaker of the endpoint's service and endpoint key.
+   */
+  public CircuitBreaker get(@NonNull final EndpointTag endpointTag) {
+    return get(endpointTag.getService(), endpointTag.getEndpoint());
+  }
+
+  /**
+   * The CircuitBreaker of the given endpoint.
+   *
+   * @param service Service host.
+   * @param endpoint Endpoint key, or {@code null} for plain URIs of the service.
+   * @return The CircuitBreaker of the service and endpoint key.
+   */
+  public CircuitBreaker get(final String service, final String endpoint) {
+    return circuitBreakers.computeIfAbsent(
+        Arrays.asList(service, endpoint),
+        key -> new CircuitBreaker(service, endpoint, config, listener, clock));
+  }
+
+  /**
+   * Every CircuitBreaker created so far.
+   *
+   * @return An unmodifiable view of the CircuitBreakers.
+   */
+  public Collection<CircuitBreaker> getCircuitBreakers() {
+    return Collections.unmodifiableCollection(circuitBreakers.values());
+  }
+}
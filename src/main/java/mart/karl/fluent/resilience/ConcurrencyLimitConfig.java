@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Settings shared by the {@linkplain ConcurrencyLimiter ConcurrencyLimiters} of a {@linkplain
+ * ConcurrencyLimiters} registry. <br>
+ * <br>
+ *
+ * <p>A call signals overload when it throws one of the {@code overloadExceptions}, which default to
+ * I/O errors, timeouts included, and server errors, or when it is answered with a {@code 5xx} or a
+ * {@code 429 Too Many Requests} response.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ConcurrencyLimitConfig {
+
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  /** Limit of concurrent calls to an endpoint before any call completed. */
+  @Builder.Default private final int initialLimit = 20;
+
+  /** Lowest limit of concurrent calls, however overloaded the endpoint. */
+  @Builder.Default private final int minLimit = 1;
+
+  /** Highest limit of concurrent calls, however fast the endpoint. */
+  @Builder.Default private final int maxLimit = 200;
+
+  /** Factor the limit is multiplied by on every overload signal, between 0 and 1. */
+  @Builder.Default private final double backoffRatio = 0.9;
+
+  /** Factor of the baseline latency from which a call signals queueing on the server. */
+  @Builder.Default private final double latencyTolerance = 2;
+
+  /** Period after which the baseline latency, the lowest one observed, is measured anew. */
+  @NonNull @Builder.Default private final Duration baselineWindow = Duration.ofMinutes(1);
+
+  /** Failures signalling overload, subclasses included. */
+  @NonNull @Builder.Default
+  private final Set<Class<? extends Exception>> overloadExceptions =
+      Collections.unmodifiableSet(
+          new HashSet<>(
+              Arrays.asList(ResourceAccessException.class, HttpServerErrorException.class)));
+
+  /**
+   * Whether the given outcome of a call signals overload.
+   *
+   * @param response Response of the call, if any.
+   * @param failure Failure of the call, if any.
+   * @return {@code true} if the server is overloaded.
+   */
+  public boolean isOverload(final Object response, final Throwable failure) {
+    if (failure != null) {
+      return overloadExceptions.stream().anyMatch(type -> type.isInstance(failure))
+          || (failure instanceof HttpStatusCodeException
+              && ((HttpStatusCodeException) failure).getStatusCode().value() == TOO_MANY_REQUESTS);
+    }
+    if (!(response instanceof ResponseEntity)) {
+      return false;
+    }
+    final int status = ((ResponseEntity<?>) response).getStatusCode().value();
+    return status >= 500 || status == TOO_MANY_REQUESTS;
+  }
+}
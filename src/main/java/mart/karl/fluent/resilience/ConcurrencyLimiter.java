@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+import lombok.Getter;
+import org.springframework.web.client.HttpStatusCodeException;
+
+/**
+ * Limits the calls in flight to an endpoint to the amount it can actually take, discovering that
+ * limit from the latency and failures of the calls instead of relying on a static pool size. <br>
+ * <br>
+ *
+ * <p>The limit is adjusted with every completed call, AIMD style: it grows additively, by one per
+ * limit's worth of calls, while the calls use at least half of it and their latency stays within
+ * {@code latencyTolerance} times the baseline latency, the lowest one observed during the current
+ * {@code baselineWindow}. It shrinks multiplicatively, by {@code backoffRatio}, as soon as the
+ * latency rises above that tolerance, Vegas style, which means the server is queueing, or a call
+ * signals overload. See {@linkplain ConcurrencyLimitConfig}.<br>
+ * <br>
+ *
+ * <p>Calls beyond the limit are shed immediately with a {@linkplain
+ * ConcurrencyLimitExceededException}, instead of queueing on a struggling server. Calls failing
+ * before reaching the server, e.g. rejected by a {@linkplain CircuitBreaker}, only release their
+ * slot. Acquiring a slot and adjusting the limit are lock-free.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class ConcurrencyLimiter {
+
+  /** Service, i.e. host, of the endpoint limited by this ConcurrencyLimiter. */
+  @Getter private final String service;
+
+  /** Endpoint key limited by this ConcurrencyLimiter, {@code null} for plain URIs. */
+  @Getter private final String endpoint;
+
+  private final ConcurrencyLimitConfig config;
+  private final long baselineWindowNanos;
+  private final AtomicLong limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong baselineNanos = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong baselineSince = new AtomicLong(System.nanoTime());
+  private final LongAdder shedCount = new LongAdder();
+
+  ConcurrencyLimiter(
+      final String service, final String endpoint, final ConcurrencyLimitConfig config) {
+    this.service = service;
+    this.endpoint = endpoint;
+    this.config = config;
+    this.baselineWindowNanos = config.getBaselineWindow().toNanos();
+    this.limit = new AtomicLong(Double.doubleToRawLongBits(config.getInitialLimit()));
+  }
+
+  /**
+   * Current limit of calls in flight.
+   *
+   * @return The amount of concurrent calls currently permitted.
+   */
+  public int getLimit() {
+    return (int) Double.longBitsToDouble(limit.get());
+  }
+
+  /**
+   * Calls currently in flight.
+   *
+   * @return The amount of calls started and not completed yet.
+   */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * Amount of calls shed so far.
+   *
+   * @return Calls rejected with a ConcurrencyLimitExceededException.
+   */
+  public long getShedCount() {
+    return shedCount.sum();
+  }
+
+  /**
+   * Lowest latency observed during the current baseline window.
+   *
+   * @return The baseline latency, or {@code null} if no call completed yet.
+   */
+  public Duration getBaselineLatency() {
+    final long baseline = baselineNanos.get();
+    return baseline == Long.MAX_VALUE ? null : Duration.ofNanos(baseline);
+  }
+
+  /**
+   * Performs the given call if within the limit and adjusts the limit to its outcome.
+   *
+   * @param call Performs the call.
+   * @param <T> Response type.
+   * @return The response of the call.
+   * @throws ConcurrencyLimitExceededException If the limit of calls in flight is reached.
+   */
+  public <T> T execute(final Supplier<T> call) {
+    final int inFlightAtStart = acquire();
+    if (inFlightAtStart < 0) {
+      shedCount.increment();
+      throw new ConcurrencyLimitExceededException(this);
+    }
+    final long start = System.nanoTime();
+    boolean completed = false;
+    T response = null;
+    RuntimeException failure = null;
+    try {
+      response = call.get();
+      completed = true;
+      return response;
+    } catch (final RuntimeException e) {
+      failure = e;
+      completed = true;
+      throw e;
+    } finally {
+      inFlight.decrementAndGet();
+      if (completed) {
+        onResult(System.nanoTime() - start, response, failure, inFlightAtStart);
+      }
+    }
+  }
+
+  /**
+   * Same as {@linkplain ConcurrencyLimiter#execute(Supplier)}, for calls completing asynchronously.
+   * The call counts as in flight until it completes, holding no thread meanwhile.
+   *
+   * @param call Performs the call.
+   * @param <T> Response type.
+   * @return The response of the call, failed with a {@linkplain ConcurrencyLimitExceededException}
+   *     if the limit of calls in flight is reached.
+   */
+  public <T> CompletableFuture<T> executeAsync(final Supplier<CompletableFuture<T>> call) {
+    final int inFlightAtStart = acquire();
+    if (inFlightAtStart < 0) {
+      shedCount.increment();
+      final CompletableFuture<T> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(new ConcurrencyLimitExceededException(this));
+      return rejected;
+    }
+    final long start = System.nanoTime();
+    final CompletableFuture<T> response;
+    try {
+      response = call.get();
+    } catch (final RuntimeException e) {
+      inFlight.decrementAndGet();
+      onResult(System.nanoTime() - start, null, e, inFlightAtStart);
+      throw e;
+    }
+    response.whenComplete(
+        (r, t) -> {
+          inFlight.decrementAndGet();
+          onResult(
+              System.nanoTime() - start,
+              r,
+              t instanceof CompletionException ? t.getCause() : t,
+              inFlightAtStart);
+        });
+    return response;
+  }
+
+  private int acquire() {
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= getLimit()) {
+        return -1;
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+    return current + 1;
+  }
+
+  private void onResult(
+      final long latencyNanos,
+      final Object response,
+      final Throwable failure,
+      final int inFlightAtStart) {
+    if (config.isOverload(response, failure)) {
+      adjust(current -> current * config.getBackoffRatio());
+      return;
+    }
+    if (failure != null && !(failure instanceof HttpStatusCodeException)) {
+      return;
+    }
+    final long baseline = baseline(latencyNanos);
+    if (latencyNanos > baseline * config.getLatencyTolerance()) {
+      adjust(current -> current * config.getBackoffRatio());
+    } else if (inFlightAtStart * 2 >= getLimit()) {
+      adjust(current -> current + 1 / current);
+    }
+  }
+
+  /** Records the latency of a call in the baseline, starting a new window if due. */
+  private long baseline(final long latencyNanos) {
+    final long now = System.nanoTime();
+    final long since = baselineSince.get();
+    if (now - since >= baselineWindowNanos && baselineSince.compareAndSet(since, now)) {
+      baselineNanos.set(latencyNanos);
+      return latencyNanos;
+    }
+    return baselineNanos.accumulateAndGet(latencyNanos, Math::min);
+  }
+
+  private void adjust(final DoubleUnaryOperator adjustment) {
+    limit.updateAndGet(
+        bits -> {
+          final double adjusted = adjustment.applyAsDouble(Double.longBitsToDouble(bits));
+          return Double.doubleToRawLongBits(
+              Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), adjusted)));
+        });
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.resilience;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+import mart.karl.fluent.metrics.EndpointTag;
+
+/**
+ * Registry holding a {@linkplain ConcurrencyLimiter} per service host and endpoint key, created on
+ * first use with a shared {@linkplain ConcurrencyLimitConfig}. Every HTTP method of an endpoint
+ * shares its ConcurrencyLimiter, since they are served by the same server. <br>
+ * <br>
+ *
+ * <p>Provide it to FluentRestTemplate so that every request sent is limited by the
+ * ConcurrencyLimiter of its endpoint:
+ *
+ * <pre class="code">
+ * FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .concurrencyLimiters(
+ *       new ConcurrencyLimiters(ConcurrencyLimitConfig.builder().maxLimit(50).build()))
+ *   .build();
+ * </pre>
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class ConcurrencyLimiters {
+
+  private final ConcurrencyLimitConfig config;
+  private final Map<List<String>, ConcurrencyLimiter> concurrencyLimiters =
+      new ConcurrentHashMap<>();
+
+  /** Creates a ConcurrencyLimiters registry with default settings. */
+  public ConcurrencyLimiters() {
+    this(ConcurrencyLimitConfig.builder().build());
+  }
+
+  /**
+   * Creates a ConcurrencyLimiters registry.
+   *
+   * @param config Settings of every ConcurrencyLimiter.
+   */
+  public ConcurrencyLimiters(@NonNull final ConcurrencyLimitConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * The ConcurrencyLimiter of the given endpoint.
+   *
+   * @param endpointTag Endpoint a request is sent to.
+   * @return The ConcurrencyLimiter of the endpoint's service and endpoint key.
+   */
+  public ConcurrencyLimiter get(@NonNull final EndpointTag endpointTag) {
+    return get(endpointTag.getService(), endpointTag.getEndpoint());
+  }
+
+  /**
+   * The ConcurrencyLimiter of the given endpoint.
+   *
+   * @param service Service host.
+   * @param endpoint Endpoint key, or {@code null} for plain URIs of the service.
+   * @return The ConcurrencyLimiter of the service and endpoint key.
+   */
+  public ConcurrencyLimiter get(final String service, final String endpoint) {
+    return concurrencyLimiters.computeIfAbsent(
+        Arrays.asList(service, endpoint),
+        key -> new ConcurrencyLimiter(service, endpoint, config));
+  }
+
+  /**
+   * Every ConcurrencyLimiter created so far.
+   *
+   * @return An unmodifiable view of the ConcurrencyLimiters.
+   */
+  public Collection<ConcurrencyLimiter> getConcurrencyLimiters() {
+    return Collections.unmodifiableCollection(concurrencyLimiters.values());
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import mart.karl.fluent.concurrent.TaskExecutors;
+
+/**
+ * A point in time by which a request, retries included, must be complete. <br>
+ * <br>
+ *
+ * <p>Calls bounded by a Deadline fail with a {@linkplain DeadlineExceededException}, unless
+ * created with a custom exception, once it expires and their underlying work is cancelled.
+ * Blocking calls are bounded by running them in an executor, since RestTemplate can't be
+ * interrupted otherwise, and are cancelled through interruption, unless the caller already runs in
+ * that executor. Responses completing once the Deadline was reported as expired are closed, so
+ * that streamed bodies don't leak their connection. Deadlines are based on {@linkplain
+ * System#nanoTime()}, so they are immune to wall clock adjustments but only meaningful within the
+ * running JVM; propagate the {@linkplain Deadline#remaining() remaining} time instead.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class Deadline {
+
+  private final long expirationNanos;
+  private final Supplier<? extends RuntimeException> expiration;
+
+  private Deadline(final long timeoutNanos, final Supplier<? extends RuntimeException> expiration) {
+    this.expirationNanos = System.nanoTime() + timeoutNanos;
+    this.expiration = expiration;
+  }
+
+  /**
+   * Creates a Deadline expiring after the given timeout, starting now.
+   *
+   * @param timeout Time left until the Deadline expires.
+   * @return A new Deadline failing calls with a DeadlineExceededException.
+   */
+  public static Deadline after(@NonNull final Duration timeout) {
+    return after(
+        timeout,
+        () -> new DeadlineExceededException("Deadline of " + timeout.toMillis() + "ms exceeded"));
+  }
+
+  /**
+   * Creates a Deadline expiring after the given timeout, starting now, failing calls with a custom
+   * exception, e.g. one that a {@linkplain RetryPolicy} retries.
+   *
+   * @param timeout Time left until the Deadline expires.
+   * @param expiration Creates the exception calls fail with once the Deadline expired.
+   * @return A new Deadline.
+   */
+  public static Deadline after(
+      @NonNull final Duration timeout,
+      @NonNull final Supplier<? extends RuntimeException> expiration) {
+    return new Deadline(timeout.toNanos(), expiration);
+  }
+
+  /**
+   * Time left until this Deadline expires.
+   *
+   * @return The remaining time, zero once expired.
+   */
+  public Duration remaining() {
+    return Duration.ofNanos(Math.max(0, remainingNanos()));
+  }
+
+  /**
+   * Whether this Deadline expired.
+   *
+   * @return {@code true} if no time is left.
+   */
+  public boolean isExpired() {
+    return remainingNanos() <= 0;
+  }
+
+  /**
+   * The Deadline expiring first between this one and the given one.
+   *
+   * @param other Another Deadline, if any.
+   * @return The earliest Deadline.
+   */
+  public Deadline earliest(final Deadline other) {
+    return other == null || expirationNanos - other.expirationNanos <= 0 ? this : other;
+  }
+
+  /**
+   * Bounds the given future by this Deadline.
+   *
+   * @param future Future to bound, cancelled if the Deadline expires first.
+   * @param <T> Response type.
+   * @return A CompletableFuture completed like the given one, or with the exception of this
+   *     Deadline once it expires.
+   */
+  public <T> CompletableFuture<T> bound(final CompletableFuture<T> future) {
+    final CompletableFuture<T> bounded = new CompletableFuture<>();
+    if (isExpired() && !future.isDone()) {
+      future.cancel(true);
+      bounded.completeExceptionally(expiration.get());
+      return bounded;
+    }
+    final ScheduledFuture<?> timer =
+        DelayScheduler.INSTANCE.schedule(
+            () -> bounded.completeExceptionally(expiration.get()),
+            remainingNanos(),
+            TimeUnit.NANOSECONDS);
+    future.whenComplete(
+        (response, failure) -> {
+          timer.cancel(false);
+          if (failure == null) {
+            if (!bounded.complete(response)) {
+              InterruptibleFutures.discard(response);
+            }
+          } else {
+            bounded.completeExceptionally(
+                failure instanceof CompletionException ? failure.getCause() : failure);
+          }
+        });
+    bounded.whenComplete((response, failure) -> future.cancel(true));
+    return bounded;
+  }
+
+  /**
+   * Performs the given blocking call in the executor, bounded by this Deadline. The caller waits
+   * for the call interruptibly, cancelling it if interrupted. A caller already running in the
+   * executor performs the call itself instead, so that a request never holds two threads of the
+   * same executor; the call is then bounded by the timeouts of its transport only, and fails with
+   * the exception of this Deadline once complete if it expired meanwhile.
+   *
+   * @param call Blocking call, interrupted if the Deadline expires first.
+   * @param executor Runs the call.
+   * @param <T> Response type.
+   * @return The response of the call.
+   * @throws RuntimeException The exception of this Deadline, if it expires first.
+   * @throws CancellationException If the caller is interrupted while waiting.
+   */
+  public <T> T call(final Supplier<T> call, final Executor executor) {
+    if (isExpired()) {
+      throw expiration.get();
+    }
+    if (TaskExecutors.isRunningOn(executor)) {
+      final T response = call.get();
+      if (isExpired()) {
+        InterruptibleFutures.discard(response);
+        throw expiration.get();
+      }
+      return response;
+    }
+    return InterruptibleFutures.await(InterruptibleFutures.supply(call, executor), this);
+  }
+
+  /** Nanoseconds left until this Deadline expires, negative once expired. */
+  long remainingNanos() {
+    return expirationNanos - System.nanoTime();
+  }
+
+  /**
+   * Creates the exception calls fail with once this Deadline expired, for callers waiting on their
+   * own to fail the same way.
+   *
+   * @return A new exception.
+   */
+  public RuntimeException expiration() {
+    return expiration.get();
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Shared daemon thread firing delayed asynchronous attempts. Scheduled tasks must only hand work
+ * over, never block.
+ */
+final class DelayScheduler {
+
+  static final ScheduledExecutorService INSTANCE =
+      Executors.newSingleThreadScheduledExecutor(
+          r -> {
+            final Thread thread = new Thread(r, "fluent-delay-scheduler");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private DelayScheduler() {}
+}
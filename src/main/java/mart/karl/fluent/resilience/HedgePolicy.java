@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import mart.karl.fluent.concurrent.TaskExecutors;
+import mart.karl.fluent.metrics.EndpointMetrics;
+import mart.karl.fluent.metrics.EndpointStats;
+import mart.karl.fluent.metrics.EndpointTag;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * Cuts tail latency by sending a duplicate, hedge request when a response takes longer than
+ * usual. The first response wins and the other requests are cancelled. <br>
+ * <br>
+ *
+ * <p>The hedge is sent after a fixed {@code delay} or, when {@code latencyMetrics} and a {@code
+ * latencyPercentile} are given, after the latency at that percentile observed for the endpoint,
+ * e.g. its p95, once {@code minimumSamples} requests were recorded. Thus only the slowest requests
+ * are hedged. A failed attempt doesn't end the request while another one is still in flight; a
+ * {@linkplain RetryPolicy} is the way to retry failures.<br>
+ * <br>
+ *
+ * <p>Every hedge spends a token of the {@code hedgeBudget}, a {@linkplain RetryBudget} filled by
+ * every hedged request, so that hedges can't multiply the load of a server in a real incident,
+ * when every request is slow. Only {@code hedgedMethods} are hedged, which default to the safe
+ * methods only, since duplicated writes may reach the server in any order:
+ *
+ * <pre class="code">
+ * HedgePolicy hedgePolicy =
+ *   HedgePolicy.builder()
+ *   .latencyMetrics(endpointMetrics)
+ *   .latencyPercentile(95)
+ *   .build();
+ * </pre>
+ *
+ * <p>Blocking requests are hedged by running every attempt in the given executor and cancelling
+ * the losers through interruption, which stops them at the latest before their response is read,
+ * depending on the ClientHttpRequestFactory. That executor must not be the one the requests run
+ * in, which is enforced; the {@linkplain HedgePolicy#defaultExecutor() default} one creates
+ * threads on demand. Asynchronous requests are cancelled through their future, and their hedges
+ * are started in the default executor. Either way, the shared timer waiting for the hedge delay
+ * only hands every hedge off to its executor.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class HedgePolicy {
+
+  /** Wait before each hedge, unless derived from the latency metrics. */
+  @NonNull @Builder.Default private final Duration delay = Duration.ofMillis(50);
+
+  /** Latency percentile the hedge waits for, or {@code 0} to always wait the fixed delay. */
+  @Builder.Default private final double latencyPercentile = 0;
+
+  /** Metrics providing the latency percentile of each endpoint, if present. */
+  private final EndpointMetrics latencyMetrics;
+
+  /** Requests recorded for an endpoint before its latency percentile is trusted. */
+  @Builder.Default private final long minimumSamples = 100;
+
+  /** Hedges per request, on top of the first attempt. */
+  @Builder.Default private final int maxHedges = 1;
+
+  /** Budget capping the amount of hedges, or {@code null} for no cap. */
+  @Builder.Default private final RetryBudget hedgeBudget = new RetryBudget(0.1, 10);
+
+  /** Methods hedged. */
+  @NonNull @Builder.Default
+  private final Set<HttpMethod> hedgedMethods =
+      Collections.unmodifiableSet(EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS));
+
+  /**
+   * Shared executor of the attempts of hedged blocking requests, a pool of daemon threads created
+   * on demand, so that waiting for the attempts never starves the executor the requests run in.
+   *
+   * @return The default executor of the attempts of hedged requests, the {@linkplain
+   *     TaskExecutors#attemptExecutor() shared executor} of bounded attempts.
+   */
+  public static Executor defaultExecutor() {
+    return TaskExecutors.attemptExecutor();
+  }
+
+  /**
+   * Performs the given blocking request, hedging it according to this policy.
+   *
+   * @param method Method of the request, which is hedged only if one of the hedged methods.
+   * @param endpointTag Endpoint of the request.
+   * @param request Performs an attempt of the request.
+   * @param executor Runs the attempts of hedged requests.
+   * @param <T> Response type.
+   * @return The first response.
+   */
+  public <T> T execute(
+      final HttpMethod method,
+      final EndpointTag endpointTag,
+      final Supplier<T> request,
+      final Executor executor) {
+    return execute(method, endpointTag, request, executor, null);
+  }
+
+  /**
+   * Performs the given blocking request, hedging it according to this policy until the given
+   * deadline. The caller waits for the first response interruptibly, cancelling every attempt if
+   * interrupted or if the deadline expires first. The attempts run in the given executor, which
+   * must not be the one the caller runs in, since the caller holds its thread while they run: a
+   * bounded executor would starve as soon as all its threads wait for attempts queued behind them.
+   *
+   * @param method Method of the request, which is hedged only if one of the hedged methods.
+   * @param endpointTag Endpoint of the request.
+   * @param request Performs an attempt of the request.
+   * @param executor Runs the attempts of hedged requests, e.g. the {@linkplain
+   *     HedgePolicy#defaultExecutor() default} one.
+   * @param deadline Deadline of the request, if any.
+   * @param <T> Response type.
+   * @return The first response.
+   * @throws IllegalArgumentException If the caller runs in the given executor.
+   * @throws RuntimeException The exception of the deadline, if it expires first.
+   * @throws CancellationException If the caller is interrupted while waiting.
+   */
+  public <T> T execute(
+      final HttpMethod method,
+      final EndpointTag endpointTag,
+      final Supplier<T> request,
+      final Executor executor,
+      final Deadline deadline) {
+    if (!isHedged(method)) {
+      return request.get();
+    }
+    Assert.isTrue(
+        !TaskExecutors.isRunningOn(executor),
+        "Hedged attempts must not run in the executor of the hedged request");
+    return InterruptibleFutures.await(
+        new Hedging<>(endpointTag, () -> InterruptibleFutures.supply(request, executor), executor)
+            .start(),
+        deadline);
+  }
+
+  /**
+   * Asynchronous version of {@linkplain HedgePolicy#execute(HttpMethod, EndpointTag, Supplier,
+   * Executor)}.
+   *
+   * @param method Method of the request, which is hedged only if one of the hedged methods.
+   * @param endpointTag Endpoint of the request.
+   * @param request Starts an attempt of the request, cancelled by cancelling its future. Hedges
+   *     are started in the {@linkplain HedgePolicy#defaultExecutor() default executor}.
+   * @param <T> Response type.
+   * @return A CompletableFuture completed with the first response.
+   */
+  public <T> CompletableFuture<T> executeAsync(
+      final HttpMethod method,
+      final EndpointTag endpointTag,
+      final Supplier<CompletableFuture<T>> request) {
+    if (!isHedged(method)) {
+      return request.get();
+    }
+    return new Hedging<>(endpointTag, request, defaultExecutor()).start();
+  }
+
+  /**
+   * Wait before each hedge of a request to the given endpoint.
+   *
+   * @param endpointTag Endpoint of the request.
+   * @return Nanoseconds to wait.
+   */
+  long delayNanos(final EndpointTag endpointTag) {
+    if (latencyMetrics != null && latencyPercentile > 0) {
+      final EndpointStats stats = latencyMetrics.getStats(endpointTag);
+      if (stats != null && stats.getLatency().getCount() >= minimumSamples) {
+        return stats.getLatency().getValueAtPercentile(latencyPercentile);
+      }
+    }
+    return delay.toNanos();
+  }
+
+  private boolean isHedged(final HttpMethod method) {
+    if (maxHedges <= 0 || !hedgedMethods.contains(method)) {
+      return false;
+    }
+    if (hedgeBudget != null) {
+      hedgeBudget.deposit();
+    }
+    return true;
+  }
+
+  /** The attempts of a single hedged request. */
+  private final class Hedging<T> {
+    private final long delayNanos;
+    private final Supplier<CompletableFuture<T>> request;
+    private final Executor launcher;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private Hedging(
+        final EndpointTag endpointTag,
+        final Supplier<CompletableFuture<T>> request,
+        final Executor launcher) {
+      this.delayNanos = delayNanos(endpointTag);
+      this.request = request;
+      this.launcher = launcher;
+    }
+
+    private CompletableFuture<T> start() {
+      result.whenComplete((response, failure) -> attempts.forEach(a -> a.cancel(true)));
+      launch();
+      hedgeAfterDelay(maxHedges);
+      return result;
+    }
+
+    private void launch() {
+      pending.incrementAndGet();
+      CompletableFuture<T> attempt;
+      try {
+        attempt = request.get();
+      } catch (final RuntimeException e) {
+        attempt = new CompletableFuture<>();
+        attempt.completeExceptionally(e);
+      }
+      attempts.add(attempt);
+      if (result.isDone()) {
+        attempt.cancel(true);
+      }
+      attempt.whenComplete(
+          (response, error) -> {
+            if (error == null) {
+              result.complete(response);
+            } else if (pending.decrementAndGet() == 0) {
+              result.completeExceptionally(
+                  error instanceof CompletionException ? error.getCause() : error);
+            }
+          });
+    }
+
+    private void hedgeAfterDelay(final int remaining) {
+      if (remaining <= 0) {
+        return;
+      }
+      // The scheduler thread is shared by every timer, so it only hands the hedge off.
+      DelayScheduler.INSTANCE.schedule(
+          () -> launcher.execute(() -> hedge(remaining)), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void hedge(final int remaining) {
+      if (result.isDone() || hedgeBudget != null && !hedgeBudget.tryWithdraw()) {
+        return;
+      }
+      launch();
+      hedgeAfterDelay(remaining - 1);
+    }
+  }
+}
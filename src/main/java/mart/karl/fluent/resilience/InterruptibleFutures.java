@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import mart.karl.fluent.concurrent.TaskExecutors;
+import org.springframework.http.HttpEntity;
+
+/**
+ * Runs blocking calls in an executor behind a CompletableFuture whose cancellation interrupts the
+ * call, which plain {@linkplain CompletableFuture#supplyAsync} doesn't. The threads running the
+ * calls are {@linkplain TaskExecutors#isRunningOn(Executor) known} to serve the executor. A call
+ * completing once its future was given up, e.g. because RestTemplate's blocking I/O ignored the
+ * interruption, has its response {@linkplain #discard(Object) discarded}.
+ */
+final class InterruptibleFutures {
+
+  private InterruptibleFutures() {}
+
+  /**
+   * Runs the given call in the executor, interrupting it if the returned future is cancelled.
+   *
+   * @param call Blocking call.
+   * @param executor Runs the call.
+   * @param <T> Response type.
+   * @return A CompletableFuture completed with the outcome of the call.
+   */
+  static <T> CompletableFuture<T> supply(final Supplier<T> call, final Executor executor) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    final FutureTask<T> task =
+        new FutureTask<T>(
+            () -> {
+              final T response = call.get();
+              if (!future.complete(response)) {
+                discard(response);
+              }
+              return response;
+            }) {
+          @Override
+          protected void done() {
+            try {
+              get();
+            } catch (final CancellationException e) {
+              future.cancel(false);
+            } catch (final ExecutionException e) {
+              future.completeExceptionally(e.getCause());
+            } catch (final InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        };
+    future.whenComplete(
+        (response, failure) -> {
+          if (future.isCancelled()) {
+            task.cancel(true);
+          }
+        });
+    try {
+      executor.execute(TaskExecutors.marked(task, executor));
+    } catch (final RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Waits for the given future interruptibly, until the deadline expires if any, cancelling it if
+   * the deadline expires or the caller is interrupted first.
+   *
+   * @param future Future to wait for.
+   * @param deadline Deadline of the wait, if any.
+   * @param <T> Response type.
+   * @return The value of the future.
+   * @throws RuntimeException The failure of the future, or the exception of the deadline if it
+   *     expires first.
+   * @throws CancellationException If the caller is interrupted while waiting.
+   */
+  static <T> T await(final Future<T> future, final Deadline deadline) {
+    try {
+      return deadline == null
+          ? future.get()
+          : future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+    } catch (final TimeoutException e) {
+      giveUp(future);
+      throw deadline.expiration();
+    } catch (final InterruptedException e) {
+      giveUp(future);
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Interrupted while waiting for a response");
+    } catch (final ExecutionException e) {
+      final Throwable failure = e.getCause();
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      throw failure instanceof RuntimeException
+          ? (RuntimeException) failure
+          : new CompletionException(failure);
+    }
+  }
+
+  /**
+   * Closes a response nobody reads anymore, e.g. one completed after its deadline was reported,
+   * so that the connection held by a streamed body isn't leaked: the response itself if it is
+   * {@linkplain AutoCloseable closeable}, e.g. a {@linkplain java.util.stream.Stream Stream}, or
+   * else the body of a {@linkplain HttpEntity response entity}.
+   *
+   * @param response The response given up, if any.
+   */
+  static void discard(final Object response) {
+    final Object closeable =
+        response instanceof HttpEntity ? ((HttpEntity<?>) response).getBody() : response;
+    if (closeable instanceof AutoCloseable) {
+      try {
+        ((AutoCloseable) closeable).close();
+      } catch (final Exception e) {
+        // Nobody is left to report to; the response is abandoned anyway.
+      }
+    }
+  }
+
+  /** Cancels the given future, discarding its response if it completed meanwhile. */
+  private static void giveUp(final Future<?> future) {
+    if (future.cancel(true) || !future.isDone()) {
+      return;
+    }
+    try {
+      discard(future.get());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (final ExecutionException | CancellationException e) {
+      // Failed or cancelled meanwhile, so there is nothing to close.
+    }
+  }
+}
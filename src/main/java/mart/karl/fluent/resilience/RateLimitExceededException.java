@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.resilience;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown instead of sending a request when its {@linkplain RateLimiter} has no permit available
+ * within its longest wait.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public class RateLimitExceededException extends RestClientException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a RateLimitExceededException.
+   *
+   * @param msg The detail message.
+   */
+  public RateLimitExceededException(final String msg) {
+    super(msg);
+  }
+}
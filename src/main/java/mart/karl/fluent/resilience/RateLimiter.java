@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import org.springframework.util.Assert;
+
+/**
+ * Token bucket keeping the requests sent to a service or endpoint within its quota, instead of
+ * getting {@code 429 Too Many Requests} responses. The bucket holds up to {@code burst} permits,
+ * starts full and is refilled with {@code permits} every {@code period}, one at a time. <br>
+ * <br>
+ *
+ * <p>A request finding the bucket empty waits for its permit up to {@code maxWait}, or fails with
+ * a {@linkplain RateLimitExceededException} if it would have to wait longer. {@linkplain
+ * RateLimiter#blocking(int, Duration, Duration) Blocking} limiters smooth bursts out, {@linkplain
+ * RateLimiter#failingFast(int, Duration) fail-fast} ones never hold a thread:
+ *
+ * <pre class="code">
+ * RateLimiter quota = RateLimiter.blocking(100, Duration.ofSeconds(1), Duration.ofSeconds(2));
+ * </pre>
+ *
+ * <p>Permits are handed out lock-free: the bucket is a single timestamp, the time at which it is
+ * empty, advanced by compare-and-set. A waiting request has already reserved its permit, so the
+ * requests of hundreds of threads are spread evenly, in arrival order, without any of them
+ * contending on a lock. Counters of permitted, delayed and rejected requests and of the time spent
+ * waiting are kept for monitoring.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class RateLimiter {
+
+  private static final String EXCEEDED = "Rate limit exceeded, no permit available in time";
+
+  private final long intervalNanos;
+  private final long burstNanos;
+  private final long maxWaitNanos;
+  private final LongSupplier nanoTime;
+  private final AtomicLong emptyAt;
+  private final LongAdder permittedCount = new LongAdder();
+  private final LongAdder delayedCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+
+  /**
+   * Creates a RateLimiter.
+   *
+   * @param permits Permits added to the bucket every period.
+   * @param period Period the permits are spread over.
+   * @param burst Maximum amount of permits in the bucket, i.e. of requests sent at once.
+   * @param maxWait Longest wait for a permit, {@linkplain Duration#ZERO} to fail fast, or {@code
+   *     null} to wait as long as needed.
+   */
+  public RateLimiter(
+      final int permits, @NonNull final Duration period, final int burst, final Duration maxWait) {
+    this(permits, period, burst, maxWait, System::nanoTime);
+  }
+
+  RateLimiter(
+      final int permits,
+      final Duration period,
+      final int burst,
+      final Duration maxWait,
+      final LongSupplier nanoTime) {
+    Assert.isTrue(permits > 0, "permits must be positive");
+    Assert.isTrue(!period.isNegative() && !period.isZero(), "period must be positive");
+    Assert.isTrue(burst > 0, "burst must be positive");
+    Assert.isTrue(maxWait == null || !maxWait.isNegative(), "maxWait must not be negative");
+    this.intervalNanos = Math.max(1, period.toNanos() / permits);
+    this.burstNanos = intervalNanos * burst;
+    this.maxWaitNanos = maxWait == null ? Long.MAX_VALUE : maxWait.toNanos();
+    this.nanoTime = nanoTime;
+    this.emptyAt = new AtomicLong(nanoTime.getAsLong() - burstNanos);
+  }
+
+  /**
+   * Creates a RateLimiter making requests wait for their permit, with a burst of a whole period.
+   *
+   * @param permits Permits added to the bucket every period.
+   * @param period Period the permits are spread over.
+   * @param maxWait Longest wait for a permit, or {@code null} to wait as long as needed.
+   * @return A new RateLimiter.
+   */
+  public static RateLimiter blocking(
+      final int permits, final Duration period, final Duration maxWait) {
+    return new RateLimiter(permits, period, permits, maxWait);
+  }
+
+  /**
+   * Creates a RateLimiter rejecting requests as soon as the bucket is empty, with a burst of a
+   * whole period.
+   *
+   * @param permits Permits added to the bucket every period.
+   * @param period Period the permits are spread over.
+   * @return A new RateLimiter.
+   */
+  public static RateLimiter failingFast(final int permits, final Duration period) {
+    return new RateLimiter(permits, period, permits, Duration.ZERO);
+  }
+
+  /**
+   * Performs the given call once a permit is acquired.
+   *
+   * @param call Performs the call.
+   * @param <T> Response type.
+   * @return The response of the call.
+   * @throws RateLimitExceededException If no permit is available within the longest wait.
+   */
+  public <T> T execute(final Supplier<T> call) {
+    return execute(call, null);
+  }
+
+  /**
+   * Performs the given call once a permit is acquired, waiting for it until the given deadline at
+   * most.
+   *
+   * @param call Performs the call.
+   * @param deadline Deadline of the call, if any.
+   * @param <T> Response type.
+   * @return The response of the call.
+   * @throws RateLimitExceededException If no permit is available within the longest wait.
+   * @throws RuntimeException The exception of the deadline, if no permit is available before it
+   *     expires.
+   */
+  public <T> T execute(final Supplier<T> call, final Deadline deadline) {
+    acquire(deadline);
+    return call.get();
+  }
+
+  /**
+   * Acquires a permit, waiting for it up to the longest wait.
+   *
+   * @throws RateLimitExceededException If no permit is available within the longest wait, or the
+   *     thread is interrupted while waiting.
+   */
+  public void acquire() {
+    acquire(null);
+  }
+
+  /**
+   * Acquires a permit, waiting for it up to the longest wait or until the given deadline, whichever
+   * comes first.
+   *
+   * @param deadline Deadline of the call the permit is for, if any.
+   * @throws RateLimitExceededException If no permit is available within the longest wait, or the
+   *     thread is interrupted while waiting.
+   * @throws RuntimeException The exception of the deadline, if no permit is available before it
+   *     expires.
+   */
+  public void acquire(final Deadline deadline) {
+    final long remaining = deadline == null ? Long.MAX_VALUE : deadline.remainingNanos();
+    if (remaining <= 0) {
+      throw deadline.expiration();
+    }
+    final long wait = permit(Math.min(maxWaitNanos, remaining));
+    if (wait < 0) {
+      throw remaining < maxWaitNanos
+          ? deadline.expiration()
+          : new RateLimitExceededException(EXCEEDED);
+    }
+    if (wait == 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(wait);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RateLimitExceededException("Interrupted while waiting for a rate limit permit");
+    }
+  }
+
+  /**
+   * Asynchronous version of {@linkplain RateLimiter#acquire()}, waiting without holding a thread.
+   *
+   * @return A CompletableFuture completed once the permit is available, or with a
+   *     RateLimitExceededException if none is available within the longest wait.
+   */
+  public CompletableFuture<Void> acquireAsync() {
+    final CompletableFuture<Void> permit = new CompletableFuture<>();
+    final long wait = permit(maxWaitNanos);
+    if (wait < 0) {
+      permit.completeExceptionally(new RateLimitExceededException(EXCEEDED));
+    } else if (wait == 0) {
+      permit.complete(null);
+    } else {
+      DelayScheduler.INSTANCE.schedule(() -> permit.complete(null), wait, TimeUnit.NANOSECONDS);
+    }
+    return permit;
+  }
+
+  /**
+   * Acquires a permit if one is available right now.
+   *
+   * @return {@code true} if the permit was acquired.
+   */
+  public boolean tryAcquire() {
+    return permit(0) == 0;
+  }
+
+  /** Reserves a permit unless available later than the given wait, counting the outcome. */
+  private long permit(final long maxWait) {
+    final long wait = reserve(maxWait);
+    if (wait < 0) {
+      rejectedCount.increment();
+      return wait;
+    }
+    permittedCount.increment();
+    if (wait > 0) {
+      delayedCount.increment();
+      waitNanos.add(wait);
+    }
+    return wait;
+  }
+
+  /**
+   * Reserves the next permit unless it is available later than the given wait.
+   *
+   * @return Nanoseconds until the reserved permit is available, or {@code -1} if not reserved.
+   */
+  private long reserve(final long maxWait) {
+    long current;
+    long next;
+    long wait;
+    do {
+      final long now = nanoTime.getAsLong();
+      current = emptyAt.get();
+      // A bucket can't hold more than its burst, however long it was idle.
+      final long full = now - burstNanos;
+      next = (current - full < 0 ? full : current) + intervalNanos;
+      wait = Math.max(0, next - now);
+      if (wait > maxWait) {
+        return -1;
+      }
+    } while (!emptyAt.compareAndSet(current, next));
+    return wait;
+  }
+
+  /**
+   * Amount of permits currently in the bucket.
+   *
+   * @return Whole permits available without waiting.
+   */
+  public long getAvailablePermits() {
+    final long elapsed = nanoTime.getAsLong() - emptyAt.get();
+    return elapsed <= 0 ? 0 : Math.min(burstNanos, elapsed) / intervalNanos;
+  }
+
+  /**
+   * Amount of requests given a permit, whether they waited for it or not.
+   *
+   * @return Permitted requests so far.
+   */
+  public long getPermittedCount() {
+    return permittedCount.sum();
+  }
+
+  /**
+   * Amount of requests that waited for their permit.
+   *
+   * @return Delayed requests so far.
+   */
+  public long getDelayedCount() {
+    return delayedCount.sum();
+  }
+
+  /**
+   * Amount of requests rejected with a {@linkplain RateLimitExceededException}.
+   *
+   * @return Rejected requests so far.
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  /**
+   * Total time requests spent waiting for their permits.
+   *
+   * @return The summed waiting time so far.
+   */
+  public Duration getTotalWaitTime() {
+    return Duration.ofNanos(waitNanos.sum());
+  }
+}
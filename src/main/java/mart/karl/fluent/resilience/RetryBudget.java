@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.util.Assert;
+
+/**
+ * Token bucket capping retries to a fraction of the regular traffic, so that retries can't
+ * amplify an outage. Every first attempt deposits {@code ratio} tokens, up to {@code capacity},
+ * and every retry withdraws a whole token; retries are given up while the bucket is empty. <br>
+ * <br>
+ *
+ * <p>With a ratio of {@code 0.1}, retries add at most 10% of load on top of the regular requests,
+ * plus a burst of {@code capacity} retries after a calm period. The bucket starts full. Deposits
+ * and withdrawals are lock-free. A single budget is usually shared by every endpoint of a
+ * downstream service. The same bucket caps the hedges of a {@linkplain HedgePolicy}.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class RetryBudget {
+
+  private static final long TOKEN = 1_000;
+
+  private final long deposit;
+  private final long capacity;
+  private final AtomicLong balance;
+
+  /**
+   * Creates a RetryBudget.
+   *
+   * @param ratio Tokens deposited per first attempt, between 0 and 1.
+   * @param capacity Maximum amount of tokens, i.e. of retries in a burst.
+   */
+  public RetryBudget(final double ratio, final int capacity) {
+    Assert.isTrue(ratio >= 0 && ratio <= 1, "ratio must be between 0 and 1");
+    Assert.isTrue(capacity >= 0, "capacity must not be negative");
+    this.deposit = Math.round(ratio * TOKEN);
+    this.capacity = capacity * TOKEN;
+    this.balance = new AtomicLong(this.capacity);
+  }
+
+  /** Deposits the tokens earned by a first attempt. */
+  public void deposit() {
+    long current;
+    do {
+      current = balance.get();
+      if (current >= capacity) {
+        return;
+      }
+    } while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+  }
+
+  /**
+   * Withdraws the token needed for a retry, if available.
+   *
+   * @return {@code true} if the retry may be performed.
+   */
+  public boolean tryWithdraw() {
+    long current;
+    do {
+      current = balance.get();
+      if (current < TOKEN) {
+        return false;
+      }
+    } while (!balance.compareAndSet(current, current - TOKEN));
+    return true;
+  }
+
+  /**
+   * Amount of retries currently allowed.
+   *
+   * @return Whole tokens in the bucket.
+   */
+  public long getAvailableRetries() {
+    return balance.get() / TOKEN;
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Retries failed idempotent requests with exponential backoff and full jitter. <br>
+ * <br>
+ *
+ * <p>A request is retried when it fails with one of the {@code retryableExceptions}, which default
+ * to the I/O errors RestTemplate wraps in {@linkplain ResourceAccessException}, or when its status
+ * is one of the {@code retryableStatuses}, whether RestTemplate's error handler throws an
+ * {@linkplain HttpStatusCodeException} for it or not. Only {@code idempotentMethods} are retried,
+ * since a failed POST may well have been processed by the server.<br>
+ * <br>
+ *
+ * <p>The n-th retry waits a random time between zero and {@code initialBackoff * multiplier^(n-1)},
+ * capped at {@code maxBackoff}. The randomness spreads the retries of many clients failing at once
+ * instead of synchronizing them into waves. Besides, every retry spends a token of the {@linkplain
+ * RetryBudget}, so that retries can't multiply the load of a struggling server:
+ *
+ * <pre class="code">
+ * RetryPolicy retryPolicy =
+ *   RetryPolicy.builder()
+ *   .maxAttempts(4)
+ *   .initialBackoff(Duration.ofMillis(50))
+ *   .retryBudget(new RetryBudget(0.1, 20))
+ *   .build();
+ * </pre>
+ *
+ * <p>RetryPolicies are immutable and thread-safe, so a single instance is shared by every request
+ * it applies to, and so is its budget.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class RetryPolicy {
+
+  /** A policy performing a single attempt, to disable the retries of a given request. */
+  public static final RetryPolicy NONE = builder().maxAttempts(1).retryBudget(null).build();
+
+  /** Attempts per request, including the first one. */
+  @Builder.Default private final int maxAttempts = 3;
+
+  /** Upper bound of the wait before the first retry. */
+  @NonNull @Builder.Default private final Duration initialBackoff = Duration.ofMillis(100);
+
+  /** Upper bound of the wait before any retry. */
+  @NonNull @Builder.Default private final Duration maxBackoff = Duration.ofSeconds(5);
+
+  /** Growth factor of the backoff bound between retries. */
+  @Builder.Default private final double multiplier = 2;
+
+  /** Response statuses worth retrying. */
+  @NonNull @Builder.Default
+  private final Set<HttpStatus> retryableStatuses =
+      Collections.unmodifiableSet(
+          EnumSet.of(
+              HttpStatus.TOO_MANY_REQUESTS,
+              HttpStatus.BAD_GATEWAY,
+              HttpStatus.SERVICE_UNAVAILABLE,
+              HttpStatus.GATEWAY_TIMEOUT));
+
+  /** Failures worth retrying, subclasses included. */
+  @NonNull @Builder.Default
+  private final Set<Class<? extends Exception>> retryableExceptions =
+      Collections.singleton(ResourceAccessException.class);
+
+  /** Methods safe to retry. */
+  @NonNull @Builder.Default
+  private final Set<HttpMethod> idempotentMethods =
+      Collections.unmodifiableSet(
+          EnumSet.of(
+              HttpMethod.GET,
+              HttpMethod.HEAD,
+              HttpMethod.OPTIONS,
+              HttpMethod.PUT,
+              HttpMethod.DELETE,
+              HttpMethod.TRACE));
+
+  /** Budget capping the amount of retries, or {@code null} for no cap. */
+  @Builder.Default private final RetryBudget retryBudget = new RetryBudget(0.2, 10);
+
+  /**
+   * Performs the given request, retrying it according to this policy.
+   *
+   * @param method Method of the request, which is retried only if idempotent.
+   * @param request Performs an attempt of the request.
+   * @param <T> Response type.
+   * @return The response of the last attempt.
+   */
+  public <T> T execute(final HttpMethod method, final Supplier<T> request) {
+    return execute(method, request, null);
+  }
+
+  /**
+   * Performs the given request, retrying it according to this policy until the given deadline.
+   * Backoffs are cut short by the deadline, and no retry is attempted once it expired.
+   *
+   * @param method Method of the request, which is retried only if idempotent.
+   * @param request Performs an attempt of the request.
+   * @param deadline Deadline of the request, if any.
+   * @param <T> Response type.
+   * @return The response of the last attempt.
+   * @throws RuntimeException The exception of the deadline, if it expires before a retry.
+   */
+  public <T> T execute(
+      final HttpMethod method, final Supplier<T> request, final Deadline deadline) {
+    if (!isRetried(method)) {
+      return request.get();
+    }
+    for (int attempt = 1; ; attempt++) {
+      T response = null;
+      RuntimeException failure = null;
+      try {
+        response = request.get();
+      } catch (final RuntimeException e) {
+        failure = e;
+      }
+      if (!shouldRetry(attempt, response, failure)
+          || !sleep(backoffNanos(attempt, deadline), deadline, failure)) {
+        if (failure != null) {
+          throw failure;
+        }
+        return response;
+      }
+    }
+  }
+
+  /**
+   * Asynchronous version of {@linkplain RetryPolicy#execute(HttpMethod, Supplier)}. Backoffs don't
+   * block any thread.
+   *
+   * @param method Method of the request, which is retried only if idempotent.
+   * @param request Starts an attempt of the request.
+   * @param <T> Response type.
+   * @return A CompletableFuture completed with the response of the last attempt.
+   */
+  public <T> CompletableFuture<T> executeAsync(
+      final HttpMethod method, final Supplier<CompletableFuture<T>> request) {
+    if (!isRetried(method)) {
+      return request.get();
+    }
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    attemptAsync(request, 1, result);
+    return result;
+  }
+
+  /**
+   * Whether the given response or failure is worth retrying according to this policy.
+   *
+   * @param response Response of an attempt, if any.
+   * @param failure Failure of an attempt, if any.
+   * @return {@code true} if the attempt is worth retrying.
+   */
+  public boolean isRetryable(final Object response, final Throwable failure) {
+    if (failure == null) {
+      return response instanceof ResponseEntity
+          && retryableStatuses.contains(((ResponseEntity<?>) response).getStatusCode());
+    }
+    if (failure instanceof HttpStatusCodeException
+        && retryableStatuses.contains(((HttpStatusCodeException) failure).getStatusCode())) {
+      return true;
+    }
+    return retryableExceptions.stream().anyMatch(type -> type.isInstance(failure));
+  }
+
+  /**
+   * Random wait before the given retry, following the full jitter strategy.
+   *
+   * @param retry Number of the retry, starting at 1.
+   * @return Milliseconds to wait.
+   */
+  long backoffMillis(final int retry) {
+    final double bound = initialBackoff.toMillis() * Math.pow(multiplier, retry - 1D);
+    final long cap = (long) Math.min(maxBackoff.toMillis(), bound);
+    return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+  }
+
+  private boolean isRetried(final HttpMethod method) {
+    if (maxAttempts <= 1 || !idempotentMethods.contains(method)) {
+      return false;
+    }
+    if (retryBudget != null) {
+      retryBudget.deposit();
+    }
+    return true;
+  }
+
+  private boolean shouldRetry(final int attempt, final Object response, final Throwable failure) {
+    return attempt < maxAttempts
+        && isRetryable(response, failure)
+        && (retryBudget == null || retryBudget.tryWithdraw());
+  }
+
+  private <T> void attemptAsync(
+      final Supplier<CompletableFuture<T>> request,
+      final int attempt,
+      final CompletableFuture<T> result) {
+    if (result.isDone()) {
+      return;
+    }
+    CompletableFuture<T> future;
+    try {
+      future = request.get();
+    } catch (final RuntimeException e) {
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+    }
+    future.whenComplete(
+        (response, error) -> {
+          final Throwable failure = error instanceof CompletionException ? error.getCause() : error;
+          if (shouldRetry(attempt, response, failure)) {
+            DelayScheduler.INSTANCE.schedule(
+                () -> attemptAsync(request, attempt + 1, result),
+                backoffMillis(attempt),
+                TimeUnit.MILLISECONDS);
+          } else if (failure != null) {
+            result.completeExceptionally(failure);
+          } else {
+            result.complete(response);
+          }
+        });
+  }
+
+  /** Backoff before the given retry, cut short by the deadline, if any. */
+  private long backoffNanos(final int retry, final Deadline deadline) {
+    final long backoff = TimeUnit.MILLISECONDS.toNanos(backoffMillis(retry));
+    return deadline == null ? backoff : Math.min(backoff, deadline.remainingNanos());
+  }
+
+  /**
+   * Waits before a retry, or fails with the exception of the deadline, along with the last failure,
+   * if it expires.
+   *
+   * @return {@code false} if interrupted, so that the last attempt is kept.
+   */
+  private static boolean sleep(
+      final long nanos, final Deadline deadline, final RuntimeException failure) {
+    try {
+      if (nanos > 0) {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+      }
+      if (deadline != null && deadline.isExpired()) {
+        final RuntimeException expired = deadline.expiration();
+        if (failure != null) {
+          expired.addSuppressed(failure);
+        }
+        throw expired;
+      }
+      return true;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.lang.reflect.Type;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import mart.karl.fluent.metrics.EndpointTag;
+import mart.karl.fluent.resilience.Deadline;
+import mart.karl.fluent.resilience.HedgePolicy;
+import mart.karl.fluent.resilience.RetryPolicy;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Base {@linkplain Executor} handling the request parts and deriving every executor method from
+ * the four {@code execute} and {@code executeAsync} methods that perform the actual REST request,
+ * plus {@code elements} and {@code elementsAsync} for the lazily decoded ones.
+ */
+abstract class AbstractExecutor implements Executor {
+
+  private static final ParameterizedTypeReference<Void> VOID_TYPE_REFERENCE =
+      new ParameterizedTypeReference<Void>() {};
+
+  private final RequestEntity.BodyBuilder requestEntityBuilder;
+  private final Object body;
+  private RequestOptions options;
+
+  AbstractExecutor(
+      final RequestEntity.BodyBuilder requestEntityBuilder,
+      final Object body,
+      final RequestOptions options) {
+    this.requestEntityBuilder = requestEntityBuilder;
+    this.body = body;
+    this.options = options;
+  }
+
+  /**
+   * The settings of the request, including those given in the executor phase so far.
+   *
+   * @return The RequestOptions of the request.
+   */
+  protected final RequestOptions options() {
+    return options;
+  }
+
+  /**
+   * The endpoint an attempt of the request is recorded and guarded for, which depends on the
+   * instance the attempt is routed to when load balanced.
+   *
+   * @param requestEntity The request of the attempt.
+   * @return The EndpointTag of the attempt.
+   */
+  protected final EndpointTag endpointTag(final RequestEntity<?> requestEntity) {
+    return requestEntity instanceof InstanceRouting.Routed
+        ? ((InstanceRouting.Routed<?>) requestEntity).getEndpointTag()
+        : options.getEndpointTag();
+  }
+
+  /**
+   * Starts the deadline given for this request.
+   *
+   * @return A Deadline starting now, or {@code null} if none was given.
+   */
+  protected final Deadline startDeadline() {
+    return options.getDeadline() == null ? null : Deadline.after(options.getDeadline());
+  }
+
+  /**
+   * The deadline of a single attempt of the request: the earliest between the endpoint timeout,
+   * which fails the attempt like a read timeout so that it can be retried, and the given request
+   * deadline.
+   *
+   * @param requestEntity The request.
+   * @param requestDeadline Deadline of the whole request, if any.
+   * @return The Deadline of the attempt, or {@code null} if unbounded.
+   */
+  protected final Deadline attemptDeadline(
+      final RequestEntity<?> requestEntity, final Deadline requestDeadline) {
+    final Duration timeout = options.getTimeout();
+    if (timeout == null) {
+      return requestDeadline;
+    }
+    final String message = "Read timed out after " + timeout.toMillis() + "ms";
+    return Deadline.after(
+            timeout,
+            () ->
+                new ResourceAccessException(
+                    "I/O error on "
+                        + requestEntity.getMethod()
+                        + " request for \""
+                        + requestEntity.getUrl()
+                        + "\": "
+                        + message,
+                    new SocketTimeoutException(message)))
+        .earliest(requestDeadline);
+  }
+
+  /**
+   * Copies the given request with the given header set, keeping the instance it is routed to.
+   *
+   * @param requestEntity The request.
+   * @param name Name of the header.
+   * @param value Value of the header.
+   * @return The request with the header.
+   */
+  protected final RequestEntity<?> withHeader(
+      final RequestEntity<?> requestEntity, final String name, final String value) {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.putAll(requestEntity.getHeaders());
+    headers.set(name, value);
+    if (requestEntity instanceof InstanceRouting.Routed) {
+      return ((InstanceRouting.Routed<?>) requestEntity).withHeaders(headers);
+    }
+    return new RequestEntity<>(
+        requestEntity.getBody(), headers, requestEntity.getMethod(), requestEntity.getUrl());
+  }
+
+  /**
+   * Size of the body of the given request, as recorded in metrics.
+   *
+   * @param requestEntity The request.
+   * @return Its {@code Content-Length}, or the length of a byte array body, or {@code -1}.
+   */
+  protected final long requestBytes(final RequestEntity<?> requestEntity) {
+    final long contentLength = requestEntity.getHeaders().getContentLength();
+    if (contentLength < 0 && requestEntity.getBody() instanceof byte[]) {
+      return ((byte[]) requestEntity.getBody()).length;
+    }
+    return contentLength;
+  }
+
+  /**
+   * Builds the {@linkplain RequestEntity} with the request parts provided so far.
+   *
+   * @return The RequestEntity to execute.
+   */
+  protected final RequestEntity<Object> requestEntity() {
+    return requestEntityBuilder.body(body);
+  }
+
+  @Override
+  public Executor header(final String name, final String... values) {
+    requestEntityBuilder.header(name, values);
+    return this;
+  }
+
+  @Override
+  public Executor contenType(final MediaType mediaType) {
+    requestEntityBuilder.contentType(mediaType);
+    return this;
+  }
+
+  @Override
+  public Executor accept(final MediaType... types) {
+    requestEntityBuilder.accept(types);
+    return this;
+  }
+
+  @Override
+  public Executor acceptCharset(final Charset... charsets) {
+    requestEntityBuilder.acceptCharset(charsets);
+    return this;
+  }
+
+  @Override
+  public Executor retryPolicy(final RetryPolicy retryPolicy) {
+    options = options.toBuilder().retryPolicy(retryPolicy).build();
+    return this;
+  }
+
+  @Override
+  public Executor hedgePolicy(final HedgePolicy hedgePolicy) {
+    options = options.toBuilder().hedgePolicy(hedgePolicy).build();
+    return this;
+  }
+
+  @Override
+  public Executor deadline(final Duration timeout) {
+    options = options.toBuilder().deadline(timeout).build();
+    return this;
+  }
+
+  @Override
+  public ResponseEntity<Void> execute() {
+    return execute(VOID_TYPE_REFERENCE);
+  }
+
+  @Override
+  public void executeForObject() {
+    execute();
+  }
+
+  @Override
+  public <O> O executeForObject(final Class<O> responseClass) {
+    return Optional.ofNullable(execute(responseClass)).map(HttpEntity::getBody).orElse(null);
+  }
+
+  @Override
+  public <O> O executeForObject(final ParameterizedTypeReference<O> typeReference) {
+    return Optional.ofNullable(execute(typeReference)).map(HttpEntity::getBody).orElse(null);
+  }
+
+  @Override
+  public CompletableFuture<ResponseEntity<Void>> executeAsync() {
+    return executeAsync(VOID_TYPE_REFERENCE);
+  }
+
+  @Override
+  public CompletableFuture<Void> executeForObjectAsync() {
+    return executeAsync().thenAccept(r -> {});
+  }
+
+  @Override
+  public <O> CompletableFuture<O> executeForObjectAsync(final Class<O> responseClass) {
+    return executeAsync(responseClass)
+        .thenApply(r -> Optional.ofNullable(r).map(HttpEntity::getBody).orElse(null));
+  }
+
+  @Override
+  public <O> CompletableFuture<O> executeForObjectAsync(
+      final ParameterizedTypeReference<O> typeReference) {
+    return executeAsync(typeReference)
+        .thenApply(r -> Optional.ofNullable(r).map(HttpEntity::getBody).orElse(null));
+  }
+
+  @Override
+  public <O> Stream<O> executeForElements(final Class<O> elementClass) {
+    return elements(elementClass);
+  }
+
+  @Override
+  public <O> Stream<O> executeForElements(final ParameterizedTypeReference<O> typeReference) {
+    return elements(typeReference.getType());
+  }
+
+  @Override
+  public <O> CompletableFuture<Stream<O>> executeForElementsAsync(final Class<O> elementClass) {
+    return elementsAsync(elementClass);
+  }
+
+  @Override
+  public <O> CompletableFuture<Stream<O>> executeForElementsAsync(
+      final ParameterizedTypeReference<O> typeReference) {
+    return elementsAsync(typeReference.getType());
+  }
+
+  /**
+   * Performs the request and lazily decodes the elements of its response.
+   *
+   * @param elementType Type of each element.
+   * @param <O> Element type.
+   * @return A lazy Stream of elements that must be closed.
+   */
+  protected abstract <O> Stream<O> elements(Type elementType);
+
+  /**
+   * Asynchronous version of {@linkplain AbstractExecutor#elements(Type)}.
+   *
+   * @param elementType Type of each element.
+   * @param <O> Element type.
+   * @return A CompletableFuture completed with a lazy Stream of elements that must be closed.
+   */
+  protected abstract <O> CompletableFuture<Stream<O>> elementsAsync(Type elementType);
+}
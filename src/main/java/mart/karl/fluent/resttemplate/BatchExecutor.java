@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import mart.karl.fluent.concurrent.TaskExecutors;
+import org.springframework.util.Assert;
+
+/**
+ * Runs one request per item of a collection with a bounded amount of requests in flight, e.g. to
+ * fetch hundreds of entities by id from the same {@linkplain
+ * mart.karl.fluent.service.FluentService FluentService} endpoint. <br>
+ * <br>
+ *
+ * <p>Items are typically uri variables or request bodies, and the request for each item is built
+ * with a regular FluentRestTemplate chain. Results are returned in the same order as the items,
+ * each one wrapped in a {@linkplain BatchResult}, so a failed item never aborts the rest of the
+ * batch:
+ *
+ * <pre class="code">
+ * List&lt;BatchResult&lt;Entity&gt;&gt; entities =
+ *   fluentRestTemplate
+ *   .batch(entityIds)
+ *   .maxConcurrency(16)
+ *   .execute(id -&gt;
+ *     fluentRestTemplate
+ *     .get()
+ *     .from(myCoolService)
+ *     .withEndpoint("getEntity")
+ *     .uriVariable("entityId", id)
+ *     .executor()
+ *     .executeForObject(Entity.class));
+ * </pre>
+ *
+ * <p>Blocking requests run in FluentRestTemplate's asynchronous executor. Requests that already
+ * return a {@linkplain CompletionStage}, like the {@code Async} executor methods, are launched with
+ * {@linkplain BatchExecutor#compose(Function)} and hold no extra thread.
+ *
+ * @param <I> Item type.
+ */
+public final class BatchExecutor<I> {
+
+  /** Amount of requests in flight when {@linkplain #maxConcurrency(int)} is not given. */
+  public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+  private final List<I> items;
+  private final java.util.concurrent.Executor asyncExecutor;
+  private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+  BatchExecutor(
+      final Collection<? extends I> items, final java.util.concurrent.Executor asyncExecutor) {
+    Assert.notNull(items, "items must not be null");
+    this.items = new ArrayList<>(items);
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  /**
+   * Sets the maximum amount of requests in flight at any time.
+   *
+   * @param maxConcurrency A positive amount of requests.
+   * @return The BatchExecutor instance invoking this method.
+   */
+  public BatchExecutor<I> maxConcurrency(final int maxConcurrency) {
+    Assert.isTrue(maxConcurrency > 0, "maxConcurrency must be greater than zero");
+    this.maxConcurrency = maxConcurrency;
+    return this;
+  }
+
+  /**
+   * Runs a blocking request per item and waits for all of them to finish.
+   *
+   * @param request Performs the request of a single item.
+   * @param <O> Response type.
+   * @return One result per item, in the same order as the items.
+   */
+  public <O> List<BatchResult<O>> execute(final Function<? super I, ? extends O> request) {
+    return executeAsync(request).join();
+  }
+
+  /**
+   * Runs a blocking request per item in the asynchronous executor without waiting for them.
+   *
+   * @param request Performs the request of a single item.
+   * @param <O> Response type.
+   * @return A CompletableFuture completed with one result per item, in the same order as the
+   *     items, once every request has finished.
+   */
+  public <O> CompletableFuture<List<BatchResult<O>>> executeAsync(
+      final Function<? super I, ? extends O> request) {
+    Assert.notNull(request, "request must not be null");
+    return compose(item -> TaskExecutors.supplyAsync(() -> request.apply(item), asyncExecutor));
+  }
+
+  /**
+   * Launches a non-blocking request per item, starting a new one every time an in flight request
+   * finishes.
+   *
+   * @param request Launches the request of a single item.
+   * @param <O> Response type.
+   * @return A CompletableFuture completed with one result per item, in the same order as the
+   *     items, once every request has finished.
+   */
+  public <O> CompletableFuture<List<BatchResult<O>>> compose(
+      final Function<? super I, ? extends CompletionStage<? extends O>> request) {
+    Assert.notNull(request, "request must not be null");
+    final Batch<O> batch = new Batch<>(request);
+    if (items.isEmpty()) {
+      batch.future.complete(new ArrayList<>());
+    }
+    for (int lane = 0; lane < Math.min(maxConcurrency, items.size()); lane++) {
+      batch.launch();
+    }
+    return batch.future;
+  }
+
+  private final class Batch<O> {
+    private final CompletableFuture<List<BatchResult<O>>> future = new CompletableFuture<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger(items.size());
+    private final Function<? super I, ? extends CompletionStage<? extends O>> request;
+    private final BatchResult<?>[] results = new BatchResult<?>[items.size()];
+
+    private Batch(final Function<? super I, ? extends CompletionStage<? extends O>> request) {
+      this.request = request;
+    }
+
+    /**
+     * Launches the next pending item. Requests completing right away are handled in this loop
+     * rather than recursively, so long batches of fast requests don't grow the stack.
+     */
+    private void launch() {
+      int index;
+      while ((index = nextIndex.getAndIncrement()) < results.length) {
+        final int current = index;
+        final CompletableFuture<? extends O> response = request(items.get(current));
+        if (response.isDone()) {
+          response.whenComplete((value, failure) -> complete(current, value, failure));
+        } else {
+          response.whenComplete(
+              (value, failure) -> {
+                complete(current, value, failure);
+                launch();
+              });
+          return;
+        }
+      }
+    }
+
+    private CompletableFuture<? extends O> request(final I item) {
+      try {
+        return request.apply(item).toCompletableFuture();
+      } catch (final RuntimeException e) {
+        final CompletableFuture<O> failed = new CompletableFuture<>();
+        failed.completeExceptionally(e);
+        return failed;
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(final int index, final O value, final Throwable failure) {
+      results[index] =
+          failure == null
+              ? BatchResult.success(value)
+              : BatchResult.failure(
+                  failure instanceof CompletionException && failure.getCause() != null
+                      ? failure.getCause()
+                      : failure);
+      if (pending.decrementAndGet() == 0) {
+        // The decrement publishes every result written before it.
+        final List<BatchResult<O>> list = new ArrayList<>(results.length);
+        Arrays.stream(results).forEach(r -> list.add((BatchResult<O>) r));
+        future.complete(list);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Outcome of a single item of a {@linkplain BatchExecutor batch}: either the value returned by its
+ * request or the failure that request ended with.
+ *
+ * @param <O> Response type.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class BatchResult<O> {
+
+  /** Value returned by the item's request, {@code null} if it failed. */
+  private final O value;
+
+  /** Failure of the item's request, {@code null} if it succeeded. */
+  private final Throwable failure;
+
+  static <O> BatchResult<O> success(final O value) {
+    return new BatchResult<>(value, null);
+  }
+
+  static <O> BatchResult<O> failure(final Throwable failure) {
+    return new BatchResult<>(null, failure);
+  }
+
+  /**
+   * Tells whether the item's request succeeded.
+   *
+   * @return {@code true} if the request returned a value, even a {@code null} one.
+   */
+  public boolean isSuccess() {
+    return failure == null;
+  }
+}
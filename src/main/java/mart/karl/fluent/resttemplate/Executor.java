@@ -19,6 +19,12 @@ package mart.karl.fluent.resttemplate;
 
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import mart.karl.fluent.resilience.DeadlineExceededException;
+import mart.karl.fluent.resilience.HedgePolicy;
+import mart.karl.fluent.resilience.RetryPolicy;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
@@ -36,6 +42,11 @@ import org.springframework.web.client.RestTemplate;
  * REST request represents the conclusion of all the fluent phases.<br>
  * <br>
  *
+ * <p>Every executor method has an {@code Async} counterpart that performs the same REST request
+ * in the asynchronous executor configured in {@linkplain FluentRestTemplate} and returns a
+ * {@linkplain CompletableFuture} instead of blocking the calling thread.<br>
+ * <br>
+ *
  * <p>Executor represents the <i>FluentService executor phase</i>.
  */
 public interface Executor {
@@ -79,6 +90,36 @@ public interface Executor {
    */
   Executor acceptCharset(Charset... charsets);
 
+  /**
+   * Retries the request according to the given {@linkplain RetryPolicy}, instead of the one
+   * configured in FluentRestTemplate for its endpoint, if any. Use {@linkplain RetryPolicy#NONE}
+   * to disable the retries of this request.
+   *
+   * @param retryPolicy Retry policy of the request.
+   * @return The Executor instance invoking this method.
+   */
+  Executor retryPolicy(RetryPolicy retryPolicy);
+
+  /**
+   * Hedges the request according to the given {@linkplain HedgePolicy}, instead of the one
+   * configured in FluentRestTemplate for its endpoint, if any.
+   *
+   * @param hedgePolicy Hedge policy of the request.
+   * @return The Executor instance invoking this method.
+   */
+  Executor hedgePolicy(HedgePolicy hedgePolicy);
+
+  /**
+   * Bounds the total time of the request, retries and hedges included, starting when it is
+   * executed. Once exceeded, the request fails with a {@linkplain DeadlineExceededException} and
+   * its attempt in flight is cancelled. Applies to the {@code execute} and {@code executeForObject}
+   * methods and their {@code Async} counterparts.
+   *
+   * @param timeout Time the request may take.
+   * @return The Executor instance invoking this method.
+   */
+  Executor deadline(Duration timeout);
+
   /**
    * Executes the defined {@linkplain RequestEntity RequestEntity}, pointing to the defined
    * {@linkplain URI URI} and expects a {@linkplain ResponseEntity ResponseEntity} with empy body.
@@ -165,4 +206,149 @@ public interface Executor {
    * @return A plain parametrized object of the defined type reference..
    */
   <O> O executeForObject(final ParameterizedTypeReference<O> typeReference);
+
+  /**
+   * Asynchronous version of {@linkplain Executor#execute()}.
+   *
+   * @return A CompletableFuture completed with a ResponseEntity with no body.
+   */
+  CompletableFuture<ResponseEntity<Void>> executeAsync();
+
+  /**
+   * Asynchronous version of {@linkplain Executor#execute(Class)}.
+   *
+   * @param <O> Response type.
+   * @param responseClass The class type that will be used to parse the REST response.
+   * @return A CompletableFuture completed with a ResponseEntity with a body of the defined type.
+   */
+  <O> CompletableFuture<ResponseEntity<O>> executeAsync(final Class<O> responseClass);
+
+  /**
+   * Asynchronous version of {@linkplain Executor#execute(ParameterizedTypeReference)}.
+   *
+   * @param typeReference A parametrized type reference to parse the remote service response.
+   * @param <O> Response type.
+   * @return A CompletableFuture completed with a ResponseEntity with a body of the defined type
+   *     reference.
+   */
+  <O> CompletableFuture<ResponseEntity<O>> executeAsync(
+      final ParameterizedTypeReference<O> typeReference);
+
+  /**
+   * Asynchronous version of {@linkplain Executor#executeForObject()}.
+   *
+   * @return A CompletableFuture completed once the REST request finishes.
+   */
+  CompletableFuture<Void> executeForObjectAsync();
+
+  /**
+   * Asynchronous version of {@linkplain Executor#executeForObject(Class)}.
+   *
+   * @param <O> Response type.
+   * @param responseClass The class type that will be used to parse the REST response.
+   * @return A CompletableFuture completed with a plain object of the defined type.
+   */
+  <O> CompletableFuture<O> executeForObjectAsync(final Class<O> responseClass);
+
+  /**
+   * Asynchronous version of {@linkplain Executor#executeForObject(ParameterizedTypeReference)}.
+   *
+   * @param typeReference A parametrized type reference to parse the remote service response.
+   * @param <O> Response type.
+   * @return A CompletableFuture completed with a plain parametrized object of the defined type
+   *     reference.
+   */
+  <O> CompletableFuture<O> executeForObjectAsync(
+      final ParameterizedTypeReference<O> typeReference);
+
+  /**
+   * Executes the defined {@linkplain RequestEntity RequestEntity}, pointing to the defined
+   * {@linkplain URI URI} and hands the raw response body to the given callback, without buffering
+   * nor converting it, so responses of any size are processed in constant memory. The connection
+   * is released as soon as the callback returns.<br>
+   * <br>
+   *
+   * <pre class="code">
+   *   long bytes =
+   *     fluentRestTemplate...executor()
+   *     .executeForStream((body, headers) -&gt; Files.copy(body, exportPath));
+   * </pre>
+   *
+   * <p>Streamed responses go through the rate limiter, circuit breaker, concurrency limiter,
+   * metrics and deadline of the request like any other, but are neither cached, coalesced, hedged
+   * nor retried, since the callback consumes the response.
+   *
+   * @param callback Consumes the response body while the connection is open.
+   * @param <R> Type of the result computed by the callback.
+   * @return The result computed by the callback.
+   */
+  <R> R executeForStream(final ResponseStreamCallback<R> callback);
+
+  /**
+   * Asynchronous version of {@linkplain Executor#executeForStream(ResponseStreamCallback)}. The
+   * callback runs in the thread completing the returned future.
+   *
+   * @param callback Consumes the response body while the connection is open.
+   * @param <R> Type of the result computed by the callback.
+   * @return A CompletableFuture completed with the result computed by the callback.
+   */
+  <R> CompletableFuture<R> executeForStreamAsync(final ResponseStreamCallback<R> callback);
+
+  /**
+   * Executes the defined {@linkplain RequestEntity RequestEntity}, pointing to the defined
+   * {@linkplain URI URI} and lazily decodes the elements of a JSON array or a newline delimited
+   * JSON (NDJSON) response body into a {@linkplain Stream}. Elements are read from the response
+   * one at a time while the stream is consumed, so the first one is available as soon as it
+   * arrives and memory usage doesn't depend on the amount of elements.<br>
+   * <br>
+   *
+   * <p>The response stays open until the stream is closed, so always close it:
+   *
+   * <pre class="code">
+   *   try (Stream&lt;Person&gt; persons =
+   *       fluentRestTemplate...executor().executeForElements(Person.class)) {
+   *     persons.forEach(this::process);
+   *   }
+   * </pre>
+   *
+   * <p>Requires Jackson on the classpath. Elements are decoded with the ObjectMapper of the
+   * template's {@code MappingJackson2HttpMessageConverter}, if any. Like {@linkplain
+   * Executor#executeForStream(ResponseStreamCallback) streamed responses}, the request goes
+   * through the guards of its endpoint until the response arrives, but is never cached, coalesced,
+   * hedged nor retried.
+   *
+   * @param elementClass The class type that will be used to parse each element.
+   * @param <O> Element type.
+   * @return A lazy Stream of elements that must be closed.
+   */
+  <O> Stream<O> executeForElements(final Class<O> elementClass);
+
+  /**
+   * Same as {@linkplain Executor#executeForElements(Class)} for parametrized elements.
+   *
+   * @param typeReference A parametrized type reference to parse each element.
+   * @param <O> Element type.
+   * @return A lazy Stream of elements that must be closed.
+   */
+  <O> Stream<O> executeForElements(final ParameterizedTypeReference<O> typeReference);
+
+  /**
+   * Asynchronous version of {@linkplain Executor#executeForElements(Class)}. The future completes
+   * as soon as the response headers arrive; elements are still read lazily.
+   *
+   * @param elementClass The class type that will be used to parse each element.
+   * @param <O> Element type.
+   * @return A CompletableFuture completed with a lazy Stream of elements that must be closed.
+   */
+  <O> CompletableFuture<Stream<O>> executeForElementsAsync(final Class<O> elementClass);
+
+  /**
+   * Asynchronous version of {@linkplain Executor#executeForElements(ParameterizedTypeReference)}.
+   *
+   * @param typeReference A parametrized type reference to parse each element.
+   * @param <O> Element type.
+   * @return A CompletableFuture completed with a lazy Stream of elements that must be closed.
+   */
+  <O> CompletableFuture<Stream<O>> executeForElementsAsync(
+      final ParameterizedTypeReference<O> typeReference);
 }
@@ -0,0 +1,603 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NonNull;
+import mart.karl.fluent.cache.ResponseCache;
+import mart.karl.fluent.concurrent.RequestCoalescer;
+import mart.karl.fluent.metrics.MetricsListener;
+import mart.karl.fluent.resilience.CircuitBreakers;
+import mart.karl.fluent.resilience.ConcurrencyLimiters;
+import mart.karl.fluent.resilience.Deadline;
+import mart.karl.fluent.resilience.HedgePolicy;
+import mart.karl.fluent.resilience.RateLimiter;
+import mart.karl.fluent.resilience.RetryPolicy;
+import mart.karl.fluent.service.FluentService;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.AsyncClientHttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.HttpStatusCodeException;
+
+/**
+ * Non-blocking counterpart of {@linkplain FluentRestTemplate}, backed by Spring's {@linkplain
+ * AsyncRestTemplate}. <br>
+ * <br>
+ *
+ * <p>FluentAsyncRestTemplate goes through exactly the same starter, builder and URI builder phases
+ * as FluentRestTemplate, using {@linkplain FluentService} for URI construction. In the executor
+ * phase, the {@code Async} executor methods hand the request to AsyncRestTemplate and return a
+ * {@linkplain CompletableFuture} completed by the {@linkplain AsyncClientHttpRequestFactory}
+ * itself, so no thread is held while waiting for the response. The blocking executor methods are
+ * still available and simply wait for that future.<br>
+ * <br>
+ *
+ * <p>The amount of threads involved depends entirely on the AsyncClientHttpRequestFactory backing
+ * AsyncRestTemplate. Its default, {@linkplain SimpleClientHttpRequestFactory}, spawns a thread per
+ * request. To serve thousands of concurrent requests with a handful of event-loop threads, provide
+ * a non-blocking I/O factory instead:
+ *
+ * <pre class="code">
+ * {@code @Bean}
+ * public FluentAsyncRestTemplate initFluentAsyncRestTemplate() {
+ *   return new FluentAsyncRestTemplate(
+ *       new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory()));
+ *       // or new AsyncRestTemplate(new Netty4ClientHttpRequestFactory())
+ * }
+ * </pre>
+ *
+ * <p>Usage is the same as FluentRestTemplate's:
+ *
+ * <pre class="code">
+ * CompletableFuture&lt;CoolStuff&gt; coolStuff =
+ *   fluentAsyncRestTemplate
+ *   .get()
+ *   .from(myCoolService)
+ *   .withEndpoint("getCoolStuff")
+ *   .uriVariable("stuffId", "123")
+ *   .executor()
+ *   .executeForObjectAsync(CoolStuff.class);
+ * </pre>
+ *
+ * <p>Requests given a {@linkplain mart.karl.fluent.resilience.RetryPolicy RetryPolicy} through
+ * {@linkplain Executor#retryPolicy} are retried without blocking any thread during backoffs.
+ * Requests given a {@linkplain HedgePolicy} through {@linkplain Executor#hedgePolicy} cancel
+ * their losing attempts through AsyncRestTemplate's futures. Endpoint timeouts and {@linkplain
+ * Executor#deadline deadlines} cancel the pending requests the same way, with no extra thread.
+ * Requests waiting for a permit of their endpoint's {@linkplain RateLimiter} hold no thread either.
+ *
+ * <p>The {@linkplain FluentAsyncRestTemplate#builder() builder} takes the same {@linkplain
+ * CircuitBreakers circuit breakers}, {@linkplain ConcurrencyLimiters concurrency limiters},
+ * {@linkplain MetricsListener}, {@linkplain RequestCoalescer}, {@linkplain ResponseCache} and
+ * deadline header as FluentRestTemplate's, applied without holding any thread either:
+ *
+ * <pre class="code">
+ * FluentAsyncRestTemplate.builder()
+ *   .asyncRestTemplate(asyncRestTemplate)
+ *   .circuitBreakers(new CircuitBreakers())
+ *   .responseCache(new ResponseCache(10_000))
+ *   .build();
+ * </pre>
+ *
+ * <p><b>NOTE:</b> keep in mind that in order to use an AsyncClientHttpRequestFactory other than
+ * SimpleClientHttpRequestFactory you might need to explicitly declare the dependency in your
+ * preferred dependency management system, if any.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class FluentAsyncRestTemplate {
+
+  @NonNull private final AsyncRestTemplate asyncRestTemplate;
+
+  /** Caches GET responses, if present. */
+  private final ResponseCache responseCache;
+
+  /** Coalesces identical in-flight GET requests, if present. */
+  private final RequestCoalescer requestCoalescer;
+
+  /** Records every request sent, if present. */
+  private final MetricsListener metricsListener;
+
+  /** Guards every endpoint with a circuit breaker, if present. */
+  private final CircuitBreakers circuitBreakers;
+
+  /** Header the time left to every attempt is sent in, in milliseconds, if present. */
+  private final String deadlineHeader;
+
+  /** Limits the requests in flight to every endpoint adaptively, if present. */
+  private final ConcurrencyLimiters concurrencyLimiters;
+
+  /**
+   * Creates a FluentAsyncRestTemplate backed by the given {@linkplain AsyncRestTemplate} and
+   * default settings. Use {@linkplain FluentAsyncRestTemplate#builder()} to customize them.
+   *
+   * @param asyncRestTemplate AsyncRestTemplate used for REST invokation.
+   */
+  public FluentAsyncRestTemplate(final AsyncRestTemplate asyncRestTemplate) {
+    this(builder().asyncRestTemplate(asyncRestTemplate).build());
+  }
+
+  /** Copies the settings of the given template, so that every default is the builder's. */
+  private FluentAsyncRestTemplate(final FluentAsyncRestTemplate template) {
+    this.asyncRestTemplate = template.asyncRestTemplate;
+    this.responseCache = template.responseCache;
+    this.requestCoalescer = template.requestCoalescer;
+    this.metricsListener = template.metricsListener;
+    this.circuitBreakers = template.circuitBreakers;
+    this.deadlineHeader = template.deadlineHeader;
+    this.concurrencyLimiters = template.concurrencyLimiters;
+  }
+
+  /**
+   * Starts a FluentAsyncRestTemplate flow indicating that the REST verb to use in the invokation is
+   * {@linkplain HttpMethod#GET}.
+   *
+   * @return A UriStarter used transition to the builder phase.
+   */
+  public UriStarter get() {
+    return new FluentRestTemplateManager<>(HttpMethod.GET, null, AsyncExecutor::new);
+  }
+
+  /**
+   * Starts a FluentAsyncRestTemplate flow indicating that the REST verb to use in the invokation is
+   * {@linkplain HttpMethod#DELETE}.
+   *
+   * @return A UriStarter used transition to the builder phase.
+   */
+  public UriStarter delete() {
+    return new FluentRestTemplateManager<>(HttpMethod.DELETE, null, AsyncExecutor::new);
+  }
+
+  /**
+   * Starts a FluentAsyncRestTemplate flow indicating that the REST verb to use in the invokation is
+   * {@linkplain HttpMethod#POST}.<br>
+   * This method also indicates that the REST call will lack of a request body.
+   *
+   * @return A UriStarter used transition to the builder phase.
+   */
+  public UriBodyStarter post() {
+    return post(null);
+  }
+
+  /**
+   * Starts a FluentAsyncRestTemplate flow indicating that the REST verb to use in the invokation is
+   * {@linkplain HttpMethod#POST}. <br>
+   * This method also indicates that the REST call will be provided with a request body.
+   *
+   * @param body The request body to provide to the REST call.
+   * @param <T> Request body's class type.
+   * @return A UriStarter used transition to the builder phase.
+   */
+  public <T> UriBodyStarter post(final T body) {
+    return new FluentRestTemplateManager<>(HttpMethod.POST, body, AsyncExecutor::new);
+  }
+
+  /**
+   * Starts a FluentAsyncRestTemplate flow indicating that the REST verb to use in the invokation is
+   * {@linkplain HttpMethod#PUT}.<br>
+   * This method also indicates that the REST call will lack of a request body.
+   *
+   * @return A UriStarter used transition to the builder phase.
+   */
+  public UriBodyStarter put() {
+    return put(null);
+  }
+
+  /**
+   * Starts a FluentAsyncRestTemplate flow indicating that the REST verb to use in the invokation is
+   * {@linkplain HttpMethod#PUT}. <br>
+   * This method also indicates that the REST call will be provided with a request body.
+   *
+   * @param body The request body to provide to the REST call.
+   * @param <T> Request body's class type.
+   * @return A UriStarter used transition to the builder phase.
+   */
+  public <T> UriBodyStarter put(final T body) {
+    return new FluentRestTemplateManager<>(HttpMethod.PUT, body, AsyncExecutor::new);
+  }
+
+  /**
+   * Starts a FluentAsyncRestTemplate flow indicating that the REST verb to use in the invokation is
+   * {@linkplain HttpMethod#PATCH}.<br>
+   * This method also indicates that the REST call will lack of a request body. <br>
+   * <br>
+   *
+   * <p><b>NOTE:</b> same as {@linkplain FluentRestTemplate#patch()}, PATCH verb cannot be used when
+   * AsyncRestTemplate was built by using a {@linkplain SimpleClientHttpRequestFactory}.
+   *
+   * @return A UriStarter used transition to the builder phase.
+   */
+  public UriBodyStarter patch() {
+    return patch(null);
+  }
+
+  /**
+   * Starts a FluentAsyncRestTemplate flow indicating that the REST verb to use in the invokation is
+   * {@linkplain HttpMethod#PATCH}.<br>
+   * This method also indicates that the REST call will be provided with a request body.<br>
+   * <br>
+   *
+   * <p><b>NOTE:</b> same as {@linkplain FluentRestTemplate#patch(Object)}, PATCH verb cannot be
+   * used when AsyncRestTemplate was built by using a {@linkplain SimpleClientHttpRequestFactory}.
+   *
+   * @param body The request body to provide to the REST call.
+   * @param <T> Request body's class type.
+   * @return A UriStarter used transition to the builder phase.
+   */
+  public <T> UriBodyStarter patch(final T body) {
+    if (asyncRestTemplate.getAsyncRequestFactory() instanceof SimpleClientHttpRequestFactory) {
+      // https://github.com/spring-projects/spring-framework/issues/19618
+      throw new UnsupportedOperationException(
+          "PATCH method not supported in AsyncRestTemplate created using "
+              + "SimpleClientHttpRequestFactory");
+    }
+    return new FluentRestTemplateManager<>(HttpMethod.PATCH, body, AsyncExecutor::new);
+  }
+
+  private static <O> CompletableFuture<O> toCompletableFuture(final ListenableFuture<O> future) {
+    final CompletableFuture<O> completableFuture = new CompletableFuture<>();
+    future.addCallback(completableFuture::complete, completableFuture::completeExceptionally);
+    completableFuture.whenComplete(
+        (r, t) -> {
+          if (completableFuture.isCancelled()) {
+            future.cancel(true);
+          }
+        });
+    return completableFuture;
+  }
+
+  /** The body of the given response, cancelling the response if cancelled itself. */
+  private static <O> CompletableFuture<O> body(
+      final CompletableFuture<ResponseEntity<O>> response) {
+    final CompletableFuture<O> body = response.thenApply(ResponseEntity::getBody);
+    body.whenComplete(
+        (b, t) -> {
+          if (body.isCancelled()) {
+            response.cancel(true);
+          }
+        });
+    return body;
+  }
+
+  private static <O> O await(final CompletableFuture<O> future) {
+    try {
+      return future.join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private final class AsyncExecutor extends AbstractExecutor {
+
+    private AsyncExecutor(
+        final RequestEntity.BodyBuilder requestEntityBuilder,
+        final Object body,
+        final RequestOptions options) {
+      super(requestEntityBuilder, body, options);
+    }
+
+    @Override
+    public <O> ResponseEntity<O> execute(final Class<O> responseClass) {
+      return await(executeAsync(responseClass));
+    }
+
+    @Override
+    public <O> ResponseEntity<O> execute(final ParameterizedTypeReference<O> typeReference) {
+      return await(executeAsync(typeReference));
+    }
+
+    @Override
+    public <O> CompletableFuture<ResponseEntity<O>> executeAsync(final Class<O> responseClass) {
+      final RequestEntity<Object> requestEntity = requestEntity();
+      if (requestEntity.getBody() instanceof StreamingBody) {
+        return exchange(requestEntity, responseClass, r -> streamingExchange(r, responseClass));
+      }
+      return exchange(
+          requestEntity,
+          responseClass,
+          r ->
+              toCompletableFuture(
+                  asyncRestTemplate.exchange(r.getUrl(), r.getMethod(), r, responseClass)));
+    }
+
+    @Override
+    public <O> CompletableFuture<ResponseEntity<O>> executeAsync(
+        final ParameterizedTypeReference<O> typeReference) {
+      final RequestEntity<Object> requestEntity = requestEntity();
+      final Type responseType = typeReference.getType();
+      if (requestEntity.getBody() instanceof StreamingBody) {
+        return exchange(requestEntity, responseType, r -> streamingExchange(r, responseType));
+      }
+      return exchange(
+          requestEntity,
+          responseType,
+          r ->
+              toCompletableFuture(
+                  asyncRestTemplate.exchange(r.getUrl(), r.getMethod(), r, typeReference)));
+    }
+
+    @Override
+    public <R> R executeForStream(final ResponseStreamCallback<R> callback) {
+      return await(executeForStreamAsync(callback));
+    }
+
+    @Override
+    public <R> CompletableFuture<R> executeForStreamAsync(
+        final ResponseStreamCallback<R> callback) {
+      final RequestEntity<Object> requestEntity = requestEntity();
+      return body(
+          resilient(
+              requestEntity,
+              startDeadline(),
+              r ->
+                  toCompletableFuture(
+                      asyncRestTemplate.execute(
+                          r.getUrl(),
+                          r.getMethod(),
+                          new RequestEntityCallback(r, asyncRestTemplate.getMessageConverters()),
+                          response ->
+                              new ResponseEntity<R>(
+                                  callback.doWithResponse(
+                                      response.getBody(), response.getHeaders()),
+                                  response.getHeaders(),
+                                  response.getStatusCode()))),
+              false));
+    }
+
+    @Override
+    protected <O> Stream<O> elements(final Type elementType) {
+      return await(elementsAsync(elementType));
+    }
+
+    @Override
+    protected <O> CompletableFuture<Stream<O>> elementsAsync(final Type elementType) {
+      final RequestEntity<Object> requestEntity = requestEntity();
+      return body(
+          resilient(
+              requestEntity, startDeadline(), r -> elementsExchange(r, elementType), false));
+    }
+
+    private <O> CompletableFuture<ResponseEntity<Stream<O>>> elementsExchange(
+        final RequestEntity<?> requestEntity, final Type elementType) {
+      final List<HttpMessageConverter<?>> messageConverters =
+          asyncRestTemplate.getMessageConverters();
+      try {
+        final AsyncClientHttpRequest request =
+            asyncRestTemplate
+                .getAsyncRequestFactory()
+                .createAsyncRequest(requestEntity.getUrl(), requestEntity.getMethod());
+        new RequestEntityCallback(requestEntity, messageConverters).doWithRequest(request);
+        return toCompletableFuture(request.executeAsync())
+            .thenApply(
+                response -> {
+                  final Stream<O> elements =
+                      JsonElements.stream(
+                          response,
+                          asyncRestTemplate.getErrorHandler(),
+                          messageConverters,
+                          requestEntity,
+                          elementType);
+                  try {
+                    return new ResponseEntity<>(
+                        elements, response.getHeaders(), response.getStatusCode());
+                  } catch (final IOException e) {
+                    elements.close();
+                    throw JsonElements.ioError(requestEntity, e);
+                  }
+                });
+      } catch (final IOException e) {
+        throw JsonElements.ioError(requestEntity, e);
+      }
+    }
+
+    /**
+     * Answers the request from the ResponseCache, if present and fresh, or else waits for an
+     * identical request in flight, if any, at most until the endpoint timeout or the request
+     * deadline, or else sends it through the guards of its endpoint.
+     */
+    private <O> CompletableFuture<ResponseEntity<O>> exchange(
+        final RequestEntity<?> requestEntity,
+        final Type responseType,
+        final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> send) {
+      final Deadline deadline = startDeadline();
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> guarded =
+          r -> resilient(r, deadline, send, true);
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> coalesced =
+          requestCoalescer == null
+              ? guarded
+              : r ->
+                  bound(
+                      attemptDeadline(r, deadline),
+                      requestCoalescer.exchangeAsync(r, responseType, guarded));
+      return responseCache == null
+          ? coalesced.apply(requestEntity)
+          : responseCache.exchangeAsync(requestEntity, responseType, coalesced);
+    }
+
+    /**
+     * Routes every attempt of the given exchange to an instance of its service not tried yet, if
+     * any, bounds it by the endpoint timeout, records it in the MetricsListener and lets it through
+     * the endpoint CircuitBreaker, ConcurrencyLimiter and RateLimiter, then hedges and retries it
+     * according to the policies given for the request, if any, unless its body can be sent once
+     * only or its response is consumed by a callback or a stream, bounding the whole by the
+     * request deadline.
+     */
+    private <O> CompletableFuture<ResponseEntity<O>> resilient(
+        final RequestEntity<?> requestEntity,
+        final Deadline deadline,
+        final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> exchange,
+        final boolean repeatable) {
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> attempt =
+          bounded(metered(exchange), deadline);
+      final RequestOptions options = options();
+      final InstanceRouting routing = InstanceRouting.of(options);
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> tracked =
+          routing == null
+              ? attempt
+              : r ->
+                  ((InstanceRouting.Routed<?>) r)
+                      .getInstance()
+                      .executeAsync(() -> attempt.apply(r));
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> guarded =
+          circuitBreakers == null
+              ? tracked
+              : r -> circuitBreakers.get(endpointTag(r)).executeAsync(() -> tracked.apply(r));
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> concurrencyLimited =
+          concurrencyLimiters == null
+              ? guarded
+              : r -> concurrencyLimiters.get(endpointTag(r)).executeAsync(() -> guarded.apply(r));
+      final RateLimiter rateLimiter = options.getRateLimiter();
+      final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> rateLimited =
+          rateLimiter == null
+              ? concurrencyLimited
+              : r -> rateLimiter.acquireAsync().thenCompose(permit -> concurrencyLimited.apply(r));
+      final Supplier<CompletableFuture<ResponseEntity<O>>> limited =
+          routing == null
+              ? () -> rateLimited.apply(requestEntity)
+              : () -> rateLimited.apply(routing.route(requestEntity));
+      final Object body = requestEntity.getBody();
+      if (!repeatable || body instanceof StreamingBody && !((StreamingBody) body).isRepeatable()) {
+        return limited.get();
+      }
+      final HedgePolicy hedgePolicy = options.getHedgePolicy();
+      final Supplier<CompletableFuture<ResponseEntity<O>>> hedged =
+          hedgePolicy == null
+              ? limited
+              : () ->
+                  hedgePolicy.executeAsync(
+                      requestEntity.getMethod(), options.getEndpointTag(), limited);
+      final RetryPolicy retryPolicy = options.getRetryPolicy();
+      return retryPolicy == null
+          ? hedged.get()
+          : bound(deadline, retryPolicy.executeAsync(requestEntity.getMethod(), hedged));
+    }
+
+    private <O> CompletableFuture<O> bound(
+        final Deadline deadline, final CompletableFuture<O> future) {
+      return deadline == null ? future : deadline.bound(future);
+    }
+
+    /**
+     * Bounds every attempt of the given exchange by the endpoint timeout and the request deadline,
+     * if any, cancelling it once expired. The time left is sent in the deadline header, if
+     * configured.
+     */
+    private <O> Function<RequestEntity<?>, CompletableFuture<O>> bounded(
+        final Function<RequestEntity<?>, CompletableFuture<O>> exchange, final Deadline deadline) {
+      return r -> {
+        final Deadline attemptDeadline = attemptDeadline(r, deadline);
+        if (attemptDeadline == null) {
+          return exchange.apply(r);
+        }
+        final RequestEntity<?> request =
+            deadlineHeader == null
+                ? r
+                : withHeader(
+                    r, deadlineHeader, String.valueOf(attemptDeadline.remaining().toMillis()));
+        return attemptDeadline.bound(exchange.apply(request));
+      };
+    }
+
+    /** Records the requests sent by the given exchange in the metrics listener, if present. */
+    private <O> Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> metered(
+        final Function<RequestEntity<?>, CompletableFuture<ResponseEntity<O>>> exchange) {
+      if (metricsListener == null) {
+        return exchange;
+      }
+      return r -> {
+        final long start = System.nanoTime();
+        final CompletableFuture<ResponseEntity<O>> response;
+        try {
+          response = exchange.apply(r);
+        } catch (final RuntimeException e) {
+          record(r, null, e, System.nanoTime() - start);
+          throw e;
+        }
+        response.whenComplete(
+            (o, t) ->
+                record(
+                    r,
+                    o,
+                    t instanceof CompletionException ? t.getCause() : t,
+                    System.nanoTime() - start));
+        return response;
+      };
+    }
+
+    private void record(
+        final RequestEntity<?> requestEntity,
+        final ResponseEntity<?> response,
+        final Throwable failure,
+        final long durationNanos) {
+      if (failure instanceof HttpStatusCodeException) {
+        final HttpStatusCodeException e = (HttpStatusCodeException) failure;
+        metricsListener.record(
+            endpointTag(requestEntity),
+            e.getStatusCode().value(),
+            requestBytes(requestEntity),
+            e.getResponseBodyAsByteArray().length,
+            durationNanos);
+      } else if (failure != null || response == null) {
+        metricsListener.record(
+            endpointTag(requestEntity), 0, requestBytes(requestEntity), -1, durationNanos);
+      } else {
+        metricsListener.record(
+            endpointTag(requestEntity),
+            response.getStatusCode().value(),
+            requestBytes(requestEntity),
+            response.getHeaders().getContentLength(),
+            durationNanos);
+      }
+    }
+
+    /** Sends {@linkplain StreamingBody streaming bodies}, which message converters can't write. */
+    private <O> CompletableFuture<ResponseEntity<O>> streamingExchange(
+        final RequestEntity<?> requestEntity, final Type responseType) {
+      final List<HttpMessageConverter<?>> messageConverters =
+          asyncRestTemplate.getMessageConverters();
+      return toCompletableFuture(
+          asyncRestTemplate.execute(
+              requestEntity.getUrl(),
+              requestEntity.getMethod(),
+              new RequestEntityCallback(requestEntity, responseType, messageConverters),
+              new ResponseEntityExtractor<O>(responseType, messageConverters)));
+    }
+  }
+}
@@ -17,23 +17,45 @@
 
 package mart.karl.fluent.resttemplate;
 
+import java.lang.reflect.Type;
 import java.net.URI;
-import java.nio.charset.Charset;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import lombok.RequiredArgsConstructor;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NonNull;
+import mart.karl.fluent.cache.ResponseCache;
+import mart.karl.fluent.concurrent.RequestCoalescer;
+import mart.karl.fluent.concurrent.TaskExecutors;
+import mart.karl.fluent.concurrent.VirtualThreads;
+import mart.karl.fluent.metrics.EndpointTag;
+import mart.karl.fluent.metrics.MetricsListener;
+import mart.karl.fluent.metrics.PhaseTimingListener;
+import mart.karl.fluent.metrics.TimedResponseEntity;
+import mart.karl.fluent.resilience.CircuitBreakers;
+import mart.karl.fluent.resilience.ConcurrencyLimiters;
+import mart.karl.fluent.resilience.Deadline;
+import mart.karl.fluent.resilience.HedgePolicy;
+import mart.karl.fluent.resilience.RateLimiter;
+import mart.karl.fluent.resilience.RetryPolicy;
 import mart.karl.fluent.service.FluentService;
+import mart.karl.fluent.service.ServiceInstance;
+import mart.karl.fluent.transport.JdkClientHttpRequestFactory;
+import mart.karl.fluent.transport.PooledTransport;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
-import org.springframework.util.Assert;
-import org.springframework.util.MultiValueMap;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -144,12 +166,290 @@ import org.springframework.web.util.UriComponentsBuilder;
  *   .executeForObject(CoolStuff.class); // REST service invokation
  * </pre>
  *
+ * <h2>Asynchronous invokation</h2>
+ *
+ * <p>Every executor method has an {@code Async} counterpart returning a {@linkplain
+ * CompletableFuture}. The blocking RestTemplate call is then handed to the asynchronous executor
+ * configured in FluentRestTemplate, which defaults to {@linkplain ForkJoinPool#commonPool()}:
+ *
+ * <pre class="code">
+ * FluentRestTemplate fluentRestTemplate =
+ *   FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .asyncExecutor(Executors.newFixedThreadPool(32))
+ *   .build();
+ *
+ * CompletableFuture&lt;CoolStuff&gt; coolStuff =
+ *   fluentRestTemplate
+ *   .get()
+ *   .from(myCoolService)
+ *   .withEndpoint("getCoolStuff")
+ *   .executor()
+ *   .executeForObjectAsync(CoolStuff.class);
+ * </pre>
+ *
+ * <p>On Java 21 or later, {@code builder().virtualThreads()} runs each asynchronous exchange on its
+ * own virtual thread instead, letting blocking RestTemplate calls scale to tens of thousands of
+ * concurrent requests without a big platform thread pool. See {@linkplain VirtualThreads}.
+ *
+ * <h2>Response caching</h2>
+ *
+ * <p>GET responses can be cached following their {@code Cache-Control}, {@code Expires} and {@code
+ * Vary} headers by providing a {@linkplain ResponseCache} to the builder:
+ *
+ * <pre class="code">
+ * FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .responseCache(new ResponseCache(10_000))
+ *   .build();
+ * </pre>
+ *
+ * <h2>Request coalescing</h2>
+ *
+ * <p>Identical GET requests issued while one of them is still in flight can share its response,
+ * sending a single request to the server, by providing a {@linkplain RequestCoalescer} to the
+ * builder. When combined with a ResponseCache, only cache misses are coalesced.
+ *
+ * <h2>Metrics</h2>
+ *
+ * <p>Every request actually sent, i.e. not answered by the ResponseCache nor coalesced, can be
+ * recorded by a {@linkplain MetricsListener}, tagged by its {@linkplain EndpointTag endpoint}
+ * rather than by its expanded URI. {@linkplain mart.karl.fluent.metrics.EndpointMetrics} keeps
+ * lock-free counters and latency histograms per endpoint.
+ *
+ * <p>Providing a {@linkplain PhaseTimingListener} breaks the time of every request sent down into
+ * URI building, request creation, serialization, awaiting the response and deserialization. The
+ * {@code execute} methods then return {@linkplain TimedResponseEntity TimedResponseEntities}
+ * carrying those {@linkplain mart.karl.fluent.metrics.PhaseTimings timings}.
+ *
+ * <h2>Retries</h2>
+ *
+ * <p>Failed idempotent requests are retried with exponential backoff and jitter by providing a
+ * {@linkplain RetryPolicy}, either for every endpoint or per endpoint:
+ *
+ * <pre class="code">
+ * FluentRestTemplate.builder()
+ *   .restTemplate(restTemplate)
+ *   .retryPolicies(tag -&gt; "upload".equals(tag.getEndpoint()) ? RetryPolicy.NONE : retryPolicy)
+ *   .build();
+ * </pre>
+ *
+ * <p>A single request can override it with {@linkplain Executor#retryPolicy(RetryPolicy)}. Every
+ * attempt is recorded by the MetricsListener, while a ResponseCache and a RequestCoalescer see the
+ * outcome of the last attempt only.
+ *
+ * <h2>Circuit breaking</h2>
+ *
+ * <p>Providing {@linkplain CircuitBreakers} guards every endpoint with its own {@linkplain
+ * mart.karl.fluent.resilience.CircuitBreaker CircuitBreaker}, which fails requests fast with a
+ * {@linkplain mart.karl.fluent.resilience.CircuitBreakerOpenException} while recent requests to
+ * the endpoint mostly failed or were slow. Every retry attempt goes through the CircuitBreaker, and
+ * rejected attempts are neither retried nor recorded as sent by the MetricsListener.
+ *
+ * <h2>Hedging</h2>
+ *
+ * <p>Slow safe requests can be hedged by providing a {@linkplain HedgePolicy}, for every endpoint
+ * or per endpoint through {@code hedgePolicies}, or for a single request through {@linkplain
+ * Executor#hedgePolicy(HedgePolicy)}. A duplicate request is then sent when no response arrived
+ * after a fixed delay or after the endpoint's usual latency, and the first response wins. The
+ * attempts of a hedged request run in the {@code attemptExecutor}, so that the losers can be
+ * cancelled, and each of them goes through the CircuitBreaker and the MetricsListener. The
+ * requesting thread waits for them, so the attemptExecutor must not be the asynchronous executor
+ * the {@code Async} methods run in; it defaults to a {@linkplain TaskExecutors#attemptExecutor()
+ * shared pool} creating threads on demand. The whole hedged attempt is bounded by the endpoint
+ * timeout and the request deadline.
+ *
+ * <h2>Timeouts and deadlines</h2>
+ *
+ * <p>The {@linkplain FluentService#getTimeout(String) timeout} of a FluentService endpoint bounds
+ * every attempt of the requests sent to it, failing them like a read timeout, which is retried. A
+ * {@linkplain Executor#deadline(java.time.Duration) deadline} bounds a whole request, retries
+ * included, failing it with a {@linkplain mart.karl.fluent.resilience.DeadlineExceededException}.
+ * Retry backoffs and rate limit waits are cut short by the deadline, and no retry is attempted
+ * once it expired. Bounded attempts run in the {@code attemptExecutor}, never in the asynchronous
+ * executor, so that the caller gives up on time even though RestTemplate's blocking I/O can't be
+ * interrupted, without queueing behind the few threads of the common ForkJoinPool; the timeouts of
+ * the ClientHttpRequestFactory remain the limit of the abandoned attempts. Providing a {@code
+ * deadlineHeader} sends the milliseconds left to every attempt, so that downstream services can
+ * give up on time as well.
+ *
+ * <h2>Rate limiting</h2>
+ *
+ * <p>Every attempt of a request to a FluentService goes through the {@linkplain
+ * FluentService#getRateLimiter(String) RateLimiter} of its endpoint, if any, before the
+ * CircuitBreaker, so that retries and hedges count against the quota of the service as well.
+ * Responses served by the ResponseCache or shared by the RequestCoalescer don't. Waiting for a
+ * permit holds the requesting thread, whereas FluentAsyncRestTemplate waits without any thread.
+ *
+ * <h2>Adaptive concurrency limiting</h2>
+ *
+ * <p>Providing {@linkplain ConcurrencyLimiters} limits the requests in flight to every endpoint to
+ * the amount it can take, growing the limit while the endpoint's latency stays flat and shrinking
+ * it when its latency rises or it fails. Attempts beyond the limit are shed right away with a
+ * {@linkplain mart.karl.fluent.resilience.ConcurrencyLimitExceededException}, which is not retried,
+ * after their RateLimiter permit and before their CircuitBreaker.
+ *
+ * <h2>Load balancing</h2>
+ *
+ * <p>Requests to a FluentService declaring {@linkplain FluentService#getServiceInstances()
+ * instances} are sent to the instance chosen by its {@linkplain
+ * mart.karl.fluent.service.LoadBalancer LoadBalancer}, and every attempt in flight counts as
+ * outstanding on that {@linkplain ServiceInstance}. Every retry or hedge is sent to an instance
+ * the request wasn't sent to yet, if any is left, so that a failing or ejected instance doesn't
+ * get every attempt of a request. The outcome and latency of every attempt, timeouts included,
+ * are reported to the {@linkplain mart.karl.fluent.service.OutlierDetector OutlierDetector} of the
+ * service, if any. Since EndpointTags are tagged by host, every instance gets its own metrics,
+ * CircuitBreaker and ConcurrencyLimiter. The {@code routingKey} of the request, if given, routes it
+ * to the same instance as every other request with the same key when the service balances by
+ * {@linkplain mart.karl.fluent.service.LoadBalancer#consistentHash() consistent hashing}.
+ *
+ * <h2>Connection pooling</h2>
+ *
+ * <p>A {@linkplain PooledTransport} reuses persistent connections, limited per route and sized from
+ * the FluentServices requests are sent to, and reports the utilization of its pool:
+ *
+ * <pre class="code">
+ * FluentRestTemplate.builder()
+ *   .pooledTransport(
+ *       new PooledTransport(PooledTransportConfig.builder().service(myCoolService, 50).build()))
+ *   .build();
+ * </pre>
+ *
+ * <h2>HTTP/2</h2>
+ *
+ * <p>On Java 11 or later, {@code builder().http2()} sends the requests through the JDK HttpClient,
+ * multiplexing every concurrent request to the same host over a single HTTP/2 connection, upgraded
+ * from cleartext HTTP/1.1 (h2c) for plain {@code http} URIs. See {@linkplain
+ * JdkClientHttpRequestFactory}.
+ *
  * @author Carlos Martinez - Karl Mart
  */
-@RequiredArgsConstructor
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
 public final class FluentRestTemplate {
 
-  private final RestTemplate restTemplate;
+  @NonNull private final RestTemplate restTemplate;
+
+  /** Runs the blocking RestTemplate calls of the {@code Async} executor methods. */
+  @NonNull @Builder.Default
+  private final java.util.concurrent.Executor asyncExecutor = ForkJoinPool.commonPool();
+
+  /** Caches GET responses, if present. */
+  private final ResponseCache responseCache;
+
+  /** Coalesces identical in-flight GET requests, if present. */
+  private final RequestCoalescer requestCoalescer;
+
+  /** Records every request sent, if present. */
+  private final MetricsListener metricsListener;
+
+  /** Receives the phase breakdown of every request sent, if present. */
+  private final PhaseTimingListener phaseTimingListener;
+
+  /** Resolves the retry policy of each endpoint, if present. */
+  private final Function<EndpointTag, RetryPolicy> retryPolicies;
+
+  /** Guards every endpoint with a circuit breaker, if present. */
+  private final CircuitBreakers circuitBreakers;
+
+  /** Resolves the hedge policy of each endpoint, if present. */
+  private final Function<EndpointTag, HedgePolicy> hedgePolicies;
+
+  /**
+   * Runs the attempts bounded by a timeout or a deadline and those of hedged requests, which must
+   * not be the {@code asyncExecutor}, whose threads wait for them.
+   */
+  @NonNull @Builder.Default
+  private final java.util.concurrent.Executor attemptExecutor = TaskExecutors.attemptExecutor();
+
+  /** Header the time left to every attempt is sent in, in milliseconds, if present. */
+  private final String deadlineHeader;
+
+  /** Limits the requests in flight to every endpoint adaptively, if present. */
+  private final ConcurrencyLimiters concurrencyLimiters;
+
+  /**
+   * Creates a FluentRestTemplate backed by the given {@linkplain RestTemplate} and default
+   * settings. Use {@linkplain FluentRestTemplate#builder()} to customize them.
+   *
+   * @param restTemplate RestTemplate used for REST invokation.
+   */
+  public FluentRestTemplate(final RestTemplate restTemplate) {
+    this(builder().restTemplate(restTemplate).build());
+  }
+
+  /** Copies the settings of the given template, so that every default is the builder's. */
+  private FluentRestTemplate(final FluentRestTemplate template) {
+    this.restTemplate = template.restTemplate;
+    this.asyncExecutor = template.asyncExecutor;
+    this.responseCache = template.responseCache;
+    this.requestCoalescer = template.requestCoalescer;
+    this.metricsListener = template.metricsListener;
+    this.phaseTimingListener = template.phaseTimingListener;
+    this.retryPolicies = template.retryPolicies;
+    this.circuitBreakers = template.circuitBreakers;
+    this.hedgePolicies = template.hedgePolicies;
+    this.attemptExecutor = template.attemptExecutor;
+    this.deadlineHeader = template.deadlineHeader;
+    this.concurrencyLimiters = template.concurrencyLimiters;
+  }
+
+  /** Builder for {@linkplain FluentRestTemplate}. */
+  public static class FluentRestTemplateBuilder {
+
+    /**
+     * Runs the blocking RestTemplate calls of the {@code Async} executor methods on a new virtual
+     * thread each, instead of on the default asynchronous executor.
+     *
+     * @return This builder.
+     * @throws UnsupportedOperationException If the running JVM doesn't provide virtual threads.
+     */
+    public FluentRestTemplateBuilder virtualThreads() {
+      return asyncExecutor(VirtualThreads.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Sends the requests through a new RestTemplate on top of the given pooled transport, instead
+     * of the given RestTemplate.
+     *
+     * @param transport PooledTransport reusing persistent connections.
+     * @return This builder.
+     */
+    public FluentRestTemplateBuilder pooledTransport(@NonNull final PooledTransport transport) {
+      return restTemplate(new RestTemplate(transport.getRequestFactory()));
+    }
+
+    /**
+     * Sends the requests through a new RestTemplate on top of the JDK HttpClient, multiplexing them
+     * over HTTP/2 connections, instead of the given RestTemplate.
+     *
+     * @return This builder.
+     * @throws UnsupportedOperationException If the running JVM doesn't provide the HttpClient.
+     */
+    public FluentRestTemplateBuilder http2() {
+      return restTemplate(new RestTemplate(new JdkClientHttpRequestFactory()));
+    }
+
+    /**
+     * Retries the requests to every endpoint according to the given policy.
+     *
+     * @param retryPolicy RetryPolicy of every endpoint.
+     * @return This builder.
+     */
+    public FluentRestTemplateBuilder retryPolicy(@NonNull final RetryPolicy retryPolicy) {
+      return retryPolicies(endpointTag -> retryPolicy);
+    }
+
+    /**
+     * Hedges the requests to every endpoint according to the given policy.
+     *
+     * @param hedgePolicy HedgePolicy of every endpoint.
+     * @return This builder.
+     */
+    public FluentRestTemplateBuilder hedgePolicy(@NonNull final HedgePolicy hedgePolicy) {
+      return hedgePolicies(endpointTag -> hedgePolicy);
+    }
+  }
 
   /**
    * Starts a FluentRestTemplate flow indicating that the REST verb to use in the invokation is
@@ -158,7 +458,7 @@ public final class FluentRestTemplate {
    * @return A UriStarter used transition to the builder phase.
    */
   public UriStarter get() {
-    return new FluentRestTemplateManager<>(restTemplate, HttpMethod.GET, null);
+    return new FluentRestTemplateManager<>(HttpMethod.GET, null, DefaultExecutor::new);
   }
 
   /**
@@ -168,7 +468,7 @@ public final class FluentRestTemplate {
    * @return A UriStarter used transition to the builder phase.
    */
   public UriStarter delete() {
-    return new FluentRestTemplateManager<>(restTemplate, HttpMethod.DELETE, null);
+    return new FluentRestTemplateManager<>(HttpMethod.DELETE, null, DefaultExecutor::new);
   }
 
   /**
@@ -192,7 +492,7 @@ public final class FluentRestTemplate {
    * @return A UriStarter used transition to the builder phase.
    */
   public <T> UriBodyStarter post(final T body) {
-    return new FluentRestTemplateManager<>(restTemplate, HttpMethod.POST, body);
+    return new FluentRestTemplateManager<>(HttpMethod.POST, body, DefaultExecutor::new);
   }
 
   /**
@@ -216,7 +516,7 @@ public final class FluentRestTemplate {
    * @return A UriStarter used transition to the builder phase.
    */
   public <T> UriBodyStarter put(final T body) {
-    return new FluentRestTemplateManager<>(restTemplate, HttpMethod.PUT, body);
+    return new FluentRestTemplateManager<>(HttpMethod.PUT, body, DefaultExecutor::new);
   }
 
   /**
@@ -250,7 +550,8 @@ public final class FluentRestTemplate {
    *
    * <p><b>NOTE:</b> keep in mind that in order to use a ClientHttpRequestFactory factory other than
    * SimpleClientHttpRequestFactory you might need to explicitly declare the dependency in your
-   * preferrd dpendency management system, if any.
+   * preferrd dpendency management system, if any. A FluentRestTemplate built with a {@linkplain
+   * PooledTransport} or on top of a {@linkplain JdkClientHttpRequestFactory} supports PATCH.
    *
    * @return A UriStarter used transition to the builder phase.
    */
@@ -289,7 +590,8 @@ public final class FluentRestTemplate {
    *
    * <p><b>NOTE:</b> keep in mind that in order to use a ClientHttpRequestFactory factory other than
    * SimpleClientHttpRequestFactory you might need to explicitly declare the dependency in your
-   * preferrd dpendency management system, if any.
+   * preferrd dpendency management system, if any. A FluentRestTemplate built with a {@linkplain
+   * PooledTransport} or on top of a {@linkplain JdkClientHttpRequestFactory} supports PATCH.
    *
    * @param body The request body to provide to the REST call.
    * @param <T> Request body's class type.
@@ -301,190 +603,328 @@ public final class FluentRestTemplate {
       throw new UnsupportedOperationException(
           "PATCH method not supported in RestTemplate created using SimpleClientHttpRequestFactory");
     }
-    return new FluentRestTemplateManager<>(restTemplate, HttpMethod.PATCH, body);
+    return new FluentRestTemplateManager<>(HttpMethod.PATCH, body, DefaultExecutor::new);
   }
 
-  @RequiredArgsConstructor
-  private static class FluentRestTemplateManager<T> implements UriStarter, UriBodyStarter {
+  /**
+   * Starts a batch that runs one request per item with a bounded amount of requests in flight. The
+   * request for each item is built with a regular FluentRestTemplate chain; see {@linkplain
+   * BatchExecutor}.
+   *
+   * @param items Items to run a request for, typically uri variables or request bodies.
+   * @param <I> Item type.
+   * @return A BatchExecutor over the given items.
+   */
+  public <I> BatchExecutor<I> batch(final Collection<? extends I> items) {
+    return new BatchExecutor<>(items, asyncExecutor);
+  }
 
-    private final RestTemplate restTemplate;
-    private final HttpMethod httpMethod;
-    private final T body;
+  private final class DefaultExecutor extends AbstractExecutor {
 
-    @Override
-    public ExecutorUriBuilder from(final String uriString) {
-      Assert.hasText(uriString, "uriString must not be null or empty");
-      return new DefaultExecutorUriBuilder<>(
-          restTemplate, httpMethod, body, FluentService.from(uriString).build().uriBuilder());
+    private DefaultExecutor(
+        final RequestEntity.BodyBuilder requestEntityBuilder,
+        final Object body,
+        final RequestOptions options) {
+      super(requestEntityBuilder, body, options);
     }
 
     @Override
-    public ExecutorUriBuilder from(final URI uri) {
-      Assert.notNull(uri, "uri must not be null");
-      return new DefaultExecutorUriBuilder<>(
-          restTemplate, httpMethod, body, FluentService.from(uri).build().uriBuilder());
+    public <O> ResponseEntity<O> execute(final Class<O> responseClass) {
+      return exchange(
+          requestEntity(),
+          startDeadline(),
+          responseClass,
+          r -> restTemplate.exchange(r, responseClass));
     }
 
     @Override
-    public UriServiceBuilder from(final FluentService service) {
-      Assert.notNull(service, "service must not be null");
-      return new DefaultUriServiceBuilder<>(restTemplate, httpMethod, body, service);
+    public <O> ResponseEntity<O> execute(final ParameterizedTypeReference<O> typeReference) {
+      return exchange(
+          requestEntity(),
+          startDeadline(),
+          typeReference.getType(),
+          r -> restTemplate.exchange(r, typeReference));
     }
 
     @Override
-    public ExecutorUriBuilder into(final String uriString) {
-      Assert.hasText(uriString, "uriString must not be null or empty");
-      return new DefaultExecutorUriBuilder<>(
-          restTemplate, httpMethod, body, FluentService.from(uriString).build().uriBuilder());
+    public <O> CompletableFuture<ResponseEntity<O>> executeAsync(final Class<O> responseClass) {
+      final RequestEntity<Object> requestEntity = requestEntity();
+      final Deadline deadline = startDeadline();
+      return TaskExecutors.supplyAsync(
+          () ->
+              exchange(
+                  requestEntity,
+                  deadline,
+                  responseClass,
+                  r -> restTemplate.exchange(r, responseClass)),
+          asyncExecutor);
     }
 
     @Override
-    public ExecutorUriBuilder into(final URI uri) {
-      Assert.notNull(uri, "uri must not be null");
-      return new DefaultExecutorUriBuilder<>(
-          restTemplate, httpMethod, body, FluentService.from(uri).build().uriBuilder());
+    public <O> CompletableFuture<ResponseEntity<O>> executeAsync(
+        final ParameterizedTypeReference<O> typeReference) {
+      final RequestEntity<Object> requestEntity = requestEntity();
+      final Deadline deadline = startDeadline();
+      return TaskExecutors.supplyAsync(
+          () ->
+              exchange(
+                  requestEntity,
+                  deadline,
+                  typeReference.getType(),
+                  r -> restTemplate.exchange(r, typeReference)),
+          asyncExecutor);
     }
 
     @Override
-    public UriServiceBuilder into(final FluentService service) {
-      Assert.notNull(service, "service must not be null");
-      return new DefaultUriServiceBuilder<>(restTemplate, httpMethod, body, service);
+    public <R> R executeForStream(final ResponseStreamCallback<R> callback) {
+      return stream(requestEntity(), startDeadline(), callback);
     }
 
-    @RequiredArgsConstructor
-    private static class DefaultUriServiceBuilder<T> implements UriServiceBuilder {
-      private final RestTemplate restTemplate;
-      private final HttpMethod httpMethod;
-      private final T body;
-      private final FluentService fluentService;
-
-      @Override
-      public ExecutorUriBuilder withEndpoint(final String key) {
-        return new DefaultExecutorUriBuilder<>(
-            restTemplate, httpMethod, body, fluentService.uriBuilder(key));
-      }
-
-      @Override
-      public ExecutorUriBuilder withoutEndpoint() {
-        return withEndpoint(null);
-      }
+    @Override
+    public <R> CompletableFuture<R> executeForStreamAsync(
+        final ResponseStreamCallback<R> callback) {
+      final RequestEntity<Object> requestEntity = requestEntity();
+      final Deadline deadline = startDeadline();
+      return TaskExecutors.supplyAsync(
+          () -> stream(requestEntity, deadline, callback), asyncExecutor);
     }
 
-    @RequiredArgsConstructor
-    private static class DefaultExecutorUriBuilder<T> implements ExecutorUriBuilder {
-      private final Map<String, Object> uriVariables = new HashMap<>();
-      private final RestTemplate restTemplate;
-      private final HttpMethod httpMethod;
-      private final T body;
-      private final FluentService.ServiceUriBuilder serviceUriBuilder;
-
-      @Override
-      public ExecutorUriBuilder queryParam(final String key, final Object... values) {
-        serviceUriBuilder.queryParam(key, values);
-        return this;
-      }
-
-      @Override
-      public ExecutorUriBuilder queryParam(final String key, final Collection<?> values) {
-        serviceUriBuilder.queryParam(key, values);
-        return this;
-      }
-
-      @Override
-      public ExecutorUriBuilder queryParams(final MultiValueMap<String, String> params) {
-        serviceUriBuilder.queryParams(params);
-        return this;
-      }
-
-      @Override
-      public ExecutorUriBuilder fragment(final String fragment) {
-        serviceUriBuilder.fragment(fragment);
-        return this;
-      }
-
-      @Override
-      public ExecutorUriBuilder uriVariable(final String key, final Object value) {
-        serviceUriBuilder.uriVariable(key, value);
-        return this;
-      }
-
-      @Override
-      public ExecutorUriBuilder uriVariables(final Map<String, ?> variables) {
-        serviceUriBuilder.uriVariables(variables);
-        return this;
-      }
-
-      @Override
-      public Executor executor() {
-        final URI uri = serviceUriBuilder.build();
-        return new DefaultExecutor<>(restTemplate, body, RequestEntity.method(httpMethod, uri));
-      }
+    @Override
+    protected <O> Stream<O> elements(final Type elementType) {
+      return elements(requestEntity(), startDeadline(), elementType);
     }
 
-    @RequiredArgsConstructor
-    private static class DefaultExecutor<T> implements Executor {
-      private final RestTemplate restTemplate;
-      private final T body;
-      private final RequestEntity.BodyBuilder requestEntityBuilder;
+    @Override
+    protected <O> CompletableFuture<Stream<O>> elementsAsync(final Type elementType) {
+      final RequestEntity<Object> requestEntity = requestEntity();
+      final Deadline deadline = startDeadline();
+      return TaskExecutors.supplyAsync(
+          () -> elements(requestEntity, deadline, elementType), asyncExecutor);
+    }
 
-      @Override
-      public Executor header(final String name, final String... values) {
-        requestEntityBuilder.header(name, values);
-        return this;
-      }
+    private <O> Stream<O> elements(
+        final RequestEntity<?> requestEntity, final Deadline deadline, final Type elementType) {
+      final Function<RequestEntity<?>, ResponseEntity<Stream<O>>> send =
+          r ->
+              JsonElements.exchange(
+                  restTemplate.getRequestFactory(),
+                  restTemplate.getErrorHandler(),
+                  restTemplate.getMessageConverters(),
+                  r,
+                  elementType);
+      return guarded(requestEntity, deadline, send, false).apply(requestEntity).getBody();
+    }
 
-      @Override
-      public Executor contenType(final MediaType mediaType) {
-        requestEntityBuilder.contentType(mediaType);
-        return this;
-      }
+    private <R> R stream(
+        final RequestEntity<?> requestEntity,
+        final Deadline deadline,
+        final ResponseStreamCallback<R> callback) {
+      final Function<RequestEntity<?>, ResponseEntity<R>> send =
+          r ->
+              restTemplate.execute(
+                  r.getUrl(),
+                  r.getMethod(),
+                  new RequestEntityCallback(r, restTemplate.getMessageConverters()),
+                  response ->
+                      new ResponseEntity<R>(
+                          callback.doWithResponse(response.getBody(), response.getHeaders()),
+                          response.getHeaders(),
+                          response.getStatusCode()));
+      return guarded(requestEntity, deadline, send, false).apply(requestEntity).getBody();
+    }
 
-      @Override
-      public Executor accept(final MediaType... types) {
-        requestEntityBuilder.accept(types);
-        return this;
-      }
+    private <O> ResponseEntity<O> exchange(
+        final RequestEntity<?> requestEntity,
+        final Deadline deadline,
+        final Type responseType,
+        final Function<RequestEntity<?>, ResponseEntity<O>> exchange) {
+      final Function<RequestEntity<?>, ResponseEntity<O>> send =
+          phaseTimingListener != null || requestEntity.getBody() instanceof StreamingBody
+              ? r -> callbackExchange(r, responseType)
+              : exchange;
+      final Function<RequestEntity<?>, ResponseEntity<O>> guarded =
+          guarded(requestEntity, deadline, send, true);
+      final Function<RequestEntity<?>, ResponseEntity<O>> coalesced =
+          requestCoalescer == null ? guarded : r -> coalesce(r, deadline, responseType, guarded);
+      return responseCache == null
+          ? coalesced.apply(requestEntity)
+          : responseCache.exchange(requestEntity, responseType, coalesced);
+    }
 
-      @Override
-      public Executor acceptCharset(final Charset... charsets) {
-        requestEntityBuilder.acceptCharset(charsets);
-        return this;
-      }
+    /**
+     * Waits for an identical request in flight, if any, at most until the endpoint timeout or the
+     * request deadline, rather than for as long as the request in flight takes.
+     */
+    private <O> ResponseEntity<O> coalesce(
+        final RequestEntity<?> requestEntity,
+        final Deadline deadline,
+        final Type responseType,
+        final Function<RequestEntity<?>, ResponseEntity<O>> exchange) {
+      final Deadline wait = attemptDeadline(requestEntity, deadline);
+      return wait == null
+          ? requestCoalescer.exchange(requestEntity, responseType, exchange)
+          : requestCoalescer.exchange(
+              requestEntity, responseType, exchange, wait.remaining(), wait::expiration);
+    }
 
-      @Override
-      public ResponseEntity<Void> execute() {
-        return processExecution(new ParameterizedTypeReference<Void>() {});
+    /**
+     * Sends the request through the guards of its endpoint: every attempt is routed to an
+     * instance of its service, bounded by the deadline, recorded by the MetricsListener and tracked
+     * by the ServiceInstance, and goes through the CircuitBreaker, the ConcurrencyLimiter and the
+     * RateLimiter. Only repeatable requests are hedged and retried, unlike the ones whose response
+     * is consumed by a callback or a stream.
+     */
+    private <O> Function<RequestEntity<?>, ResponseEntity<O>> guarded(
+        final RequestEntity<?> requestEntity,
+        final Deadline deadline,
+        final Function<RequestEntity<?>, ResponseEntity<O>> send,
+        final boolean repeatable) {
+      final Function<RequestEntity<?>, ResponseEntity<O>> attempt =
+          bounded(metered(send), deadline);
+      final RequestOptions options = options();
+      final InstanceRouting routing = InstanceRouting.of(options);
+      final Function<RequestEntity<?>, ResponseEntity<O>> transport =
+          routing == null
+              ? attempt
+              : r -> ((InstanceRouting.Routed<?>) r).getInstance().execute(() -> attempt.apply(r));
+      final Function<RequestEntity<?>, ResponseEntity<O>> guarded =
+          circuitBreakers == null
+              ? transport
+              : r -> circuitBreakers.get(endpointTag(r)).execute(() -> transport.apply(r));
+      final Function<RequestEntity<?>, ResponseEntity<O>> concurrencyLimited =
+          concurrencyLimiters == null
+              ? guarded
+              : r -> concurrencyLimiters.get(endpointTag(r)).execute(() -> guarded.apply(r));
+      final RateLimiter rateLimiter = options.getRateLimiter();
+      final Function<RequestEntity<?>, ResponseEntity<O>> rateLimited =
+          rateLimiter == null
+              ? concurrencyLimited
+              : r -> rateLimiter.execute(() -> concurrencyLimited.apply(r), deadline);
+      final Function<RequestEntity<?>, ResponseEntity<O>> limited =
+          routing == null ? rateLimited : r -> rateLimited.apply(routing.route(r));
+      if (!repeatable) {
+        return limited;
       }
+      final HedgePolicy hedgePolicy =
+          policy(requestEntity, options.getHedgePolicy(), hedgePolicies);
+      final Function<RequestEntity<?>, ResponseEntity<O>> hedged =
+          hedgePolicy == null
+              ? limited
+              : r ->
+                  hedgePolicy.execute(
+                      r.getMethod(),
+                      options.getEndpointTag(),
+                      () -> limited.apply(r),
+                      attemptExecutor,
+                      attemptDeadline(r, deadline));
+      final RetryPolicy retryPolicy =
+          policy(requestEntity, options.getRetryPolicy(), retryPolicies);
+      return retryPolicy == null
+          ? hedged
+          : r -> retryPolicy.execute(r.getMethod(), () -> hedged.apply(r), deadline);
+    }
 
-      @Override
-      public <O> ResponseEntity<O> execute(final Class<O> responseClass) {
-        return restTemplate.exchange(requestEntityBuilder.body(body), responseClass);
+    /**
+     * The retry or hedge policy of the request, unless its body can be sent once only: the one
+     * given for the request or else the one of its endpoint.
+     */
+    private <P> P policy(
+        final RequestEntity<?> requestEntity,
+        final P requestPolicy,
+        final Function<EndpointTag, P> endpointPolicies) {
+      final Object body = requestEntity.getBody();
+      if (body instanceof StreamingBody && !((StreamingBody) body).isRepeatable()) {
+        return null;
       }
-
-      @Override
-      public <O> ResponseEntity<O> execute(final ParameterizedTypeReference<O> typeReference) {
-        return processExecution(typeReference);
+      if (requestPolicy != null || endpointPolicies == null) {
+        return requestPolicy;
       }
+      return endpointPolicies.apply(options().getEndpointTag());
+    }
 
-      @Override
-      public void executeForObject() {
-        execute();
-      }
+    /**
+     * Bounds every attempt of the given exchange by the endpoint timeout and the request deadline,
+     * if any, running it in the attempt executor so that it can be given up, unless it is a hedged
+     * attempt already running there. The time left is sent in the deadline header, if configured.
+     */
+    private <O> Function<RequestEntity<?>, ResponseEntity<O>> bounded(
+        final Function<RequestEntity<?>, ResponseEntity<O>> exchange, final Deadline deadline) {
+      return r -> {
+        final Deadline attemptDeadline = attemptDeadline(r, deadline);
+        if (attemptDeadline == null) {
+          return exchange.apply(r);
+        }
+        final RequestEntity<?> request =
+            deadlineHeader == null
+                ? r
+                : withHeader(
+                    r, deadlineHeader, String.valueOf(attemptDeadline.remaining().toMillis()));
+        return attemptDeadline.call(() -> exchange.apply(request), attemptExecutor);
+      };
+    }
 
-      private <O> ResponseEntity<O> processExecution(
-          final ParameterizedTypeReference<O> typeReference) {
-        return restTemplate.exchange(requestEntityBuilder.body(body), typeReference);
+    /** Records the requests sent by the given exchange in the metrics listener, if present. */
+    private <O> Function<RequestEntity<?>, ResponseEntity<O>> metered(
+        final Function<RequestEntity<?>, ResponseEntity<O>> exchange) {
+      if (metricsListener == null) {
+        return exchange;
       }
+      return r -> {
+        final long start = System.nanoTime();
+        try {
+          final ResponseEntity<O> response = exchange.apply(r);
+          metricsListener.record(
+              endpointTag(r),
+              response == null ? 0 : response.getStatusCode().value(),
+              requestBytes(r),
+              response == null ? -1 : response.getHeaders().getContentLength(),
+              System.nanoTime() - start);
+          return response;
+        } catch (final HttpStatusCodeException e) {
+          metricsListener.record(
+              endpointTag(r),
+              e.getStatusCode().value(),
+              requestBytes(r),
+              e.getResponseBodyAsByteArray().length,
+              System.nanoTime() - start);
+          throw e;
+        } catch (final RuntimeException e) {
+          metricsListener.record(
+              endpointTag(r), 0, requestBytes(r), -1, System.nanoTime() - start);
+          throw e;
+        }
+      };
+    }
 
-      @Override
-      public <O> O executeForObject(final Class<O> responseClass) {
-        return Optional.ofNullable(execute(responseClass)).map(HttpEntity::getBody).orElse(null);
+    /**
+     * Exchanges through our own request callback and response extractor instead of RestTemplate's,
+     * so that {@linkplain StreamingBody streaming bodies}, which message converters can't write,
+     * are sent and the phases of the request can be timed.
+     */
+    private <O> ResponseEntity<O> callbackExchange(
+        final RequestEntity<?> requestEntity, final Type responseType) {
+      final List<HttpMessageConverter<?>> messageConverters = restTemplate.getMessageConverters();
+      final RequestCallback requestCallback =
+          new RequestEntityCallback(requestEntity, responseType, messageConverters);
+      final ResponseExtractor<ResponseEntity<O>> responseExtractor =
+          new ResponseEntityExtractor<>(responseType, messageConverters);
+      if (phaseTimingListener == null) {
+        return restTemplate.execute(
+            requestEntity.getUrl(), requestEntity.getMethod(), requestCallback, responseExtractor);
       }
-
-      @Override
-      public <O> O executeForObject(final ParameterizedTypeReference<O> typeReference) {
-        return Optional.ofNullable(execute(typeReference)).map(HttpEntity::getBody).orElse(null);
+      final PhaseStopwatch stopwatch = new PhaseStopwatch(options().getUriBuildNanos());
+      final ResponseEntity<O> response;
+      try {
+        response =
+            restTemplate.execute(
+                requestEntity.getUrl(),
+                requestEntity.getMethod(),
+                stopwatch.time(requestCallback),
+                stopwatch.time(responseExtractor));
+      } finally {
+        phaseTimingListener.onTimings(endpointTag(requestEntity), stopwatch.stop());
       }
+      return response == null ? null : new TimedResponseEntity<>(response, stopwatch.stop());
     }
   }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import mart.karl.fluent.metrics.EndpointTag;
+import mart.karl.fluent.resilience.RateLimiter;
+import mart.karl.fluent.service.FluentService;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.util.Assert;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Drives the starter, builder and URI builder phases shared by every fluent template. The executor
+ * phase is delegated to the {@linkplain ExecutorFactory} of the template that started the flow.
+ *
+ * @param <T> Request body's class type.
+ */
+@RequiredArgsConstructor
+final class FluentRestTemplateManager<T> implements UriStarter, UriBodyStarter {
+
+  private final HttpMethod httpMethod;
+  private final T body;
+  private final ExecutorFactory executorFactory;
+
+  @Override
+  public ExecutorUriBuilder from(final String uriString) {
+    Assert.hasText(uriString, "uriString must not be null or empty");
+    return new DefaultExecutorUriBuilder(FluentService.from(uriString).build().uriBuilder());
+  }
+
+  @Override
+  public ExecutorUriBuilder from(final URI uri) {
+    Assert.notNull(uri, "uri must not be null");
+    return new DefaultExecutorUriBuilder(FluentService.from(uri).build().uriBuilder());
+  }
+
+  @Override
+  public UriServiceBuilder from(final FluentService service) {
+    Assert.notNull(service, "service must not be null");
+    return new DefaultUriServiceBuilder(service);
+  }
+
+  @Override
+  public ExecutorUriBuilder into(final String uriString) {
+    Assert.hasText(uriString, "uriString must not be null or empty");
+    return new DefaultExecutorUriBuilder(FluentService.from(uriString).build().uriBuilder());
+  }
+
+  @Override
+  public ExecutorUriBuilder into(final URI uri) {
+    Assert.notNull(uri, "uri must not be null");
+    return new DefaultExecutorUriBuilder(FluentService.from(uri).build().uriBuilder());
+  }
+
+  @Override
+  public UriServiceBuilder into(final FluentService service) {
+    Assert.notNull(service, "service must not be null");
+    return new DefaultUriServiceBuilder(service);
+  }
+
+  /** Creates the {@linkplain Executor} that handles a template's executor phase. */
+  @FunctionalInterface
+  interface ExecutorFactory {
+
+    /**
+     * Creates the Executor for a request whose URI has already been built.
+     *
+     * @param requestEntityBuilder Request builder pointing to the fully built URI.
+     * @param body The request body, if any.
+     * @param options Settings resolved for the request in the URI builder phase.
+     * @return Executor to handle executor phase.
+     */
+    Executor executor(
+        RequestEntity.BodyBuilder requestEntityBuilder, Object body, RequestOptions options);
+  }
+
+  @RequiredArgsConstructor
+  private final class DefaultUriServiceBuilder implements UriServiceBuilder {
+    private final FluentService fluentService;
+
+    @Override
+    public ExecutorUriBuilder withEndpoint(final String key) {
+      return new DefaultExecutorUriBuilder(
+          fluentService.uriBuilder(key),
+          key,
+          fluentService.getTimeout(key),
+          fluentService.getRateLimiter(key));
+    }
+
+    @Override
+    public ExecutorUriBuilder withoutEndpoint() {
+      return withEndpoint(null);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private final class DefaultExecutorUriBuilder implements ExecutorUriBuilder {
+    private final FluentService.ServiceUriBuilder serviceUriBuilder;
+    private final String endpointKey;
+    private final Duration timeout;
+    private final RateLimiter rateLimiter;
+
+    private DefaultExecutorUriBuilder(final FluentService.ServiceUriBuilder serviceUriBuilder) {
+      this(serviceUriBuilder, null, null, null);
+    }
+
+    @Override
+    public ExecutorUriBuilder queryParam(final String key, final Object... values) {
+      serviceUriBuilder.queryParam(key, values);
+      return this;
+    }
+
+    @Override
+    public ExecutorUriBuilder queryParam(final String key, final Collection<?> values) {
+      serviceUriBuilder.queryParam(key, values);
+      return this;
+    }
+
+    @Override
+    public ExecutorUriBuilder queryParams(final MultiValueMap<String, String> params) {
+      serviceUriBuilder.queryParams(params);
+      return this;
+    }
+
+    @Override
+    public ExecutorUriBuilder fragment(final String fragment) {
+      serviceUriBuilder.fragment(fragment);
+      return this;
+    }
+
+    @Override
+    public ExecutorUriBuilder uriVariable(final String key, final Object value) {
+      serviceUriBuilder.uriVariable(key, value);
+      return this;
+    }
+
+    @Override
+    public ExecutorUriBuilder uriVariables(final Map<String, ?> variables) {
+      serviceUriBuilder.uriVariables(variables);
+      return this;
+    }
+
+    @Override
+    public ExecutorUriBuilder routingKey(final Object key) {
+      serviceUriBuilder.routingKey(key);
+      return this;
+    }
+
+    @Override
+    public Executor executor() {
+      final long start = System.nanoTime();
+      final URI uri = serviceUriBuilder.build();
+      return executorFactory.executor(
+          RequestEntity.method(httpMethod, uri),
+          body,
+          RequestOptions.builder()
+              .endpointTag(EndpointTag.of(uri.getHost(), endpointKey, httpMethod))
+              .uriBuildNanos(System.nanoTime() - start)
+              .timeout(timeout)
+              .rateLimiter(rateLimiter)
+              .instance(serviceUriBuilder.getInstance())
+              .nextInstance(serviceUriBuilder::nextInstance)
+              .build());
+    }
+  }
+}
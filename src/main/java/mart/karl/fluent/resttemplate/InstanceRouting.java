@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import lombok.Getter;
+import mart.karl.fluent.metrics.EndpointTag;
+import mart.karl.fluent.service.ServiceInstance;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Routes every attempt of a load balanced request to an instance of its service: the first attempt
+ * to the instance its URI was built for, and every further one, i.e. retries and hedges, to an
+ * instance not tried yet, if any is left, so that an instance failing or ejected meanwhile doesn't
+ * get every attempt. Attempts run concurrently when hedged, so the tried instances are tracked
+ * thread-safely.
+ */
+final class InstanceRouting {
+
+  private final ServiceInstance first;
+  private final Function<Collection<ServiceInstance>, ServiceInstance> nextInstance;
+  private final EndpointTag endpointTag;
+  private final Set<ServiceInstance> tried = ConcurrentHashMap.newKeySet();
+
+  private InstanceRouting(final RequestOptions options) {
+    this.first = options.getInstance();
+    this.nextInstance = options.getNextInstance();
+    this.endpointTag = options.getEndpointTag();
+  }
+
+  /**
+   * Creates the routing of a single request.
+   *
+   * @param options Settings of the request.
+   * @return The routing of the request, or {@code null} if it isn't load balanced.
+   */
+  static InstanceRouting of(final RequestOptions options) {
+    return options.getInstance() == null ? null : new InstanceRouting(options);
+  }
+
+  /**
+   * Routes an attempt of the request.
+   *
+   * @param requestEntity The request, pointing to the instance its URI was built for.
+   * @param <T> Body type.
+   * @return The request of the attempt, pointing to the instance chosen for it.
+   */
+  <T> Routed<T> route(final RequestEntity<T> requestEntity) {
+    ServiceInstance instance = first;
+    if (!tried.add(first)) {
+      final ServiceInstance next =
+          nextInstance == null ? null : nextInstance.apply(Collections.unmodifiableSet(tried));
+      instance = next == null ? first : next;
+      tried.add(instance);
+    }
+    final URI url =
+        instance == first ? requestEntity.getUrl() : rebase(requestEntity.getUrl(), instance);
+    final EndpointTag tag =
+        instance == first
+            ? endpointTag
+            : EndpointTag.of(url.getHost(), endpointTag.getEndpoint(), endpointTag.getMethod());
+    return new Routed<>(
+        requestEntity.getBody(),
+        requestEntity.getHeaders(),
+        requestEntity.getMethod(),
+        url,
+        instance,
+        tag);
+  }
+
+  private static URI rebase(final URI url, final ServiceInstance instance) {
+    final String port = instance.getPort();
+    return UriComponentsBuilder.fromUri(url)
+        .host(instance.getHost())
+        .port(StringUtils.isEmpty(port) ? null : port)
+        .build(true)
+        .toUri();
+  }
+
+  /**
+   * The request of a single attempt, along with the instance it is sent to and the endpoint it is
+   * recorded for.
+   *
+   * @param <T> Body type.
+   */
+  @Getter
+  static final class Routed<T> extends RequestEntity<T> {
+    private final ServiceInstance instance;
+    private final EndpointTag endpointTag;
+
+    private Routed(
+        final T body,
+        final MultiValueMap<String, String> headers,
+        final HttpMethod method,
+        final URI url,
+        final ServiceInstance instance,
+        final EndpointTag endpointTag) {
+      super(body, headers, method, url);
+      this.instance = instance;
+      this.endpointTag = endpointTag;
+    }
+
+    /**
+     * Copies this request with other headers, to the same instance.
+     *
+     * @param headers Headers of the copy.
+     * @return The copy.
+     */
+    Routed<T> withHeaders(final HttpHeaders headers) {
+      return new Routed<>(getBody(), headers, getMethod(), getUrl(), instance, endpointTag);
+    }
+  }
+}
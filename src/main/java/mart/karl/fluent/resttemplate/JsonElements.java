@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseErrorHandler;
+
+/**
+ * Decodes a JSON array or newline delimited JSON (NDJSON) response body into a lazy {@linkplain
+ * Stream}, one element at a time, keeping the response open until the stream is closed.<br>
+ * <br>
+ *
+ * <p>Elements are read with the {@linkplain ObjectMapper} of the {@linkplain
+ * MappingJackson2HttpMessageConverter} registered in the template, if any, so they are decoded
+ * exactly as {@code exchange} would.
+ */
+final class JsonElements {
+
+  private JsonElements() {}
+
+  /**
+   * Performs the request and decodes its response into a lazy stream.
+   *
+   * @param requestFactory Creates the request.
+   * @param errorHandler Handles error responses, as the template does.
+   * @param messageConverters Writes the request body and provides the ObjectMapper.
+   * @param requestEntity The request to perform.
+   * @param elementType Type of each element in the response.
+   * @param <O> Element type.
+   * @return The status and headers of the response, with a body stream that must be closed to
+   *     release the response.
+   */
+  static <O> ResponseEntity<Stream<O>> exchange(
+      final ClientHttpRequestFactory requestFactory,
+      final ResponseErrorHandler errorHandler,
+      final List<HttpMessageConverter<?>> messageConverters,
+      final RequestEntity<?> requestEntity,
+      final Type elementType) {
+    final ClientHttpResponse response;
+    try {
+      final ClientHttpRequest request =
+          requestFactory.createRequest(requestEntity.getUrl(), requestEntity.getMethod());
+      new RequestEntityCallback(requestEntity, messageConverters).doWithRequest(request);
+      response = request.execute();
+    } catch (final IOException e) {
+      throw ioError(requestEntity, e);
+    }
+    final Stream<O> elements =
+        stream(response, errorHandler, messageConverters, requestEntity, elementType);
+    try {
+      return new ResponseEntity<>(elements, response.getHeaders(), response.getStatusCode());
+    } catch (final IOException e) {
+      elements.close();
+      throw ioError(requestEntity, e);
+    }
+  }
+
+  /**
+   * Checks the response for errors and decodes it into a lazy stream. The response is closed if
+   * anything fails before the stream is returned.
+   *
+   * @param response The response to decode.
+   * @param errorHandler Handles error responses, as the template does.
+   * @param messageConverters Provides the ObjectMapper.
+   * @param requestEntity The performed request.
+   * @param elementType Type of each element in the response.
+   * @param <O> Element type.
+   * @return A stream that must be closed to release the response.
+   */
+  static <O> Stream<O> stream(
+      final ClientHttpResponse response,
+      final ResponseErrorHandler errorHandler,
+      final List<HttpMessageConverter<?>> messageConverters,
+      final RequestEntity<?> requestEntity,
+      final Type elementType) {
+    try {
+      if (errorHandler.hasError(response)) {
+        errorHandler.handleError(response);
+      }
+      final ObjectMapper objectMapper = objectMapper(messageConverters);
+      final MappingIterator<O> elements =
+          objectMapper
+              .readerFor(objectMapper.getTypeFactory().constructType(elementType))
+              .readValues(response.getBody());
+      return StreamSupport.stream(
+              Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false)
+          .onClose(
+              () -> {
+                try {
+                  elements.close();
+                } catch (final IOException e) {
+                  // The response is closed below anyway.
+                } finally {
+                  response.close();
+                }
+              });
+    } catch (final IOException e) {
+      response.close();
+      throw ioError(requestEntity, e);
+    } catch (final RuntimeException e) {
+      response.close();
+      throw e;
+    }
+  }
+
+  private static ObjectMapper objectMapper(final List<HttpMessageConverter<?>> messageConverters) {
+    return messageConverters.stream()
+        .filter(MappingJackson2HttpMessageConverter.class::isInstance)
+        .map(c -> ((MappingJackson2HttpMessageConverter) c).getObjectMapper())
+        .findFirst()
+        .orElseGet(ObjectMapper::new);
+  }
+
+  /**
+   * Wraps an I/O error the same way RestTemplate does.
+   *
+   * @param requestEntity The failed request.
+   * @param e The I/O error.
+   * @return The exception to throw.
+   */
+  static ResourceAccessException ioError(
+      final RequestEntity<?> requestEntity, final IOException e) {
+    return new ResourceAccessException(
+        "I/O error on "
+            + requestEntity.getMethod()
+            + " request for \""
+            + requestEntity.getUrl()
+            + "\": "
+            + e.getMessage(),
+        e);
+  }
+}
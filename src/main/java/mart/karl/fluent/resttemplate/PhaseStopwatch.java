@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import mart.karl.fluent.metrics.PhaseTimings;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+
+/**
+ * Marks the boundaries of the phases of a single RestTemplate {@code execute} call by timing its
+ * {@linkplain RequestCallback} and {@linkplain ResponseExtractor}. Not thread-safe: a stopwatch
+ * times a single request.
+ */
+final class PhaseStopwatch {
+
+  private static final long UNSET = Long.MIN_VALUE;
+
+  private final long uriBuildNanos;
+  private final long start = System.nanoTime();
+  private long requestStart = UNSET;
+  private long requestEnd = UNSET;
+  private long responseStart = UNSET;
+  private long responseEnd = UNSET;
+  private PhaseTimings timings;
+
+  PhaseStopwatch(final long uriBuildNanos) {
+    this.uriBuildNanos = uriBuildNanos;
+  }
+
+  RequestCallback time(final RequestCallback requestCallback) {
+    return request -> {
+      requestStart = System.nanoTime();
+      requestCallback.doWithRequest(request);
+      requestEnd = System.nanoTime();
+    };
+  }
+
+  <O> ResponseExtractor<ResponseEntity<O>> time(
+      final ResponseExtractor<ResponseEntity<O>> responseExtractor) {
+    return response -> {
+      responseStart = System.nanoTime();
+      final ResponseEntity<O> responseEntity = responseExtractor.extractData(response);
+      responseEnd = System.nanoTime();
+      return responseEntity;
+    };
+  }
+
+  /** Stops the stopwatch the first time it is invoked and returns the same timings afterwards. */
+  PhaseTimings stop() {
+    if (timings == null) {
+      final long end = System.nanoTime();
+      timings =
+          PhaseTimings.builder()
+              .uriBuildNanos(uriBuildNanos)
+              .requestCreationNanos(between(start, requestStart))
+              .serializationNanos(between(requestStart, requestEnd))
+              .awaitingResponseNanos(
+                  between(requestEnd, responseStart == UNSET ? end : responseStart))
+              .deserializationNanos(between(responseStart, responseEnd))
+              .totalNanos(uriBuildNanos + end - start)
+              .build();
+    }
+    return timings;
+  }
+
+  private static long between(final long from, final long to) {
+    return from == UNSET || to == UNSET ? PhaseTimings.NOT_REACHED : to - from;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.client.AsyncClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.client.AsyncRequestCallback;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Writes the headers and body of a {@linkplain RequestEntity} into the request, the same way
+ * RestTemplate's {@code exchange} does, for the executor methods built on RestTemplate's lower
+ * level {@code execute}. When a response type is given, the {@code Accept} header defaults to the
+ * media types the message converters can read it from, also as {@code exchange} does.
+ */
+final class RequestEntityCallback implements RequestCallback, AsyncRequestCallback {
+
+  private final RequestEntity<?> requestEntity;
+  private final Type responseType;
+  private final List<HttpMessageConverter<?>> messageConverters;
+
+  RequestEntityCallback(
+      final RequestEntity<?> requestEntity,
+      final List<HttpMessageConverter<?>> messageConverters) {
+    this(requestEntity, null, messageConverters);
+  }
+
+  RequestEntityCallback(
+      final RequestEntity<?> requestEntity,
+      final Type responseType,
+      final List<HttpMessageConverter<?>> messageConverters) {
+    this.requestEntity = requestEntity;
+    this.responseType = responseType;
+    this.messageConverters = messageConverters;
+  }
+
+  @Override
+  public void doWithRequest(final ClientHttpRequest request) throws IOException {
+    write(request);
+  }
+
+  @Override
+  public void doWithRequest(final AsyncClientHttpRequest request) throws IOException {
+    write(request);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void write(final HttpOutputMessage request) throws IOException {
+    request.getHeaders().putAll(requestEntity.getHeaders());
+    if (request.getHeaders().getAccept().isEmpty()) {
+      final List<MediaType> acceptableMediaTypes = acceptableMediaTypes();
+      if (!acceptableMediaTypes.isEmpty()) {
+        request.getHeaders().setAccept(acceptableMediaTypes);
+      }
+    }
+    final Object body = requestEntity.getBody();
+    if (body == null) {
+      return;
+    }
+    if (body instanceof StreamingBody) {
+      ((StreamingBody) body).writeTo(request);
+      return;
+    }
+    final MediaType contentType = requestEntity.getHeaders().getContentType();
+    for (final HttpMessageConverter<?> converter : messageConverters) {
+      if (converter.canWrite(body.getClass(), contentType)) {
+        ((HttpMessageConverter<Object>) converter).write(body, contentType, request);
+        return;
+      }
+    }
+    throw new RestClientException(
+        "No HttpMessageConverter for "
+            + body.getClass().getName()
+            + (contentType == null ? "" : " and content type \"" + contentType + "\""));
+  }
+
+  private List<MediaType> acceptableMediaTypes() {
+    final List<MediaType> mediaTypes = new ArrayList<>();
+    if (responseType == null || Void.class.equals(responseType)) {
+      return mediaTypes;
+    }
+    final Class<?> responseClass = responseType instanceof Class ? (Class<?>) responseType : null;
+    for (final HttpMessageConverter<?> converter : messageConverters) {
+      final boolean canRead =
+          responseClass != null
+              ? converter.canRead(responseClass, null)
+              : converter instanceof GenericHttpMessageConverter
+                  && ((GenericHttpMessageConverter<?>) converter).canRead(responseType, null, null);
+      if (canRead) {
+        for (final MediaType mediaType : converter.getSupportedMediaTypes()) {
+          mediaTypes.add(
+              mediaType.getCharSet() == null
+                  ? mediaType
+                  : new MediaType(mediaType.getType(), mediaType.getSubtype()));
+        }
+      }
+    }
+    MediaType.sortBySpecificity(mediaTypes);
+    return mediaTypes;
+  }
+}
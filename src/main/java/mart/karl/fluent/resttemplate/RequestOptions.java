@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Function;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import mart.karl.fluent.metrics.EndpointTag;
+import mart.karl.fluent.resilience.HedgePolicy;
+import mart.karl.fluent.resilience.RateLimiter;
+import mart.karl.fluent.resilience.RetryPolicy;
+import mart.karl.fluent.service.ServiceInstance;
+
+/**
+ * Settings of a single request: those resolved from its URI and FluentService endpoint by the URI
+ * builder phase, and those given in the executor phase. Immutable, so that the executor phase
+ * derives a new copy through {@code toBuilder()} for every setting given.
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class RequestOptions {
+
+  /** The endpoint the request is sent to. */
+  @NonNull private final EndpointTag endpointTag;
+
+  /** Nanoseconds spent building the request URI. */
+  private final long uriBuildNanos;
+
+  /** Time a single attempt of the request may take, if limited. */
+  private final Duration timeout;
+
+  /** RateLimiter every attempt of the request goes through, if any. */
+  private final RateLimiter rateLimiter;
+
+  /** Service instance the URI points to, if chosen by a load balancer. */
+  private final ServiceInstance instance;
+
+  /** Chooses the instance of a further attempt among those not tried yet, if load balanced. */
+  private final Function<Collection<ServiceInstance>, ServiceInstance> nextInstance;
+
+  /** RetryPolicy given for the request, overriding the one of its endpoint, if any. */
+  private final RetryPolicy retryPolicy;
+
+  /** HedgePolicy given for the request, overriding the one of its endpoint, if any. */
+  private final HedgePolicy hedgePolicy;
+
+  /** Time the whole request, retries included, may take, if limited. */
+  private final Duration deadline;
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.ResponseExtractor;
+
+/**
+ * Extracts a {@linkplain ResponseEntity} the same way RestTemplate's {@code exchange} does, for the
+ * executor methods built on RestTemplate's lower level {@code execute}.
+ *
+ * @param <O> Response type.
+ */
+final class ResponseEntityExtractor<O> implements ResponseExtractor<ResponseEntity<O>> {
+
+  private final HttpMessageConverterExtractor<O> delegate;
+
+  ResponseEntityExtractor(
+      final Type responseType, final List<HttpMessageConverter<?>> messageConverters) {
+    this.delegate =
+        Void.class.equals(responseType)
+            ? null
+            : new HttpMessageConverterExtractor<>(responseType, messageConverters);
+  }
+
+  @Override
+  public ResponseEntity<O> extractData(final ClientHttpResponse response) throws IOException {
+    final O body = delegate == null ? null : delegate.extractData(response);
+    return new ResponseEntity<>(body, response.getHeaders(), response.getStatusCode());
+  }
+}
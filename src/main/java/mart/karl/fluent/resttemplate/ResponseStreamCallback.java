@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Consumes a response body as a raw {@linkplain InputStream}, without any message conversion, for
+ * payloads too big to be held in memory. See {@linkplain Executor#executeForStream}.
+ *
+ * @param <R> Type of the result computed from the response.
+ */
+@FunctionalInterface
+public interface ResponseStreamCallback<R> {
+
+  /**
+   * Consumes the response body. The stream is only readable while this method runs: the connection
+   * is released as soon as it returns or throws.
+   *
+   * @param body The response body, not buffered.
+   * @param headers The response headers.
+   * @return Any result computed from the response, or {@code null}.
+   * @throws IOException If reading the body fails.
+   */
+  R doWithResponse(InputStream body, HttpHeaders headers) throws IOException;
+}
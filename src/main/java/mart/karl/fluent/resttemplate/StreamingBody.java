@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+
+/**
+ * A request body streamed straight into the request output instead of being converted and held in
+ * memory by RestTemplate's message converters, so uploads of any size are sent in constant memory.
+ * <br>
+ * <br>
+ *
+ * <p>Use it as the body of any FluentRestTemplate starter:
+ *
+ * <pre class="code">
+ * fluentRestTemplate
+ *   .put(StreamingBody.of(Paths.get("artifact.zip")))
+ *   .into(artifactService)
+ *   .withEndpoint("upload")
+ *   .executor()
+ *   .execute();
+ * </pre>
+ *
+ * <p>When the length of the body is known, as for files, a {@code Content-Length} header is sent.
+ * Otherwise the body is sent with chunked transfer encoding, provided the {@linkplain
+ * org.springframework.http.client.ClientHttpRequestFactory ClientHttpRequestFactory} backing
+ * RestTemplate streams request bodies, e.g. a SimpleClientHttpRequestFactory with {@code
+ * bufferRequestBody} set to {@code false}. The {@code Content-Type} defaults to {@code
+ * application/octet-stream}.<br>
+ * <br>
+ *
+ * <p><b>NOTE:</b> bodies backed by an {@linkplain InputStream} or a {@linkplain
+ * ReadableByteChannel} can be sent once only and are closed once sent. Bodies backed by a
+ * {@linkplain Path} open the file each time they are sent, so only the latter are retried.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class StreamingBody {
+
+  private static final long UNKNOWN_LENGTH = -1;
+
+  private final long contentLength;
+  private final BodyWriter writer;
+  private final Path path;
+
+  /**
+   * Streams the content of the given stream, with chunked transfer encoding.
+   *
+   * @param inputStream Body content, closed once sent.
+   * @return A StreamingBody to use as request body.
+   */
+  public static StreamingBody of(@NonNull final InputStream inputStream) {
+    return of(inputStream, UNKNOWN_LENGTH);
+  }
+
+  /**
+   * Streams the content of the given stream, which is exactly {@code contentLength} bytes long.
+   *
+   * @param inputStream Body content, closed once sent.
+   * @param contentLength Amount of bytes in the stream, or a negative value if unknown.
+   * @return A StreamingBody to use as request body.
+   */
+  public static StreamingBody of(
+      @NonNull final InputStream inputStream, final long contentLength) {
+    return new StreamingBody(
+        contentLength,
+        out -> {
+          try (final InputStream in = inputStream) {
+            StreamUtils.copy(in, out);
+          }
+        },
+        null);
+  }
+
+  /**
+   * Streams the content of the given channel, with chunked transfer encoding.
+   *
+   * @param channel Body content, closed once sent.
+   * @return A StreamingBody to use as request body.
+   */
+  public static StreamingBody of(@NonNull final ReadableByteChannel channel) {
+    return of(channel, UNKNOWN_LENGTH);
+  }
+
+  /**
+   * Streams the content of the given channel, which is exactly {@code contentLength} bytes long.
+   *
+   * @param channel Body content, closed once sent.
+   * @param contentLength Amount of bytes in the channel, or a negative value if unknown.
+   * @return A StreamingBody to use as request body.
+   */
+  public static StreamingBody of(
+      @NonNull final ReadableByteChannel channel, final long contentLength) {
+    return new StreamingBody(
+        contentLength,
+        out -> {
+          try (final ReadableByteChannel in = channel) {
+            copy(in, Channels.newChannel(out));
+          }
+        },
+        null);
+  }
+
+  /**
+   * Streams the content of the given file with a known {@code Content-Length}. The file is
+   * transferred with {@linkplain FileChannel#transferTo(long, long, WritableByteChannel)}, which
+   * lets the JDK pick its most efficient copy into the request output.<br>
+   * <br>
+   *
+   * <p>The length is the size of the file when this method is called. If the file grows afterwards,
+   * only that many bytes are sent. If it shrinks, sending fails with an {@linkplain IOException}.
+   *
+   * @param path File to send.
+   * @return A StreamingBody to use as request body.
+   * @throws UncheckedIOException If the size of the file can't be read.
+   */
+  public static StreamingBody of(@NonNull final Path path) {
+    final long size;
+    try {
+      size = Files.size(path);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new StreamingBody(
+        size,
+        out -> {
+          try (final FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            final WritableByteChannel target = Channels.newChannel(out);
+            for (long position = 0; position < size; ) {
+              final long transferred = in.transferTo(position, size - position, target);
+              if (transferred == 0 && position >= in.size()) {
+                throw new IOException("File shrank during upload: " + path);
+              }
+              position += transferred;
+            }
+          }
+        },
+        path);
+  }
+
+  /**
+   * Whether the body can be sent more than once, e.g. when a request is retried.
+   *
+   * @return {@code true} for bodies backed by a file.
+   */
+  boolean isRepeatable() {
+    return path != null;
+  }
+
+  /**
+   * Writes the body into the request, along with its {@code Content-Length} and default {@code
+   * Content-Type} headers.
+   *
+   * @param request Request to write into.
+   * @throws IOException If reading the source or writing the request fails.
+   */
+  void writeTo(final HttpOutputMessage request) throws IOException {
+    final HttpHeaders headers = request.getHeaders();
+    if (headers.getContentType() == null) {
+      headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+    }
+    if (contentLength >= 0) {
+      headers.setContentLength(contentLength);
+    }
+    final OutputStream out = request.getBody();
+    writer.write(out);
+    out.flush();
+  }
+
+  private static void copy(final ReadableByteChannel in, final WritableByteChannel out)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(StreamUtils.BUFFER_SIZE);
+    while (in.read(buffer) != -1) {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        out.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+
+  @FunctionalInterface
+  private interface BodyWriter {
+    void write(OutputStream out) throws IOException;
+  }
+}
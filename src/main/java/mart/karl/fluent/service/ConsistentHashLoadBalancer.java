@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.service;
+
+import java.util.List;
+
+/**
+ * {@linkplain LoadBalancer} choosing the instance of every request with a routing key by
+ * rendezvous, i.e. highest random weight, hashing: every instance gets a pseudo-random weight
+ * derived from the key and its own {@code host:port}, and the heaviest one is chosen. The same key
+ * is therefore sent to the same instance as long as it is available, whichever order the instances
+ * are declared in, and adding or removing one instance only remaps the keys it gains or loses, a
+ * {@code 1/n} fraction of them. Requests without a routing key are left to the fallback
+ * LoadBalancer.
+ *
+ * <p>Choosing an instance hashes the key once and then weighs every instance with a few
+ * multiplications, without any shared state, so it's lock-free and allocation-free.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+final class ConsistentHashLoadBalancer implements LoadBalancer {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final LoadBalancer fallback;
+
+  ConsistentHashLoadBalancer(final LoadBalancer fallback) {
+    this.fallback = fallback;
+  }
+
+  @Override
+  public ServiceInstance choose(final List<ServiceInstance> instances) {
+    return fallback.choose(instances);
+  }
+
+  @Override
+  public ServiceInstance choose(final List<ServiceInstance> instances, final Object routingKey) {
+    if (routingKey == null) {
+      return fallback.choose(instances);
+    }
+    final long keyHash = hash(String.valueOf(routingKey));
+    ServiceInstance chosen = null;
+    long heaviest = 0;
+    for (final ServiceInstance instance : instances) {
+      final long weight = mix(keyHash ^ instance.authorityHash);
+      if (chosen == null || Long.compareUnsigned(weight, heaviest) > 0) {
+        chosen = instance;
+        heaviest = weight;
+      }
+    }
+    return chosen;
+  }
+
+  /**
+   * Hashes the given value into 64 bits with FNV-1a, spread by the MurmurHash3 finalizer.
+   *
+   * @param value Value to hash.
+   * @return The hash of the value.
+   */
+  static long hash(final String value) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(final long value) {
+    long mixed = value;
+    mixed ^= mixed >>> 33;
+    mixed *= 0xff51afd7ed558ccdL;
+    mixed ^= mixed >>> 33;
+    mixed *= 0xc4ceb9fe1a85ec53L;
+    mixed ^= mixed >>> 33;
+    return mixed;
+  }
+}
@@ -18,10 +18,17 @@
 package mart.karl.fluent.service;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -29,9 +36,9 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.SuperBuilder;
+import mart.karl.fluent.resilience.RateLimiter;
 import mart.karl.fluent.uri.FluentUriBuilder;
 import org.springframework.util.Assert;
 import org.springframework.util.LinkedMultiValueMap;
@@ -150,6 +157,15 @@ import org.springframework.web.util.UriComponentsBuilder;
  *       nameTwo: bar1,bar2,...,barN # multiple values separated by comma.
  *       ...
  *     fragment:
+ *     timeout: 30s # applies to every endpoint without its own timeout.
+ *     timeouts:
+ *       keyOne: 500ms
+ *       ...
+ *     instances: # replicas requests are balanced across, instead of host and port.
+ *       - hostOne:8080
+ *       - hostTwo:8080
+ *       ...
+ *     routing-variable: # uri variable whose value is the routing key of the requests.
  * </pre>
  *
  * <h2>2. FluentService's own Builder pattern</h2>
@@ -228,15 +244,89 @@ import org.springframework.web.util.UriComponentsBuilder;
  * <p>uri2 will be created as
  * "http://dummy.host:8080/cool/path/v1/foo/bar/baz/bum?isCool=obviously".
  *
+ * <h1>URI templates</h1>
+ *
+ * <p>The <i>common</i> URI parts of every endpoint (scheme, host, port, context path, version,
+ * endpoint path, common query params and common fragment) are compiled into a URI template the
+ * first time the endpoint is used and cached afterwards, so building a URI only expands the uri
+ * variables and applies the specific URI parts. Cached templates are discarded whenever a setter of
+ * any of these parts or of the instances is invoked, all at once, so that a URI built concurrently
+ * gets either the parts set before or the ones set after, never a mix of both. Mutating a map after
+ * handing it to FluentService is not detected; use the setters instead.
+ *
+ * <h1>Timeouts</h1>
+ *
+ * <p>The time a single request to an endpoint may take can be declared per endpoint key in {@code
+ * timeouts}, falling back to the service's {@code timeout}. Fast lookups then don't have to inherit
+ * the timeout of slow exports, which the {@linkplain
+ * org.springframework.http.client.ClientHttpRequestFactory ClientHttpRequestFactory} of a
+ * RestTemplate can only set once for every request. FluentRestTemplate enforces these timeouts.
+ *
+ * <h1>Rate limits</h1>
+ *
+ * <p>A {@linkplain RateLimiter} keeps the requests sent to the service within its quota. It can be
+ * attached to the whole service through {@code rateLimiter}, or to an endpoint key through {@code
+ * rateLimiters}, in which case the requests to that endpoint only go through the endpoint's own
+ * RateLimiter. RateLimiters hold the state of their quota, so they are set programmatically and
+ * shared by every request to the service, whatever the thread:
+ *
+ * <pre class="code">
+ * myCoolService.setRateLimiter(RateLimiter.failingFast(50, Duration.ofSeconds(1)));
+ * </pre>
+ *
+ * <h1>Load balancing</h1>
+ *
+ * <p>A service served by several replicas can declare them as {@code instances}, each one a
+ * {@code host} or {@code host:port}, which then replace the service's host and port. Every {@code
+ * uriBuilder} call picks the instance its URI points to through the service's {@linkplain
+ * LoadBalancer}, {@linkplain LoadBalancer#roundRobin() round-robin} by default, saving the hop
+ * through an external balancer. Every retry or hedge of a request is sent to an instance the
+ * request wasn't sent to yet, if any is left. The {@linkplain
+ * LoadBalancer#leastOutstandingRequests() least-outstanding-requests} and {@linkplain
+ * LoadBalancer#powerOfTwoChoices() power-of-two-choices} strategies rely on the requests in flight
+ * to every {@linkplain ServiceInstance}, which FluentRestTemplate and FluentAsyncRestTemplate keep
+ * track of:
+ *
+ * <pre class="code">
+ * myCoolService.setLoadBalancer(LoadBalancer.powerOfTwoChoices());
+ * </pre>
+ *
+ * <h1>Outlier detection</h1>
+ *
+ * <p>An {@linkplain OutlierDetector} tracks the health of every instance from the outcome of the
+ * requests sent to it, and ejects the failing or unusually slow ones from load balancing for a
+ * while, so that one bad replica doesn't drag down the latency of the whole service:
+ *
+ * <pre class="code">
+ * myCoolService.setOutlierDetector(new OutlierDetector(config, listener));
+ * </pre>
+ *
+ * <h1>Consistent hashing</h1>
+ *
+ * <p>Instances keeping a cache of their own serve more hits when every resource is always requested
+ * to the same instance. The {@linkplain LoadBalancer#consistentHash() consistent-hash} LoadBalancer
+ * sends the requests with the same routing key to the same instance, and only remaps the keys of
+ * the instances added, removed or ejected. The routing key of a request is given through its
+ * {@code routingKey}, or else it's the value of the uri variable named by the service's {@code
+ * routingVariable}. The instance is chosen once the URI is built, when every uri variable is known,
+ * and the retries and hedges of a request go to the next instances for its key:
+ *
+ * <pre class="code">
+ * myCoolService.setLoadBalancer(LoadBalancer.consistentHash());
+ * myCoolService.setRoutingVariable("customerId");
+ * </pre>
+ *
  * @author Carlos Martinez - Karl Mart
  */
-@Setter
 @ToString
 @SuperBuilder
 @EqualsAndHashCode
 @NoArgsConstructor
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 public class FluentService {
+  // Empty path segments are skipped, so this builds the same URI as a missing endpoint.
+  private static final String NO_ENDPOINT = "";
+
   private String scheme;
   private String host;
   private String port;
@@ -248,6 +338,257 @@ public class FluentService {
   private MultiValueMap<String, String> commonQueryParams = new LinkedMultiValueMap<>();
 
   private String commonFragment;
+  private Duration timeout;
+  @NonNull @Builder.Default private Map<String, Duration> timeouts = new HashMap<>();
+
+  @ToString.Exclude @EqualsAndHashCode.Exclude private RateLimiter rateLimiter;
+
+  @ToString.Exclude @EqualsAndHashCode.Exclude @NonNull @Builder.Default
+  private Map<String, RateLimiter> rateLimiters = new HashMap<>();
+
+  @NonNull @Builder.Default private List<String> instances = new ArrayList<>();
+  private String routingVariable;
+
+  @ToString.Exclude @EqualsAndHashCode.Exclude @NonNull @Builder.Default
+  private LoadBalancer loadBalancer = LoadBalancer.roundRobin();
+
+  @ToString.Exclude @EqualsAndHashCode.Exclude private volatile OutlierDetector outlierDetector;
+
+  @ToString.Exclude @EqualsAndHashCode.Exclude
+  private final AtomicReference<List<ServiceInstance>> serviceInstances = new AtomicReference<>();
+
+  @ToString.Exclude @EqualsAndHashCode.Exclude
+  private final AtomicReference<UriTemplates> uriTemplates = new AtomicReference<>();
+
+  /**
+   * Sets the scheme of the URIs built by this service, e.g. {@code https}.
+   *
+   * @param scheme The scheme.
+   */
+  public synchronized void setScheme(final String scheme) {
+    this.scheme = scheme;
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the host of the URIs built by this service, unless it declares instances.
+   *
+   * @param host The host.
+   */
+  public synchronized void setHost(final String host) {
+    this.host = host;
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the port of the URIs built by this service, unless it declares instances.
+   *
+   * @param port The port, or {@code null} for the default one of the scheme.
+   */
+  public synchronized void setPort(final String port) {
+    this.port = port;
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the path every URI built by this service starts with.
+   *
+   * @param contextPath The context path.
+   */
+  public synchronized void setContextPath(final String contextPath) {
+    this.contextPath = contextPath;
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the path segment following the context path of every URI built by this service.
+   *
+   * @param version The version, e.g. {@code v1}.
+   */
+  public synchronized void setVersion(final String version) {
+    this.version = version;
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the endpoints of this service, i.e. the path following its version, by key.
+   *
+   * @param endpoints The endpoint values, by key.
+   */
+  public synchronized void setEndpoints(@NonNull final Map<String, String> endpoints) {
+    this.endpoints = endpoints;
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the query params every URI built by this service includes.
+   *
+   * @param commonQueryParams The common query params.
+   */
+  public synchronized void setCommonQueryParams(
+      @NonNull final MultiValueMap<String, String> commonQueryParams) {
+    this.commonQueryParams = commonQueryParams;
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the fragment every URI built by this service includes, unless one is given per URI.
+   *
+   * @param commonFragment The common fragment.
+   */
+  public synchronized void setCommonFragment(final String commonFragment) {
+    this.commonFragment = commonFragment;
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the time a single request to any endpoint of this service may take, unless the endpoint
+   * has its own.
+   *
+   * @param timeout The timeout, or {@code null} if unbounded.
+   */
+  public void setTimeout(final Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  /**
+   * Sets the time a single request to each endpoint may take.
+   *
+   * @param timeouts The timeouts, by endpoint key.
+   */
+  public void setTimeouts(@NonNull final Map<String, Duration> timeouts) {
+    this.timeouts = timeouts;
+  }
+
+  /**
+   * Time a single request to the given endpoint may take.
+   *
+   * @param endpointKey The key representing an endpoint value in the endpoints map, if any.
+   * @return The endpoint's own timeout or else the service's timeout, or {@code null} if none.
+   */
+  public final Duration getTimeout(final String endpointKey) {
+    final Duration endpointTimeout = endpointKey == null ? null : timeouts.get(endpointKey);
+    return endpointTimeout == null ? timeout : endpointTimeout;
+  }
+
+  /**
+   * Sets the RateLimiter the requests to any endpoint of this service go through, unless the
+   * endpoint has its own.
+   *
+   * @param rateLimiter The RateLimiter, or {@code null} if unlimited.
+   */
+  public void setRateLimiter(final RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Sets the RateLimiter the requests to each endpoint go through.
+   *
+   * @param rateLimiters The RateLimiters, by endpoint key.
+   */
+  public void setRateLimiters(@NonNull final Map<String, RateLimiter> rateLimiters) {
+    this.rateLimiters = rateLimiters;
+  }
+
+  /**
+   * RateLimiter the requests to the given endpoint go through.
+   *
+   * @param endpointKey The key representing an endpoint value in the endpoints map, if any.
+   * @return The endpoint's own RateLimiter or else the service's, or {@code null} if none.
+   */
+  public final RateLimiter getRateLimiter(final String endpointKey) {
+    final RateLimiter endpointRateLimiter =
+        endpointKey == null ? null : rateLimiters.get(endpointKey);
+    return endpointRateLimiter == null ? rateLimiter : endpointRateLimiter;
+  }
+
+  /**
+   * Sets the instances requests to this service are balanced across, replacing its host and port.
+   * The health tracked for the previous instances is discarded.
+   *
+   * @param instances The instances, each one as {@code host} or {@code host:port}.
+   */
+  public synchronized void setInstances(@NonNull final List<String> instances) {
+    this.instances = instances;
+    serviceInstances.set(null);
+    uriTemplates.set(null);
+  }
+
+  /**
+   * Sets the uri variable whose value routes a request when no routing key is given for it.
+   *
+   * @param routingVariable The name of the uri variable, or {@code null} if none.
+   */
+  public void setRoutingVariable(final String routingVariable) {
+    this.routingVariable = routingVariable;
+  }
+
+  /**
+   * Sets the LoadBalancer choosing the instance every request is sent to.
+   *
+   * @param loadBalancer The LoadBalancer.
+   */
+  public void setLoadBalancer(@NonNull final LoadBalancer loadBalancer) {
+    this.loadBalancer = loadBalancer;
+  }
+
+  /**
+   * Sets the OutlierDetector the outcome of every request to an instance is reported to, which
+   * ejects the unhealthy instances from load balancing.
+   *
+   * @param outlierDetector The OutlierDetector, or {@code null} if none.
+   */
+  public void setOutlierDetector(final OutlierDetector outlierDetector) {
+    this.outlierDetector = outlierDetector;
+  }
+
+  /**
+   * The instances requests to this service are balanced across.
+   *
+   * @return An unmodifiable list of the declared instances, empty if none.
+   */
+  public final List<ServiceInstance> getServiceInstances() {
+    final List<ServiceInstance> current = serviceInstances.get();
+    return current == null ? parseServiceInstances() : current;
+  }
+
+  /** Parsed under the lock of the setters, so that instances set meanwhile are never overridden. */
+  private synchronized List<ServiceInstance> parseServiceInstances() {
+    List<ServiceInstance> current = serviceInstances.get();
+    if (current == null) {
+      current =
+          Collections.unmodifiableList(
+              instances.stream()
+                  .map(instance -> ServiceInstance.parse(instance, () -> outlierDetector))
+                  .collect(Collectors.toList()));
+      serviceInstances.set(current);
+    }
+    return current;
+  }
+
+  /**
+   * The base URIs, i.e. scheme, host and port, requests to this service are sent to.
+   *
+   * @return A base URI per instance, or the service's own if it declares no instances.
+   */
+  public final List<URI> getBaseUris() {
+    final List<ServiceInstance> balanced = getServiceInstances();
+    if (balanced.isEmpty()) {
+      return Collections.singletonList(baseUri(host, port));
+    }
+    return balanced.stream()
+        .map(instance -> baseUri(instance.getHost(), instance.getPort()))
+        .collect(Collectors.toList());
+  }
+
+  private URI baseUri(final String baseHost, final String basePort) {
+    return UriComponentsBuilder.newInstance()
+        .scheme(scheme)
+        .host(baseHost)
+        .port(StringUtils.isEmpty(basePort) ? null : basePort)
+        .build()
+        .toUri();
+  }
 
   /**
    * Convenient method to create a FluentServiceBuilder from a {@linkplain URI}. <br>
@@ -343,17 +684,94 @@ public class FluentService {
    * @return A {@linkplain ServiceUriBuilder} backed by the current FluentService.
    */
   public final ServiceUriBuilder uriBuilder(final String endpointKey) {
-    final UriComponentsBuilder uriComponentsBuilder =
-        UriComponentsBuilder.newInstance()
-            .scheme(scheme)
-            .host(host)
-            .port(StringUtils.isEmpty(port) ? null : port)
-            .path(contextPath)
-            .pathSegment(version)
-            .pathSegment(Optional.ofNullable(endpoints).map(m -> m.get(endpointKey)).orElse(null))
-            .queryParams(commonQueryParams)
-            .fragment(commonFragment);
-    return new DefaultUriBuilder(uriComponentsBuilder);
+    final String endpoint =
+        Optional.ofNullable(endpoints).map(m -> m.get(endpointKey)).orElse(NO_ENDPOINT);
+    return new DefaultUriBuilder(this, endpoint);
+  }
+
+  private ServiceInstance chooseInstance(
+      final Object routingKey, final Collection<ServiceInstance> excluded) {
+    final List<ServiceInstance> balanced = getServiceInstances();
+    if (balanced.isEmpty()) {
+      return null;
+    }
+    final OutlierDetector detector = outlierDetector;
+    List<ServiceInstance> candidates = detector == null ? balanced : detector.available(balanced);
+    if (!excluded.isEmpty()) {
+      final List<ServiceInstance> untried =
+          candidates.stream().filter(i -> !excluded.contains(i)).collect(Collectors.toList());
+      if (!untried.isEmpty()) {
+        candidates = untried;
+      }
+    }
+    return routingKey == null
+        ? loadBalancer.choose(candidates)
+        : loadBalancer.choose(candidates, routingKey);
+  }
+
+  private UriTemplates uriTemplates() {
+    final UriTemplates current = uriTemplates.get();
+    return current == null ? snapshotUriTemplates() : current;
+  }
+
+  /** Taken under the lock of the setters, so that a stale snapshot is never published. */
+  private synchronized UriTemplates snapshotUriTemplates() {
+    UriTemplates current = uriTemplates.get();
+    if (current == null) {
+      current = new UriTemplates(this);
+      uriTemplates.set(current);
+    }
+    return current;
+  }
+
+  /**
+   * The URI templates of the endpoints, compiled from a snapshot of the URI parts of the service
+   * and discarded as a whole by any setter of them, so that a template is never compiled from some
+   * parts set before a change and others set after it.
+   */
+  private static final class UriTemplates {
+    private final String scheme;
+    private final String host;
+    private final String port;
+    private final String contextPath;
+    private final String version;
+    private final MultiValueMap<String, String> commonQueryParams;
+    private final String commonFragment;
+    private final Map<String, UriComponents> serviceTemplates = new ConcurrentHashMap<>();
+    private final Map<ServiceInstance, Map<String, UriComponents>> instanceTemplates =
+        new ConcurrentHashMap<>();
+
+    private UriTemplates(final FluentService service) {
+      this.scheme = service.scheme;
+      this.host = service.host;
+      this.port = service.port;
+      this.contextPath = service.contextPath;
+      this.version = service.version;
+      this.commonQueryParams = new LinkedMultiValueMap<>(service.commonQueryParams);
+      this.commonFragment = service.commonFragment;
+    }
+
+    private UriComponents get(final String endpoint, final ServiceInstance instance) {
+      return instance == null
+          ? serviceTemplates.computeIfAbsent(endpoint, e -> compile(host, port, e))
+          : instanceTemplates
+              .computeIfAbsent(instance, i -> new ConcurrentHashMap<>())
+              .computeIfAbsent(endpoint, e -> compile(instance.getHost(), instance.getPort(), e));
+    }
+
+    private UriComponents compile(
+        final String templateHost, final String templatePort, final String endpoint) {
+      return UriComponentsBuilder.newInstance()
+          .scheme(scheme)
+          .host(templateHost)
+          .port(StringUtils.isEmpty(templatePort) ? null : templatePort)
+          .path(contextPath)
+          .pathSegment(version)
+          .pathSegment(endpoint)
+          .queryParams(commonQueryParams)
+          .fragment(commonFragment)
+          .build();
+    }
   }
 
   /**
@@ -374,40 +792,132 @@ public class FluentService {
      * @return A fully formed URI.
      */
     URI build();
+
+    /**
+     * The instance of the service the URI points to, chosen by its {@linkplain LoadBalancer}.
+     *
+     * @return The ServiceInstance, or {@code null} if the service declares no instances.
+     */
+    default ServiceInstance getInstance() {
+      return null;
+    }
+
+    /**
+     * Another instance of the service for a further attempt of the request, e.g. a retry or a
+     * hedge, chosen by its {@linkplain LoadBalancer} among the available instances not tried yet,
+     * or among every available instance once all of them were tried.
+     *
+     * @param tried The instances the request was already sent to.
+     * @return The ServiceInstance, or {@code null} if the service declares no instances.
+     */
+    default ServiceInstance nextInstance(final Collection<ServiceInstance> tried) {
+      return null;
+    }
   }
 
   @RequiredArgsConstructor
   private static class DefaultUriBuilder implements ServiceUriBuilder {
 
     private final Map<String, Object> uriVariables = new HashMap<>();
-    private final UriComponentsBuilder uriComponentsBuilder;
+    private final FluentService service;
+    private final String endpoint;
+    private Object routingKey;
+    private ServiceInstance instance;
+    private UriTemplates uriTemplates;
+    private UriComponents uriTemplate;
+    private UriComponentsBuilder uriComponentsBuilder;
+
+    @Override
+    public ServiceInstance getInstance() {
+      uriTemplate();
+      return instance;
+    }
 
     @Override
     public URI build() {
-      return uriComponentsBuilder.buildAndExpand(uriVariables).toUri();
+      final UriComponents template = uriTemplate();
+      final UriComponents uriComponents =
+          uriComponentsBuilder == null
+              ? template
+              : uriComponentsBuilder.host(template.getHost()).port(template.getPort()).build();
+      return uriComponents.expand(uriVariables).toUri();
+    }
+
+    @Override
+    public ServiceInstance nextInstance(final Collection<ServiceInstance> tried) {
+      return service.chooseInstance(routingKey(), tried);
+    }
+
+    /**
+     * The instance is only chosen once needed, so that the routing key can be given by any uri
+     * variable.
+     */
+    private UriComponents uriTemplate() {
+      if (uriTemplate == null) {
+        instance = service.chooseInstance(routingKey(), Collections.emptySet());
+        uriTemplate = uriTemplates().get(endpoint, instance);
+      }
+      return uriTemplate;
+    }
+
+    /**
+     * Every part of the URI is read from the same snapshot of the URI templates, so that a setter
+     * called while the URI is built never mixes parts set before and after it.
+     */
+    private UriTemplates uriTemplates() {
+      if (uriTemplates == null) {
+        uriTemplates = service.uriTemplates();
+      }
+      return uriTemplates;
+    }
+
+    private Object routingKey() {
+      return routingKey != null || service.routingVariable == null
+          ? routingKey
+          : uriVariables.get(service.routingVariable);
+    }
+
+    /**
+     * The cached URI template is shared, so a builder copying it is only created once specific
+     * URI parts need to be applied. Host and port are those of the chosen instance, set once built.
+     */
+    private UriComponentsBuilder uriComponentsBuilder() {
+      if (uriComponentsBuilder == null) {
+        final UriComponents template = uriTemplates().get(endpoint, null);
+        final MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
+        template.getQueryParams().forEach((k, v) -> queryParams.put(k, new ArrayList<>(v)));
+        uriComponentsBuilder =
+            UriComponentsBuilder.newInstance()
+                .scheme(template.getScheme())
+                .path(template.getPath())
+                .queryParams(queryParams)
+                .fragment(template.getFragment());
+      }
+      return uriComponentsBuilder;
     }
 
     @Override
     public DefaultUriBuilder queryParam(final String key, final Object... values) {
-      uriComponentsBuilder.queryParam(key, values);
+      uriComponentsBuilder().queryParam(key, values);
       return this;
     }
 
     @Override
     public DefaultUriBuilder queryParam(final String key, final Collection<?> values) {
-      Optional.ofNullable(values).ifPresent(l -> uriComponentsBuilder.queryParam(key, l.toArray()));
+      Optional.ofNullable(values)
+          .ifPresent(l -> uriComponentsBuilder().queryParam(key, l.toArray()));
       return this;
     }
 
     @Override
     public DefaultUriBuilder queryParams(final MultiValueMap<String, String> params) {
-      uriComponentsBuilder.queryParams(params);
+      uriComponentsBuilder().queryParams(params);
       return this;
     }
 
     @Override
     public ServiceUriBuilder fragment(final String fragment) {
-      uriComponentsBuilder.fragment(fragment);
+      uriComponentsBuilder().fragment(fragment);
       return this;
     }
 
@@ -422,5 +932,12 @@ public class FluentService {
       Optional.ofNullable(variables).ifPresent(uriVariables::putAll);
       return this;
     }
+
+    @Override
+    public DefaultUriBuilder routingKey(final Object key) {
+      routingKey = key;
+      uriTemplate = null;
+      return this;
+    }
   }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.service;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.NonNull;
+
+/**
+ * Strategy choosing the {@linkplain ServiceInstance} of a {@linkplain FluentService} every request
+ * is sent to. Implementations run on every request by many threads at once, so they must be
+ * thread-safe and must not block. The provided ones are lock-free:
+ *
+ * <ul>
+ *   <li>{@linkplain LoadBalancer#roundRobin()} cycles through the instances.
+ *   <li>{@linkplain LoadBalancer#leastOutstandingRequests()} picks the instance with the fewest
+ *       requests in flight, scanning them all.
+ *   <li>{@linkplain LoadBalancer#powerOfTwoChoices()} picks the instance with the fewest requests
+ *       in flight out of two random ones, which performs nearly as well at a constant cost.
+ *   <li>{@linkplain LoadBalancer#consistentHash()} sends the requests with the same routing key to
+ *       the same instance, so that the caches of the instances keep their hot set.
+ * </ul>
+ *
+ * <p>In-flight counts only include the requests sent by this JVM.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@FunctionalInterface
+public interface LoadBalancer {
+
+  /**
+   * Chooses the instance a request is sent to.
+   *
+   * @param instances Instances of the service, never empty.
+   * @return One of the instances.
+   */
+  ServiceInstance choose(List<ServiceInstance> instances);
+
+  /**
+   * Chooses the instance a request with the given routing key is sent to. LoadBalancers ignoring
+   * routing keys choose as for a request without one.
+   *
+   * @param instances Instances of the service, never empty.
+   * @param routingKey Routing key of the request, if any.
+   * @return One of the instances.
+   */
+  default ServiceInstance choose(final List<ServiceInstance> instances, final Object routingKey) {
+    return choose(instances);
+  }
+
+  /**
+   * Creates a LoadBalancer cycling through the instances.
+   *
+   * @return A new round-robin LoadBalancer.
+   */
+  static LoadBalancer roundRobin() {
+    final AtomicInteger next = new AtomicInteger();
+    return instances -> instances.get(Math.floorMod(next.getAndIncrement(), instances.size()));
+  }
+
+  /**
+   * Creates a LoadBalancer picking the instance with the fewest requests in flight. Ties are
+   * broken from a random instance on, so that idle instances share the load.
+   *
+   * @return A new least-outstanding-requests LoadBalancer.
+   */
+  static LoadBalancer leastOutstandingRequests() {
+    return instances -> {
+      final int size = instances.size();
+      final int start = ThreadLocalRandom.current().nextInt(size);
+      ServiceInstance chosen = instances.get(start);
+      int fewest = chosen.getOutstandingRequests();
+      for (int i = 1; i < size && fewest > 0; i++) {
+        final ServiceInstance candidate = instances.get((start + i) % size);
+        final int outstanding = candidate.getOutstandingRequests();
+        if (outstanding < fewest) {
+          chosen = candidate;
+          fewest = outstanding;
+        }
+      }
+      return chosen;
+    };
+  }
+
+  /**
+   * Creates a LoadBalancer picking the instance with the fewest requests in flight out of two
+   * distinct random ones.
+   *
+   * @return A new power-of-two-choices LoadBalancer.
+   */
+  static LoadBalancer powerOfTwoChoices() {
+    return instances -> {
+      final int size = instances.size();
+      if (size == 1) {
+        return instances.get(0);
+      }
+      final ThreadLocalRandom random = ThreadLocalRandom.current();
+      final int first = random.nextInt(size);
+      final int other = random.nextInt(size - 1);
+      final ServiceInstance one = instances.get(first);
+      final ServiceInstance two = instances.get(other < first ? other : other + 1);
+      return two.getOutstandingRequests() < one.getOutstandingRequests() ? two : one;
+    };
+  }
+
+  /**
+   * Creates a LoadBalancer sending the requests with the same routing key to the same instance by
+   * rendezvous hashing, and the requests without one round-robin. Adding or removing an instance,
+   * ejections included, only remaps the keys of that instance.
+   *
+   * @return A new consistent-hash LoadBalancer.
+   */
+  static LoadBalancer consistentHash() {
+    return consistentHash(roundRobin());
+  }
+
+  /**
+   * Creates a LoadBalancer sending the requests with the same routing key to the same instance by
+   * rendezvous hashing.
+   *
+   * @param fallback Chooses the instance of the requests without a routing key.
+   * @return A new consistent-hash LoadBalancer.
+   */
+  static LoadBalancer consistentHash(@NonNull final LoadBalancer fallback) {
+    return new ConsistentHashLoadBalancer(fallback);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Settings of an {@linkplain OutlierDetector}. <br>
+ * <br>
+ *
+ * <p>A request to an instance fails when it throws one of the {@code failureExceptions}, which
+ * default to I/O errors, timeouts included, and server errors, or when it is answered with a {@code
+ * 5xx} response. An instance is ejected after {@code consecutiveFailures} failed requests in a row,
+ * or once its average latency reaches {@code latencyRatio} times the median of its siblings'. Every
+ * ejection of the same instance lasts {@code baseEjectionDuration} longer than the previous one, up
+ * to {@code maxEjectionDuration}.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class OutlierDetectionConfig {
+
+  /** Amount of failed requests in a row ejecting an instance. */
+  @Builder.Default private final int consecutiveFailures = 5;
+
+  /** Ratio of an instance's average latency to the median of its siblings' ejecting it. */
+  @Builder.Default private final float latencyRatio = 3;
+
+  /** Amount of successful requests to an instance before its latency is compared at all. */
+  @Builder.Default private final int minimumRequests = 20;
+
+  /** Amount of instances with enough requests for their latencies to be compared at all. */
+  @Builder.Default private final int minimumInstances = 3;
+
+  /** Time between two comparisons of the latencies of the instances. */
+  @NonNull @Builder.Default private final Duration evaluationInterval = Duration.ofSeconds(10);
+
+  /** Duration of the first ejection of an instance, multiplied by its recent ejections. */
+  @NonNull @Builder.Default private final Duration baseEjectionDuration = Duration.ofSeconds(30);
+
+  /** Longest duration of an ejection. */
+  @NonNull @Builder.Default private final Duration maxEjectionDuration = Duration.ofMinutes(5);
+
+  /**
+   * Highest percentage of the instances ejected at once. At least one instance can be ejected, but
+   * never all of them.
+   */
+  @Builder.Default private final float maxEjectionPercent = 50;
+
+  /** Failures counting against the instance, subclasses included. */
+  @NonNull @Builder.Default
+  private final Set<Class<? extends Exception>> failureExceptions =
+      Collections.unmodifiableSet(
+          new HashSet<>(
+              Arrays.asList(ResourceAccessException.class, HttpServerErrorException.class)));
+
+  /**
+   * Whether the given outcome of a request counts as a failure of the instance.
+   *
+   * @param response Response of the request, if any.
+   * @param failure Failure of the request, if any.
+   * @return {@code true} if the request failed.
+   */
+  public boolean isFailure(final Object response, final Throwable failure) {
+    if (failure != null) {
+      return failureExceptions.stream().anyMatch(type -> type.isInstance(failure));
+    }
+    return response instanceof ResponseEntity
+        && ((ResponseEntity<?>) response).getStatusCode().is5xxServerError();
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.NonNull;
+
+/**
+ * Passively tracks the health of the {@linkplain ServiceInstance instances} of a {@linkplain
+ * FluentService} from the outcome of the requests sent to them, and temporarily ejects the outliers
+ * from load balancing, instead of letting a bad instance keep its share of the requests. <br>
+ * <br>
+ *
+ * <p>An instance is ejected once it fails too many requests in a row, e.g. with {@code 5xx}
+ * responses or timeouts, or once its average latency is too high compared to the median of its
+ * siblings'. See {@linkplain OutlierDetectionConfig}. Ejections last longer every time the same
+ * instance is ejected again, and shrink back while it stays healthy. At most {@code
+ * maxEjectionPercent} of the instances are ejected at once, so that the remaining ones are not
+ * overloaded by a failure of the whole service, and requests are sent to every instance if they
+ * are all ejected anyway.
+ *
+ * <p>Failures are tracked with every response, while latencies are compared at most once every
+ * {@code evaluationInterval}, by the thread choosing an instance then. Tracking is lock-free and
+ * choosing an instance only copies the list of instances while some are ejected. An
+ * OutlierDetector holds the state of a single service, so every service needs its own:
+ *
+ * <pre class="code">
+ * myCoolService.setOutlierDetector(new OutlierDetector(config, listener));
+ * </pre>
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class OutlierDetector {
+
+  /** Reasons an instance is ejected for. */
+  public enum Reason {
+    /** The instance failed too many requests in a row. */
+    CONSECUTIVE_FAILURES,
+    /** The instance is much slower than its siblings. */
+    LATENCY
+  }
+
+  // The moving average of the latency weighs every new response an eighth.
+  private static final int LATENCY_WEIGHT = 8;
+
+  private final OutlierDetectionConfig config;
+  private final OutlierListener listener;
+  private final LongSupplier nanoTime;
+  private final long intervalNanos;
+  private final AtomicLong nextEvaluation;
+  private final AtomicInteger ejected = new AtomicInteger();
+  private volatile List<ServiceInstance> instances = Collections.emptyList();
+
+  /** Creates an OutlierDetector with default settings. */
+  public OutlierDetector() {
+    this(OutlierDetectionConfig.builder().build(), null);
+  }
+
+  /**
+   * Creates an OutlierDetector.
+   *
+   * @param config Settings of the detection.
+   * @param listener Receives ejections and readmissions, if any.
+   */
+  public OutlierDetector(
+      @NonNull final OutlierDetectionConfig config, final OutlierListener listener) {
+    this(config, listener, System::nanoTime);
+  }
+
+  OutlierDetector(
+      final OutlierDetectionConfig config,
+      final OutlierListener listener,
+      final LongSupplier nanoTime) {
+    this.config = config;
+    this.listener = listener;
+    this.nanoTime = nanoTime;
+    this.intervalNanos = config.getEvaluationInterval().toNanos();
+    this.nextEvaluation = new AtomicLong(nanoTime.getAsLong() + intervalNanos);
+  }
+
+  /**
+   * Instances requests may be sent to, readmitting the ones whose ejection is over and comparing
+   * latencies if due.
+   *
+   * @param candidates Every instance of the service.
+   * @return The instances not ejected, or every instance if they are all ejected.
+   */
+  public List<ServiceInstance> available(final List<ServiceInstance> candidates) {
+    if (instances != candidates) {
+      track(candidates);
+    }
+    final long now = nanoTime.getAsLong();
+    final long next = nextEvaluation.get();
+    if (now - next >= 0 && nextEvaluation.compareAndSet(next, now + intervalNanos)) {
+      evaluate(candidates);
+    }
+    if (ejected.get() == 0) {
+      return candidates;
+    }
+    final List<ServiceInstance> available = new ArrayList<>(candidates.size());
+    for (final ServiceInstance instance : candidates) {
+      final long until = instance.ejectedUntil.get();
+      if (until == ServiceInstance.NOT_EJECTED || (now - until >= 0 && readmit(instance, until))) {
+        available.add(instance);
+      }
+    }
+    return available.isEmpty() ? candidates : available;
+  }
+
+  /**
+   * Records the outcome of a request sent to the given instance, ejecting it after too many
+   * failures in a row.
+   *
+   * @param instance Instance the request was sent to.
+   * @param latencyNanos Duration of the request.
+   * @param response Response of the request, if any.
+   * @param failure Failure of the request, if any.
+   */
+  void onResult(
+      final ServiceInstance instance,
+      final long latencyNanos,
+      final Object response,
+      final Throwable failure) {
+    if (config.isFailure(response, failure)) {
+      if (instance.consecutiveFailures.incrementAndGet() >= config.getConsecutiveFailures()) {
+        eject(instance, Reason.CONSECUTIVE_FAILURES);
+      }
+      return;
+    }
+    if (instance.consecutiveFailures.get() != 0) {
+      instance.consecutiveFailures.set(0);
+    }
+    if (failure == null) {
+      final long sample = Math.max(1, latencyNanos);
+      instance.averageLatencyNanos.accumulateAndGet(
+          sample, (average, s) -> average == 0 ? s : average + (s - average) / LATENCY_WEIGHT);
+      if (instance.latencySamples.get() < config.getMinimumRequests()) {
+        instance.latencySamples.incrementAndGet();
+      }
+    }
+  }
+
+  private synchronized void track(final List<ServiceInstance> candidates) {
+    if (instances != candidates) {
+      instances = candidates;
+      ejected.set((int) candidates.stream().filter(ServiceInstance::isEjected).count());
+    }
+  }
+
+  /**
+   * Ejects the instances whose average latency is too high compared to the median of their
+   * siblings', and shrinks the ejection backoff of the healthy ones.
+   */
+  private void evaluate(final List<ServiceInstance> candidates) {
+    final List<ServiceInstance> compared = new ArrayList<>(candidates.size());
+    for (final ServiceInstance instance : candidates) {
+      if (instance.isEjected()) {
+        continue;
+      }
+      if (instance.consecutiveFailures.get() == 0) {
+        instance.ejections.updateAndGet(n -> Math.max(0, n - 1));
+      }
+      if (instance.latencySamples.get() >= config.getMinimumRequests()) {
+        compared.add(instance);
+      }
+    }
+    if (compared.size() < Math.max(1, config.getMinimumInstances())) {
+      return;
+    }
+    final long[] latencies =
+        compared.stream().mapToLong(i -> i.averageLatencyNanos.get()).sorted().toArray();
+    final double threshold = latencies[latencies.length / 2] * (double) config.getLatencyRatio();
+    compared.stream()
+        .filter(i -> i.averageLatencyNanos.get() >= threshold)
+        .forEach(i -> eject(i, Reason.LATENCY));
+  }
+
+  private void eject(final ServiceInstance instance, final Reason reason) {
+    final int size = instances.size();
+    final int maxEjected =
+        Math.min(size - 1, Math.max(1, (int) (size * config.getMaxEjectionPercent() / 100)));
+    int current;
+    do {
+      current = ejected.get();
+      if (current >= maxEjected || instance.isEjected()) {
+        return;
+      }
+    } while (!ejected.compareAndSet(current, current + 1));
+    final Duration backoff =
+        config.getBaseEjectionDuration().multipliedBy(instance.ejections.get() + 1L);
+    final Duration duration =
+        backoff.compareTo(config.getMaxEjectionDuration()) < 0
+            ? backoff
+            : config.getMaxEjectionDuration();
+    if (!instance.ejectedUntil.compareAndSet(
+        ServiceInstance.NOT_EJECTED, nanoTime.getAsLong() + duration.toNanos())) {
+      ejected.decrementAndGet();
+      return;
+    }
+    instance.ejections.incrementAndGet();
+    if (listener != null) {
+      listener.onEjection(instance, reason, duration);
+    }
+  }
+
+  private boolean readmit(final ServiceInstance instance, final long until) {
+    if (instance.ejectedUntil.compareAndSet(until, ServiceInstance.NOT_EJECTED)) {
+      ejected.decrementAndGet();
+      instance.consecutiveFailures.set(0);
+      instance.averageLatencyNanos.set(0);
+      instance.latencySamples.set(0);
+      if (listener != null) {
+        listener.onReadmission(instance);
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.service;
+
+import java.time.Duration;
+
+/**
+ * Receives the ejections and readmissions of the instances of a service by its {@linkplain
+ * OutlierDetector}, e.g. to log them or to export them as metrics. <br>
+ * <br>
+ *
+ * <p>Events are reported synchronously by the thread causing them, which is a thread executing or
+ * starting a request, so implementations must be fast and thread-safe.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public interface OutlierListener {
+
+  /**
+   * Called once the given instance is ejected.
+   *
+   * @param instance The ejected ServiceInstance.
+   * @param reason Why the instance is ejected.
+   * @param duration Time the instance stays ejected.
+   */
+  void onEjection(ServiceInstance instance, OutlierDetector.Reason reason, Duration duration);
+
+  /**
+   * Called once the ejection of the given instance is over and requests may be sent to it again.
+   *
+   * @param instance The readmitted ServiceInstance.
+   */
+  void onReadmission(ServiceInstance instance);
+}
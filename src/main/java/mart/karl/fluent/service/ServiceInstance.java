@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.util.Assert;
+
+/**
+ * One of the {@linkplain FluentService#setInstances(java.util.List) instances}, i.e. replicas, of
+ * a FluentService, counting the requests in flight to it so that a {@linkplain LoadBalancer} can
+ * pick the least loaded one, and reporting their outcome to the {@linkplain OutlierDetector} of the
+ * service, if any.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@ToString(of = {"host", "port"})
+public final class ServiceInstance {
+
+  static final long NOT_EJECTED = Long.MIN_VALUE;
+
+  /** Host of the instance. */
+  @Getter private final String host;
+
+  /** Port of the instance, if any. */
+  @Getter private final String port;
+
+  /** Hash of the host and port, weighing the instance for consistent hashing. */
+  final long authorityHash;
+
+  private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+  // Health of the instance, tracked by the OutlierDetector of the service.
+  final AtomicInteger consecutiveFailures = new AtomicInteger();
+  final AtomicLong averageLatencyNanos = new AtomicLong();
+  final AtomicInteger latencySamples = new AtomicInteger();
+  final AtomicLong ejectedUntil = new AtomicLong(NOT_EJECTED);
+  final AtomicInteger ejections = new AtomicInteger();
+  private final Supplier<OutlierDetector> outlierDetector;
+
+  private ServiceInstance(
+      final String host, final String port, final Supplier<OutlierDetector> outlierDetector) {
+    this.host = host;
+    this.port = port;
+    this.outlierDetector = outlierDetector;
+    this.authorityHash = ConsistentHashLoadBalancer.hash(port == null ? host : host + ':' + port);
+  }
+
+  /**
+   * Parses an instance declared as {@code host} or {@code host:port}.
+   *
+   * @param authority Host and optional port of the instance.
+   * @param outlierDetector The current OutlierDetector of the service, if any, read on every
+   *     result so that the one set last is always reported to.
+   * @return A new ServiceInstance.
+   */
+  static ServiceInstance parse(
+      final String authority, final Supplier<OutlierDetector> outlierDetector) {
+    Assert.hasText(authority, "instance must not be null or empty");
+    final int colon = authority.lastIndexOf(':');
+    return colon < 0
+        ? new ServiceInstance(authority.trim(), null, outlierDetector)
+        : new ServiceInstance(
+            authority.substring(0, colon).trim(),
+            authority.substring(colon + 1).trim(),
+            outlierDetector);
+  }
+
+  /**
+   * Requests currently in flight to this instance.
+   *
+   * @return The amount of requests sent and not completed yet.
+   */
+  public int getOutstandingRequests() {
+    return outstandingRequests.get();
+  }
+
+  /**
+   * Whether this instance is ejected from load balancing by the OutlierDetector of the service.
+   * An instance whose ejection is over stays ejected until the service chooses an instance again.
+   *
+   * @return {@code true} if requests are not sent to this instance.
+   */
+  public boolean isEjected() {
+    return ejectedUntil.get() != NOT_EJECTED;
+  }
+
+  /**
+   * Performs the given request to this instance, counting it as outstanding while in flight.
+   *
+   * @param request Performs the request.
+   * @param <T> Response type.
+   * @return The response of the request.
+   */
+  public <T> T execute(final Supplier<T> request) {
+    outstandingRequests.incrementAndGet();
+    final long start = System.nanoTime();
+    T response = null;
+    RuntimeException failure = null;
+    try {
+      response = request.get();
+    } catch (final RuntimeException e) {
+      failure = e;
+    } finally {
+      outstandingRequests.decrementAndGet();
+    }
+    onResult(start, response, failure);
+    if (failure != null) {
+      throw failure;
+    }
+    return response;
+  }
+
+  /**
+   * Asynchronous version of {@linkplain ServiceInstance#execute(Supplier)}.
+   *
+   * @param request Starts the request.
+   * @param <T> Response type.
+   * @return The CompletableFuture of the request.
+   */
+  public <T> CompletableFuture<T> executeAsync(final Supplier<CompletableFuture<T>> request) {
+    outstandingRequests.incrementAndGet();
+    final long start = System.nanoTime();
+    final CompletableFuture<T> response;
+    try {
+      response = request.get();
+    } catch (final RuntimeException e) {
+      outstandingRequests.decrementAndGet();
+      throw e;
+    }
+    response.whenComplete(
+        (r, t) -> {
+          outstandingRequests.decrementAndGet();
+          onResult(start, r, t instanceof CompletionException ? t.getCause() : t);
+        });
+    return response;
+  }
+
+  private void onResult(final long start, final Object response, final Throwable failure) {
+    final OutlierDetector detector = outlierDetector.get();
+    if (detector != null) {
+      detector.onResult(this, System.nanoTime() - start, response, failure);
+    }
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * {@linkplain ClientHttpRequestFactory} running exchanges over Java 11's {@code
+ * java.net.http.HttpClient}, which multiplexes every concurrent request to the same host over a
+ * single HTTP/2 connection, instead of opening one HTTP/1.1 connection per request in flight. Plain
+ * {@code http} URIs are upgraded to cleartext HTTP/2, i.e. h2c, when the server accepts it, and
+ * servers speaking HTTP/1.1 only are served over HTTP/1.1. Every HTTP method is supported, PATCH
+ * included.<br>
+ * <br>
+ *
+ * <p>Like {@linkplain mart.karl.fluent.concurrent.VirtualThreads VirtualThreads}, it keeps
+ * FluentRestTemplate's Java 8 baseline: the HttpClient API is looked up at runtime, so the very
+ * same JAR runs on any Java version and only provides this factory when the running JVM does.
+ *
+ * <pre class="code">
+ * FluentRestTemplate fluentRestTemplate =
+ *   FluentRestTemplate.builder()
+ *   .http2() // same as .restTemplate(new RestTemplate(new JdkClientHttpRequestFactory()))
+ *   .build();
+ * </pre>
+ *
+ * <p>Request bodies are buffered before being sent. The HttpClient and its connections are shared
+ * by every request created by the same factory, so create one factory per application.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class JdkClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+  private static final Api API = Api.lookup();
+
+  // Headers the HttpClient sets on its own and refuses to be given. Java 11 refuses Date, From,
+  // Via and Warning as well, which later versions accept.
+  private static final Set<String> RESTRICTED_HEADERS =
+      new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+  static {
+    RESTRICTED_HEADERS.addAll(
+        Arrays.asList(
+            HttpHeaders.CONNECTION,
+            HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.DATE,
+            HttpHeaders.EXPECT,
+            HttpHeaders.FROM,
+            HttpHeaders.HOST,
+            HttpHeaders.UPGRADE,
+            HttpHeaders.VIA,
+            HttpHeaders.WARNING));
+  }
+
+  private final Object httpClient;
+  private final Duration readTimeout;
+
+  /**
+   * Creates a JdkClientHttpRequestFactory without timeouts.
+   *
+   * @throws UnsupportedOperationException If the running JVM doesn't provide the HttpClient.
+   */
+  public JdkClientHttpRequestFactory() {
+    this(null, null);
+  }
+
+  /**
+   * Creates a JdkClientHttpRequestFactory.
+   *
+   * @param connectTimeout Time to establish a connection, or {@code null} to wait as long as
+   *     needed.
+   * @param readTimeout Time to receive the response headers, or {@code null} to wait as long as
+   *     needed.
+   * @throws UnsupportedOperationException If the running JVM doesn't provide the HttpClient.
+   */
+  public JdkClientHttpRequestFactory(final Duration connectTimeout, final Duration readTimeout) {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException(
+          "The JDK HttpClient requires Java 11 or later, running on Java "
+              + System.getProperty("java.specification.version"));
+    }
+    this.httpClient = newHttpClient(connectTimeout);
+    this.readTimeout = readTimeout;
+  }
+
+  /**
+   * Tells whether the running JVM provides the {@code java.net.http.HttpClient}.
+   *
+   * @return {@code true} when running on Java 11 or later.
+   */
+  public static boolean isSupported() {
+    return API != null;
+  }
+
+  @Override
+  public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod) {
+    return new JdkClientHttpRequest(uri, httpMethod);
+  }
+
+  private static Object newHttpClient(final Duration connectTimeout) {
+    try {
+      Object builder = (Object) API.newClientBuilder.invokeExact();
+      builder = (Object) API.version.invokeExact(builder, API.http2);
+      if (connectTimeout != null) {
+        builder = (Object) API.connectTimeout.invokeExact(builder, (Object) connectTimeout);
+      }
+      return (Object) API.buildClient.invokeExact(builder);
+    } catch (final RuntimeException | Error e) {
+      throw e;
+    } catch (final Throwable t) {
+      throw new IllegalStateException("Unable to create a JDK HttpClient", t);
+    }
+  }
+
+  private final class JdkClientHttpRequest extends AbstractClientHttpRequest {
+    private final URI uri;
+    private final HttpMethod httpMethod;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+    private JdkClientHttpRequest(final URI uri, final HttpMethod httpMethod) {
+      this.uri = uri;
+      this.httpMethod = httpMethod;
+    }
+
+    @Override
+    public HttpMethod getMethod() {
+      return httpMethod;
+    }
+
+    @Override
+    public URI getURI() {
+      return uri;
+    }
+
+    @Override
+    protected OutputStream getBodyInternal(final HttpHeaders headers) {
+      return body;
+    }
+
+    @Override
+    protected ClientHttpResponse executeInternal(final HttpHeaders headers) throws IOException {
+      try {
+        Object builder = (Object) API.newRequestBuilder.invokeExact((Object) uri);
+        for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+          if (RESTRICTED_HEADERS.contains(header.getKey())) {
+            continue;
+          }
+          for (final String value : header.getValue()) {
+            builder =
+                (Object) API.header.invokeExact(builder, (Object) header.getKey(), (Object) value);
+          }
+        }
+        if (readTimeout != null) {
+          builder = (Object) API.timeout.invokeExact(builder, (Object) readTimeout);
+        }
+        final Object publisher =
+            body.size() == 0
+                ? API.noBody
+                : (Object) API.ofByteArray.invokeExact((Object) body.toByteArray());
+        builder = (Object) API.method.invokeExact(builder, (Object) httpMethod.name(), publisher);
+        final Object request = (Object) API.buildRequest.invokeExact(builder);
+        return new JdkClientHttpResponse(
+            (Object) API.send.invokeExact(httpClient, request, API.ofInputStream));
+      } catch (final IOException | RuntimeException | Error e) {
+        throw e;
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for the response of " + uri);
+      } catch (final Throwable t) {
+        throw new IllegalStateException("Unable to send the request to " + uri, t);
+      }
+    }
+  }
+
+  private static final class JdkClientHttpResponse extends AbstractClientHttpResponse {
+    private final int statusCode;
+    private final HttpHeaders headers = new HttpHeaders();
+    private final InputStream body;
+
+    @SuppressWarnings("unchecked")
+    private JdkClientHttpResponse(final Object response) throws Throwable {
+      statusCode = (Integer) (Object) API.statusCode.invokeExact(response);
+      final Map<String, List<String>> headerMap =
+          (Map<String, List<String>>)
+              (Object) API.headerMap.invokeExact((Object) API.headers.invokeExact(response));
+      // HTTP/2 pseudo-headers such as :status are not headers of the response.
+      headerMap.forEach(
+          (name, values) -> {
+            if (!name.startsWith(":")) {
+              headers.put(name, values);
+            }
+          });
+      body = (InputStream) (Object) API.body.invokeExact(response);
+    }
+
+    @Override
+    public int getRawStatusCode() {
+      return statusCode;
+    }
+
+    @Override
+    public String getStatusText() {
+      // HTTP/2 has no reason phrase.
+      try {
+        return HttpStatus.valueOf(statusCode).getReasonPhrase();
+      } catch (final IllegalArgumentException e) {
+        return "";
+      }
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+
+    @Override
+    public InputStream getBody() {
+      return body;
+    }
+
+    @Override
+    public void close() {
+      try {
+        body.close();
+      } catch (final IOException e) {
+        // Closing only releases the connection.
+      }
+    }
+  }
+
+  /** Method handles of the HttpClient API, erased to Object so that they are invoked exactly. */
+  private static final class Api {
+    private final MethodHandle newClientBuilder;
+    private final MethodHandle version;
+    private final MethodHandle connectTimeout;
+    private final MethodHandle buildClient;
+    private final MethodHandle newRequestBuilder;
+    private final MethodHandle header;
+    private final MethodHandle timeout;
+    private final MethodHandle method;
+    private final MethodHandle buildRequest;
+    private final MethodHandle ofByteArray;
+    private final MethodHandle send;
+    private final MethodHandle statusCode;
+    private final MethodHandle headers;
+    private final MethodHandle headerMap;
+    private final MethodHandle body;
+    private final Object http2;
+    private final Object noBody;
+    private final Object ofInputStream;
+
+    private Api() throws ReflectiveOperationException {
+      final Class<?> client = Class.forName("java.net.http.HttpClient");
+      final Class<?> clientBuilder = Class.forName("java.net.http.HttpClient$Builder");
+      final Class<?> clientVersion = Class.forName("java.net.http.HttpClient$Version");
+      final Class<?> request = Class.forName("java.net.http.HttpRequest");
+      final Class<?> requestBuilder = Class.forName("java.net.http.HttpRequest$Builder");
+      final Class<?> publisher = Class.forName("java.net.http.HttpRequest$BodyPublisher");
+      final Class<?> publishers = Class.forName("java.net.http.HttpRequest$BodyPublishers");
+      final Class<?> response = Class.forName("java.net.http.HttpResponse");
+      final Class<?> handler = Class.forName("java.net.http.HttpResponse$BodyHandler");
+      final Class<?> handlers = Class.forName("java.net.http.HttpResponse$BodyHandlers");
+      final Class<?> responseHeaders = Class.forName("java.net.http.HttpHeaders");
+      newClientBuilder = find(client, "newBuilder", true, clientBuilder);
+      version = find(clientBuilder, "version", false, clientBuilder, clientVersion);
+      connectTimeout = find(clientBuilder, "connectTimeout", false, clientBuilder, Duration.class);
+      buildClient = find(clientBuilder, "build", false, client);
+      newRequestBuilder = find(request, "newBuilder", true, requestBuilder, URI.class);
+      header = find(requestBuilder, "header", false, requestBuilder, String.class, String.class);
+      timeout = find(requestBuilder, "timeout", false, requestBuilder, Duration.class);
+      method = find(requestBuilder, "method", false, requestBuilder, String.class, publisher);
+      buildRequest = find(requestBuilder, "build", false, request);
+      ofByteArray = find(publishers, "ofByteArray", true, publisher, byte[].class);
+      send = find(client, "send", false, response, request, handler);
+      statusCode = find(response, "statusCode", false, int.class);
+      headers = find(response, "headers", false, responseHeaders);
+      headerMap = find(responseHeaders, "map", false, Map.class);
+      body = find(response, "body", false, Object.class);
+      http2 = clientVersion.getField("HTTP_2").get(null);
+      noBody = publishers.getMethod("noBody").invoke(null);
+      ofInputStream = handlers.getMethod("ofInputStream").invoke(null);
+    }
+
+    private static Api lookup() {
+      try {
+        return new Api();
+      } catch (final ReflectiveOperationException | LinkageError e) {
+        return null;
+      }
+    }
+
+    private static MethodHandle find(
+        final Class<?> type,
+        final String name,
+        final boolean isStatic,
+        final Class<?> returnType,
+        final Class<?>... parameterTypes)
+        throws ReflectiveOperationException {
+      final MethodType methodType = MethodType.methodType(returnType, parameterTypes);
+      final MethodHandle handle =
+          isStatic
+              ? MethodHandles.publicLookup().findStatic(type, name, methodType)
+              : MethodHandles.publicLookup().findVirtual(type, name, methodType);
+      return handle.asType(handle.type().generic());
+    }
+  }
+}
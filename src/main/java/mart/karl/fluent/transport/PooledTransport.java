@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Transport reusing a pool of persistent connections to every route requests are sent to, instead
+ * of opening a new connection for most requests as {@linkplain
+ * org.springframework.http.client.SimpleClientHttpRequestFactory SimpleClientHttpRequestFactory}
+ * does, which saves the TCP and TLS handshakes from the latency of every request. It is backed by
+ * Apache HttpClient, which must be provided, and supports every HTTP method, PATCH included. <br>
+ * <br>
+ *
+ * <p>Connections are limited per route and in total, see {@linkplain PooledTransportConfig}. A
+ * background thread closes the connections idle for longer than {@code idleTimeout} and the ones
+ * older than {@code timeToLive}, so that the pool neither keeps connections the server is about to
+ * close nor sticks to stale DNS records forever. Provide it to FluentRestTemplate, which then owns
+ * a RestTemplate on top of it, and close it once done:
+ *
+ * <pre class="code">
+ * PooledTransport transport =
+ *     new PooledTransport(PooledTransportConfig.builder().service(myCoolService, 50).build());
+ * FluentRestTemplate.builder().pooledTransport(transport).build();
+ * </pre>
+ *
+ * <p>The utilization of the pool, the leases waiting for a connection and the time spent waiting
+ * are kept for monitoring. A pool constantly fully leased with pending leases is undersized.
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+public final class PooledTransport implements Closeable {
+
+  private final MeteredConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+
+  /** ClientHttpRequestFactory sending the requests through the pool. */
+  @Getter private final ClientHttpRequestFactory requestFactory;
+
+  /** Creates a PooledTransport with default settings. */
+  public PooledTransport() {
+    this(PooledTransportConfig.builder().build());
+  }
+
+  /**
+   * Creates a PooledTransport.
+   *
+   * @param config Settings of the pool.
+   */
+  public PooledTransport(@NonNull final PooledTransportConfig config) {
+    connectionManager =
+        new MeteredConnectionManager(
+            config.getTimeToLive() == null ? -1 : config.getTimeToLive().toMillis());
+    connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+    config.getRoutes().forEach((uri, max) -> connectionManager.setMaxPerRoute(route(uri), max));
+    connectionManager.setMaxTotal(
+        Math.max(
+            config.getMaxConnections(),
+            config.getRoutes().values().stream().mapToInt(Integer::intValue).sum()));
+    final HttpClientBuilder httpClientBuilder =
+        HttpClientBuilder.create()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(
+                RequestConfig.custom()
+                    .setConnectTimeout(millis(config.getConnectTimeout()))
+                    .setSocketTimeout(millis(config.getReadTimeout()))
+                    .setConnectionRequestTimeout(millis(config.getLeaseTimeout()))
+                    .build());
+    if (config.getIdleTimeout() != null) {
+      httpClientBuilder.evictIdleConnections(
+          config.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    }
+    if (config.getTimeToLive() != null) {
+      httpClientBuilder.evictExpiredConnections();
+    }
+    httpClient = httpClientBuilder.build();
+    requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+  }
+
+  /**
+   * Maximum amount of connections of the pool.
+   *
+   * @return The limit of connections of all routes together.
+   */
+  public int getMaxConnections() {
+    return connectionManager.getMaxTotal();
+  }
+
+  /**
+   * Maximum amount of connections to the given route.
+   *
+   * @param uri Base URI of the route, i.e. its scheme, host and port.
+   * @return The limit of connections of the route.
+   */
+  public int getMaxConnections(@NonNull final URI uri) {
+    return connectionManager.getMaxPerRoute(route(uri));
+  }
+
+  /**
+   * Amount of connections currently leased by requests in flight.
+   *
+   * @return Leased connections of all routes.
+   */
+  public int getLeasedConnections() {
+    return stats().getLeased();
+  }
+
+  /**
+   * Amount of open connections idle in the pool.
+   *
+   * @return Connections available without connecting.
+   */
+  public int getAvailableConnections() {
+    return stats().getAvailable();
+  }
+
+  /**
+   * Amount of requests currently waiting for a connection.
+   *
+   * @return Pending leases of all routes.
+   */
+  public int getPendingLeases() {
+    return stats().getPending();
+  }
+
+  /**
+   * Percentage of the pool currently leased.
+   *
+   * @return The leased connections over the maximum, from 0 to 100.
+   */
+  public float getUtilization() {
+    final PoolStats stats = stats();
+    return stats.getMax() == 0 ? 0 : stats.getLeased() * 100F / stats.getMax();
+  }
+
+  /**
+   * Amount of connections requested from the pool, whether they were leased or timed out.
+   *
+   * @return Lease requests so far.
+   */
+  public long getLeaseCount() {
+    return connectionManager.leaseCount.sum();
+  }
+
+  /**
+   * Amount of connection requests failed because no connection was available in time.
+   *
+   * @return Timed out leases so far.
+   */
+  public long getLeaseTimeoutCount() {
+    return connectionManager.leaseTimeoutCount.sum();
+  }
+
+  /**
+   * Total time requests spent waiting for a connection from the pool.
+   *
+   * @return The summed lease wait time so far.
+   */
+  public Duration getTotalLeaseWaitTime() {
+    return Duration.ofNanos(connectionManager.leaseWaitNanos.sum());
+  }
+
+  /** Closes every connection of the pool and stops its eviction thread. */
+  @Override
+  public void close() throws IOException {
+    httpClient.close();
+  }
+
+  private PoolStats stats() {
+    return connectionManager.getTotalStats();
+  }
+
+  /** The route HttpClient plans for requests to the given URI, so that their limit applies. */
+  private static HttpRoute route(final URI uri) {
+    final boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+    final int port = uri.getPort() != -1 ? uri.getPort() : secure ? 443 : 80;
+    return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+  }
+
+  private static int millis(final Duration timeout) {
+    return timeout == null ? -1 : (int) Math.min(Integer.MAX_VALUE, timeout.toMillis());
+  }
+
+  /** Connection pool measuring the time requests wait for their connection. */
+  private static final class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+    private final LongAdder leaseCount = new LongAdder();
+    private final LongAdder leaseTimeoutCount = new LongAdder();
+    private final LongAdder leaseWaitNanos = new LongAdder();
+
+    private MeteredConnectionManager(final long timeToLiveMillis) {
+      super(timeToLiveMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+      final ConnectionRequest request = super.requestConnection(route, state);
+      return new ConnectionRequest() {
+        @Override
+        public HttpClientConnection get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+          final long start = System.nanoTime();
+          try {
+            return request.get(timeout, unit);
+          } catch (final ConnectionPoolTimeoutException e) {
+            leaseTimeoutCount.increment();
+            throw e;
+          } finally {
+            leaseCount.increment();
+            leaseWaitNanos.add(System.nanoTime() - start);
+          }
+        }
+
+        @Override
+        public boolean cancel() {
+          return request.cancel();
+        }
+      };
+    }
+  }
+}
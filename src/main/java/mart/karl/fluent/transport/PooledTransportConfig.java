@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.transport;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import mart.karl.fluent.service.FluentService;
+
+/**
+ * Settings of a {@linkplain PooledTransport}. <br>
+ * <br>
+ *
+ * <p>A route is the scheme, host and port requests are sent to. Every route gets up to {@code
+ * maxConnectionsPerRoute} connections, unless given its own limit in {@code routes}, and all routes
+ * together up to {@code maxConnections}, raised to the sum of the limits of the given routes so
+ * that they never starve each other. The routes of a {@linkplain FluentService}, one per instance
+ * if it declares several, are sized at once:
+ *
+ * <pre class="code">
+ * PooledTransportConfig.builder()
+ *   .service(myCoolService, 50)
+ *   .service(myOtherService, 10)
+ *   .idleTimeout(Duration.ofSeconds(30))
+ *   .timeToLive(Duration.ofMinutes(5))
+ *   .build();
+ * </pre>
+ *
+ * @author Carlos Martinez - Karl Mart
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class PooledTransportConfig {
+
+  /** Maximum amount of connections of the pool. */
+  @Builder.Default private final int maxConnections = 200;
+
+  /** Maximum amount of connections of every route without its own limit. */
+  @Builder.Default private final int maxConnectionsPerRoute = 20;
+
+  /** Maximum amount of connections of the given routes, mapped by their base URI. */
+  @Singular private final Map<URI, Integer> routes;
+
+  /** Time to establish a connection, or {@code null} to wait as long as needed. */
+  private final Duration connectTimeout;
+
+  /** Time without any data read on a connection, or {@code null} to wait as long as needed. */
+  private final Duration readTimeout;
+
+  /** Time to lease a connection from the pool, or {@code null} to wait as long as needed. */
+  private final Duration leaseTimeout;
+
+  /** Time after which an idle connection is closed, or {@code null} to keep it open. */
+  @Builder.Default private final Duration idleTimeout = Duration.ofSeconds(30);
+
+  /** Time after which a connection is closed once released, or {@code null} to keep reusing it. */
+  private final Duration timeToLive;
+
+  /** Builder for {@linkplain PooledTransportConfig}. */
+  public static class PooledTransportConfigBuilder {
+
+    /**
+     * Limits the connections to every instance of the given service, or to the service itself if
+     * it declares no instances.
+     *
+     * @param service The FluentService requests are sent to.
+     * @param maxConnections Maximum amount of connections to each instance.
+     * @return This builder.
+     */
+    public PooledTransportConfigBuilder service(
+        @NonNull final FluentService service, final int maxConnections) {
+      service.getBaseUris().forEach(uri -> route(uri, maxConnections));
+      return this;
+    }
+  }
+}
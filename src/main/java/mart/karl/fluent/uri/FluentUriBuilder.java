@@ -111,4 +111,15 @@ public interface FluentUriBuilder<T extends FluentUriBuilder<T>> {
    * @return The FluentUriBuilder instance invoking this method.
    */
   T uriVariables(Map<String, ?> variables);
+
+  /**
+   * Registers the routing key of the request, e.g. the id of the resource, so that a {@linkplain
+   * FluentService} balancing its requests across several instances by {@linkplain
+   * mart.karl.fluent.service.LoadBalancer#consistentHash() consistent hashing} sends every request
+   * with the same key to the same instance. Ignored by services without instances.
+   *
+   * @param key Routing key of the request, overriding the value of the service's routing variable.
+   * @return The FluentUriBuilder instance invoking this method.
+   */
+  T routingKey(Object key);
 }
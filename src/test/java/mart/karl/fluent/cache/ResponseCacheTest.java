@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.cache;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+  private static final URI DUMMY_URI = URI.create("http://dummy.uri/foo");
+  private static final URI OTHER_URI = URI.create("http://dummy.uri/bar");
+  private static final String DUMMY_RESPONSE = "DummyResponse";
+
+  private final MutableClock clock = new MutableClock();
+  private final AtomicInteger exchanges = new AtomicInteger();
+  private ResponseCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new ResponseCache(10, false, clock);
+  }
+
+  @Test
+  void givenMaxAge_whenRequestedWhileFresh_thenCachedResponseIsReturned() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        respondingWith("max-age=60");
+    // When
+    final ResponseEntity<String> first = cache.exchange(get(DUMMY_URI), String.class, exchange);
+    clock.advance(59_000);
+    final ResponseEntity<String> second = cache.exchange(get(DUMMY_URI), String.class, exchange);
+    clock.advance(1_000);
+    cache.exchange(get(DUMMY_URI), String.class, exchange);
+    // Then
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.getBody()).isSameAs(first.getBody());
+    assertThat(second.getHeaders()).isEqualTo(first.getHeaders()).isNotSameAs(first.getHeaders());
+    assertThat(exchanges).hasValue(2);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  void givenNoStoreOrNoFreshness_whenRequestedTwice_thenBothAreExchanged() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> noStore =
+        respondingWith("no-store, max-age=60");
+    final Function<RequestEntity<?>, ResponseEntity<String>> noFreshness = respondingWith(null);
+    // When
+    cache.exchange(get(DUMMY_URI), String.class, noStore);
+    cache.exchange(get(DUMMY_URI), String.class, noStore);
+    cache.exchange(get(OTHER_URI), String.class, noFreshness);
+    cache.exchange(get(OTHER_URI), String.class, noFreshness);
+    // Then
+    assertThat(exchanges).hasValue(4);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void givenVary_whenVariedHeaderChanges_thenResponseIsExchanged() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        r -> {
+          exchanges.incrementAndGet();
+          return ResponseEntity.ok()
+              .header("Cache-Control", "max-age=60")
+              .header("Vary", "Accept-Language")
+              .body(DUMMY_RESPONSE);
+        };
+    // When
+    cache.exchange(get(DUMMY_URI, "en"), String.class, exchange);
+    cache.exchange(get(DUMMY_URI, "en"), String.class, exchange);
+    cache.exchange(get(DUMMY_URI, "de"), String.class, exchange);
+    // Then
+    assertThat(exchanges).hasValue(2);
+  }
+
+  @Test
+  void givenVary_whenVariantsAlternate_thenEachVariantIsCached() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        r -> {
+          exchanges.incrementAndGet();
+          return ResponseEntity.ok()
+              .header("Cache-Control", "max-age=60")
+              .header("Vary", "Accept-Language")
+              .body(r.getHeaders().getFirst("Accept-Language"));
+        };
+    // When
+    cache.exchange(get(DUMMY_URI, "en"), String.class, exchange);
+    cache.exchange(get(DUMMY_URI, "de"), String.class, exchange);
+    final ResponseEntity<String> english =
+        cache.exchange(get(DUMMY_URI, "en"), String.class, exchange);
+    final ResponseEntity<String> german =
+        cache.exchange(get(DUMMY_URI, "de"), String.class, exchange);
+    // Then
+    assertThat(exchanges).hasValue(2);
+    assertThat(english.getBody()).isEqualTo("en");
+    assertThat(german.getBody()).isEqualTo("de");
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  void givenAuthorization_whenResponseIsNotExplicitlyShared_thenNothingIsStored() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> privateResponse =
+        respondingWith("max-age=60");
+    final Function<RequestEntity<?>, ResponseEntity<String>> publicResponse =
+        respondingWith("public, max-age=60");
+    final RequestEntity<Void> authorized =
+        RequestEntity.get(DUMMY_URI).header("Authorization", "Bearer token").build();
+    final RequestEntity<Void> otherAuthorized =
+        RequestEntity.get(OTHER_URI).header("Authorization", "Bearer token").build();
+    // When
+    cache.exchange(authorized, String.class, privateResponse);
+    cache.exchange(authorized, String.class, privateResponse);
+    cache.exchange(otherAuthorized, String.class, publicResponse);
+    cache.exchange(otherAuthorized, String.class, publicResponse);
+    // Then
+    assertThat(exchanges).hasValue(3);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  void givenCookie_whenRequested_thenCacheIsBypassed() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        respondingWith("public, max-age=60");
+    final RequestEntity<Void> withCookie =
+        RequestEntity.get(DUMMY_URI).header("Cookie", "session=42").build();
+    cache.exchange(get(DUMMY_URI), String.class, exchange);
+    // When
+    cache.exchange(withCookie, String.class, exchange);
+    cache.exchange(withCookie, String.class, exchange);
+    // Then
+    assertThat(exchanges).hasValue(3);
+    assertThat(cache.getHitCount()).isZero();
+  }
+
+  @Test
+  void givenExpiresHeader_whenRequestedBeforeExpiration_thenCachedResponseIsReturned() {
+    // Given
+    final HttpHeaders headers = new HttpHeaders();
+    headers.setDate(0);
+    headers.setExpires(30_000);
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        r -> {
+          exchanges.incrementAndGet();
+          return new ResponseEntity<>(DUMMY_RESPONSE, headers, HttpStatus.OK);
+        };
+    // When
+    cache.exchange(get(DUMMY_URI), String.class, exchange);
+    clock.advance(29_000);
+    cache.exchange(get(DUMMY_URI), String.class, exchange);
+    // Then
+    assertThat(exchanges).hasValue(1);
+  }
+
+  @Test
+  void givenDifferentResponseTypes_whenRequested_thenEachTypeIsCachedSeparately() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        respondingWith("max-age=60");
+    // When
+    cache.exchange(get(DUMMY_URI), String.class, exchange);
+    cache.exchange(get(DUMMY_URI), Object.class, exchange);
+    // Then
+    assertThat(exchanges).hasValue(2);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  void givenNonGetRequest_whenExchanged_thenCacheIsBypassed() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        respondingWith("max-age=60");
+    final RequestEntity<Void> post = RequestEntity.post(DUMMY_URI).build();
+    // When
+    cache.exchange(post, String.class, exchange);
+    cache.exchange(post, String.class, exchange);
+    // Then
+    assertThat(exchanges).hasValue(2);
+    assertThat(cache.getMissCount()).isZero();
+  }
+
+  @Test
+  void givenMoreEntriesThanMaximumSize_whenStored_thenLeastRecentlyUsedAreEvicted() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        respondingWith("max-age=60");
+    // When
+    for (int i = 0; i < 50; i++) {
+      cache.exchange(get(URI.create(DUMMY_URI + "/" + i)), String.class, exchange);
+    }
+    // Then
+    assertThat(cache.size()).isLessThanOrEqualTo(10);
+    assertThat(cache.getEvictionCount()).isEqualTo(50L - cache.size());
+  }
+
+  @Test
+  void givenETag_whenStaleEntryIsNotModified_thenStoredBodyIsReturned() {
+    // Given
+    final ResponseCache revalidating = new ResponseCache(10, true, clock);
+    final List<HttpHeaders> sentHeaders = new ArrayList<>();
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        r -> {
+          sentHeaders.add(r.getHeaders());
+          return r.getHeaders().containsKey("If-None-Match")
+              ? ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                  .header("Cache-Control", "max-age=60")
+                  .<String>build()
+              : ResponseEntity.ok().header("ETag", "\"v1\"").body(DUMMY_RESPONSE);
+        };
+    // When
+    revalidating.exchange(get(DUMMY_URI), String.class, exchange);
+    final ResponseEntity<String> revalidated =
+        revalidating.exchange(get(DUMMY_URI), String.class, exchange);
+    revalidating.exchange(get(DUMMY_URI), String.class, exchange);
+    // Then
+    assertThat(sentHeaders).hasSize(2);
+    assertThat(sentHeaders.get(1).getFirst("If-None-Match")).isEqualTo("\"v1\"");
+    assertThat(revalidated.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(revalidated.getBody()).isEqualTo(DUMMY_RESPONSE);
+    assertThat(revalidated.getHeaders().getFirst("ETag")).isEqualTo("\"v1\"");
+    assertThat(revalidating.getRevalidationCount()).isEqualTo(1);
+    assertThat(revalidating.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  void givenLastModified_whenStaleEntryIsModified_thenNewResponseIsStored() {
+    // Given
+    final ResponseCache revalidating = new ResponseCache(10, true, clock);
+    final List<String> sentSince = new ArrayList<>();
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        r -> {
+          sentSince.add(r.getHeaders().getFirst("If-Modified-Since"));
+          return ResponseEntity.ok()
+              .header("Cache-Control", "no-cache")
+              .header("Last-Modified", "v" + sentSince.size())
+              .body(DUMMY_RESPONSE + sentSince.size());
+        };
+    // When
+    revalidating.exchange(get(DUMMY_URI), String.class, exchange);
+    final ResponseEntity<String> second =
+        revalidating.exchange(get(DUMMY_URI), String.class, exchange);
+    revalidating.exchange(get(DUMMY_URI), String.class, exchange);
+    // Then
+    assertThat(second.getBody()).isEqualTo(DUMMY_RESPONSE + 2);
+    assertThat(sentSince).containsExactly(null, "v1", "v2");
+    assertThat(revalidating.getRevalidationCount()).isZero();
+  }
+
+  @Test
+  void givenValidatorsWithoutRevalidation_whenRequestedTwice_thenNothingIsStored() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        r -> {
+          exchanges.incrementAndGet();
+          return ResponseEntity.ok().header("ETag", "\"v1\"").body(DUMMY_RESPONSE);
+        };
+    // When
+    cache.exchange(get(DUMMY_URI), String.class, exchange);
+    cache.exchange(get(DUMMY_URI), String.class, exchange);
+    // Then
+    assertThat(exchanges).hasValue(2);
+    assertThat(cache.size()).isZero();
+  }
+
+  private Function<RequestEntity<?>, ResponseEntity<String>> respondingWith(
+      final String cacheControl) {
+    return r -> {
+      exchanges.incrementAndGet();
+      final ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+      if (cacheControl != null) {
+        builder.header("Cache-Control", cacheControl);
+      }
+      return builder.body(DUMMY_RESPONSE);
+    };
+  }
+
+  private static RequestEntity<Void> get(final URI uri) {
+    return new RequestEntity<>(HttpMethod.GET, uri);
+  }
+
+  private static RequestEntity<Void> get(final URI uri, final String language) {
+    return RequestEntity.get(uri).header("Accept-Language", language).build();
+  }
+
+  private static final class MutableClock extends Clock {
+    private long millis;
+
+    private void advance(final long delta) {
+      millis += delta;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+  }
+}
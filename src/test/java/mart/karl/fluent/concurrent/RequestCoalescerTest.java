@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.concurrent;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestCoalescerTest {
+
+  private static final URI DUMMY_URI = URI.create("http://dummy.uri/foo");
+  private static final String DUMMY_RESPONSE = "DummyResponse";
+
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+  private final AtomicInteger exchanges = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void givenRequestInFlight_whenIdenticalRequestArrives_thenSingleExchangeIsPerformed()
+      throws Exception {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        blocking(ResponseEntity.ok(DUMMY_RESPONSE));
+    final CompletableFuture<ResponseEntity<String>> leader =
+        CompletableFuture.supplyAsync(
+            () -> coalescer.exchange(get(), String.class, exchange), executor);
+    awaitInFlight();
+    // When
+    final CompletableFuture<ResponseEntity<String>> follower =
+        CompletableFuture.supplyAsync(
+            () -> coalescer.exchange(get(), String.class, blocking(ResponseEntity.ok("Other"))),
+            executor);
+    while (coalescer.getCoalescedCount() == 0) {
+      Thread.yield();
+    }
+    release.countDown();
+    // Then
+    assertThat(follower.get()).isNotSameAs(leader.get());
+    assertThat(follower.get().getHeaders()).isNotSameAs(leader.get().getHeaders());
+    assertThat(follower.get().getBody())
+        .isEqualTo(leader.get().getBody())
+        .isEqualTo(DUMMY_RESPONSE);
+    assertThat(exchanges).hasValue(1);
+    assertThat(coalescer.getInFlightCount()).isZero();
+  }
+
+  @Test
+  void givenRequestInFlightFails_whenCoalesced_thenFailureIsPropagated() throws Exception {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> failing =
+        r -> {
+          blocking(null).apply(r);
+          throw new IllegalStateException("Boom");
+        };
+    final CompletableFuture<ResponseEntity<String>> leader =
+        CompletableFuture.supplyAsync(
+            () -> coalescer.exchange(get(), String.class, failing), executor);
+    awaitInFlight();
+    // When
+    final CompletableFuture<ResponseEntity<String>> follower =
+        CompletableFuture.supplyAsync(
+            () -> coalescer.exchange(get(), String.class, failing), executor);
+    while (coalescer.getCoalescedCount() == 0) {
+      Thread.yield();
+    }
+    release.countDown();
+    // Then
+    final ExecutionException e = assertThrows(ExecutionException.class, follower::get);
+    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("Boom");
+    assertThrows(ExecutionException.class, leader::get);
+    assertThat(exchanges).hasValue(1);
+  }
+
+  @Test
+  void givenSlowRequestInFlight_whenWaiterRunsOutOfTime_thenItGivesUpAlone() throws Exception {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        blocking(ResponseEntity.ok(DUMMY_RESPONSE));
+    final CompletableFuture<ResponseEntity<String>> leader =
+        CompletableFuture.supplyAsync(
+            () -> coalescer.exchange(get(), String.class, exchange), executor);
+    awaitInFlight();
+    // When
+    final IllegalStateException e =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                coalescer.exchange(
+                    get(),
+                    String.class,
+                    exchange,
+                    Duration.ofMillis(20),
+                    () -> new IllegalStateException("Timed out")));
+    release.countDown();
+    // Then
+    assertThat(e).hasMessage("Timed out");
+    assertThat(leader.get().getBody()).isEqualTo(DUMMY_RESPONSE);
+    assertThat(exchanges).hasValue(1);
+  }
+
+  @Test
+  void givenSequentialOrNonGetRequests_whenExchanged_thenNothingIsCoalesced() {
+    // Given
+    final Function<RequestEntity<?>, ResponseEntity<String>> exchange =
+        r -> {
+          exchanges.incrementAndGet();
+          return ResponseEntity.ok(DUMMY_RESPONSE);
+        };
+    final RequestEntity<Void> post = new RequestEntity<>(HttpMethod.POST, DUMMY_URI);
+    // When
+    coalescer.exchange(get(), String.class, exchange);
+    coalescer.exchange(get(), String.class, exchange);
+    coalescer.exchange(post, String.class, exchange);
+    // Then
+    assertThat(exchanges).hasValue(3);
+    assertThat(coalescer.getCoalescedCount()).isZero();
+  }
+
+  private Function<RequestEntity<?>, ResponseEntity<String>> blocking(
+      final ResponseEntity<String> response) {
+    return r -> {
+      exchanges.incrementAndGet();
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return response;
+    };
+  }
+
+  private void awaitInFlight() {
+    while (coalescer.getInFlightCount() == 0) {
+      Thread.yield();
+    }
+  }
+
+  private static RequestEntity<Void> get() {
+    return new RequestEntity<>(HttpMethod.GET, DUMMY_URI);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadsTest {
+
+  @Test
+  void givenJava21_whenExecutorIsCreated_thenTasksRunOnVirtualThreads() throws Exception {
+    // Given
+    assumeTrue(VirtualThreads.isSupported());
+    final ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+    // When
+    final Future<String> threadName = executor.submit(() -> Thread.currentThread().toString());
+    // Then
+    assertThat(threadName.get()).startsWith("VirtualThread");
+    executor.shutdown();
+  }
+
+  @Test
+  void givenJavaPriorTo21_whenExecutorIsCreated_thenUnsupported() {
+    // Given
+    assumeFalse(VirtualThreads.isSupported());
+    // When
+    // Then
+    assertThrows(
+        UnsupportedOperationException.class, VirtualThreads::newVirtualThreadPerTaskExecutor);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EndpointMetricsTest {
+
+  private static final EndpointTag GET_FOO = EndpointTag.of("dummy.uri", "foo", HttpMethod.GET);
+  private static final EndpointTag POST_FOO = EndpointTag.of("dummy.uri", "foo", HttpMethod.POST);
+
+  private final EndpointMetrics metrics = new EndpointMetrics();
+
+  @Test
+  void givenRequests_whenRecorded_thenStatsAreKeptPerEndpoint() {
+    // Given
+    metrics.record(GET_FOO, 200, -1, 100, 1_000);
+    metrics.record(EndpointTag.of("dummy.uri", "foo", HttpMethod.GET), 503, -1, 10, 3_000);
+    metrics.record(GET_FOO, 0, -1, -1, 5_000);
+    metrics.record(POST_FOO, 201, 50, -1, 2_000);
+    // When
+    final EndpointStats getStats = metrics.getStats(GET_FOO);
+    final EndpointStats postStats = metrics.getStats(POST_FOO);
+    // Then
+    assertThat(metrics.getStats()).hasSize(2);
+    assertThat(getStats.getRequestCount()).isEqualTo(3);
+    assertThat(getStats.getStatusClassCount(2)).isEqualTo(1);
+    assertThat(getStats.getStatusClassCount(5)).isEqualTo(1);
+    assertThat(getStats.getNoResponseCount()).isEqualTo(1);
+    assertThat(getStats.getResponseBytes()).isEqualTo(110);
+    assertThat(getStats.getRequestBytes()).isZero();
+    assertThat(getStats.getLatency().getMax()).isEqualTo(5_000);
+    assertThat(postStats.getRequestBytes()).isEqualTo(50);
+    assertThat(postStats.getLatency().getCount()).isEqualTo(1);
+  }
+}
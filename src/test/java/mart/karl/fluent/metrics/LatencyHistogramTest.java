@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.metrics;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+  @Test
+  void givenUniformValues_whenPercentilesAreRead_thenRelativeErrorIsBounded() {
+    // Given
+    for (long millis = 1; millis <= 1_000; millis++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+    // When
+    final long p50 = histogram.getValueAtPercentile(50);
+    final long p99 = histogram.getValueAtPercentile(99);
+    final long p100 = histogram.getValueAtPercentile(100);
+    // Then
+    assertThat((double) p50).isCloseTo(500e6, within(500e6 / 64));
+    assertThat((double) p99).isCloseTo(990e6, within(990e6 / 64));
+    assertThat(p100).isEqualTo(histogram.getMax()).isEqualTo(1_000_000_000L);
+    assertThat(histogram.getCount()).isEqualTo(1_000);
+    assertThat(histogram.getMean()).isCloseTo(500.5e6, within(1.0));
+  }
+
+  @Test
+  void givenSmallValues_whenRecorded_thenTheyAreExact() {
+    // Given
+    histogram.record(-5);
+    histogram.record(42);
+    // When
+    final long p50 = histogram.getValueAtPercentile(50);
+    final long p100 = histogram.getValueAtPercentile(100);
+    // Then
+    assertThat(p50).isZero();
+    assertThat(p100).isEqualTo(42);
+  }
+
+  @Test
+  void givenNothingRecorded_whenRead_thenZeroIsReturned() {
+    // Given
+    // When
+    // Then
+    assertThat(histogram.getValueAtPercentile(99)).isZero();
+    assertThat(histogram.getMean()).isZero();
+  }
+}
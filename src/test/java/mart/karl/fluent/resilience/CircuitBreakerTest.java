@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import mart.karl.fluent.metrics.EndpointTag;
+import mart.karl.fluent.resilience.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+
+  private static final String SERVICE = "dummy.uri";
+  private static final String ENDPOINT = "foo";
+  private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+  private final MutableClock clock = new MutableClock();
+  private final List<String> transitions = new ArrayList<>();
+  private final CircuitBreakers circuitBreakers =
+      new CircuitBreakers(
+          CircuitBreakerConfig.builder()
+              .windowSize(4)
+              .minimumCalls(4)
+              .openDuration(OPEN_DURATION)
+              .halfOpenProbes(2)
+              .slowCallDuration(Duration.ofSeconds(1))
+              .slowCallRateThreshold(75)
+              .build(),
+          (breaker, from, to) -> transitions.add(from + "->" + to),
+          clock);
+  private final CircuitBreaker breaker = circuitBreakers.get(SERVICE, ENDPOINT);
+
+  @Test
+  void givenFailureRateReached_whenRecorded_thenCircuitOpensAndRejectsCalls() {
+    // Given
+    record(false, false, true);
+    final float failureRateBelowMinimumCalls = breaker.getFailureRate();
+    // When
+    record(true);
+    // Then
+    assertThat(failureRateBelowMinimumCalls).isEqualTo(-1);
+    assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    assertThat(breaker.tryAcquirePermission()).isFalse();
+    assertThat(transitions).containsExactly("CLOSED->OPEN");
+  }
+
+  @Test
+  void givenOldFailures_whenWindowSlides_thenOnlyRecentCallsAreRated() {
+    // Given
+    record(true);
+    // When
+    record(false, false, false, false);
+    // Then
+    assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    assertThat(breaker.getFailureRate()).isZero();
+  }
+
+  @Test
+  void givenSlowCallRateReached_whenRecorded_thenCircuitOpens() {
+    // Given
+    final long slow = TimeUnit.SECONDS.toNanos(2);
+    // When
+    breaker.onResult(0, false);
+    breaker.onResult(slow, false);
+    breaker.onResult(slow, false);
+    breaker.onResult(slow, false);
+    // Then
+    assertThat(breaker.getState()).isEqualTo(State.OPEN);
+  }
+
+  @Test
+  void givenOpenDurationElapsed_whenProbesSucceed_thenCircuitCloses() {
+    // Given
+    record(true, true, true, true);
+    clock.advance(OPEN_DURATION.toMillis());
+    // When
+    final boolean firstProbe = breaker.tryAcquirePermission();
+    final boolean secondProbe = breaker.tryAcquirePermission();
+    final boolean thirdProbe = breaker.tryAcquirePermission();
+    record(false, false);
+    // Then
+    assertThat(firstProbe).isTrue();
+    assertThat(secondProbe).isTrue();
+    assertThat(thirdProbe).isFalse();
+    assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    assertThat(breaker.getFailureRate()).isEqualTo(-1);
+    assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED");
+  }
+
+  @Test
+  void givenHalfOpen_whenProbesFail_thenCircuitReopens() {
+    // Given
+    record(true, true, true, true);
+    clock.advance(OPEN_DURATION.toMillis());
+    breaker.tryAcquirePermission();
+    breaker.tryAcquirePermission();
+    // When
+    record(false, true);
+    // Then
+    assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    assertThat(breaker.tryAcquirePermission()).isFalse();
+    assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN");
+  }
+
+  @Test
+  void givenHalfOpen_whenProbesThrowErrors_thenTheirOutcomeIsRecorded() {
+    // Given
+    record(true, true, true, true);
+    clock.advance(OPEN_DURATION.toMillis());
+    // When
+    for (int i = 0; i < 2; i++) {
+      assertThrows(
+          AssertionError.class,
+          () ->
+              breaker.execute(
+                  () -> {
+                    throw new AssertionError();
+                  }));
+    }
+    // Then
+    assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED");
+  }
+
+  @Test
+  void givenServerErrors_whenExecuted_thenCircuitOpensButClientErrorsAreSuccessful() {
+    // Given
+    for (int i = 0; i < 3; i++) {
+      assertThrows(
+          HttpServerErrorException.class,
+          () ->
+              breaker.execute(
+                  () -> {
+                    throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+                  }));
+    }
+    assertThrows(
+        HttpClientErrorException.class,
+        () ->
+            breaker.execute(
+                () -> {
+                  throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+                }));
+    // When
+    final CircuitBreakerOpenException rejected =
+        assertThrows(
+            CircuitBreakerOpenException.class,
+            () -> breaker.execute(() -> ResponseEntity.ok().build()));
+    // Then
+    assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    assertThat(rejected).hasMessageContaining(SERVICE).hasMessageContaining(ENDPOINT);
+  }
+
+  @Test
+  void givenEndpointTagsOfDifferentMethods_whenRetrieved_thenCircuitBreakerIsShared() {
+    // When
+    final CircuitBreaker get =
+        circuitBreakers.get(EndpointTag.of(SERVICE, ENDPOINT, HttpMethod.GET));
+    final CircuitBreaker put =
+        circuitBreakers.get(EndpointTag.of(SERVICE, ENDPOINT, HttpMethod.PUT));
+    // Then
+    assertThat(get).isSameAs(breaker).isSameAs(put);
+    assertThat(circuitBreakers.getCircuitBreakers()).containsExactly(breaker);
+  }
+
+  private void record(final boolean... failures) {
+    for (final boolean failed : failures) {
+      breaker.onResult(0, failed);
+    }
+  }
+
+  private static final class MutableClock extends Clock {
+    private long millis;
+
+    private void advance(final long delta) {
+      millis += delta;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+  }
+}
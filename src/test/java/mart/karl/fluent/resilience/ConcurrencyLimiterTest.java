@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.resilience;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrencyLimiterTest {
+
+  private static final String SERVICE = "dummy.uri";
+  private static final String ENDPOINT = "foo";
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void givenLimitReached_whenCalled_thenCallIsShed() throws Exception {
+    // Given
+    final ConcurrencyLimiter limiter = limiter(ConcurrencyLimitConfig.builder().initialLimit(2));
+    final CountDownLatch started = new CountDownLatch(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 2; i++) {
+      CompletableFuture.runAsync(
+          () -> limiter.execute(() -> awaitQuietly(started, release)), executor);
+    }
+    started.await(1, TimeUnit.SECONDS);
+    // When
+    assertThrows(
+        ConcurrencyLimitExceededException.class,
+        () -> limiter.execute(() -> ResponseEntity.ok().build()));
+    release.countDown();
+    // Then
+    assertThat(limiter.getShedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void givenFlatLatency_whenLimitIsUsed_thenLimitGrows() {
+    // Given
+    final ConcurrencyLimiter limiter = limiter(ConcurrencyLimitConfig.builder().initialLimit(1));
+    // When
+    for (int i = 0; i < 20; i++) {
+      limiter.execute(sleeping(5));
+    }
+    // Then
+    assertThat(limiter.getLimit()).isGreaterThan(1);
+    assertThat(limiter.getInFlight()).isZero();
+    assertThat(limiter.getBaselineLatency().toMillis()).isGreaterThanOrEqualTo(5);
+  }
+
+  @Test
+  void givenOverloadSignals_whenCalled_thenLimitShrinksDownToMinimum() {
+    // Given
+    final ConcurrencyLimiter limiter =
+        limiter(ConcurrencyLimitConfig.builder().initialLimit(10).minLimit(2).backoffRatio(0.5));
+    // When
+    limiter.execute(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    final int afterServerError = limiter.getLimit();
+    assertThrows(
+        HttpClientErrorException.class,
+        () ->
+            limiter.execute(
+                () -> {
+                  throw new HttpClientErrorException(HttpStatus.valueOf(429));
+                }));
+    for (int i = 0; i < 5; i++) {
+      assertThrows(
+          ResourceAccessException.class,
+          () ->
+              limiter.execute(
+                  () -> {
+                    throw new ResourceAccessException("Read timed out");
+                  }));
+    }
+    // Then
+    assertThat(afterServerError).isEqualTo(5);
+    assertThat(limiter.getLimit()).isEqualTo(2);
+  }
+
+  @Test
+  void givenRisingLatency_whenCalled_thenLimitShrinks() {
+    // Given
+    final ConcurrencyLimiter limiter =
+        limiter(ConcurrencyLimitConfig.builder().initialLimit(10).latencyTolerance(2));
+    limiter.execute(sleeping(5));
+    final int before = limiter.getLimit();
+    // When
+    limiter.execute(sleeping(50));
+    // Then
+    assertThat(limiter.getLimit()).isLessThan(before);
+  }
+
+  @Test
+  void givenClientError_whenCalled_thenLimitIsKept() {
+    // Given
+    final ConcurrencyLimiter limiter = limiter(ConcurrencyLimitConfig.builder().initialLimit(10));
+    // When
+    assertThrows(
+        HttpClientErrorException.class,
+        () ->
+            limiter.execute(
+                () -> {
+                  throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+                }));
+    // Then
+    assertThat(limiter.getLimit()).isEqualTo(10);
+  }
+
+  private static ConcurrencyLimiter limiter(
+      final ConcurrencyLimitConfig.ConcurrencyLimitConfigBuilder config) {
+    return new ConcurrencyLimiters(config.build()).get(SERVICE, ENDPOINT);
+  }
+
+  private static Supplier<ResponseEntity<Void>> sleeping(final long millis) {
+    return () -> {
+      try {
+        TimeUnit.MILLISECONDS.sleep(millis);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return ResponseEntity.ok().build();
+    };
+  }
+
+  private static ResponseEntity<Void> awaitQuietly(
+      final CountDownLatch started, final CountDownLatch release) {
+    started.countDown();
+    try {
+      release.await(1, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return ResponseEntity.ok().build();
+  }
+}
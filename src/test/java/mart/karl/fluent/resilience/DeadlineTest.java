@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import mart.karl.fluent.concurrent.TaskExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeadlineTest {
+
+  private static final String RESPONSE = "Response";
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void givenFastCall_whenCalled_thenResponseIsReturned() {
+    // Given
+    final Deadline deadline = Deadline.after(Duration.ofSeconds(1));
+    // When
+    final String response = deadline.call(() -> RESPONSE, executor);
+    // Then
+    assertThat(response).isEqualTo(RESPONSE);
+    assertThat(deadline.isExpired()).isFalse();
+    assertThat(deadline.remaining().toNanos()).isPositive();
+  }
+
+  @Test
+  void givenSlowCall_whenDeadlineExpires_thenCallIsInterrupted() throws Exception {
+    // Given
+    final Deadline deadline = Deadline.after(Duration.ofMillis(20));
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    // When
+    assertThrows(
+        DeadlineExceededException.class,
+        () ->
+            deadline.call(
+                () -> {
+                  try {
+                    TimeUnit.SECONDS.sleep(5);
+                  } catch (final InterruptedException e) {
+                    interrupted.countDown();
+                  }
+                  return RESPONSE;
+                },
+                executor));
+    // Then
+    assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(deadline.isExpired()).isTrue();
+    assertThat(deadline.remaining().toNanos()).isZero();
+  }
+
+  @Test
+  void givenCallIgnoringInterruption_whenItCompletesAfterDeadline_thenStreamIsClosed()
+      throws Exception {
+    // Given
+    final Deadline deadline = Deadline.after(Duration.ofMillis(20));
+    final CountDownLatch closed = new CountDownLatch(1);
+    // When
+    assertThrows(
+        DeadlineExceededException.class,
+        () ->
+            deadline.call(
+                () -> {
+                  final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+                  while (System.nanoTime() < end) {
+                    LockSupport.parkNanos(end - System.nanoTime());
+                  }
+                  return ResponseEntity.ok(Stream.of(RESPONSE).onClose(closed::countDown));
+                },
+                executor));
+    // Then
+    assertThat(closed.await(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void givenCallerRunningInTheExecutor_whenCalled_thenCallRunsInline() throws Exception {
+    // Given
+    final ExecutorService single = Executors.newSingleThreadExecutor();
+    final Deadline deadline = Deadline.after(Duration.ofSeconds(1));
+    try {
+      // When
+      final CompletableFuture<Boolean> sameThread =
+          TaskExecutors.supplyAsync(
+              () -> {
+                final Thread caller = Thread.currentThread();
+                return deadline.call(() -> Thread.currentThread() == caller, single);
+              },
+              single);
+      // Then
+      assertThat(sameThread.get(1, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      single.shutdownNow();
+    }
+  }
+
+  @Test
+  void givenInterruptedCaller_whenWaiting_thenCallIsCancelled() throws Exception {
+    // Given
+    final Deadline deadline = Deadline.after(Duration.ofSeconds(5));
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    final CompletableFuture<Throwable> outcome = new CompletableFuture<>();
+    final Thread caller =
+        new Thread(
+            () -> {
+              try {
+                deadline.call(
+                    () -> {
+                      started.countDown();
+                      try {
+                        TimeUnit.SECONDS.sleep(5);
+                      } catch (final InterruptedException e) {
+                        interrupted.countDown();
+                      }
+                      return RESPONSE;
+                    },
+                    executor);
+              } catch (final RuntimeException e) {
+                outcome.complete(e);
+              }
+            });
+    caller.start();
+    assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+    // When
+    caller.interrupt();
+    // Then
+    assertThat(outcome.get(1, TimeUnit.SECONDS)).isInstanceOf(CancellationException.class);
+    assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void givenCustomException_whenDeadlineExpires_thenFutureFailsWithIt() {
+    // Given
+    final Deadline deadline =
+        Deadline.after(Duration.ofMillis(10), () -> new ResourceAccessException("Timed out"));
+    final CompletableFuture<String> pending = new CompletableFuture<>();
+    // When
+    final CompletionException exception =
+        assertThrows(CompletionException.class, deadline.bound(pending)::join);
+    // Then
+    assertThat(exception).hasCauseInstanceOf(ResourceAccessException.class);
+    assertThat(pending).isCancelled();
+  }
+
+  @Test
+  void givenExpiredDeadline_whenCalled_thenCallIsNotPerformed() {
+    // Given
+    final Deadline deadline = Deadline.after(Duration.ZERO);
+    final CompletableFuture<String> pending = new CompletableFuture<>();
+    // When
+    assertThrows(
+        DeadlineExceededException.class,
+        () ->
+            deadline.call(
+                () -> {
+                  pending.complete(RESPONSE);
+                  return RESPONSE;
+                },
+                executor));
+    // Then
+    assertThat(pending).isNotDone();
+  }
+
+  @Test
+  void givenTwoDeadlines_whenComparingThem_thenEarliestIsChosen() {
+    // Given
+    final Deadline early = Deadline.after(Duration.ofSeconds(1));
+    final Deadline late = Deadline.after(Duration.ofSeconds(10));
+    // When
+    final Deadline earliest = early.earliest(late);
+    final Deadline reversed = late.earliest(early);
+    final Deadline alone = late.earliest(null);
+    // Then
+    assertThat(earliest).isSameAs(early);
+    assertThat(reversed).isSameAs(early);
+    assertThat(alone).isSameAs(late);
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import mart.karl.fluent.concurrent.TaskExecutors;
+import mart.karl.fluent.metrics.EndpointMetrics;
+import mart.karl.fluent.metrics.EndpointTag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HedgePolicyTest {
+
+  private static final EndpointTag ENDPOINT = EndpointTag.of("dummy.uri", "foo", HttpMethod.GET);
+  private static final String PRIMARY = "Primary";
+  private static final String HEDGE = "Hedge";
+
+  private final HedgePolicy policy =
+      HedgePolicy.builder().delay(Duration.ofMillis(10)).hedgeBudget(null).build();
+  private final List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void givenSlowPrimary_whenDelayElapses_thenHedgeWinsAndPrimaryIsCancelled() {
+    // Given
+    final Supplier<CompletableFuture<String>> request =
+        attempt(a -> a == 1 ? new CompletableFuture<>() : CompletableFuture.completedFuture(HEDGE));
+    // When
+    final String response = policy.executeAsync(HttpMethod.GET, ENDPOINT, request).join();
+    // Then
+    assertThat(response).isEqualTo(HEDGE);
+    assertThat(attempts).hasSize(2);
+    assertThat(attempts.get(0)).isCancelled();
+  }
+
+  @Test
+  void givenSlowPrimary_whenDelayElapses_thenHedgeIsStartedInTheDefaultExecutor() {
+    // Given
+    final List<String> threads = new CopyOnWriteArrayList<>();
+    final Supplier<CompletableFuture<String>> request =
+        attempt(
+            a -> {
+              threads.add(Thread.currentThread().getName());
+              return a == 1 ? new CompletableFuture<>() : CompletableFuture.completedFuture(HEDGE);
+            });
+    // When
+    final String response = policy.executeAsync(HttpMethod.GET, ENDPOINT, request).join();
+    // Then
+    assertThat(response).isEqualTo(HEDGE);
+    assertThat(threads).hasSize(2);
+    assertThat(threads.get(1)).startsWith("fluent-attempt-");
+  }
+
+  @Test
+  void givenFastPrimary_whenExecuted_thenNoHedgeIsSent() throws Exception {
+    // Given
+    final Supplier<CompletableFuture<String>> request =
+        attempt(a -> CompletableFuture.completedFuture(PRIMARY));
+    // When
+    final String response = policy.executeAsync(HttpMethod.GET, ENDPOINT, request).join();
+    TimeUnit.MILLISECONDS.sleep(50);
+    // Then
+    assertThat(response).isEqualTo(PRIMARY);
+    assertThat(attempts).hasSize(1);
+  }
+
+  @Test
+  void givenExhaustedBudgetOrUnsafeMethod_whenDelayElapses_thenNoHedgeIsSent() throws Exception {
+    // Given
+    final HedgePolicy budgeted = policy.toBuilder().hedgeBudget(new RetryBudget(0, 0)).build();
+    final Supplier<CompletableFuture<String>> request = attempt(a -> new CompletableFuture<>());
+    // When
+    final CompletableFuture<String> get = budgeted.executeAsync(HttpMethod.GET, ENDPOINT, request);
+    final CompletableFuture<String> post = policy.executeAsync(HttpMethod.POST, ENDPOINT, request);
+    TimeUnit.MILLISECONDS.sleep(50);
+    attempts.forEach(a -> a.complete(PRIMARY));
+    // Then
+    assertThat(attempts).hasSize(2);
+    assertThat(get.join()).isEqualTo(PRIMARY);
+    assertThat(post.join()).isEqualTo(PRIMARY);
+  }
+
+  @Test
+  void givenFailingAttempts_whenAllFail_thenLastFailureCompletesTheRequest() {
+    // Given
+    final Supplier<CompletableFuture<String>> request =
+        attempt(
+            a -> {
+              final CompletableFuture<String> future = new CompletableFuture<>();
+              if (a == 1) {
+                executor.execute(
+                    () -> {
+                      sleep(30);
+                      future.completeExceptionally(new ResourceAccessException("Slow reset"));
+                    });
+              } else {
+                future.completeExceptionally(new ResourceAccessException("Reset"));
+              }
+              return future;
+            });
+    // When
+    final CompletionException thrown =
+        assertThrows(
+            CompletionException.class,
+            () -> policy.executeAsync(HttpMethod.GET, ENDPOINT, request).join());
+    // Then
+    assertThat(thrown.getCause()).hasMessage("Slow reset");
+    assertThat(attempts).hasSize(2);
+  }
+
+  @Test
+  void givenBlockingSlowPrimary_whenHedgeWins_thenPrimaryIsInterrupted() throws Exception {
+    // Given
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<String> request =
+        () -> {
+          if (calls.incrementAndGet() > 1) {
+            return HEDGE;
+          }
+          try {
+            TimeUnit.SECONDS.sleep(10);
+          } catch (final InterruptedException e) {
+            interrupted.countDown();
+          }
+          return PRIMARY;
+        };
+    // When
+    final String response = policy.execute(HttpMethod.GET, ENDPOINT, request, executor);
+    // Then
+    assertThat(response).isEqualTo(HEDGE);
+    assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void givenBlockingSlowAttempts_whenDeadlineExpires_thenEveryAttemptIsInterrupted()
+      throws Exception {
+    // Given
+    final CountDownLatch interrupted = new CountDownLatch(2);
+    final Supplier<String> request =
+        () -> {
+          try {
+            TimeUnit.SECONDS.sleep(10);
+          } catch (final InterruptedException e) {
+            interrupted.countDown();
+          }
+          return PRIMARY;
+        };
+    final Deadline deadline = Deadline.after(Duration.ofMillis(100));
+    // When
+    assertThrows(
+        DeadlineExceededException.class,
+        () -> policy.execute(HttpMethod.GET, ENDPOINT, request, executor, deadline));
+    // Then
+    assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void givenCallerRunningInTheExecutor_whenExecuted_thenHedgingIsRefused() {
+    // Given
+    final CompletableFuture<String> response =
+        TaskExecutors.supplyAsync(
+            () -> policy.execute(HttpMethod.GET, ENDPOINT, () -> PRIMARY, executor), executor);
+    // When
+    final CompletionException thrown = assertThrows(CompletionException.class, response::join);
+    // Then
+    assertThat(thrown).hasCauseInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void givenLatencyMetrics_whenEnoughSamples_thenDelayIsTheEndpointPercentile() {
+    // Given
+    final EndpointMetrics metrics = new EndpointMetrics();
+    final HedgePolicy derived =
+        policy.toBuilder().latencyMetrics(metrics).latencyPercentile(95).minimumSamples(10).build();
+    final long millis = TimeUnit.MILLISECONDS.toNanos(1);
+    // When
+    final long withoutSamples = derived.delayNanos(ENDPOINT);
+    for (int i = 1; i <= 100; i++) {
+      metrics.record(ENDPOINT, 200, 0, 0, i * millis);
+    }
+    final long withSamples = derived.delayNanos(ENDPOINT);
+    // Then
+    assertThat(withoutSamples).isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+    assertThat(withSamples).isBetween(90 * millis, 100 * millis);
+  }
+
+  private Supplier<CompletableFuture<String>> attempt(
+      final IntFunction<CompletableFuture<String>> attempt) {
+    return () -> {
+      final CompletableFuture<String> future = attempt.apply(attempts.size() + 1);
+      attempts.add(future);
+      return future;
+    };
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
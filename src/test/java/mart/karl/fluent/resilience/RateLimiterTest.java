@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateLimiterTest {
+
+  private static final Duration SECOND = Duration.ofSeconds(1);
+  private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(40);
+
+  private final AtomicLong nanoTime = new AtomicLong();
+
+  @Test
+  void givenFullBucket_whenBurstIsSpent_thenRequestsAreRejected() {
+    // Given
+    final RateLimiter rateLimiter = new RateLimiter(10, SECOND, 3, Duration.ZERO, nanoTime::get);
+    // When
+    rateLimiter.acquire();
+    rateLimiter.acquire();
+    rateLimiter.acquire();
+    assertThrows(RateLimitExceededException.class, rateLimiter::acquire);
+    final boolean tried = rateLimiter.tryAcquire();
+    // Then
+    assertThat(tried).isFalse();
+    assertThat(rateLimiter.getPermittedCount()).isEqualTo(3);
+    assertThat(rateLimiter.getRejectedCount()).isEqualTo(2);
+    assertThat(rateLimiter.getAvailablePermits()).isZero();
+  }
+
+  @Test
+  void givenEmptyBucket_whenTimePasses_thenPermitsAreRefilledUpToBurst() {
+    // Given
+    final RateLimiter rateLimiter = new RateLimiter(10, SECOND, 3, Duration.ZERO, nanoTime::get);
+    while (rateLimiter.tryAcquire()) {
+      // Empties the bucket
+    }
+    // When
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    final long afterInterval = rateLimiter.getAvailablePermits();
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    final long afterIdling = rateLimiter.getAvailablePermits();
+    // Then
+    assertThat(afterInterval).isEqualTo(1);
+    assertThat(afterIdling).isEqualTo(3);
+    assertThat(rateLimiter.tryAcquire()).isTrue();
+  }
+
+  @Test
+  void givenBlockingLimiter_whenBucketIsEmpty_thenRequestWaitsForItsPermit() {
+    // Given
+    final RateLimiter rateLimiter = RateLimiter.blocking(1, Duration.ofMillis(50), SECOND);
+    rateLimiter.acquire();
+    final long start = System.nanoTime();
+    // When
+    final String response = rateLimiter.execute(() -> "Response");
+    // Then
+    assertThat(response).isEqualTo("Response");
+    assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(MIN_WAIT_NANOS);
+    assertThat(rateLimiter.getDelayedCount()).isEqualTo(1);
+    assertThat(rateLimiter.getTotalWaitTime().toMillis()).isGreaterThanOrEqualTo(40);
+  }
+
+  @Test
+  void givenBlockingLimiter_whenWaitExceedsMaxWait_thenRequestIsRejected() {
+    // Given
+    final RateLimiter rateLimiter = new RateLimiter(1, SECOND, 1, Duration.ofMillis(100));
+    rateLimiter.acquire();
+    // When
+    final CompletableFuture<Void> permit = rateLimiter.acquireAsync();
+    // Then
+    assertThat(permit).isCompletedExceptionally();
+    assertThat(rateLimiter.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void givenDeadlineBeforePermit_whenExecuted_thenDeadlineExceededIsThrownWithoutWaiting() {
+    // Given
+    final RateLimiter rateLimiter = new RateLimiter(1, SECOND, 1, null);
+    rateLimiter.acquire();
+    final Deadline deadline = Deadline.after(Duration.ofMillis(50));
+    final long start = System.nanoTime();
+    // When
+    assertThrows(
+        DeadlineExceededException.class, () -> rateLimiter.execute(() -> "Called", deadline));
+    // Then
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(500));
+    assertThat(rateLimiter.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void givenEmptyBucket_whenAcquiredAsync_thenPermitIsCompletedLater() {
+    // Given
+    final RateLimiter rateLimiter = RateLimiter.blocking(1, Duration.ofMillis(20), null);
+    rateLimiter.acquire();
+    // When
+    final CompletableFuture<Void> permit = rateLimiter.acquireAsync();
+    final boolean completedAtOnce = permit.isDone();
+    permit.join();
+    // Then
+    assertThat(completedAtOnce).isFalse();
+    assertThat(rateLimiter.getDelayedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void givenHundredsOfThreads_whenAcquiringConcurrently_thenExactlyBurstIsPermitted()
+      throws Exception {
+    // Given
+    final RateLimiter rateLimiter = new RateLimiter(50, Duration.ofHours(1), 50, Duration.ZERO);
+    final ExecutorService executor = Executors.newFixedThreadPool(200);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger permitted = new AtomicInteger();
+    // When
+    for (int i = 0; i < 400; i++) {
+      executor.execute(
+          () -> {
+            try {
+              start.await();
+            } catch (final InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            if (rateLimiter.tryAcquire()) {
+              permitted.incrementAndGet();
+            }
+          });
+    }
+    start.countDown();
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+    // Then
+    assertThat(permitted).hasValue(50);
+    assertThat(rateLimiter.getPermittedCount()).isEqualTo(50);
+    assertThat(rateLimiter.getRejectedCount()).isEqualTo(350);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBudgetTest {
+
+  @Test
+  void givenFullBudget_whenCapacityIsSpent_thenRetriesAreDenied() {
+    // Given
+    final RetryBudget budget = new RetryBudget(0.5, 2);
+    // When
+    final boolean first = budget.tryWithdraw();
+    final boolean second = budget.tryWithdraw();
+    final boolean third = budget.tryWithdraw();
+    // Then
+    assertThat(first).isTrue();
+    assertThat(second).isTrue();
+    assertThat(third).isFalse();
+    assertThat(budget.getAvailableRetries()).isZero();
+  }
+
+  @Test
+  void givenEmptyBudget_whenRequestsAreDeposited_thenRetriesAreEarnedUpToCapacity() {
+    // Given
+    final RetryBudget budget = new RetryBudget(0.5, 2);
+    budget.tryWithdraw();
+    budget.tryWithdraw();
+    // When
+    budget.deposit();
+    final long afterOneRequest = budget.getAvailableRetries();
+    for (int i = 0; i < 10; i++) {
+      budget.deposit();
+    }
+    // Then
+    assertThat(afterOneRequest).isZero();
+    assertThat(budget.getAvailableRetries()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetryPolicyTest {
+
+  private static final String DUMMY_RESPONSE = "DummyResponse";
+
+  private final AtomicInteger attempts = new AtomicInteger();
+  private final RetryPolicy policy =
+      RetryPolicy.builder().initialBackoff(Duration.ZERO).retryBudget(null).build();
+
+  @Test
+  void givenIoErrors_whenExecuted_thenRequestIsRetriedUntilSuccess() {
+    // Given
+    final Supplier<ResponseEntity<String>> request =
+        failingTimes(2, new ResourceAccessException("Connection reset"));
+    // When
+    final ResponseEntity<String> response = policy.execute(HttpMethod.GET, request);
+    // Then
+    assertThat(response.getBody()).isEqualTo(DUMMY_RESPONSE);
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void givenPersistentFailure_whenExecuted_thenLastFailureIsThrownAfterMaxAttempts() {
+    // Given
+    final Supplier<ResponseEntity<String>> request =
+        failingTimes(5, new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+    // When
+    assertThrows(HttpServerErrorException.class, () -> policy.execute(HttpMethod.PUT, request));
+    // Then
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void givenNonRetryableFailureOrMethod_whenExecuted_thenRequestIsAttemptedOnce() {
+    // Given
+    final Supplier<ResponseEntity<String>> notFound =
+        failingTimes(1, new HttpClientErrorException(HttpStatus.NOT_FOUND));
+    final Supplier<ResponseEntity<String>> post =
+        failingTimes(1, new ResourceAccessException("Connection reset"));
+    // When
+    assertThrows(HttpClientErrorException.class, () -> policy.execute(HttpMethod.GET, notFound));
+    assertThrows(ResourceAccessException.class, () -> policy.execute(HttpMethod.POST, post));
+    // Then
+    assertThat(attempts).hasValue(2);
+  }
+
+  @Test
+  void givenRetryableStatusNotThrown_whenExecuted_thenRequestIsRetried() {
+    // Given
+    final Supplier<ResponseEntity<String>> request =
+        () ->
+            attempts.incrementAndGet() == 1
+                ? new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE)
+                : ResponseEntity.ok(DUMMY_RESPONSE);
+    // When
+    final ResponseEntity<String> response = policy.execute(HttpMethod.GET, request);
+    // Then
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(attempts).hasValue(2);
+  }
+
+  @Test
+  void givenExhaustedBudget_whenExecuted_thenRetriesAreGivenUp() {
+    // Given
+    final RetryBudget budget = new RetryBudget(0, 1);
+    final RetryPolicy budgeted = policy.toBuilder().retryBudget(budget).build();
+    final Supplier<ResponseEntity<String>> request =
+        failingTimes(10, new ResourceAccessException("Connection reset"));
+    // When
+    assertThrows(ResourceAccessException.class, () -> budgeted.execute(HttpMethod.GET, request));
+    assertThrows(ResourceAccessException.class, () -> budgeted.execute(HttpMethod.GET, request));
+    // Then
+    assertThat(attempts).hasValue(3);
+    assertThat(budget.getAvailableRetries()).isZero();
+  }
+
+  @Test
+  void givenLongBackoffs_whenDeadlineExpires_thenDeadlineExceededIsThrownOnTime() {
+    // Given
+    final RetryPolicy slow =
+        policy
+            .toBuilder()
+            .maxAttempts(100)
+            .initialBackoff(Duration.ofSeconds(5))
+            .maxBackoff(Duration.ofSeconds(5))
+            .multiplier(1)
+            .build();
+    final Supplier<ResponseEntity<String>> request =
+        failingTimes(100, new ResourceAccessException("Connection reset"));
+    final Deadline deadline = Deadline.after(Duration.ofMillis(200));
+    final long start = System.nanoTime();
+    // When
+    final DeadlineExceededException thrown =
+        assertThrows(
+            DeadlineExceededException.class,
+            () -> slow.execute(HttpMethod.GET, request, deadline));
+    // Then
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+    assertThat(thrown.getSuppressed()).hasAtLeastOneElementOfType(ResourceAccessException.class);
+  }
+
+  @Test
+  void givenAsyncFailures_whenExecutedAsync_thenRequestIsRetriedUntilSuccess() {
+    // Given
+    final RetryPolicy delayed = policy.toBuilder().initialBackoff(Duration.ofMillis(5)).build();
+    final Supplier<CompletableFuture<ResponseEntity<String>>> request =
+        () -> {
+          final CompletableFuture<ResponseEntity<String>> future = new CompletableFuture<>();
+          if (attempts.incrementAndGet() < 3) {
+            future.completeExceptionally(new ResourceAccessException("Connection reset"));
+          } else {
+            future.complete(ResponseEntity.ok(DUMMY_RESPONSE));
+          }
+          return future;
+        };
+    // When
+    final ResponseEntity<String> response = delayed.executeAsync(HttpMethod.GET, request).join();
+    // Then
+    assertThat(response.getBody()).isEqualTo(DUMMY_RESPONSE);
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void givenAsyncPersistentFailure_whenExecutedAsync_thenLastFailureCompletesTheFuture() {
+    // Given
+    final Supplier<CompletableFuture<ResponseEntity<String>>> request =
+        () -> {
+          attempts.incrementAndGet();
+          throw new ResourceAccessException("Connection refused");
+        };
+    // When
+    final CompletionException thrown =
+        assertThrows(
+            CompletionException.class, () -> policy.executeAsync(HttpMethod.GET, request).join());
+    // Then
+    assertThat(thrown).hasCauseInstanceOf(ResourceAccessException.class);
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void givenBackoffBounds_whenComputingBackoff_thenFullJitterStaysUnderTheCappedBound() {
+    // Given
+    final RetryPolicy jittered =
+        RetryPolicy.builder()
+            .initialBackoff(Duration.ofMillis(100))
+            .maxBackoff(Duration.ofMillis(300))
+            .build();
+    // When
+    for (int i = 0; i < 100; i++) {
+      // Then
+      assertThat(jittered.backoffMillis(1)).isBetween(0L, 100L);
+      assertThat(jittered.backoffMillis(2)).isBetween(0L, 200L);
+      assertThat(jittered.backoffMillis(10)).isBetween(0L, 300L);
+    }
+  }
+
+  private Supplier<ResponseEntity<String>> failingTimes(
+      final int failures, final RuntimeException failure) {
+    return () -> {
+      if (attempts.incrementAndGet() <= failures) {
+        throw failure;
+      }
+      return ResponseEntity.ok(DUMMY_RESPONSE);
+    };
+  }
+}
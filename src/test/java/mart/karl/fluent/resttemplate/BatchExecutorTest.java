@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClientException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchExecutorTest {
+
+  private static final String DUMMY_MESSAGE = "DummyMessage";
+
+  private ExecutorService executorService;
+
+  @BeforeEach
+  void setUp() {
+    executorService = Executors.newFixedThreadPool(8);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  void givenItems_whenBatchIsExecuted_thenResultsKeepItemsOrderAndFailuresAreIsolated() {
+    // Given
+    final List<Integer> items = Arrays.asList(1, 2, 3, 4, 5);
+    // When
+    final List<BatchResult<Integer>> results =
+        new BatchExecutor<>(items, executorService)
+            .maxConcurrency(2)
+            .execute(
+                i -> {
+                  if (i == 3) {
+                    throw new RestClientException(DUMMY_MESSAGE);
+                  }
+                  return i * 10;
+                });
+    // Then
+    assertThat(results)
+        .extracting(BatchResult::getValue)
+        .containsExactly(10, 20, null, 40, 50);
+    assertThat(results.get(2).isSuccess()).isFalse();
+    assertThat(results.get(2).getFailure()).isInstanceOf(RestClientException.class);
+  }
+
+  @Test
+  void givenMaxConcurrency_whenBatchIsExecuted_thenInFlightRequestsAreBounded() {
+    // Given
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    final List<Integer> items = IntStream.range(0, 40).boxed().collect(Collectors.toList());
+    // When
+    final List<BatchResult<Integer>> results =
+        new BatchExecutor<>(items, executorService)
+            .maxConcurrency(3)
+            .execute(
+                i -> {
+                  maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                  try {
+                    Thread.sleep(5);
+                  } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                  inFlight.decrementAndGet();
+                  return i;
+                });
+    // Then
+    assertThat(results).extracting(BatchResult::getValue).containsExactlyElementsOf(items);
+    assertThat(maxInFlight.get()).isBetween(1, 3);
+  }
+
+  @Test
+  void givenAlreadyCompletedRequests_whenBatchIsComposed_thenEveryItemIsProcessed() {
+    // Given
+    final List<Integer> items = IntStream.range(0, 50_000).boxed().collect(Collectors.toList());
+    // When
+    final List<BatchResult<Integer>> results =
+        new BatchExecutor<>(items, executorService)
+            .compose(CompletableFuture::completedFuture)
+            .join();
+    // Then
+    assertThat(results).hasSize(items.size()).allMatch(BatchResult::isSuccess);
+  }
+
+  @Test
+  void givenNoItems_whenBatchIsExecuted_thenResultIsEmpty() {
+    // Given
+    final BatchExecutor<Object> batch =
+        new BatchExecutor<>(Collections.emptyList(), executorService);
+    // When
+    final List<BatchResult<Object>> results = batch.execute(i -> i);
+    // Then
+    assertThat(results).isEmpty();
+  }
+
+  @Test
+  void givenInvalidMaxConcurrency_whenSet_thenFails() {
+    // Given
+    final BatchExecutor<Integer> batch =
+        new BatchExecutor<>(Collections.singletonList(1), executorService);
+    // When
+    // Then
+    assertThrows(IllegalArgumentException.class, () -> batch.maxConcurrency(0));
+  }
+}
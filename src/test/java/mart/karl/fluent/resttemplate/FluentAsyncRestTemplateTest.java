@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import mart.karl.fluent.cache.ResponseCache;
+import mart.karl.fluent.concurrent.RequestCoalescer;
+import mart.karl.fluent.resilience.CircuitBreakerConfig;
+import mart.karl.fluent.resilience.CircuitBreakerOpenException;
+import mart.karl.fluent.resilience.CircuitBreakers;
+import mart.karl.fluent.service.FluentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import org.springframework.web.client.AsyncRequestCallback;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+class FluentAsyncRestTemplateTest {
+
+  private static final String DUMMY_URI = "http://dummy.uri:8080";
+  private static final String DUMMY_MESSAGE = "DummyMessage";
+  private static final String DUMMY_RESPONSE = "DummyResponse";
+  private static final String TEST_STRING = "Test String";
+  private static final String FOO = "foo";
+  private static final String BAR = "bar";
+  private static final ParameterizedTypeReference<String> TYPE_REFERENCE =
+      new ParameterizedTypeReference<String>() {};
+
+  @Mock private AsyncRestTemplate asyncRestTemplate;
+  private FluentAsyncRestTemplate fluent;
+
+  @BeforeEach
+  void setUp() {
+    fluent = new FluentAsyncRestTemplate(asyncRestTemplate);
+  }
+
+  @Test
+  void getAsyncCompletesWhenResponseArrives() {
+    // Given
+    final SettableListenableFuture<ResponseEntity<String>> future =
+        new SettableListenableFuture<>();
+    given(
+            asyncRestTemplate.exchange(
+                any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+        .willReturn(future);
+    final FluentService service =
+        FluentService.from(DUMMY_URI).endpoints(Collections.singletonMap(FOO, "{foo}")).build();
+    // When
+    final CompletableFuture<String> execute =
+        fluent
+            .get()
+            .from(service)
+            .withEndpoint(FOO)
+            .uriVariable(FOO, BAR)
+            .executor()
+            .executeForObjectAsync(String.class);
+    // Then
+    assertThat(execute).isNotDone();
+    future.set(ResponseEntity.ok(DUMMY_RESPONSE));
+    assertThat(execute).isCompletedWithValue(DUMMY_RESPONSE);
+    then(asyncRestTemplate)
+        .should()
+        .exchange(
+            eq(URI.create(DUMMY_URI + "/" + BAR)),
+            eq(HttpMethod.GET),
+            any(HttpEntity.class),
+            eq(String.class));
+  }
+
+  @Test
+  void postBlocking() {
+    // Given
+    final SettableListenableFuture<ResponseEntity<String>> future =
+        new SettableListenableFuture<>();
+    future.set(ResponseEntity.ok(DUMMY_RESPONSE));
+    given(
+            asyncRestTemplate.exchange(
+                any(URI.class),
+                eq(HttpMethod.POST),
+                any(HttpEntity.class),
+                any(ParameterizedTypeReference.class)))
+        .willReturn(future);
+    // When
+    final ResponseEntity<String> execute =
+        fluent.post(TEST_STRING).into(DUMMY_URI).executor().execute(TYPE_REFERENCE);
+    // Then
+    assertThat(execute)
+        .extracting(ResponseEntity::getStatusCode, HttpEntity::getBody)
+        .containsExactly(HttpStatus.OK, DUMMY_RESPONSE);
+  }
+
+  @Test
+  void deleteBlockingFailure() {
+    // Given
+    final SettableListenableFuture<ResponseEntity<Void>> future = new SettableListenableFuture<>();
+    future.setException(new RestClientException(DUMMY_MESSAGE));
+    given(
+            asyncRestTemplate.exchange(
+                any(URI.class),
+                eq(HttpMethod.DELETE),
+                any(HttpEntity.class),
+                any(ParameterizedTypeReference.class)))
+        .willReturn(future);
+    // When
+    // Then
+    assertThrows(
+        RestClientException.class, () -> fluent.delete().from(DUMMY_URI).executor().execute());
+  }
+
+  @Test
+  void cancellingTheFutureCancelsTheRequest() {
+    // Given
+    final SettableListenableFuture<ResponseEntity<String>> future =
+        new SettableListenableFuture<>();
+    given(
+            asyncRestTemplate.exchange(
+                any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), eq(String.class)))
+        .willReturn(future);
+    // When
+    fluent.put(TEST_STRING).into(DUMMY_URI).executor().executeAsync(String.class).cancel(true);
+    // Then
+    assertThat(future.isCancelled()).isTrue();
+  }
+
+  @Test
+  void patchSimpleClientHttpRequestFactory() {
+    // Given
+    given(asyncRestTemplate.getAsyncRequestFactory())
+        .willReturn(Mockito.mock(SimpleClientHttpRequestFactory.class));
+    // When
+    // Then
+    assertThrows(UnsupportedOperationException.class, () -> fluent.patch(TEST_STRING));
+    then(asyncRestTemplate)
+        .should(never())
+        .exchange(
+            any(URI.class),
+            any(HttpMethod.class),
+            any(HttpEntity.class),
+            any(ParameterizedTypeReference.class));
+  }
+
+  @Test
+  void getStream() {
+    // Given
+    final ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    final HttpHeaders headers = new HttpHeaders();
+    headers.setContentLength(DUMMY_RESPONSE.length());
+    given(response.getHeaders()).willReturn(headers);
+    given(response.getStatusCode()).willReturn(HttpStatus.OK);
+    given(
+            asyncRestTemplate.execute(
+                any(URI.class),
+                eq(HttpMethod.GET),
+                any(AsyncRequestCallback.class),
+                any(ResponseExtractor.class)))
+        .willAnswer(
+            i -> {
+              final SettableListenableFuture<Object> future = new SettableListenableFuture<>();
+              future.set(i.<ResponseExtractor<?>>getArgument(3).extractData(response));
+              return future;
+            });
+    // When
+    final Long contentLength =
+        fluent
+            .get()
+            .from(DUMMY_URI)
+            .executor()
+            .executeForStream((body, h) -> h.getContentLength());
+    // Then
+    assertThat(contentLength).isEqualTo((long) DUMMY_RESPONSE.length());
+  }
+
+  @Test
+  void getCachedAnsweredWithoutRequest() {
+    // Given
+    final SettableListenableFuture<ResponseEntity<String>> future =
+        new SettableListenableFuture<>();
+    future.set(ResponseEntity.ok().header("Cache-Control", "max-age=60").body(DUMMY_RESPONSE));
+    given(
+            asyncRestTemplate.exchange(
+                any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+        .willReturn(future);
+    final FluentAsyncRestTemplate cached =
+        FluentAsyncRestTemplate.builder()
+            .asyncRestTemplate(asyncRestTemplate)
+            .responseCache(new ResponseCache())
+            .build();
+    // When
+    cached.get().from(DUMMY_URI).executor().executeForObject(String.class);
+    final CompletableFuture<String> execute =
+        cached.get().from(DUMMY_URI).executor().executeForObjectAsync(String.class);
+    // Then
+    assertThat(execute).isCompletedWithValue(DUMMY_RESPONSE);
+    then(asyncRestTemplate)
+        .should(times(1))
+        .exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class));
+  }
+
+  @Test
+  void getCoalescedWhileInFlight() {
+    // Given
+    final SettableListenableFuture<ResponseEntity<String>> future =
+        new SettableListenableFuture<>();
+    given(
+            asyncRestTemplate.exchange(
+                any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+        .willReturn(future);
+    final FluentAsyncRestTemplate coalescing =
+        FluentAsyncRestTemplate.builder()
+            .asyncRestTemplate(asyncRestTemplate)
+            .requestCoalescer(new RequestCoalescer())
+            .build();
+    // When
+    final CompletableFuture<String> leader =
+        coalescing.get().from(DUMMY_URI).executor().executeForObjectAsync(String.class);
+    final CompletableFuture<String> follower =
+        coalescing.get().from(DUMMY_URI).executor().executeForObjectAsync(String.class);
+    future.set(ResponseEntity.ok(DUMMY_RESPONSE));
+    // Then
+    assertThat(leader).isCompletedWithValue(DUMMY_RESPONSE);
+    assertThat(follower).isCompletedWithValue(DUMMY_RESPONSE);
+    then(asyncRestTemplate)
+        .should(times(1))
+        .exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class));
+  }
+
+  @Test
+  void circuitBreakerOpenFailsFast() {
+    // Given
+    final SettableListenableFuture<ResponseEntity<String>> future =
+        new SettableListenableFuture<>();
+    future.setException(new ResourceAccessException(DUMMY_MESSAGE));
+    given(
+            asyncRestTemplate.exchange(
+                any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class)))
+        .willReturn(future);
+    final FluentAsyncRestTemplate guarded =
+        FluentAsyncRestTemplate.builder()
+            .asyncRestTemplate(asyncRestTemplate)
+            .circuitBreakers(
+                new CircuitBreakers(
+                    CircuitBreakerConfig.builder().windowSize(1).minimumCalls(1).build()))
+            .build();
+    // When
+    assertThrows(
+        ResourceAccessException.class,
+        () -> guarded.get().from(DUMMY_URI).executor().execute(String.class));
+    // Then
+    assertThrows(
+        CircuitBreakerOpenException.class,
+        () -> guarded.get().from(DUMMY_URI).executor().execute(String.class));
+    then(asyncRestTemplate)
+        .should(times(1))
+        .exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class), eq(String.class));
+  }
+}
@@ -17,28 +17,68 @@
 
 package mart.karl.fluent.resttemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import mart.karl.fluent.cache.ResponseCache;
+import mart.karl.fluent.metrics.EndpointMetrics;
+import mart.karl.fluent.metrics.EndpointStats;
+import mart.karl.fluent.metrics.EndpointTag;
+import mart.karl.fluent.metrics.PhaseTimings;
+import mart.karl.fluent.metrics.TimedResponseEntity;
+import mart.karl.fluent.resilience.CircuitBreakerConfig;
+import mart.karl.fluent.resilience.CircuitBreakerOpenException;
+import mart.karl.fluent.resilience.CircuitBreakers;
+import mart.karl.fluent.resilience.ConcurrencyLimitConfig;
+import mart.karl.fluent.resilience.ConcurrencyLimiter;
+import mart.karl.fluent.resilience.ConcurrencyLimiters;
+import mart.karl.fluent.resilience.DeadlineExceededException;
+import mart.karl.fluent.resilience.HedgePolicy;
+import mart.karl.fluent.resilience.RateLimitExceededException;
+import mart.karl.fluent.resilience.RateLimiter;
+import mart.karl.fluent.resilience.RetryPolicy;
 import mart.karl.fluent.service.FluentService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -46,6 +86,7 @@ import org.springframework.web.util.UriComponentsBuilder;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.never;
@@ -66,7 +107,12 @@ class FluentRestTemplateTest {
       new ParameterizedTypeReference<String>() {};
 
   @Mock private RestTemplate restTemplate;
-  @InjectMocks private FluentRestTemplate fluent;
+  private FluentRestTemplate fluent;
+
+  @BeforeEach
+  void setUp() {
+    fluent = new FluentRestTemplate(restTemplate);
+  }
 
   @Test
   void getVoid() {
@@ -363,4 +409,604 @@ class FluentRestTemplateTest {
         .should()
         .exchange(any(RequestEntity.class), any(ParameterizedTypeReference.class));
   }
+
+  @Test
+  void getAsync() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willReturn(ResponseEntity.ok(DUMMY_RESPONSE));
+    final FluentRestTemplate asyncFluent =
+        FluentRestTemplate.builder()
+            .restTemplate(restTemplate)
+            .asyncExecutor(Runnable::run)
+            .build();
+    // When
+    final CompletableFuture<String> execute =
+        asyncFluent.get().from(DUMMY_URI).executor().executeForObjectAsync(String.class);
+    // Then
+    then(restTemplate).should().exchange(any(RequestEntity.class), any(Class.class));
+    assertThat(execute).isCompletedWithValue(DUMMY_RESPONSE);
+  }
+
+  @Test
+  void postAsyncTypeReference() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(ParameterizedTypeReference.class)))
+        .willReturn(ResponseEntity.ok(DUMMY_RESPONSE));
+    // When
+    final CompletableFuture<ResponseEntity<String>> execute =
+        fluent.post(TEST_STRING).into(DUMMY_URI).executor().executeAsync(TYPE_REFERENCE);
+    // Then
+    assertThat(execute.join())
+        .extracting(ResponseEntity::getStatusCode, HttpEntity::getBody)
+        .containsExactly(HttpStatus.OK, DUMMY_RESPONSE);
+    then(restTemplate)
+        .should()
+        .exchange(any(RequestEntity.class), any(ParameterizedTypeReference.class));
+  }
+
+  @Test
+  void deleteAsyncFailure() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(ParameterizedTypeReference.class)))
+        .willThrow(new RestClientException(DUMMY_MESSAGE));
+    // When
+    final CompletableFuture<Void> execute =
+        fluent.delete().from(DUMMY_URI).executor().executeForObjectAsync();
+    // Then
+    final CompletionException exception = assertThrows(CompletionException.class, execute::join);
+    assertThat(exception).hasCauseInstanceOf(RestClientException.class);
+  }
+
+  @Test
+  void getCached() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willReturn(ResponseEntity.ok().header("Cache-Control", "max-age=60").body(DUMMY_RESPONSE));
+    final FluentRestTemplate cachingFluent =
+        FluentRestTemplate.builder()
+            .restTemplate(restTemplate)
+            .responseCache(new ResponseCache())
+            .build();
+    // When
+    final String first =
+        cachingFluent.get().from(DUMMY_URI).executor().executeForObject(String.class);
+    final String second =
+        cachingFluent.get().from(DUMMY_URI).executor().executeForObject(String.class);
+    // Then
+    then(restTemplate).should().exchange(any(RequestEntity.class), any(Class.class));
+    assertThat(second).isEqualTo(first).isEqualTo(DUMMY_RESPONSE);
+  }
+
+  @Test
+  void postStream() throws Exception {
+    // Given
+    final ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+    final ClientHttpRequest request = Mockito.mock(ClientHttpRequest.class);
+    given(request.getHeaders()).willReturn(new HttpHeaders());
+    given(request.getBody()).willReturn(requestBody);
+    final ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    given(response.getBody())
+        .willReturn(new ByteArrayInputStream(DUMMY_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+    given(response.getHeaders()).willReturn(new HttpHeaders());
+    given(response.getStatusCode()).willReturn(HttpStatus.OK);
+    given(restTemplate.getMessageConverters())
+        .willReturn(Collections.singletonList(new StringHttpMessageConverter()));
+    given(
+            restTemplate.execute(
+                any(URI.class),
+                eq(HttpMethod.POST),
+                any(RequestCallback.class),
+                any(ResponseExtractor.class)))
+        .willAnswer(
+            i -> {
+              i.<RequestCallback>getArgument(2).doWithRequest(request);
+              return i.<ResponseExtractor<?>>getArgument(3).extractData(response);
+            });
+    final ResponseStreamCallback<String> asString =
+        (body, headers) -> StreamUtils.copyToString(body, StandardCharsets.UTF_8);
+    // When
+    final String streamed =
+        fluent
+            .post(TEST_STRING)
+            .from(DUMMY_URI)
+            .executor()
+            .contenType(MediaType.TEXT_PLAIN)
+            .executeForStream(asString);
+    // Then
+    assertThat(streamed).isEqualTo(DUMMY_RESPONSE);
+    assertThat(requestBody.toString("UTF-8")).isEqualTo(TEST_STRING);
+  }
+
+  @Test
+  void getStreamRateLimitedAndMetered() throws Exception {
+    // Given
+    final ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    given(response.getBody())
+        .willReturn(new ByteArrayInputStream(DUMMY_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+    given(response.getHeaders()).willReturn(new HttpHeaders());
+    given(response.getStatusCode()).willReturn(HttpStatus.OK);
+    given(restTemplate.getMessageConverters()).willReturn(Collections.emptyList());
+    given(
+            restTemplate.execute(
+                any(URI.class),
+                eq(HttpMethod.GET),
+                any(RequestCallback.class),
+                any(ResponseExtractor.class)))
+        .willAnswer(i -> i.<ResponseExtractor<?>>getArgument(3).extractData(response));
+    final EndpointMetrics metrics = new EndpointMetrics();
+    final FluentRestTemplate meteredFluent =
+        FluentRestTemplate.builder().restTemplate(restTemplate).metricsListener(metrics).build();
+    final RateLimiter rateLimiter = RateLimiter.failingFast(1, Duration.ofHours(1));
+    final FluentService service =
+        FluentService.from(DUMMY_URI)
+            .endpoints(Collections.singletonMap(FOO, BAR))
+            .rateLimiter(rateLimiter)
+            .build();
+    final ResponseStreamCallback<String> asString =
+        (body, headers) -> StreamUtils.copyToString(body, StandardCharsets.UTF_8);
+    // When
+    final String streamed =
+        meteredFluent.get().from(service).withEndpoint(FOO).executor().executeForStream(asString);
+    assertThrows(
+        RateLimitExceededException.class,
+        () ->
+            meteredFluent
+                .get()
+                .from(service)
+                .withEndpoint(FOO)
+                .executor()
+                .executeForStream(asString));
+    // Then
+    assertThat(streamed).isEqualTo(DUMMY_RESPONSE);
+    assertThat(rateLimiter.getRejectedCount()).isEqualTo(1);
+    final EndpointStats stats = metrics.getStats(EndpointTag.of("dummy.uri", FOO, HttpMethod.GET));
+    assertThat(stats.getRequestCount()).isEqualTo(1);
+    assertThat(stats.getStatusClassCount(2)).isEqualTo(1);
+  }
+
+  @Test
+  void postStreamAsyncWithoutConverter() {
+    // Given
+    given(restTemplate.getMessageConverters()).willReturn(Collections.emptyList());
+    given(
+            restTemplate.execute(
+                any(URI.class),
+                eq(HttpMethod.POST),
+                any(RequestCallback.class),
+                any(ResponseExtractor.class)))
+        .willAnswer(
+            i -> {
+              i.<RequestCallback>getArgument(2)
+                  .doWithRequest(Mockito.mock(ClientHttpRequest.class, Mockito.RETURNS_MOCKS));
+              return null;
+            });
+    // When
+    final CompletableFuture<Object> streamed =
+        fluent.post(TEST_STRING).from(DUMMY_URI).executor().executeForStreamAsync((b, h) -> b);
+    // Then
+    final CompletionException e = assertThrows(CompletionException.class, streamed::join);
+    assertThat(e.getCause()).isInstanceOf(RestClientException.class);
+  }
+
+  @Test
+  void putStreamingBody() throws Exception {
+    // Given
+    final ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+    final ClientHttpRequest request = Mockito.mock(ClientHttpRequest.class);
+    given(request.getHeaders()).willReturn(new HttpHeaders());
+    given(request.getBody()).willReturn(requestBody);
+    final ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    given(response.getHeaders()).willReturn(new HttpHeaders());
+    given(response.getStatusCode()).willReturn(HttpStatus.NO_CONTENT);
+    given(
+            restTemplate.execute(
+                any(URI.class),
+                eq(HttpMethod.PUT),
+                any(RequestCallback.class),
+                any(ResponseExtractor.class)))
+        .willAnswer(
+            i -> {
+              i.<RequestCallback>getArgument(2).doWithRequest(request);
+              return i.<ResponseExtractor<?>>getArgument(3).extractData(response);
+            });
+    final StreamingBody body =
+        StreamingBody.of(new ByteArrayInputStream(TEST_STRING.getBytes(StandardCharsets.UTF_8)));
+    // When
+    final ResponseEntity<Void> execute = fluent.put(body).into(DUMMY_URI).executor().execute();
+    // Then
+    then(restTemplate).should(never()).exchange(any(RequestEntity.class), any(Class.class));
+    assertThat(execute.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    assertThat(requestBody.toString("UTF-8")).isEqualTo(TEST_STRING);
+  }
+
+  @Test
+  void getElementsAsync() throws Exception {
+    // Given
+    final ClientHttpRequestFactory requestFactory = Mockito.mock(ClientHttpRequestFactory.class);
+    final ClientHttpRequest request = Mockito.mock(ClientHttpRequest.class);
+    final ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    given(restTemplate.getRequestFactory()).willReturn(requestFactory);
+    given(restTemplate.getErrorHandler()).willReturn(new DefaultResponseErrorHandler());
+    given(requestFactory.createRequest(any(URI.class), eq(HttpMethod.GET))).willReturn(request);
+    given(request.getHeaders()).willReturn(new HttpHeaders());
+    given(request.execute()).willReturn(response);
+    given(response.getStatusCode()).willReturn(HttpStatus.OK);
+    given(response.getBody())
+        .willReturn(new ByteArrayInputStream("[\"foo\",\"bar\"]".getBytes(StandardCharsets.UTF_8)));
+    // When
+    final CompletableFuture<Stream<String>> elements =
+        fluent.get().from(DUMMY_URI).executor().executeForElementsAsync(String.class);
+    // Then
+    try (final Stream<String> stream = elements.join()) {
+      assertThat(stream).containsExactly("foo", "bar");
+    }
+    then(response).should().close();
+  }
+
+  @Test
+  void getMetered() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willReturn(ResponseEntity.ok().header("Content-Length", "13").body(DUMMY_RESPONSE));
+    final EndpointMetrics metrics = new EndpointMetrics();
+    final FluentRestTemplate meteredFluent =
+        FluentRestTemplate.builder().restTemplate(restTemplate).metricsListener(metrics).build();
+    final FluentService service =
+        FluentService.from(DUMMY_URI).endpoints(Collections.singletonMap(FOO, "{foo}")).build();
+    // When
+    for (final String foo : Arrays.asList(BAR, BAZ)) {
+      meteredFluent
+          .get()
+          .from(service)
+          .withEndpoint(FOO)
+          .uriVariable(FOO, foo)
+          .executor()
+          .execute(String.class);
+    }
+    // Then
+    final EndpointStats stats = metrics.getStats(EndpointTag.of("dummy.uri", FOO, HttpMethod.GET));
+    assertThat(metrics.getStats()).hasSize(1);
+    assertThat(stats.getRequestCount()).isEqualTo(2);
+    assertThat(stats.getStatusClassCount(2)).isEqualTo(2);
+    assertThat(stats.getResponseBytes()).isEqualTo(26);
+  }
+
+  @Test
+  void getRetried() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE))
+        .willReturn(ResponseEntity.ok(DUMMY_RESPONSE));
+    final RetryPolicy retryPolicy =
+        RetryPolicy.builder().initialBackoff(Duration.ZERO).retryBudget(null).build();
+    final FluentRestTemplate retryingFluent =
+        FluentRestTemplate.builder().restTemplate(restTemplate).retryPolicy(retryPolicy).build();
+    // When
+    final String response =
+        retryingFluent.get().from(DUMMY_URI).executor().executeForObject(String.class);
+    // Then
+    assertThat(response).isEqualTo(DUMMY_RESPONSE);
+    then(restTemplate)
+        .should(Mockito.times(2))
+        .exchange(any(RequestEntity.class), eq(String.class));
+  }
+
+  @Test
+  void getRetriedOnAnotherInstance() {
+    // Given
+    final List<String> hosts = new ArrayList<>();
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willAnswer(
+            i -> {
+              final URI url = i.<RequestEntity<?>>getArgument(0).getUrl();
+              hosts.add(url.getHost() + ':' + url.getPort());
+              if (hosts.size() == 1) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+              }
+              return ResponseEntity.ok(DUMMY_RESPONSE);
+            });
+    final RetryPolicy retryPolicy =
+        RetryPolicy.builder().initialBackoff(Duration.ZERO).retryBudget(null).build();
+    final FluentService service =
+        FluentService.from(DUMMY_URI)
+            .instances(Arrays.asList("one:8081", "two:8082"))
+            .endpoints(Collections.singletonMap(FOO, BAR))
+            .build();
+    // When
+    final String response =
+        fluent
+            .get()
+            .from(service)
+            .withEndpoint(FOO)
+            .executor()
+            .retryPolicy(retryPolicy)
+            .executeForObject(String.class);
+    // Then
+    assertThat(response).isEqualTo(DUMMY_RESPONSE);
+    assertThat(hosts).hasSize(2).doesNotHaveDuplicates();
+    assertThat(hosts).allMatch(host -> host.equals("one:8081") || host.equals("two:8082"));
+  }
+
+  @Test
+  void postNotRetried() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+    final RetryPolicy retryPolicy = RetryPolicy.builder().initialBackoff(Duration.ZERO).build();
+    final Executor executor =
+        fluent.post(TEST_STRING).into(DUMMY_URI).executor().retryPolicy(retryPolicy);
+    // When
+    assertThrows(HttpServerErrorException.class, () -> executor.execute(String.class));
+    // Then
+    then(restTemplate).should().exchange(any(RequestEntity.class), eq(String.class));
+  }
+
+  @Test
+  void getCircuitBroken() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willThrow(new ResourceAccessException("Connection refused"));
+    final CircuitBreakers circuitBreakers =
+        new CircuitBreakers(CircuitBreakerConfig.builder().windowSize(1).minimumCalls(1).build());
+    final FluentRestTemplate guardedFluent =
+        FluentRestTemplate.builder()
+            .restTemplate(restTemplate)
+            .circuitBreakers(circuitBreakers)
+            .build();
+    // When
+    assertThrows(
+        ResourceAccessException.class,
+        () -> guardedFluent.get().from(DUMMY_URI).executor().execute(String.class));
+    assertThrows(
+        CircuitBreakerOpenException.class,
+        () -> guardedFluent.get().from(DUMMY_URI).executor().execute(String.class));
+    // Then
+    then(restTemplate).should().exchange(any(RequestEntity.class), eq(String.class));
+  }
+
+  @Test
+  void getHedged() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willAnswer(
+            invocation -> {
+              TimeUnit.SECONDS.sleep(10);
+              return ResponseEntity.ok(TEST_STRING);
+            })
+        .willReturn(ResponseEntity.ok(DUMMY_RESPONSE));
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    final FluentRestTemplate hedgingFluent =
+        FluentRestTemplate.builder().restTemplate(restTemplate).asyncExecutor(executor).build();
+    final HedgePolicy hedgePolicy =
+        HedgePolicy.builder().delay(Duration.ofMillis(10)).hedgeBudget(null).build();
+    // When
+    final String response =
+        hedgingFluent
+            .get()
+            .from(DUMMY_URI)
+            .executor()
+            .hedgePolicy(hedgePolicy)
+            .executeForObject(String.class);
+    executor.shutdownNow();
+    // Then
+    assertThat(response).isEqualTo(DUMMY_RESPONSE);
+    then(restTemplate)
+        .should(Mockito.times(2))
+        .exchange(any(RequestEntity.class), eq(String.class));
+  }
+
+  @Test
+  void getTimedOutRetried() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willAnswer(
+            invocation -> {
+              TimeUnit.SECONDS.sleep(10);
+              return ResponseEntity.ok(TEST_STRING);
+            })
+        .willReturn(ResponseEntity.ok(DUMMY_RESPONSE));
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    final FluentRestTemplate boundedFluent =
+        FluentRestTemplate.builder()
+            .restTemplate(restTemplate)
+            .attemptExecutor(executor)
+            .retryPolicy(
+                RetryPolicy.builder().initialBackoff(Duration.ZERO).retryBudget(null).build())
+            .build();
+    final FluentService service =
+        FluentService.from(DUMMY_URI)
+            .endpoints(Collections.singletonMap(FOO, BAR))
+            .timeouts(Collections.singletonMap(FOO, Duration.ofMillis(20)))
+            .build();
+    // When
+    final String response =
+        boundedFluent
+            .get()
+            .from(service)
+            .withEndpoint(FOO)
+            .executor()
+            .executeForObject(String.class);
+    executor.shutdownNow();
+    // Then
+    assertThat(response).isEqualTo(DUMMY_RESPONSE);
+    then(restTemplate)
+        .should(Mockito.times(2))
+        .exchange(any(RequestEntity.class), eq(String.class));
+  }
+
+  @Test
+  void getTimedOnAttemptThread() {
+    // Given
+    final List<String> threads = new CopyOnWriteArrayList<>();
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willAnswer(
+            invocation -> {
+              threads.add(Thread.currentThread().getName());
+              return ResponseEntity.ok(DUMMY_RESPONSE);
+            });
+    // When
+    final String response =
+        fluent
+            .get()
+            .from(DUMMY_URI)
+            .executor()
+            .deadline(Duration.ofSeconds(10))
+            .executeForObject(String.class);
+    // Then
+    assertThat(response).isEqualTo(DUMMY_RESPONSE);
+    assertThat(threads).hasSize(1);
+    assertThat(threads.get(0)).startsWith("fluent-attempt-");
+  }
+
+  @Test
+  void getDeadlineExceeded() {
+    // Given
+    final List<String> sentDeadlines = new CopyOnWriteArrayList<>();
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willAnswer(
+            invocation -> {
+              sentDeadlines.add(
+                  invocation.<RequestEntity<?>>getArgument(0).getHeaders().getFirst("X-Deadline"));
+              TimeUnit.SECONDS.sleep(10);
+              return ResponseEntity.ok(TEST_STRING);
+            });
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    final FluentRestTemplate boundedFluent =
+        FluentRestTemplate.builder()
+            .restTemplate(restTemplate)
+            .attemptExecutor(executor)
+            .deadlineHeader("X-Deadline")
+            .build();
+    final Executor deadlineExecutor =
+        boundedFluent.get().from(DUMMY_URI).executor().deadline(Duration.ofMillis(50));
+    // When
+    assertThrows(
+        DeadlineExceededException.class, () -> deadlineExecutor.executeForObject(String.class));
+    executor.shutdownNow();
+    // Then
+    assertThat(sentDeadlines).hasSize(1);
+    assertThat(Long.parseLong(sentDeadlines.get(0))).isBetween(0L, 50L);
+  }
+
+  @Test
+  void getRateLimited() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willReturn(ResponseEntity.ok(DUMMY_RESPONSE));
+    final RateLimiter rateLimiter = RateLimiter.failingFast(1, Duration.ofHours(1));
+    final FluentService service =
+        FluentService.from(DUMMY_URI)
+            .endpoints(Collections.singletonMap(FOO, BAR))
+            .rateLimiter(rateLimiter)
+            .build();
+    // When
+    fluent.get().from(service).withEndpoint(FOO).executor().execute(String.class);
+    assertThrows(
+        RateLimitExceededException.class,
+        () -> fluent.get().from(service).withEndpoint(FOO).executor().execute(String.class));
+    // Then
+    then(restTemplate).should().exchange(any(RequestEntity.class), eq(String.class));
+    assertThat(rateLimiter.getRejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void getConcurrencyLimited() {
+    // Given
+    given(restTemplate.exchange(any(RequestEntity.class), any(Class.class)))
+        .willThrow(new ResourceAccessException("Read timed out"));
+    final ConcurrencyLimiters concurrencyLimiters =
+        new ConcurrencyLimiters(
+            ConcurrencyLimitConfig.builder().initialLimit(4).backoffRatio(0.5).build());
+    final FluentRestTemplate limitedFluent =
+        FluentRestTemplate.builder()
+            .restTemplate(restTemplate)
+            .concurrencyLimiters(concurrencyLimiters)
+            .build();
+    // When
+    assertThrows(
+        ResourceAccessException.class,
+        () -> limitedFluent.get().from(DUMMY_URI).executor().execute(String.class));
+    // Then
+    final ConcurrencyLimiter concurrencyLimiter = concurrencyLimiters.get("dummy.uri", null);
+    assertThat(concurrencyLimiter.getLimit()).isEqualTo(2);
+    assertThat(concurrencyLimiter.getInFlight()).isZero();
+  }
+
+  @Test
+  void getTimed() throws Exception {
+    // Given
+    final HttpHeaders requestHeaders = new HttpHeaders();
+    final ClientHttpRequest request = Mockito.mock(ClientHttpRequest.class);
+    given(request.getHeaders()).willReturn(requestHeaders);
+    final HttpHeaders responseHeaders = new HttpHeaders();
+    responseHeaders.setContentType(MediaType.TEXT_PLAIN);
+    final ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+    given(response.getStatusCode()).willReturn(HttpStatus.OK);
+    given(response.getHeaders()).willReturn(responseHeaders);
+    given(response.getBody())
+        .willReturn(new ByteArrayInputStream(DUMMY_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+    given(restTemplate.getMessageConverters())
+        .willReturn(Collections.singletonList(new StringHttpMessageConverter()));
+    given(
+            restTemplate.execute(
+                any(URI.class),
+                eq(HttpMethod.GET),
+                any(RequestCallback.class),
+                any(ResponseExtractor.class)))
+        .willAnswer(
+            i -> {
+              i.<RequestCallback>getArgument(2).doWithRequest(request);
+              return i.<ResponseExtractor<?>>getArgument(3).extractData(response);
+            });
+    final List<PhaseTimings> received = new ArrayList<>();
+    final FluentRestTemplate timedFluent =
+        FluentRestTemplate.builder()
+            .restTemplate(restTemplate)
+            .phaseTimingListener((endpoint, timings) -> received.add(timings))
+            .build();
+    // When
+    final ResponseEntity<String> execute =
+        timedFluent.get().from(DUMMY_URI).executor().execute(String.class);
+    // Then
+    then(restTemplate).should(never()).exchange(any(RequestEntity.class), any(Class.class));
+    assertThat(execute.getBody()).isEqualTo(DUMMY_RESPONSE);
+    assertThat(requestHeaders.getAccept()).contains(MediaType.TEXT_PLAIN);
+    final PhaseTimings timings = TimedResponseEntity.timings(execute);
+    assertThat(received).containsExactly(timings);
+    assertThat(timings.getDeserializationNanos()).isNotNegative();
+    assertThat(timings.getTotalNanos())
+        .isGreaterThanOrEqualTo(
+            timings.getUriBuildNanos()
+                + timings.getRequestCreationNanos()
+                + timings.getSerializationNanos()
+                + timings.getAwaitingResponseNanos()
+                + timings.getDeserializationNanos());
+  }
+
+  @Test
+  void getTimedFailure() {
+    // Given
+    given(
+            restTemplate.execute(
+                any(URI.class),
+                eq(HttpMethod.GET),
+                any(RequestCallback.class),
+                any(ResponseExtractor.class)))
+        .willThrow(new RestClientException(DUMMY_MESSAGE));
+    final List<PhaseTimings> received = new ArrayList<>();
+    final FluentRestTemplate timedFluent =
+        FluentRestTemplate.builder()
+            .restTemplate(restTemplate)
+            .phaseTimingListener((endpoint, timings) -> received.add(timings))
+            .build();
+    // When
+    assertThrows(
+        RestClientException.class,
+        () -> timedFluent.get().from(DUMMY_URI).executor().execute(String.class));
+    // Then
+    assertThat(received).hasSize(1);
+    assertThat(received.get(0).getSerializationNanos()).isEqualTo(PhaseTimings.NOT_REACHED);
+    assertThat(received.get(0).getDeserializationNanos()).isEqualTo(PhaseTimings.NOT_REACHED);
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResponseErrorHandler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+
+@ExtendWith(MockitoExtension.class)
+class JsonElementsTest {
+
+  private static final RequestEntity<Void> REQUEST =
+      new RequestEntity<>(HttpMethod.GET, URI.create("http://dummy.uri/foo"));
+  private static final List<HttpMessageConverter<?>> NO_CONVERTERS = Collections.emptyList();
+
+  @Mock private ClientHttpResponse response;
+  @Mock private ResponseErrorHandler errorHandler;
+
+  @Test
+  void givenJsonArray_whenStreamed_thenElementsAreDecodedLazily() throws Exception {
+    // Given
+    given(response.getBody()).willReturn(body("[{\"foo\":1},{\"foo\":2},{\"foo\":3}]"));
+    final ParameterizedTypeReference<Map<String, Integer>> type =
+        new ParameterizedTypeReference<Map<String, Integer>>() {};
+    // When
+    final List<Integer> foos;
+    try (final Stream<Map<String, Integer>> elements =
+        JsonElements.stream(response, errorHandler, NO_CONVERTERS, REQUEST, type.getType())) {
+      then(response).should(never()).close();
+      foos = elements.map(e -> e.get("foo")).limit(2).collect(Collectors.toList());
+    }
+    // Then
+    assertThat(foos).containsExactly(1, 2);
+    then(response).should().close();
+  }
+
+  @Test
+  void givenNdJson_whenStreamed_thenEveryLineIsAnElement() throws Exception {
+    // Given
+    given(response.getBody()).willReturn(body("\"foo\"\n\"bar\"\n\"baz\"\n"));
+    // When
+    final List<String> elements;
+    try (final Stream<String> stream =
+        JsonElements.stream(response, errorHandler, NO_CONVERTERS, REQUEST, String.class)) {
+      elements = stream.collect(Collectors.toList());
+    }
+    // Then
+    assertThat(elements).containsExactly("foo", "bar", "baz");
+  }
+
+  @Test
+  void givenErrorResponse_whenStreamed_thenErrorIsThrownAndResponseClosed() throws Exception {
+    // Given
+    given(errorHandler.hasError(response)).willReturn(true);
+    willThrow(HttpClientErrorException.class).given(errorHandler).handleError(response);
+    // When
+    // Then
+    assertThrows(
+        HttpClientErrorException.class,
+        () -> JsonElements.stream(response, errorHandler, NO_CONVERTERS, REQUEST, String.class));
+    then(response).should().close();
+  }
+
+  private static ByteArrayInputStream body(final String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.resttemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingBodyTest {
+
+  private static final String DUMMY_CONTENT = "DummyContent";
+  private static final byte[] DUMMY_BYTES = DUMMY_CONTENT.getBytes(StandardCharsets.UTF_8);
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private final HttpHeaders headers = new HttpHeaders();
+  private final HttpOutputMessage request =
+      new HttpOutputMessage() {
+        @Override
+        public OutputStream getBody() {
+          return output;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+          return headers;
+        }
+      };
+
+  @Test
+  void givenPath_whenWritten_thenFileIsSentWithContentLength(@TempDir final Path dir)
+      throws Exception {
+    // Given
+    final Path file = Files.write(dir.resolve("artifact.bin"), DUMMY_BYTES);
+    // When
+    StreamingBody.of(file).writeTo(request);
+    // Then
+    assertThat(output.toByteArray()).isEqualTo(DUMMY_BYTES);
+    assertThat(headers.getContentLength()).isEqualTo(DUMMY_BYTES.length);
+    assertThat(headers.getContentType()).isEqualTo(MediaType.APPLICATION_OCTET_STREAM);
+  }
+
+  @Test
+  void givenPath_whenFileShrinksWhileWritten_thenWritingFails(@TempDir final Path dir)
+      throws Exception {
+    // Given
+    final Path file = Files.write(dir.resolve("artifact.bin"), new byte[64 * 1024]);
+    final StreamingBody body = StreamingBody.of(file);
+    final HttpOutputMessage truncatingRequest =
+        new HttpOutputMessage() {
+          @Override
+          public OutputStream getBody() {
+            return new OutputStream() {
+              @Override
+              public void write(final int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+              }
+
+              @Override
+              public void write(final byte[] b, final int off, final int len) throws IOException {
+                try (final FileChannel channel =
+                    FileChannel.open(file, StandardOpenOption.WRITE)) {
+                  channel.truncate(1);
+                }
+                output.write(b, off, len);
+              }
+            };
+          }
+
+          @Override
+          public HttpHeaders getHeaders() {
+            return headers;
+          }
+        };
+    // When
+    final IOException e = assertThrows(IOException.class, () -> body.writeTo(truncatingRequest));
+    // Then
+    assertThat(e).hasMessageContaining("shrank");
+    assertThat(headers.getContentLength()).isEqualTo(64 * 1024);
+  }
+
+  @Test
+  void givenInputStreamOfUnknownLength_whenWritten_thenNoContentLengthIsSent() throws Exception {
+    // Given
+    headers.setContentType(MediaType.TEXT_PLAIN);
+    // When
+    StreamingBody.of(new ByteArrayInputStream(DUMMY_BYTES)).writeTo(request);
+    // Then
+    assertThat(output.toByteArray()).isEqualTo(DUMMY_BYTES);
+    assertThat(headers.getContentLength()).isEqualTo(-1);
+    assertThat(headers.getContentType()).isEqualTo(MediaType.TEXT_PLAIN);
+  }
+
+  @Test
+  void givenChannelOfKnownLength_whenWritten_thenContentLengthIsSent() throws Exception {
+    // Given
+    final StreamingBody body =
+        StreamingBody.of(
+            Channels.newChannel(new ByteArrayInputStream(DUMMY_BYTES)), DUMMY_BYTES.length);
+    // When
+    body.writeTo(request);
+    // Then
+    assertThat(output.toByteArray()).isEqualTo(DUMMY_BYTES);
+    assertThat(headers.getContentLength()).isEqualTo(DUMMY_BYTES.length);
+  }
+}
@@ -18,7 +18,13 @@
 package mart.karl.fluent.service;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import mart.karl.fluent.resilience.RateLimiter;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpHeaders;
 import org.springframework.util.LinkedMultiValueMap;
@@ -140,4 +146,161 @@ class FluentServiceTest {
     // Then
     assertThat(uri).hasQuery("baz=thisWillRemain").hasFragment("newFragment");
   }
+
+  @Test
+  void givenUriWasBuilt_whenServiceIsModified_thenNewUriReflectsChanges() {
+    // Given
+    final FluentService service =
+        FluentService.from(DUMMY_URI).endpoints(Collections.singletonMap(FOO, BAR)).build();
+    final URI before = service.uriBuilder(FOO).build();
+    // When
+    service.setVersion(VERSION);
+    service.setCommonFragment(FRAGMENT);
+    final URI after = service.uriBuilder(FOO).build();
+    // Then
+    assertThat(before).hasPath(PATH + "/" + BAR).hasNoFragment();
+    assertThat(after).hasPath(PATH + "/" + VERSION + "/" + BAR).hasFragment(FRAGMENT);
+  }
+
+  @Test
+  void givenSetterRacingUriBuild_whenUriIsBuilt_thenItIsBuiltFromOneSnapshot() {
+    // Given
+    final FluentService service =
+        FluentService.from(DUMMY_URI).endpoints(Collections.singletonMap(FOO, BAR)).build();
+    final FluentService.ServiceUriBuilder uriBuilder = service.uriBuilder(FOO).queryParam(FOO, BAR);
+    // When
+    service.setHost(HOST);
+    service.setVersion(VERSION);
+    final URI uri = uriBuilder.build();
+    // Then
+    assertThat(uri).hasHost("foo.bar").hasPath(PATH + "/" + BAR).hasQuery(FOO + "=" + BAR);
+    assertThat(service.uriBuilder(FOO).build())
+        .hasHost(HOST)
+        .hasPath(PATH + "/" + VERSION + "/" + BAR);
+  }
+
+  @Test
+  void givenSpecificUriParts_whenUriIsBuilt_thenCommonUriPartsAreNotModified() {
+    // Given
+    final FluentService service =
+        FluentService.from(DUMMY_URI2).endpoints(Collections.singletonMap(FOO, "{foo}")).build();
+    // When
+    final URI specific =
+        service
+            .uriBuilder(FOO)
+            .uriVariable(FOO, BAR)
+            .queryParam("yo", "bang")
+            .fragment(FRAGMENT)
+            .build();
+    final URI common = service.uriBuilder(FOO).uriVariable(FOO, BUY_BEER).build();
+    // Then
+    assertThat(specific)
+        .hasPath("/any-path/" + BAR)
+        .hasQuery(QUERY + "&yo=bang")
+        .hasFragment(FRAGMENT);
+    assertThat(common).hasPath("/any-path/" + BUY_BEER).hasQuery(QUERY).hasNoFragment();
+  }
+
+  @Test
+  void givenTimeouts_whenEndpointTimeoutIsRequested_thenSpecificOneOverridesCommonOne() {
+    // Given
+    final FluentService service =
+        FluentService.from(DUMMY_URI)
+            .timeout(Duration.ofSeconds(2))
+            .timeouts(Collections.singletonMap(BUY_BEER, Duration.ofMillis(300)))
+            .build();
+    // When
+    final Duration specific = service.getTimeout(BUY_BEER);
+    final Duration common = service.getTimeout(FOO);
+    // Then
+    assertThat(specific).isEqualTo(Duration.ofMillis(300));
+    assertThat(common).isEqualTo(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void givenRateLimiters_whenEndpointRateLimiterIsRequested_thenSpecificOneOverridesCommonOne() {
+    // Given
+    final RateLimiter common = RateLimiter.failingFast(10, Duration.ofSeconds(1));
+    final RateLimiter specific = RateLimiter.failingFast(1, Duration.ofSeconds(1));
+    final FluentService service = FluentService.from(DUMMY_URI).rateLimiter(common).build();
+    service.setRateLimiters(Collections.singletonMap(BUY_BEER, specific));
+    // When
+    final RateLimiter buyBeer = service.getRateLimiter(BUY_BEER);
+    final RateLimiter foo = service.getRateLimiter(FOO);
+    // Then
+    assertThat(buyBeer).isSameAs(specific);
+    assertThat(foo).isSameAs(common);
+  }
+
+  @Test
+  void givenInstances_whenUrisAreBuilt_thenTheyAreBalancedAcrossInstances() {
+    // Given
+    final FluentService service =
+        FluentService.from(DUMMY_URI)
+            .endpoints(Collections.singletonMap(FOO, BAR))
+            .instances(Arrays.asList("one:8081", "two"))
+            .build();
+    // When
+    final URI first = service.uriBuilder(FOO).build();
+    final URI second = service.uriBuilder(FOO).build();
+    final ServiceInstance third = service.uriBuilder(FOO).getInstance();
+    // Then
+    assertThat(first).hasHost("one").hasPort(8081).hasPath(PATH + "/" + BAR);
+    assertThat(second).hasHost("two").hasNoPort().hasPath(PATH + "/" + BAR);
+    assertThat(third).isSameAs(service.getServiceInstances().get(0));
+  }
+
+  @Test
+  void givenInstancesUriWasBuilt_whenInstancesAreReplaced_thenNewUriPointsToNewInstance() {
+    // Given
+    final FluentService service =
+        FluentService.from(DUMMY_URI)
+            .endpoints(Collections.singletonMap(FOO, BAR))
+            .instances(Collections.singletonList("one:8081"))
+            .build();
+    final URI before = service.uriBuilder(FOO).build();
+    // When
+    service.setInstances(Collections.singletonList("two:8082"));
+    service.setVersion(VERSION);
+    final URI after = service.uriBuilder(FOO).build();
+    // Then
+    assertThat(before).hasHost("one").hasPort(8081).hasPath(PATH + "/" + BAR);
+    assertThat(after).hasHost("two").hasPort(8082).hasPath(PATH + "/" + VERSION + "/" + BAR);
+  }
+
+  @Test
+  void givenRoutingVariable_whenUrisAreBuilt_thenSameKeyIsRoutedToSameInstance() {
+    // Given
+    final FluentService service =
+        FluentService.from(DUMMY_URI)
+            .endpoints(Collections.singletonMap(FOO, "customers/{customerId}"))
+            .instances(Arrays.asList("one", "two", "three"))
+            .loadBalancer(LoadBalancer.consistentHash())
+            .routingVariable("customerId")
+            .build();
+    // When
+    final Set<String> routed =
+        IntStream.range(0, 10)
+            .mapToObj(i -> service.uriBuilder(FOO).uriVariable("customerId", 42).build().getHost())
+            .collect(Collectors.toSet());
+    final URI keyed =
+        service
+            .uriBuilder(FOO)
+            .uriVariable("customerId", 7)
+            .queryParam(BAR, FOO)
+            .routingKey("42")
+            .build();
+    final Set<String> unkeyed =
+        IntStream.range(0, 10)
+            .mapToObj(i -> service.uriBuilder().build().getHost())
+            .collect(Collectors.toSet());
+    // Then
+    assertThat(routed).hasSize(1);
+    assertThat(keyed)
+        .hasHost(routed.iterator().next())
+        .hasNoPort()
+        .hasPath(PATH + "/customers/7")
+        .hasQuery(BAR + "=" + FOO);
+    assertThat(unkeyed).containsOnly("one", "two", "three");
+  }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mart.karl.fluent.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoadBalancerTest {
+
+  private final List<ServiceInstance> instances =
+      Arrays.asList(
+          ServiceInstance.parse("one:8080", () -> null),
+          ServiceInstance.parse("two:8080", () -> null),
+          ServiceInstance.parse("three", () -> null));
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  void givenRoundRobin_whenChoosing_thenInstancesAreCycledThrough() {
+    // Given
+    final LoadBalancer loadBalancer = LoadBalancer.roundRobin();
+    // When
+    final List<String> hosts =
+        IntStream.range(0, 6)
+            .mapToObj(i -> loadBalancer.choose(instances).getHost())
+            .collect(Collectors.toList());
+    // Then
+    assertThat(hosts).containsExactly("one", "two", "three", "one", "two", "three");
+  }
+
+  @Test
+  void givenBusyInstances_whenChoosingLeastOutstanding_thenIdleInstanceIsChosen()
+      throws Exception {
+    // Given
+    occupy(instances.get(0));
+    occupy(instances.get(2));
+    final LoadBalancer loadBalancer = LoadBalancer.leastOutstandingRequests();
+    // When
+    final Map<String, Long> chosen = choose(loadBalancer, instances, 100);
+    // Then
+    assertThat(chosen).containsOnlyKeys("two");
+  }
+
+  @Test
+  void givenTwoInstances_whenChoosingPowerOfTwo_thenLessLoadedInstanceIsChosen()
+      throws Exception {
+    // Given
+    final List<ServiceInstance> pair = instances.subList(0, 2);
+    occupy(pair.get(0));
+    final LoadBalancer loadBalancer = LoadBalancer.powerOfTwoChoices();
+    // When
+    final Map<String, Long> chosen = choose(loadBalancer, pair, 100);
+    // Then
+    assertThat(chosen).containsOnlyKeys("two");
+  }
+
+  @Test
+  void givenIdleInstances_whenChoosingPowerOfTwo_thenEveryInstanceIsChosen() {
+    // Given
+    final LoadBalancer loadBalancer = LoadBalancer.powerOfTwoChoices();
+    // When
+    final Map<String, Long> chosen = choose(loadBalancer, instances, 300);
+    // Then
+    assertThat(chosen).containsOnlyKeys("one", "two", "three");
+    assertThat(instances).allMatch(instance -> instance.getOutstandingRequests() == 0);
+  }
+
+  @Test
+  void givenConsistentHash_whenChoosingWithKeys_thenEveryKeyKeepsItsInstance() {
+    // Given
+    final LoadBalancer loadBalancer = LoadBalancer.consistentHash();
+    final List<ServiceInstance> reversed =
+        Arrays.asList(instances.get(2), instances.get(1), instances.get(0));
+    // When
+    final Map<Integer, String> first = route(loadBalancer, instances);
+    final Map<Integer, String> second = route(loadBalancer, reversed);
+    // Then
+    assertThat(second).isEqualTo(first);
+    assertThat(
+            first.values().stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting())))
+        .containsOnlyKeys("one", "two", "three")
+        .allSatisfy((host, keys) -> assertThat(keys).isBetween(250L, 420L));
+  }
+
+  @Test
+  void givenConsistentHash_whenInstancesChange_thenOnlyTheirKeysAreRemapped() {
+    // Given
+    final LoadBalancer loadBalancer = LoadBalancer.consistentHash();
+    final List<ServiceInstance> added = new ArrayList<>(instances);
+    added.add(ServiceInstance.parse("four:8080", () -> null));
+    final Map<Integer, String> before = route(loadBalancer, instances);
+    // When
+    final Map<Integer, String> afterRemoval = route(loadBalancer, instances.subList(0, 2));
+    final Map<Integer, String> afterAddition = route(loadBalancer, added);
+    // Then
+    before.forEach(
+        (key, host) -> {
+          if (!"three".equals(host)) {
+            assertThat(afterRemoval.get(key)).isEqualTo(host);
+          }
+          assertThat(afterAddition.get(key)).isIn(host, "four");
+        });
+    assertThat(afterAddition.values().stream().filter("four"::equals).count())
+        .isBetween(150L, 350L);
+  }
+
+  @Test
+  void givenConsistentHash_whenChoosingWithoutKey_thenFallbackChooses() {
+    // Given
+    final LoadBalancer loadBalancer = LoadBalancer.consistentHash(choices -> choices.get(1));
+    // When
+    final ServiceInstance withoutKey = loadBalancer.choose(instances);
+    final ServiceInstance nullKey = loadBalancer.choose(instances, null);
+    // Then
+    assertThat(withoutKey).isSameAs(instances.get(1));
+    assertThat(nullKey).isSameAs(instances.get(1));
+  }
+
+  /** Routes a thousand keys. */
+  private static Map<Integer, String> route(
+      final LoadBalancer loadBalancer, final List<ServiceInstance> choices) {
+    return IntStream.range(0, 1000)
+        .boxed()
+        .collect(
+            Collectors.toMap(
+                Function.identity(), key -> loadBalancer.choose(choices, key).getHost()));
+  }
+
+  private static Map<String, Long> choose(
+      final LoadBalancer loadBalancer, final List<ServiceInstance> choices, final int times) {
+    return IntStream.range(0, times)
+        .mapToObj(i -> loadBalancer.choose(choices).getHost())
+        .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+  }
+
+  /** Keeps a request in flight to the given instance until the test ends. */
+  private void occupy(final ServiceInstance instance) throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    executor.execute(
+        () ->
+            instance.execute(
+                () -> {
+                  started.countDown();
+                  try {
+                    return release.await(5, TimeUnit.SECONDS);
+                  } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                  }
+                }));
+    started.await(1, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OutlierDetectorTest {
+
+  private static final long MILLIS = 1_000_000L;
+
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final List<String> events = new CopyOnWriteArrayList<>();
+  private FluentService service;
+  private List<ServiceInstance> instances;
+  private OutlierDetector detector;
+
+  @BeforeEach
+  void setUp() {
+    service =
+        FluentService.builder()
+            .scheme("http")
+            .instances(Arrays.asList("one", "two", "three", "four"))
+            .build();
+    instances = service.getServiceInstances();
+  }
+
+  @Test
+  void givenConsecutiveFailures_whenThresholdIsReached_thenInstanceIsEjectedUntilBackoffElapses() {
+    // Given
+    detect(OutlierDetectionConfig.builder().consecutiveFailures(3));
+    final ServiceInstance one = instances.get(0);
+    // When
+    fail(one, 2);
+    one.executeAsync(() -> failed(new ResourceAccessException("Read timed out")));
+    final Map<String, Long> whileEjected = hosts(8);
+    nanoTime.addAndGet(30_000 * MILLIS);
+    final Map<String, Long> afterBackoff = hosts(8);
+    // Then
+    assertThat(whileEjected).containsOnlyKeys("two", "three", "four");
+    assertThat(afterBackoff).containsOnlyKeys("one", "two", "three", "four");
+    assertThat(one.isEjected()).isFalse();
+    assertThat(events)
+        .containsExactly("one ejected for CONSECUTIVE_FAILURES 30000", "one readmitted");
+  }
+
+  @Test
+  void givenSuccessesAndClientErrors_whenFailing_thenOnlyFailuresInARowEject() {
+    // Given
+    detect(OutlierDetectionConfig.builder().consecutiveFailures(3));
+    final ServiceInstance one = instances.get(0);
+    // When
+    fail(one, 2);
+    one.execute(() -> ResponseEntity.ok().build());
+    fail(one, 2);
+    assertThrows(
+        HttpClientErrorException.class,
+        () ->
+            one.execute(
+                () -> {
+                  throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+                }));
+    fail(one, 2);
+    final boolean ejectedBefore = one.isEjected();
+    one.execute(() -> ResponseEntity.status(HttpStatus.BAD_GATEWAY).build());
+    // Then
+    assertThat(ejectedBefore).isFalse();
+    assertThat(one.isEjected()).isTrue();
+    assertThat(detector.available(instances)).hasSize(3).doesNotContain(one);
+  }
+
+  @Test
+  void givenMaxEjectionPercent_whenEveryInstanceFails_thenEjectionsAreCapped() {
+    // Given
+    detect(OutlierDetectionConfig.builder().consecutiveFailures(1).maxEjectionPercent(50));
+    // When
+    instances.forEach(instance -> fail(instance, 1));
+    // Then
+    assertThat(instances.stream().filter(ServiceInstance::isEjected)).hasSize(2);
+    assertThat(detector.available(instances)).hasSize(2);
+    assertThat(events).hasSize(2);
+  }
+
+  @Test
+  void givenASingleInstance_whenFailing_thenItIsNeverEjected() {
+    // Given
+    service.setInstances(Collections.singletonList("one"));
+    instances = service.getServiceInstances();
+    detect(OutlierDetectionConfig.builder().consecutiveFailures(1).maxEjectionPercent(100));
+    // When
+    fail(instances.get(0), 5);
+    // Then
+    assertThat(detector.available(instances)).containsExactlyElementsOf(instances);
+    assertThat(events).isEmpty();
+  }
+
+  @Test
+  void givenASlowInstance_whenLatenciesAreEvaluated_thenItIsEjectedAsOutlier() {
+    // Given
+    detect(
+        OutlierDetectionConfig.builder()
+            .minimumRequests(5)
+            .latencyRatio(3)
+            .evaluationInterval(Duration.ofSeconds(10)));
+    final ServiceInstance four = instances.get(3);
+    // When
+    IntStream.range(0, 5)
+        .forEach(
+            i ->
+                instances.forEach(
+                    instance ->
+                        detector.onResult(
+                            instance, (instance == four ? 400 : 100) * MILLIS, null, null)));
+    final List<ServiceInstance> beforeEvaluation = detector.available(instances);
+    nanoTime.addAndGet(10_000 * MILLIS);
+    final List<ServiceInstance> afterEvaluation = detector.available(instances);
+    // Then
+    assertThat(beforeEvaluation).containsExactlyElementsOf(instances);
+    assertThat(afterEvaluation).hasSize(3).doesNotContain(four);
+    assertThat(events).containsExactly("four ejected for LATENCY 30000");
+  }
+
+  @Test
+  void givenRepeatedEjections_whenEjectedAgain_thenBackoffGrowsUpToMaximum() {
+    // Given
+    detect(
+        OutlierDetectionConfig.builder()
+            .consecutiveFailures(1)
+            .baseEjectionDuration(Duration.ofSeconds(30))
+            .maxEjectionDuration(Duration.ofSeconds(70)));
+    final ServiceInstance one = instances.get(0);
+    // When
+    for (int i = 0; i < 3; i++) {
+      fail(one, 1);
+      nanoTime.addAndGet(70_000 * MILLIS);
+      detector.available(instances);
+    }
+    // Then
+    assertThat(events)
+        .containsExactly(
+            "one ejected for CONSECUTIVE_FAILURES 30000",
+            "one readmitted",
+            "one ejected for CONSECUTIVE_FAILURES 60000",
+            "one readmitted",
+            "one ejected for CONSECUTIVE_FAILURES 70000",
+            "one readmitted");
+  }
+
+  private void detect(final OutlierDetectionConfig.OutlierDetectionConfigBuilder config) {
+    detector =
+        new OutlierDetector(
+            config.build(),
+            new OutlierListener() {
+              @Override
+              public void onEjection(
+                  final ServiceInstance instance,
+                  final OutlierDetector.Reason reason,
+                  final Duration duration) {
+                events.add(
+                    instance.getHost() + " ejected for " + reason + " " + duration.toMillis());
+              }
+
+              @Override
+              public void onReadmission(final ServiceInstance instance) {
+                events.add(instance.getHost() + " readmitted");
+              }
+            },
+            nanoTime::get);
+    service.setOutlierDetector(detector);
+    detector.available(instances);
+  }
+
+  private Map<String, Long> hosts(final int uris) {
+    return IntStream.range(0, uris)
+        .mapToObj(i -> service.uriBuilder().build().getHost())
+        .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+  }
+
+  private static void fail(final ServiceInstance instance, final int times) {
+    for (int i = 0; i < times; i++) {
+      assertThrows(
+          ResourceAccessException.class,
+          () ->
+              instance.execute(
+                  () -> {
+                    throw new ResourceAccessException("Connection refused");
+                  }));
+    }
+  }
+
+  private static <T> CompletableFuture<T> failed(final RuntimeException e) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(new CompletionException(e));
+    return future;
+  }
+}
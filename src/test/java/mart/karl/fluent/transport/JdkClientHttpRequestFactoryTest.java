@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import mart.karl.fluent.resttemplate.FluentRestTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JdkClientHttpRequestFactoryTest {
+
+  private static final String DUMMY_BODY = "DummyBody";
+
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+  private final Set<String> viaHeaders = ConcurrentHashMap.newKeySet();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private HttpServer server;
+  private URI baseUri;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::echo);
+    server.createContext(
+        "/missing",
+        exchange -> {
+          exchange.sendResponseHeaders(404, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/slow",
+        exchange -> {
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          echo(exchange);
+        });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    baseUri = URI.create("http://localhost:" + server.getAddress().getPort());
+  }
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    server.stop(0);
+  }
+
+  @Test
+  void givenJava11_whenPatchIsSent_thenItIsExchangedOverAReusedConnection() {
+    // Given
+    assumeTrue(JdkClientHttpRequestFactory.isSupported());
+    final FluentRestTemplate fluentRestTemplate = FluentRestTemplate.builder().http2().build();
+    // When
+    ResponseEntity<String> response = null;
+    for (int i = 0; i < 3; i++) {
+      response =
+          fluentRestTemplate
+              .patch(DUMMY_BODY)
+              .into(baseUri)
+              .executor()
+              .header("X-Foo", "foo")
+              .execute(String.class);
+    }
+    // Then
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    assertThat(response.getBody()).isEqualTo("PATCH " + DUMMY_BODY + " foo");
+    assertThat(response.getHeaders().getFirst("X-Method")).isEqualTo("PATCH");
+    assertThat(clientPorts).hasSize(1);
+  }
+
+  @Test
+  void givenJava11_whenRestrictedHeaderIsGiven_thenItIsSkipped() {
+    // Given
+    assumeTrue(JdkClientHttpRequestFactory.isSupported());
+    final FluentRestTemplate fluentRestTemplate = FluentRestTemplate.builder().http2().build();
+    // When
+    final ResponseEntity<String> response =
+        fluentRestTemplate
+            .get()
+            .from(baseUri)
+            .executor()
+            .header("Via", "1.1 proxy")
+            .header("X-Foo", "foo")
+            .execute(String.class);
+    // Then
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    assertThat(response.getBody()).isEqualTo("GET  foo");
+    assertThat(viaHeaders).isEmpty();
+  }
+
+  @Test
+  void givenJava11_whenErrorStatusIsReceived_thenHttpClientErrorException() {
+    // Given
+    assumeTrue(JdkClientHttpRequestFactory.isSupported());
+    final FluentRestTemplate fluentRestTemplate = FluentRestTemplate.builder().http2().build();
+    // When
+    final HttpClientErrorException exception =
+        assertThrows(
+            HttpClientErrorException.class,
+            () ->
+                fluentRestTemplate
+                    .get()
+                    .from(baseUri.resolve("/missing"))
+                    .executor()
+                    .executeForObject(String.class));
+    // Then
+    assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    assertThat(exception.getStatusText()).isEqualTo("Not Found");
+  }
+
+  @Test
+  void givenReadTimeout_whenServerIsSlow_thenResourceAccessException() {
+    // Given
+    assumeTrue(JdkClientHttpRequestFactory.isSupported());
+    final FluentRestTemplate fluentRestTemplate =
+        new FluentRestTemplate(
+            new RestTemplate(new JdkClientHttpRequestFactory(null, Duration.ofMillis(50))));
+    // When
+    final ResourceAccessException exception =
+        assertThrows(
+            ResourceAccessException.class,
+            () ->
+                fluentRestTemplate
+                    .get()
+                    .from(baseUri.resolve("/slow"))
+                    .executor()
+                    .executeForObject(String.class));
+    // Then
+    assertThat(exception).hasMessageContaining("timed out");
+  }
+
+  @Test
+  void givenJavaPriorTo11_whenFactoryIsCreated_thenUnsupported() {
+    // Given
+    assumeFalse(JdkClientHttpRequestFactory.isSupported());
+    // When
+    final UnsupportedOperationException exception =
+        assertThrows(
+            UnsupportedOperationException.class, () -> FluentRestTemplate.builder().http2());
+    // Then
+    assertThat(exception).hasMessageContaining("Java 11");
+  }
+
+  private void echo(final HttpExchange exchange) throws IOException {
+    clientPorts.add(exchange.getRemoteAddress().getPort());
+    if (exchange.getRequestHeaders().containsKey("Via")) {
+      viaHeaders.addAll(exchange.getRequestHeaders().get("Via"));
+    }
+    final String method = exchange.getRequestMethod();
+    final String echo =
+        String.join(
+            " ",
+            method,
+            read(exchange.getRequestBody()),
+            exchange.getRequestHeaders().getFirst("X-Foo"));
+    final byte[] body = echo.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "text/plain");
+    exchange.getResponseHeaders().add("X-Method", method);
+    exchange.sendResponseHeaders(201, body.length);
+    try (OutputStream responseBody = exchange.getResponseBody()) {
+      responseBody.write(body);
+    }
+  }
+
+  private static String read(final InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+    for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+      out.write(buffer, 0, read);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
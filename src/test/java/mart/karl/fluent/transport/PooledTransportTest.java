@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2020 Karl Mart
+ * Carlos Martinez, ingcarlosmartinez@icloud.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mart.karl.fluent.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import mart.karl.fluent.resttemplate.FluentRestTemplate;
+import mart.karl.fluent.service.FluentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PooledTransportTest {
+
+  private static final String DUMMY_RESPONSE = "DummyResponse";
+
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private HttpServer server;
+  private URI baseUri;
+  private PooledTransport transport;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::respond);
+    server.createContext(
+        "/slow",
+        exchange -> {
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          respond(exchange);
+        });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    baseUri = URI.create("http://localhost:" + server.getAddress().getPort());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    release.countDown();
+    executor.shutdownNow();
+    if (transport != null) {
+      transport.close();
+    }
+    server.stop(0);
+  }
+
+  @Test
+  void givenServices_whenTransportIsCreated_thenRoutesAreSizedFromTheirInstances() {
+    // Given
+    final FluentService balanced =
+        FluentService.builder()
+            .scheme("https")
+            .instances(Arrays.asList("one:8443", "two"))
+            .build();
+    final FluentService single = FluentService.from("http://three:8080/path").build();
+    // When
+    transport =
+        new PooledTransport(
+            PooledTransportConfig.builder()
+                .maxConnections(50)
+                .maxConnectionsPerRoute(5)
+                .service(balanced, 40)
+                .service(single, 10)
+                .build());
+    // Then
+    assertThat(transport.getMaxConnections()).isEqualTo(90);
+    assertThat(transport.getMaxConnections(URI.create("https://one:8443"))).isEqualTo(40);
+    assertThat(transport.getMaxConnections(URI.create("https://two:443"))).isEqualTo(40);
+    assertThat(transport.getMaxConnections(URI.create("http://three:8080"))).isEqualTo(10);
+    assertThat(transport.getMaxConnections(URI.create("http://four"))).isEqualTo(5);
+  }
+
+  @Test
+  void givenPooledTransport_whenRequestsAreSent_thenConnectionIsReused() {
+    // Given
+    transport = new PooledTransport();
+    final FluentRestTemplate fluentRestTemplate =
+        FluentRestTemplate.builder().pooledTransport(transport).build();
+    // When
+    for (int i = 0; i < 5; i++) {
+      assertThat(
+              fluentRestTemplate.get().from(baseUri).executor().executeForObject(String.class))
+          .isEqualTo(DUMMY_RESPONSE);
+    }
+    // Then
+    assertThat(clientPorts).hasSize(1);
+    assertThat(transport.getLeaseCount()).isEqualTo(5);
+    assertThat(transport.getLeasedConnections()).isZero();
+    assertThat(transport.getAvailableConnections()).isEqualTo(1);
+    assertThat(transport.getUtilization()).isZero();
+  }
+
+  @Test
+  void givenExhaustedRoute_whenLeasing_thenLeaseTimesOutAndIsMetered() throws Exception {
+    // Given
+    transport =
+        new PooledTransport(
+            PooledTransportConfig.builder()
+                .route(baseUri, 1)
+                .leaseTimeout(Duration.ofMillis(50))
+                .build());
+    final FluentRestTemplate fluentRestTemplate =
+        FluentRestTemplate.builder().pooledTransport(transport).build();
+    executor.execute(
+        () ->
+            fluentRestTemplate
+                .get()
+                .from(baseUri.resolve("/slow"))
+                .executor()
+                .executeForObject(String.class));
+    while (transport.getLeasedConnections() == 0) {
+      Thread.sleep(5);
+    }
+    // When
+    final ResourceAccessException exception =
+        assertThrows(
+            ResourceAccessException.class,
+            () -> fluentRestTemplate.get().from(baseUri).executor().executeForObject(String.class));
+    // Then
+    assertThat(transport.getUtilization()).isEqualTo(100F / transport.getMaxConnections());
+    assertThat(transport.getLeaseTimeoutCount()).isEqualTo(1);
+    assertThat(transport.getTotalLeaseWaitTime().toMillis()).isGreaterThanOrEqualTo(50);
+    assertThat(transport.getPendingLeases()).isZero();
+    assertThat(exception).hasMessageContaining("Timeout waiting for connection");
+  }
+
+  private void respond(final HttpExchange exchange) throws IOException {
+    clientPorts.add(exchange.getRemoteAddress().getPort());
+    final byte[] body = DUMMY_RESPONSE.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "text/plain");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream responseBody = exchange.getResponseBody()) {
+      responseBody.write(body);
+    }
+  }
+}